@@ -0,0 +1,117 @@
+package org.mosaic.dao.impl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import org.mosaic.dao.Query;
+import org.mosaic.dao.extract.ResultSetExtractor;
+import org.mosaic.util.method.MethodHandle;
+import org.mosaic.util.method.MethodHandleFactory;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link QueryAction} creation (named parameters parsing) and invocation against an in-memory H2 database,
+ * compared to executing the same statement directly through JDBC.
+ *
+ * @author arik
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@State( Scope.Thread )
+public class QueryActionBenchmark
+{
+    private static final ResultSetExtractor<Integer> COUNT_EXTRACTOR = new ResultSetExtractor<Integer>()
+    {
+        @Override
+        public Integer extract( @Nonnull ResultSet rs, @Nonnull Object... arguments ) throws SQLException
+        {
+            return rs.next() ? rs.getInt( 1 ) : null;
+        }
+    };
+
+    private MethodHandle methodHandle;
+
+    private QueryAction queryAction;
+
+    private Connection connection;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        Method method = UsersDao.class.getMethod( "countUsers", int.class, int.class, String.class, ResultSetExtractor.class );
+        this.methodHandle = createMethodHandleFactory().findMethodHandle( method );
+        this.queryAction = new QueryAction( this.methodHandle, "benchmark" );
+
+        this.connection = DriverManager.getConnection( "jdbc:h2:mem:" + getClass().getSimpleName() + System.identityHashCode( this ) );
+        try( Statement stmt = this.connection.createStatement() )
+        {
+            stmt.execute( "CREATE TABLE users ( id INT PRIMARY KEY, name VARCHAR(100), age INT )" );
+            for( int i = 0; i < 1000; i++ )
+            {
+                stmt.execute( "INSERT INTO users VALUES ( " + i + ", 'user" + i + "', " + ( i % 90 ) + " )" );
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException
+    {
+        this.connection.close();
+    }
+
+    @Benchmark
+    public Object parse()
+    {
+        return new QueryAction( this.methodHandle, "benchmark" );
+    }
+
+    @Benchmark
+    public Object invoke() throws SQLException
+    {
+        return this.queryAction.invoke( this.connection, 0, 18, 30, "user1%", COUNT_EXTRACTOR );
+    }
+
+    @Benchmark
+    public Object jdbc() throws SQLException
+    {
+        try( PreparedStatement stmt = this.connection.prepareStatement( "SELECT COUNT(*) FROM users WHERE age >= ? AND age < ? AND name LIKE ?" ) )
+        {
+            stmt.setInt( 1, 18 );
+            stmt.setInt( 2, 30 );
+            stmt.setString( 3, "user1%" );
+            try( ResultSet rs = stmt.executeQuery() )
+            {
+                return COUNT_EXTRACTOR.extract( rs );
+            }
+        }
+    }
+
+    @Nonnull
+    private static MethodHandleFactory createMethodHandleFactory() throws Exception
+    {
+        // the factory implementation is package-private, normally published as an OSGi service by its activator
+        Class<?> factoryClass = Class.forName( "org.mosaic.util.method.impl.MethodHandleFactoryImpl" );
+        Constructor<?> constructor = factoryClass.getDeclaredConstructor();
+        constructor.setAccessible( true );
+        return ( MethodHandleFactory ) constructor.newInstance();
+    }
+
+    /**
+     * DAO fixture; concrete (rather than an interface) so that parameter names can be read from its bytecode.
+     */
+    public static class UsersDao
+    {
+        @Query( "SELECT COUNT(*) FROM users WHERE age >= :minAge AND age < :maxAge AND name LIKE :namePattern" )
+        public Integer countUsers( int minAge, int maxAge, String namePattern, ResultSetExtractor<Integer> extractor )
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.mosaic.modules.spi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.mosaic.util.collections.MapEx;
+import org.openjdk.jmh.annotations.*;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Measures the overhead woven into intercepted methods by {@link MethodInterceptorManager}. The "woven" benchmarks
+ * replicate the code generated by the bytecode weaver around the method body, against a manager tracking either no
+ * interceptors or a single pass-through interceptor, and compare them to a plain method invocation.
+ *
+ * @author arik
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@State( Scope.Thread )
+public class MethodInterceptorManagerBenchmark
+{
+    private static final long METHOD_ID = 1;
+
+    private final Map<Long, MethodEntry> methodEntries = new HashMap<>();
+
+    private MethodInterceptorManager emptyManager;
+
+    private MethodInterceptorManager passThroughManager;
+
+    private int a = 17;
+
+    private int b = 25;
+
+    @Setup
+    public void setup() throws NoSuchMethodException
+    {
+        Method method = MethodInterceptorManagerBenchmark.class.getDeclaredMethod( "add", int.class, int.class );
+        this.methodEntries.put( METHOD_ID, new MethodEntry( METHOD_ID, 0, method ) );
+        this.emptyManager = new MethodInterceptorManager( createBundleContext() );
+        this.passThroughManager = new MethodInterceptorManager( createBundleContext( new PassThroughMethodInterceptor() ) );
+    }
+
+    @Benchmark
+    public int plain()
+    {
+        return add( this.a, this.b );
+    }
+
+    @Benchmark
+    public int wovenWithoutInterceptors() throws Throwable
+    {
+        return wovenAdd( this.emptyManager, this.a, this.b );
+    }
+
+    @Benchmark
+    public int wovenWithPassThroughInterceptor() throws Throwable
+    {
+        return wovenAdd( this.passThroughManager, this.a, this.b );
+    }
+
+    private int add( int a, int b )
+    {
+        return a + b;
+    }
+
+    private int wovenAdd( @Nonnull MethodInterceptorManager manager, int a, int b ) throws Throwable
+    {
+        try
+        {
+            try
+            {
+                MethodEntry entry = this.methodEntries.get( Long.valueOf( METHOD_ID ) );
+                if( !manager.beforeInvocation( entry, this, new Object[] { a, b } ) )
+                {
+                    return ( Integer ) manager.afterAbortedInvocation();
+                }
+
+                int result = a + b;
+                return ( Integer ) manager.afterSuccessfulInvocation( result );
+            }
+            catch( Throwable e )
+            {
+                return ( Integer ) manager.afterThrowable( e );
+            }
+        }
+        finally
+        {
+            manager.cleanup( this.methodEntries.get( Long.valueOf( METHOD_ID ) ) );
+        }
+    }
+
+    @Nonnull
+    private static BundleContext createBundleContext( @Nonnull final MethodInterceptor... interceptors )
+    {
+        final ServiceReference<?>[] references = new ServiceReference<?>[ interceptors.length ];
+        for( int i = 0; i < interceptors.length; i++ )
+        {
+            references[ i ] = createProxy( ServiceReference.class, new IdentityInvocationHandler() );
+        }
+
+        return createProxy( BundleContext.class, new IdentityInvocationHandler()
+        {
+            @Nullable
+            @Override
+            protected Object invokeMethod( @Nonnull Method method, @Nullable Object[] args ) throws Exception
+            {
+                switch( method.getName() )
+                {
+                    case "createFilter":
+                        return FrameworkUtil.createFilter( ( String ) args[ 0 ] );
+
+                    case "getServiceReferences":
+                    case "getAllServiceReferences":
+                        return references.length == 0 ? null : references.clone();
+
+                    case "getService":
+                        for( int i = 0; i < references.length; i++ )
+                        {
+                            if( references[ i ] == args[ 0 ] )
+                            {
+                                return interceptors[ i ];
+                            }
+                        }
+                        return null;
+
+                    case "ungetService":
+                        return true;
+
+                    default:
+                        return null;
+                }
+            }
+        } );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    @Nonnull
+    private static <T> T createProxy( @Nonnull Class<T> type, @Nonnull InvocationHandler handler )
+    {
+        return ( T ) Proxy.newProxyInstance( MethodInterceptorManagerBenchmark.class.getClassLoader(), new Class<?>[] { type }, handler );
+    }
+
+    private static class IdentityInvocationHandler implements InvocationHandler
+    {
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable
+        {
+            switch( method.getName() )
+            {
+                case "equals":
+                    return proxy == args[ 0 ];
+
+                case "hashCode":
+                    return System.identityHashCode( proxy );
+
+                case "toString":
+                    return method.getDeclaringClass().getSimpleName() + "@" + System.identityHashCode( proxy );
+
+                default:
+                    return invokeMethod( method, args );
+            }
+        }
+
+        @Nullable
+        protected Object invokeMethod( @Nonnull Method method, @Nullable Object[] args ) throws Exception
+        {
+            return null;
+        }
+    }
+
+    private static class PassThroughMethodInterceptor implements MethodInterceptor
+    {
+        @Override
+        public boolean interestedIn( @Nonnull Method method, @Nonnull MapEx<String, Object> context )
+        {
+            return true;
+        }
+
+        @Nullable
+        @Override
+        public BeforeInvocationDecision beforeInvocation( @Nonnull BeforeMethodInvocation invocation )
+                throws Throwable
+        {
+            return invocation.continueInvocation();
+        }
+
+        @Nullable
+        @Override
+        public Object afterInvocation( @Nonnull AfterMethodInvocation invocation ) throws Throwable
+        {
+            return invocation.getReturnValue();
+        }
+
+        @Nullable
+        @Override
+        public Object afterThrowable( @Nonnull AfterMethodException invocation ) throws Throwable
+        {
+            throw invocation.getThrowable();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.mosaic.security;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link Permission#get(String)} (cached parsing) and {@link Permission#implies(Permission)}.
+ *
+ * @author arik
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@State( Scope.Benchmark )
+public class PermissionBenchmark
+{
+    private Permission granted;
+
+    private Permission wildcard;
+
+    private Permission required;
+
+    private Permission denied;
+
+    @Setup
+    public void setup()
+    {
+        this.granted = Permission.get( "app:users,groups:read,write:self" );
+        this.wildcard = Permission.get( "app:*:*" );
+        this.required = Permission.get( "app:users:read:self" );
+        this.denied = Permission.get( "app:billing:delete:self" );
+    }
+
+    @Benchmark
+    public Permission get()
+    {
+        return Permission.get( "app:users,groups:read,write:self" );
+    }
+
+    @Benchmark
+    public boolean implies()
+    {
+        return this.granted.implies( this.required );
+    }
+
+    @Benchmark
+    public boolean impliesWildcard()
+    {
+        return this.wildcard.implies( this.required );
+    }
+
+    @Benchmark
+    public boolean notImplies()
+    {
+        return this.granted.implies( this.denied );
+    }
+}
@@ -0,0 +1,72 @@
+package org.mosaic.util.conversion.impl;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import org.mosaic.util.conversion.Converter;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link ConversionServiceImpl#convert(Object, Class)} for assignable types (no conversion), a direct
+ * converter and a two-converter path found through the graph.
+ *
+ * @author arik
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@State( Scope.Benchmark )
+public class ConversionServiceBenchmark
+{
+    private ConversionServiceImpl conversionService;
+
+    @Setup
+    public void setup()
+    {
+        ConvertersGraph convertersGraph = new ConvertersGraph();
+        convertersGraph.addConverter( new StringToIntegerConverter() );
+        convertersGraph.addConverter( new IntegerToBigDecimalConverter() );
+        this.conversionService = new ConversionServiceImpl( convertersGraph );
+
+        // warm up the conversion paths cache so we measure lookups rather than path discovery
+        this.conversionService.convert( "1", Integer.class );
+        this.conversionService.convert( "1", BigDecimal.class );
+    }
+
+    @Benchmark
+    public Object assignable()
+    {
+        return this.conversionService.convert( "123", CharSequence.class );
+    }
+
+    @Benchmark
+    public Object direct()
+    {
+        return this.conversionService.convert( "123", Integer.class );
+    }
+
+    @Benchmark
+    public Object composite()
+    {
+        return this.conversionService.convert( "123", BigDecimal.class );
+    }
+
+    public static class StringToIntegerConverter implements Converter<String, Integer>
+    {
+        @Nonnull
+        @Override
+        public Integer convert( @Nonnull String source )
+        {
+            return Integer.valueOf( source );
+        }
+    }
+
+    public static class IntegerToBigDecimalConverter implements Converter<Integer, BigDecimal>
+    {
+        @Nonnull
+        @Override
+        public BigDecimal convert( @Nonnull Integer source )
+        {
+            return BigDecimal.valueOf( source );
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.mosaic.util.expression.impl;
+
+import java.util.concurrent.TimeUnit;
+import org.mosaic.util.expression.Expression;
+import org.mosaic.util.reflection.TypeTokens;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures parsing (through the expressions cache) and evaluation of expressions by {@link ExpressionParserImpl}.
+ *
+ * @author arik
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@State( Scope.Benchmark )
+public class ExpressionParserBenchmark
+{
+    private static final String EXPRESSION = "name.length() > 3 and #limit >= age";
+
+    private ExpressionParserImpl expressionParser;
+
+    private Expression<Boolean> expression;
+
+    private Person root;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        this.expressionParser = new ExpressionParserImpl();
+        this.expression = this.expressionParser.parseExpression( EXPRESSION, TypeTokens.of( Boolean.class ) );
+        this.root = new Person( "Johnny", 42 );
+    }
+
+    @Benchmark
+    public Object parse()
+    {
+        return this.expressionParser.parseExpression( EXPRESSION, TypeTokens.of( Boolean.class ) );
+    }
+
+    @Benchmark
+    public Object evaluate()
+    {
+        return this.expression.createInvocation( this.root ).setVariable( "limit", 50 ).invoke();
+    }
+
+    @Benchmark
+    public Object parseAndEvaluate()
+    {
+        return this.expressionParser.parseExpression( EXPRESSION, TypeTokens.of( Boolean.class ) )
+                                    .createInvocation( this.root )
+                                    .setVariable( "limit", 50 )
+                                    .invoke();
+    }
+
+    public static class Person
+    {
+        private final String name;
+
+        private final int age;
+
+        public Person( String name, int age )
+        {
+            this.name = name;
+            this.age = age;
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        public int getAge()
+        {
+            return this.age;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.mosaic.util.resource.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link PathMatcherImpl#matches(String, String)} for literal, wildcard and template patterns.
+ *
+ * @author arik
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@State( Scope.Benchmark )
+public class PathMatcherBenchmark
+{
+    @Param( { "/api/users/list", "/api/*/list", "/static/**/*.css", "/api/users/{id}/orders/{orderId}" } )
+    public String pattern;
+
+    private PathMatcherImpl pathMatcher;
+
+    private String matchingPath;
+
+    @Setup
+    public void setup()
+    {
+        this.pathMatcher = new PathMatcherImpl();
+        if( this.pattern.startsWith( "/static" ) )
+        {
+            this.matchingPath = "/static/themes/default/css/main.css";
+        }
+        else if( this.pattern.contains( "{" ) )
+        {
+            this.matchingPath = "/api/users/17/orders/4711";
+        }
+        else
+        {
+            this.matchingPath = "/api/users/list";
+        }
+    }
+
+    @Benchmark
+    public boolean matching()
+    {
+        return this.pathMatcher.matches( this.pattern, this.matchingPath );
+    }
+
+    @Benchmark
+    public boolean nonMatching()
+    {
+        return this.pathMatcher.matches( this.pattern, "/images/logos/large/mosaic.png" );
+    }
+
+    @Benchmark
+    public Map<String, String> matchingWithParameters()
+    {
+        Map<String, String> pathParameters = new HashMap<>();
+        this.pathMatcher.matches( this.pattern, this.matchingPath, pathParameters );
+        return pathParameters;
+    }
+}
@@ -0,0 +1,228 @@
+package org.mosaic.web.server.impl;
+
+import com.google.common.base.Optional;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.mosaic.modules.Module;
+import org.mosaic.modules.ServiceReference;
+import org.mosaic.util.collections.HashMapEx;
+import org.mosaic.util.collections.MapEx;
+import org.mosaic.web.server.HttpRequest;
+import org.mosaic.web.server.InterceptorChain;
+import org.mosaic.web.server.RequestHandler;
+import org.mosaic.web.server.RequestInterceptor;
+import org.mosaic.web.server.WebInvocation;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures request handlers and interceptors lookup by {@link RequestHandlersManagerImpl} over a varying number of
+ * registered handlers, each declaring the HTTP methods it supports.
+ *
+ * @author arik
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@State( Scope.Benchmark )
+public class RequestHandlersManagerBenchmark
+{
+    private static final String[] METHODS = { "GET", "POST", "GET,HEAD", "PUT, DELETE", "GET,POST,PUT" };
+
+    @Param( { "10", "100", "1000" } )
+    public int handlers;
+
+    private RequestHandlersManagerImpl requestHandlersManager;
+
+    private WebInvocation invocation;
+
+    private RequestHandler requestHandler;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        List<ServiceReference<RequestHandler>> requestHandlers = new ArrayList<>( this.handlers );
+        List<ServiceReference<RequestInterceptor>> interceptors = new ArrayList<>( this.handlers );
+        for( int i = 0; i < this.handlers; i++ )
+        {
+            requestHandlers.add( new ServiceReferenceFixture<RequestHandler>( i, new RequestHandlerFixture( i % 7 == 0 ), METHODS[ i % METHODS.length ] ) );
+            interceptors.add( new ServiceReferenceFixture<RequestInterceptor>( i, new RequestInterceptorFixture( i % 11 == 0 ), METHODS[ i % METHODS.length ] ) );
+        }
+
+        // these are injected by the modules framework at runtime
+        this.requestHandlersManager = new RequestHandlersManagerImpl();
+        setField( this.requestHandlersManager, "requestHandlers", requestHandlers );
+        setField( this.requestHandlersManager, "interceptors", interceptors );
+
+        final HttpRequest httpRequest = createProxy( HttpRequest.class, new InvocationHandler()
+        {
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable
+            {
+                return "getMethod".equals( method.getName() ) ? "GET" : null;
+            }
+        } );
+        this.invocation = createProxy( WebInvocation.class, new InvocationHandler()
+        {
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable
+            {
+                return "getHttpRequest".equals( method.getName() ) ? httpRequest : null;
+            }
+        } );
+        this.requestHandler = new RequestHandlerFixture( true );
+    }
+
+    @Benchmark
+    public Object findRequestHandlers()
+    {
+        return this.requestHandlersManager.findRequestHandlers( this.invocation );
+    }
+
+    @Benchmark
+    public Object findRequestHandlersByMethod()
+    {
+        return this.requestHandlersManager.findRequestHandlersByMethod( this.invocation );
+    }
+
+    @Benchmark
+    public Object findInterceptors()
+    {
+        return this.requestHandlersManager.findInterceptors( this.invocation, this.requestHandler );
+    }
+
+    private static void setField( @Nonnull Object target, @Nonnull String name, @Nonnull Object value )
+            throws ReflectiveOperationException
+    {
+        Field field = target.getClass().getDeclaredField( name );
+        field.setAccessible( true );
+        field.set( target, value );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    @Nonnull
+    private static <T> T createProxy( @Nonnull Class<T> type, @Nonnull InvocationHandler handler )
+    {
+        return ( T ) Proxy.newProxyInstance( RequestHandlersManagerBenchmark.class.getClassLoader(), new Class<?>[] { type }, handler );
+    }
+
+    /**
+     * Service properties map which, unlike {@link HashMapEx}, does not require the conversion service (which is an
+     * OSGi service) for values that are already of the requested type.
+     */
+    private static class PropertiesFixture extends HashMapEx<String, Object>
+    {
+        @Nonnull
+        @Override
+        public <T> Optional<T> find( @Nonnull String key, @Nonnull Class<T> type )
+        {
+            Object value = get( key );
+            return type.isInstance( value ) ? Optional.of( type.cast( value ) ) : Optional.<T>absent();
+        }
+    }
+
+    private static class ServiceReferenceFixture<Type> implements ServiceReference<Type>
+    {
+        private final long id;
+
+        @Nonnull
+        private final Type service;
+
+        @Nonnull
+        private final MapEx<String, Object> properties = new PropertiesFixture();
+
+        private ServiceReferenceFixture( long id, @Nonnull Type service, @Nonnull String methods )
+        {
+            this.id = id;
+            this.service = service;
+            this.properties.put( "methods", methods );
+        }
+
+        @Override
+        public long getId()
+        {
+            return this.id;
+        }
+
+        @SuppressWarnings( "unchecked" )
+        @Nonnull
+        @Override
+        public Class<? extends Type> getType()
+        {
+            return ( Class<? extends Type> ) this.service.getClass();
+        }
+
+        @Nonnull
+        @Override
+        public MapEx<String, Object> getProperties()
+        {
+            return this.properties;
+        }
+
+        @Nullable
+        @Override
+        public Module getProvider()
+        {
+            return null;
+        }
+
+        @Nonnull
+        @Override
+        public Optional<Type> service()
+        {
+            return Optional.of( this.service );
+        }
+    }
+
+    private static class RequestHandlerFixture implements RequestHandler
+    {
+        private final boolean canHandle;
+
+        private RequestHandlerFixture( boolean canHandle )
+        {
+            this.canHandle = canHandle;
+        }
+
+        @Override
+        public boolean canHandle( @Nonnull WebInvocation request )
+        {
+            return this.canHandle;
+        }
+
+        @Nullable
+        @Override
+        public Object handle( @Nonnull WebInvocation invocation ) throws Throwable
+        {
+            return null;
+        }
+    }
+
+    private static class RequestInterceptorFixture implements RequestInterceptor
+    {
+        private final boolean canHandle;
+
+        private RequestInterceptorFixture( boolean canHandle )
+        {
+            this.canHandle = canHandle;
+        }
+
+        @Override
+        public boolean canHandle( @Nonnull WebInvocation request, @Nonnull RequestHandler requestHandler )
+        {
+            return this.canHandle;
+        }
+
+        @Nullable
+        @Override
+        public Object handle( @Nonnull WebInvocation invocation, @Nonnull InterceptorChain interceptorChain )
+                throws Throwable
+        {
+            return null;
+        }
+    }
+}
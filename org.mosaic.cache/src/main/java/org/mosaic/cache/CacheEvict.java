@@ -0,0 +1,28 @@
+package org.mosaic.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Evicts the entry keyed by the annotated method's arguments (or all entries) from the named cache, after the method
+ * returns successfully.
+ *
+ * @author arik
+ * @see Cacheable
+ */
+@Target( ElementType.METHOD )
+@Retention( RetentionPolicy.RUNTIME )
+public @interface CacheEvict
+{
+    /**
+     * Name of the cache to evict from.
+     */
+    String value();
+
+    /**
+     * Whether to evict all entries of the cache, rather than just the entry keyed by the method's arguments.
+     */
+    boolean allEntries() default false;
+}
@@ -0,0 +1,33 @@
+package org.mosaic.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the return values of the annotated method in the named cache, keyed by the method's arguments; subsequent
+ * invocations with equal arguments return the cached value without invoking the method. Concurrent invocations with
+ * equal arguments that miss the cache invoke the method once - the rest wait for, and return, its result.
+ * <p/>
+ * Cache limits are configured in the {@code cache} configuration, by cache name (or {@code default} for caches not
+ * explicitly configured):
+ * <pre>
+ * users.maximumSize = 10000
+ * users.expireAfterWrite = 300
+ * users.expireAfterAccess = 60
+ * </pre>
+ * Expiration times are in seconds. Methods sharing a cache should use arguments of the same meaning, since they share
+ * their keys (this is also what allows {@link CacheEvict} to evict entries).
+ *
+ * @author arik
+ */
+@Target( ElementType.METHOD )
+@Retention( RetentionPolicy.RUNTIME )
+public @interface Cacheable
+{
+    /**
+     * Name of the cache to store return values in.
+     */
+    String value();
+}
@@ -0,0 +1,140 @@
+package org.mosaic.cache.impl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.mosaic.console.Command;
+import org.mosaic.console.Console;
+import org.mosaic.console.util.table.SimpleColumn;
+import org.mosaic.console.util.table.TablePrinter;
+import org.mosaic.modules.Component;
+
+/**
+ * @author arik
+ */
+@Component
+final class CacheCommands
+{
+    @Nonnull
+    @Component
+    private CacheManager cacheManager;
+
+    @Command( synopsis = "show caches",
+              description = "This command will show the configuration and statistics of @Cacheable method caches, " +
+                            "possibly filtered by a given filter." )
+    void caches( @Nonnull
+                 Console console,
+
+                 @Nullable
+                 @Command.Arg( synopsis = "cache names filter",
+                               description = "Only caches whose names contain this text will be shown." )
+                 String filter ) throws IOException
+    {
+        @SuppressWarnings( "unchecked" )
+        TablePrinter<MethodCache> table = new TablePrinter<>(
+                console,
+                new SimpleColumn<MethodCache>( "Name", 30 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull MethodCache cache )
+                    {
+                        return cache.getName();
+                    }
+                },
+                new SimpleColumn<MethodCache>( "Size/Max", 15 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull MethodCache cache )
+                    {
+                        return cache.getSize() + "/" + cache.getMaximumSize();
+                    }
+                },
+                new SimpleColumn<MethodCache>( "TTL (s)", 9 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull MethodCache cache )
+                    {
+                        return cache.getExpireAfterWrite() > 0 ? cache.getExpireAfterWrite() + "" : "-";
+                    }
+                },
+                new SimpleColumn<MethodCache>( "Hits", 10 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull MethodCache cache )
+                    {
+                        return cache.getHits() + "";
+                    }
+                },
+                new SimpleColumn<MethodCache>( "Misses", 10 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull MethodCache cache )
+                    {
+                        return cache.getMisses() + "";
+                    }
+                },
+                new SimpleColumn<MethodCache>( "Hit %", 6 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull MethodCache cache )
+                    {
+                        long requests = cache.getHits() + cache.getMisses();
+                        return requests == 0 ? "-" : String.format( "%.1f", cache.getHits() * 100.0 / requests );
+                    }
+                },
+                new SimpleColumn<MethodCache>( "Waits", 8 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull MethodCache cache )
+                    {
+                        return cache.getWaits() + "";
+                    }
+                },
+                new SimpleColumn<MethodCache>( "Avg load (ms)", 13 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull MethodCache cache )
+                    {
+                        long loads = cache.getLoadCount();
+                        return loads == 0 ? "-" : String.format( "%.3f", cache.getLoadNanos() / ( double ) loads / TimeUnit.MILLISECONDS.toNanos( 1 ) );
+                    }
+                },
+                new SimpleColumn<MethodCache>( "Evictions", 9 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull MethodCache cache )
+                    {
+                        return cache.getEvictions() + "";
+                    }
+                },
+                new SimpleColumn<MethodCache>( "Invalidations", 13 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull MethodCache cache )
+                    {
+                        return cache.getInvalidations() + "";
+                    }
+                }
+        );
+
+        for( MethodCache cache : this.cacheManager.getCaches() )
+        {
+            if( filter == null || cache.getName().contains( filter ) )
+            {
+                table.print( cache );
+            }
+        }
+        table.endTable();
+    }
+}
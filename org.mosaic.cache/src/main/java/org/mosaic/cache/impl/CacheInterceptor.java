@@ -0,0 +1,202 @@
+package org.mosaic.cache.impl;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.mosaic.cache.CacheEvict;
+import org.mosaic.cache.Cacheable;
+import org.mosaic.modules.Component;
+import org.mosaic.modules.Service;
+import org.mosaic.modules.spi.MethodInterceptor;
+import org.mosaic.util.collections.MapEx;
+import org.mosaic.util.reflection.MethodAnnotations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implements {@link Cacheable} and {@link CacheEvict}.
+ * <p/>
+ * Annotations are resolved once per method, when the method is first intercepted; invocations then only compute a key
+ * from the arguments (the argument itself for single-argument methods, or an {@link ArgumentsKey} otherwise) and
+ * perform a cache lookup.
+ *
+ * @author arik
+ */
+@Service
+final class CacheInterceptor implements MethodInterceptor
+{
+    private static final Logger LOG = LoggerFactory.getLogger( CacheInterceptor.class );
+
+    private static final Object EMPTY_KEY = new ArgumentsKey( new Object[ 0 ] );
+
+    private static final Object NULL_KEY = new ArgumentsKey( new Object[] { null } );
+
+    @Nonnull
+    @Component
+    private CacheManager cacheManager;
+
+    @Override
+    public boolean interestedIn( @Nonnull Method method, @Nonnull MapEx<String, Object> context )
+    {
+        Cacheable cacheable = MethodAnnotations.getMetaAnnotation( method, Cacheable.class );
+        if( cacheable != null )
+        {
+            if( method.getReturnType() == void.class )
+            {
+                LOG.warn( "Method {} is annotated with @Cacheable but returns void - ignoring", method );
+            }
+            else
+            {
+                context.put( "cacheable", this.cacheManager.getCache( cacheable.value() ) );
+            }
+        }
+
+        CacheEvict cacheEvict = MethodAnnotations.getMetaAnnotation( method, CacheEvict.class );
+        if( cacheEvict != null )
+        {
+            context.put( "evict", this.cacheManager.getCache( cacheEvict.value() ) );
+            context.put( "evictAll", cacheEvict.allEntries() );
+        }
+
+        return !context.isEmpty();
+    }
+
+    @Nullable
+    @Override
+    public BeforeInvocationDecision beforeInvocation( @Nonnull BeforeMethodInvocation invocation )
+            throws Throwable
+    {
+        MethodCache cache = ( MethodCache ) invocation.getInterceptorContext().get( "cacheable" );
+        if( cache == null )
+        {
+            return invocation.continueInvocation();
+        }
+
+        Object key = getKey( invocation.getArguments() );
+        Object value = cache.get( key );
+        if( value != null )
+        {
+            return invocation.abort( MethodCache.unmask( value ) );
+        }
+
+        // a miss - compute the value, unless another thread is already computing it, in which case we wait for it
+        MethodCache.Load load = cache.startLoad( key );
+        if( load.isOwnedByCurrentThread() )
+        {
+            // another thread may have loaded and stored the value between our miss and our load
+            Object loaded = cache.recheck( load );
+            if( loaded != null )
+            {
+                return invocation.abort( MethodCache.unmask( loaded ) );
+            }
+            invocation.getInvocationContext().put( "load", load );
+            return invocation.continueInvocation();
+        }
+        else
+        {
+            return invocation.abort( cache.await( load ) );
+        }
+    }
+
+    @Nullable
+    @Override
+    public Object afterInvocation( @Nonnull AfterMethodInvocation invocation ) throws Throwable
+    {
+        Object returnValue = invocation.getReturnValue();
+
+        MapEx<String, Object> interceptorContext = invocation.getInterceptorContext();
+        MethodCache.Load load = ( MethodCache.Load ) invocation.getInvocationContext().get( "load" );
+        if( load != null )
+        {
+            ( ( MethodCache ) interceptorContext.get( "cacheable" ) ).completeLoad( load, returnValue );
+        }
+
+        MethodCache evictCache = ( MethodCache ) interceptorContext.get( "evict" );
+        if( evictCache != null )
+        {
+            if( ( Boolean ) interceptorContext.get( "evictAll" ) )
+            {
+                evictCache.invalidateAll();
+            }
+            else
+            {
+                evictCache.invalidate( getKey( invocation.getArguments() ) );
+            }
+        }
+        return returnValue;
+    }
+
+    @Nullable
+    @Override
+    public Object afterThrowable( @Nonnull AfterMethodException invocation ) throws Throwable
+    {
+        MethodCache.Load load = ( MethodCache.Load ) invocation.getInvocationContext().get( "load" );
+        if( load != null )
+        {
+            ( ( MethodCache ) invocation.getInterceptorContext().get( "cacheable" ) ).failLoad( load, invocation.getThrowable() );
+        }
+        throw invocation.getThrowable();
+    }
+
+    @Nonnull
+    private static Object getKey( @Nonnull Object[] arguments )
+    {
+        switch( arguments.length )
+        {
+            case 0:
+                return EMPTY_KEY;
+
+            case 1:
+                Object argument = arguments[ 0 ];
+                if( argument == null )
+                {
+                    return NULL_KEY;
+                }
+                else if( !argument.getClass().isArray() )
+                {
+                    return argument;
+                }
+                // arrays are compared by content, so wrap them like multiple arguments
+
+            default:
+                return new ArgumentsKey( arguments );
+        }
+    }
+
+    private static final class ArgumentsKey
+    {
+        @Nonnull
+        private final Object[] arguments;
+
+        private final int hashCode;
+
+        private ArgumentsKey( @Nonnull Object[] arguments )
+        {
+            this.arguments = arguments.clone();
+            this.hashCode = Arrays.deepHashCode( this.arguments );
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if( this == o )
+            {
+                return true;
+            }
+            else if( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+
+            ArgumentsKey that = ( ArgumentsKey ) o;
+            return this.hashCode == that.hashCode && Arrays.deepEquals( this.arguments, that.arguments );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+    }
+}
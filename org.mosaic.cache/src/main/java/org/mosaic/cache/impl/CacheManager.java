@@ -0,0 +1,92 @@
+package org.mosaic.cache.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+import org.mosaic.config.Configurable;
+import org.mosaic.modules.Component;
+import org.mosaic.util.collections.EmptyMapEx;
+import org.mosaic.util.collections.MapEx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author arik
+ */
+@Component
+final class CacheManager
+{
+    private static final Logger LOG = LoggerFactory.getLogger( CacheManager.class );
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+    @Nonnull
+    private final ConcurrentMap<String, MethodCache> caches = new ConcurrentHashMap<>();
+
+    @Nonnull
+    private volatile MapEx<String, String> cfg = EmptyMapEx.emptyMapEx();
+
+    @Configurable( "cache" )
+    synchronized void configure( @Nonnull MapEx<String, String> cfg )
+    {
+        this.cfg = cfg;
+        for( MethodCache cache : this.caches.values() )
+        {
+            String name = cache.getName();
+            cache.configure( getLimit( name, "maximumSize", DEFAULT_MAXIMUM_SIZE ),
+                             getLimit( name, "expireAfterWrite", 0 ),
+                             getLimit( name, "expireAfterAccess", 0 ) );
+        }
+        LOG.info( "Caches configured" );
+    }
+
+    @Nonnull
+    MethodCache getCache( @Nonnull String name )
+    {
+        MethodCache cache = this.caches.get( name );
+        if( cache == null )
+        {
+            synchronized( this )
+            {
+                cache = this.caches.get( name );
+                if( cache == null )
+                {
+                    cache = new MethodCache( name,
+                                             getLimit( name, "maximumSize", DEFAULT_MAXIMUM_SIZE ),
+                                             getLimit( name, "expireAfterWrite", 0 ),
+                                             getLimit( name, "expireAfterAccess", 0 ) );
+                    this.caches.put( name, cache );
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * @return all caches, sorted by name
+     */
+    @Nonnull
+    List<MethodCache> getCaches()
+    {
+        List<MethodCache> caches = new ArrayList<>( this.caches.values() );
+        Collections.sort( caches, new Comparator<MethodCache>()
+        {
+            @Override
+            public int compare( MethodCache o1, MethodCache o2 )
+            {
+                return o1.getName().compareTo( o2.getName() );
+            }
+        } );
+        return caches;
+    }
+
+    private long getLimit( @Nonnull String cacheName, @Nonnull String limit, long defaultValue )
+    {
+        MapEx<String, String> cfg = this.cfg;
+        return cfg.find( cacheName + "." + limit, Long.class ).or( cfg.find( "default." + limit, Long.class ).or( defaultValue ) );
+    }
+}
@@ -0,0 +1,319 @@
+package org.mosaic.cache.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A named cache of method return values, along with its in-flight loads and statistics.
+ * <p/>
+ * A miss registers a {@link Load} for its key; concurrent misses for the same key find that load and wait for it rather
+ * than invoking the method again. Reconfiguring the cache replaces its entries (but keeps its statistics), and any
+ * eviction invalidates loads already in flight, so a value computed before an eviction is never stored after it.
+ *
+ * @author arik
+ */
+final class MethodCache
+{
+    private static final Object NULL = new Object();
+
+    @Nonnull
+    private final String name;
+
+    @Nonnull
+    private final ConcurrentMap<Object, Load> loads = new ConcurrentHashMap<>();
+
+    @Nonnull
+    private final AtomicLong generation = new AtomicLong();
+
+    @Nonnull
+    private final AtomicLong hits = new AtomicLong();
+
+    @Nonnull
+    private final AtomicLong misses = new AtomicLong();
+
+    @Nonnull
+    private final AtomicLong waits = new AtomicLong();
+
+    @Nonnull
+    private final AtomicLong loadCount = new AtomicLong();
+
+    @Nonnull
+    private final AtomicLong loadNanos = new AtomicLong();
+
+    @Nonnull
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Nonnull
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Nonnull
+    private final RemovalListener<Object, Object> removalListener = new RemovalListener<Object, Object>()
+    {
+        @Override
+        public void onRemoval( @Nonnull RemovalNotification<Object, Object> notification )
+        {
+            if( notification.wasEvicted() )
+            {
+                MethodCache.this.evictions.incrementAndGet();
+            }
+        }
+    };
+
+    @Nonnull
+    private volatile Cache<Object, Object> entries;
+
+    private volatile long maximumSize;
+
+    private volatile long expireAfterWrite;
+
+    private volatile long expireAfterAccess;
+
+    MethodCache( @Nonnull String name, long maximumSize, long expireAfterWrite, long expireAfterAccess )
+    {
+        this.name = name;
+        this.entries = createEntries( maximumSize, expireAfterWrite, expireAfterAccess );
+    }
+
+    @Nonnull
+    String getName()
+    {
+        return this.name;
+    }
+
+    long getMaximumSize()
+    {
+        return this.maximumSize;
+    }
+
+    long getExpireAfterWrite()
+    {
+        return this.expireAfterWrite;
+    }
+
+    long getExpireAfterAccess()
+    {
+        return this.expireAfterAccess;
+    }
+
+    long getSize()
+    {
+        return this.entries.size();
+    }
+
+    long getHits()
+    {
+        return this.hits.get();
+    }
+
+    long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    long getWaits()
+    {
+        return this.waits.get();
+    }
+
+    long getLoadCount()
+    {
+        return this.loadCount.get();
+    }
+
+    long getLoadNanos()
+    {
+        return this.loadNanos.get();
+    }
+
+    long getEvictions()
+    {
+        return this.evictions.get();
+    }
+
+    long getInvalidations()
+    {
+        return this.invalidations.get();
+    }
+
+    /**
+     * Replaces the cache entries with an empty set of entries, using the given limits (expiration times are in seconds,
+     * where {@code 0} means entries do not expire).
+     */
+    void configure( long maximumSize, long expireAfterWrite, long expireAfterAccess )
+    {
+        if( maximumSize != this.maximumSize || expireAfterWrite != this.expireAfterWrite || expireAfterAccess != this.expireAfterAccess )
+        {
+            this.generation.incrementAndGet();
+            this.entries = createEntries( maximumSize, expireAfterWrite, expireAfterAccess );
+        }
+    }
+
+    /**
+     * Returns the cached value for the given key (masked, so that cached {@code null} values are distinguishable from
+     * misses - see {@link #unmask(Object)}), or {@code null} if missing.
+     */
+    @Nullable
+    Object get( @Nonnull Object key )
+    {
+        Object value = this.entries.getIfPresent( key );
+        if( value != null )
+        {
+            this.hits.incrementAndGet();
+        }
+        else
+        {
+            this.misses.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Returns the load of the given key - a new load owned by the calling thread if none was in flight, or the load of
+     * the thread already computing it.
+     */
+    @Nonnull
+    Load startLoad( @Nonnull Object key )
+    {
+        Load load = new Load( key, this.generation.get() );
+        Load existing = this.loads.putIfAbsent( key, load );
+        return existing == null ? load : existing;
+    }
+
+    /**
+     * Checks whether a load which completed after the caller's miss (but before it started its own load) has already
+     * stored the value; if so, the given load (which must be owned by the calling thread) is completed with that value,
+     * which is returned (masked) so the method need not be invoked again. Otherwise returns {@code null}.
+     */
+    @Nullable
+    Object recheck( @Nonnull Load load )
+    {
+        Object value = this.entries.getIfPresent( load.key );
+        if( value != null )
+        {
+            this.loads.remove( load.key, load );
+            load.future.set( unmask( value ) );
+        }
+        return value;
+    }
+
+    /**
+     * Waits for a load owned by another thread, returning its value or throwing its failure.
+     */
+    @Nullable
+    Object await( @Nonnull Load load ) throws Throwable
+    {
+        this.waits.incrementAndGet();
+        try
+        {
+            return load.future.get();
+        }
+        catch( ExecutionException e )
+        {
+            throw e.getCause();
+        }
+    }
+
+    void completeLoad( @Nonnull Load load, @Nullable Object value )
+    {
+        this.loadCount.incrementAndGet();
+        this.loadNanos.addAndGet( System.nanoTime() - load.startNanos );
+
+        // don't store values computed before an eviction or reconfiguration; an eviction may also happen between the
+        // check and the put (after the put, it removes the value itself - before it, the second check catches it)
+        if( load.generation == this.generation.get() )
+        {
+            Cache<Object, Object> entries = this.entries;
+            entries.put( load.key, value == null ? NULL : value );
+            if( load.generation != this.generation.get() )
+            {
+                entries.invalidate( load.key );
+            }
+        }
+        this.loads.remove( load.key, load );
+        load.future.set( value );
+    }
+
+    void failLoad( @Nonnull Load load, @Nonnull Throwable throwable )
+    {
+        this.loads.remove( load.key, load );
+        load.future.setException( throwable );
+    }
+
+    void invalidate( @Nonnull Object key )
+    {
+        this.generation.incrementAndGet();
+        this.invalidations.incrementAndGet();
+        this.entries.invalidate( key );
+    }
+
+    void invalidateAll()
+    {
+        this.generation.incrementAndGet();
+        this.invalidations.incrementAndGet();
+        this.entries.invalidateAll();
+    }
+
+    @Nullable
+    static Object unmask( @Nonnull Object value )
+    {
+        return value == NULL ? null : value;
+    }
+
+    @Nonnull
+    private Cache<Object, Object> createEntries( long maximumSize, long expireAfterWrite, long expireAfterAccess )
+    {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                                                           .concurrencyLevel( 16 )
+                                                           .maximumSize( maximumSize )
+                                                           .removalListener( this.removalListener );
+        if( expireAfterWrite > 0 )
+        {
+            builder.expireAfterWrite( expireAfterWrite, TimeUnit.SECONDS );
+        }
+        if( expireAfterAccess > 0 )
+        {
+            builder.expireAfterAccess( expireAfterAccess, TimeUnit.SECONDS );
+        }
+        this.maximumSize = maximumSize;
+        this.expireAfterWrite = expireAfterWrite;
+        this.expireAfterAccess = expireAfterAccess;
+        return builder.build();
+    }
+
+    static final class Load
+    {
+        @Nonnull
+        private final Object key;
+
+        private final long generation;
+
+        @Nonnull
+        private final Thread owner = Thread.currentThread();
+
+        private final long startNanos = System.nanoTime();
+
+        @Nonnull
+        private final SettableFuture<Object> future = SettableFuture.create();
+
+        private Load( @Nonnull Object key, long generation )
+        {
+            this.key = key;
+            this.generation = generation;
+        }
+
+        boolean isOwnedByCurrentThread()
+        {
+            return this.owner == Thread.currentThread();
+        }
+    }
+}
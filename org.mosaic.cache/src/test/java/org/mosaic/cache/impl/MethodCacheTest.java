@@ -0,0 +1,206 @@
+package org.mosaic.cache.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Exercises {@link MethodCache} the way {@link CacheInterceptor} drives it: a lookup, and on a miss either a load owned
+ * by the calling thread or a wait for the load of another thread.
+ *
+ * @author arik
+ */
+public class MethodCacheTest
+{
+    private static final int THREADS = 8;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+
+    @After
+    public void shutdown()
+    {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentMissesInvokeOnce() throws Exception
+    {
+        final MethodCache cache = new MethodCache( "test", 100000, 0, 0 );
+        for( int round = 0; round < 500; round++ )
+        {
+            final String key = "key" + round;
+            final AtomicInteger invocations = new AtomicInteger();
+            final CyclicBarrier barrier = new CyclicBarrier( THREADS );
+
+            List<Future<Object>> results = new ArrayList<>();
+            for( int i = 0; i < THREADS; i++ )
+            {
+                results.add( this.executor.submit( new Callable<Object>()
+                {
+                    @Override
+                    public Object call() throws Exception
+                    {
+                        barrier.await();
+                        return lookup( cache, key, new Callable<Object>()
+                        {
+                            @Override
+                            public Object call() throws Exception
+                            {
+                                return "value" + invocations.incrementAndGet();
+                            }
+                        } );
+                    }
+                } ) );
+            }
+            for( Future<Object> result : results )
+            {
+                assertThat( result.get( 10, TimeUnit.SECONDS ), equalTo( ( Object ) "value1" ) );
+            }
+            assertThat( key, invocations.get(), equalTo( 1 ) );
+        }
+    }
+
+    @Test
+    public void testMissBeforeCompletedLoadUsesStoredValue() throws Throwable
+    {
+        MethodCache cache = new MethodCache( "test", 100, 0, 0 );
+
+        // this thread misses...
+        assertThat( cache.get( "key" ), nullValue() );
+
+        // ...another load completes and removes itself...
+        MethodCache.Load previous = cache.startLoad( "key" );
+        cache.completeLoad( previous, "value" );
+
+        // ...so this thread starts a new load, which must find the stored value rather than invoke the method again
+        MethodCache.Load load = cache.startLoad( "key" );
+        assertThat( load.isOwnedByCurrentThread(), is( true ) );
+        assertThat( cache.recheck( load ), equalTo( ( Object ) "value" ) );
+        assertThat( cache.await( load ), equalTo( ( Object ) "value" ) );
+    }
+
+    @Test
+    public void testWaitersReceiveLoadFailure() throws Exception
+    {
+        final MethodCache cache = new MethodCache( "test", 100, 0, 0 );
+        final MethodCache.Load load = this.executor.submit( new Callable<MethodCache.Load>()
+        {
+            @Override
+            public MethodCache.Load call() throws Exception
+            {
+                return cache.startLoad( "key" );
+            }
+        } ).get();
+
+        MethodCache.Load joined = cache.startLoad( "key" );
+        assertThat( joined, sameInstance( load ) );
+        assertThat( joined.isOwnedByCurrentThread(), is( false ) );
+
+        IllegalStateException failure = new IllegalStateException( "load failed" );
+        cache.failLoad( load, failure );
+        try
+        {
+            cache.await( joined );
+            fail( "expected load failure to be thrown to waiters" );
+        }
+        catch( Throwable throwable )
+        {
+            assertThat( throwable, sameInstance( ( Throwable ) failure ) );
+        }
+
+        // failures are not cached - the next miss starts a new load
+        assertThat( cache.get( "key" ), nullValue() );
+        MethodCache.Load next = cache.startLoad( "key" );
+        assertThat( next, not( sameInstance( load ) ) );
+        assertThat( next.isOwnedByCurrentThread(), is( true ) );
+    }
+
+    @Test
+    public void testEvictionDuringLoadDiscardsValue()
+    {
+        MethodCache cache = new MethodCache( "test", 100, 0, 0 );
+
+        MethodCache.Load load = cache.startLoad( "key" );
+        cache.invalidate( "key" );
+        cache.completeLoad( load, "stale" );
+        assertThat( cache.get( "key" ), nullValue() );
+
+        load = cache.startLoad( "key" );
+        cache.invalidateAll();
+        cache.completeLoad( load, "stale" );
+        assertThat( cache.get( "key" ), nullValue() );
+    }
+
+    @Test
+    public void testEvictionRacingLoadCompletionDiscardsValue() throws Exception
+    {
+        final MethodCache cache = new MethodCache( "test", 100, 0, 0 );
+        for( int i = 0; i < 20000; i++ )
+        {
+            // the load starts before the eviction, so however the two race, its value must not remain cached
+            final MethodCache.Load load = cache.startLoad( "key" );
+            final CyclicBarrier barrier = new CyclicBarrier( 2 );
+            Future<?> completion = this.executor.submit( new Callable<Object>()
+            {
+                @Override
+                public Object call() throws Exception
+                {
+                    barrier.await();
+                    cache.completeLoad( load, "stale" );
+                    return null;
+                }
+            } );
+            barrier.await();
+            cache.invalidate( "key" );
+            completion.get( 10, TimeUnit.SECONDS );
+            assertThat( "iteration " + i, cache.get( "key" ), nullValue() );
+        }
+    }
+
+    private static Object lookup( MethodCache cache, Object key, Callable<Object> method ) throws Exception
+    {
+        Object value = cache.get( key );
+        if( value != null )
+        {
+            return MethodCache.unmask( value );
+        }
+
+        MethodCache.Load load = cache.startLoad( key );
+        try
+        {
+            if( !load.isOwnedByCurrentThread() )
+            {
+                return cache.await( load );
+            }
+
+            Object loaded = cache.recheck( load );
+            if( loaded != null )
+            {
+                return MethodCache.unmask( loaded );
+            }
+        }
+        catch( Throwable throwable )
+        {
+            throw new ExecutionException( throwable );
+        }
+
+        try
+        {
+            Object result = method.call();
+            cache.completeLoad( load, result );
+            return result;
+        }
+        catch( Exception e )
+        {
+            cache.failLoad( load, e );
+            throw e;
+        }
+    }
+}
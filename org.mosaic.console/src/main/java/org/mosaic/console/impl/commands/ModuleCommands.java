@@ -2,8 +2,8 @@ package org.mosaic.console.impl.commands;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Collection;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.mosaic.console.Command;
@@ -13,7 +13,9 @@ import org.mosaic.console.util.table.SimpleColumn;
 import org.mosaic.console.util.table.TablePrinter;
 import org.mosaic.modules.Component;
 import org.mosaic.modules.Module;
+import org.mosaic.modules.ModuleManager;
 import org.mosaic.modules.ModuleStartException;
+import org.mosaic.modules.Service;
 import org.mosaic.modules.ServiceReference;
 import org.mosaic.util.collections.MapEx;
 
@@ -30,6 +32,10 @@ final class ModuleCommands
     @Component
     private CommandManager commandManager;
 
+    @Nonnull
+    @Service
+    private ModuleManager moduleManager;
+
     @Command( synopsis = "list modules",
               description = "This command will list modules, possibly filtered by a given filter." )
     void list( @Nonnull
@@ -143,6 +149,119 @@ final class ModuleCommands
         }
     }
 
+    @Command( synopsis = "show module startup profile",
+              description = "This command will show the timed phases recorded while modules were resolved, woven, " +
+                            "started and activated (including time spent waiting for required services), ordered by " +
+                            "their start time, and optionally dump them as a Chrome trace-event file." )
+    void startup( @Nonnull
+                  Console console,
+
+                  @Command.Option( names = { "m", "min" },
+                                   defaultValue = "1",
+                                   synopsis = "minimum phase duration to show, in milliseconds",
+                                   description = "Phases shorter than this are not shown (default is 1ms)." )
+                  long minDuration,
+
+                  @Command.Option( names = { "t", "trace" },
+                                   defaultValue = "false",
+                                   synopsis = "write a Chrome trace-event file",
+                                   description = "Write all recorded phases to a trace-event JSON file under the work " +
+                                                 "directory, which can be loaded into 'chrome://tracing'." )
+                  boolean trace,
+
+                  @Nullable
+                  @Command.Arg( synopsis = "module names filter",
+                                description = "Only phases of modules whose names contain this text will be shown." )
+                  String filter ) throws IOException
+    {
+        List<ModuleManager.StartupPhase> phases = new ArrayList<>();
+        for( ModuleManager.StartupPhase phase : this.moduleManager.getStartupPhases() )
+        {
+            if( TimeUnit.NANOSECONDS.toMillis( phase.getDurationNanos() ) >= minDuration
+                && ( filter == null || phase.getModule().contains( filter ) ) )
+            {
+                phases.add( phase );
+            }
+        }
+        Collections.sort( phases, new Comparator<ModuleManager.StartupPhase>()
+        {
+            @Override
+            public int compare( ModuleManager.StartupPhase o1, ModuleManager.StartupPhase o2 )
+            {
+                return Long.compare( o1.getStartNanos(), o2.getStartNanos() );
+            }
+        } );
+
+        @SuppressWarnings( "unchecked" )
+        TablePrinter<ModuleManager.StartupPhase> table = new TablePrinter<>(
+                console,
+                new SimpleColumn<ModuleManager.StartupPhase>( "Start (ms)", 10 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull ModuleManager.StartupPhase phase )
+                    {
+                        return TimeUnit.NANOSECONDS.toMillis( phase.getStartNanos() ) + "";
+                    }
+                },
+                new SimpleColumn<ModuleManager.StartupPhase>( "Took (ms)", 9 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull ModuleManager.StartupPhase phase )
+                    {
+                        return TimeUnit.NANOSECONDS.toMillis( phase.getDurationNanos() ) + "";
+                    }
+                },
+                new SimpleColumn<ModuleManager.StartupPhase>( "Phase", 20 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull ModuleManager.StartupPhase phase )
+                    {
+                        return phase.getName();
+                    }
+                },
+                new SimpleColumn<ModuleManager.StartupPhase>( "Module", 40 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull ModuleManager.StartupPhase phase )
+                    {
+                        return phase.getModule();
+                    }
+                },
+                new SimpleColumn<ModuleManager.StartupPhase>( "Subject", 50 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull ModuleManager.StartupPhase phase )
+                    {
+                        return phase.getSubject();
+                    }
+                },
+                new SimpleColumn<ModuleManager.StartupPhase>( "Thread", 25 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull ModuleManager.StartupPhase phase )
+                    {
+                        return phase.getThreadName();
+                    }
+                }
+        );
+        for( ModuleManager.StartupPhase phase : phases )
+        {
+            table.print( phase );
+        }
+        table.endTable();
+
+        if( trace )
+        {
+            console.println().println( "Trace written to: {}", this.moduleManager.dumpStartupTrace() );
+        }
+    }
+
     @Command( synopsis = "inspect modules",
               description = "This command will inspect the given module(s)." )
     void inspect( @Nonnull
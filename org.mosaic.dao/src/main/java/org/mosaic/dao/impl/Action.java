@@ -6,16 +6,11 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.sql.DataSource;
 import org.mosaic.dao.DaoException;
-import org.mosaic.datasource.Transaction;
-import org.mosaic.datasource.TransactionManager;
+import org.mosaic.datasource.*;
 import org.mosaic.modules.Component;
-import org.mosaic.modules.Module;
 import org.mosaic.modules.Service;
-import org.mosaic.modules.ServiceReference;
 import org.mosaic.util.method.MethodHandle;
 
-import static org.mosaic.modules.Property.property;
-
 /**
  * @author arik
  */
@@ -32,9 +27,21 @@ abstract class Action
 
     private final boolean readOnly;
 
+    /**
+     * Isolation level requested by a {@link ReadOnly} or {@link ReadWrite} annotation on the DAO method, or {@code null}
+     * to inherit the isolation of the enclosing transaction.
+     */
+    @Nullable
+    private final Isolation isolation;
+
+    private final int timeout;
+
+    @Nullable
+    private DataSourceTracker.Binding dataSourceBinding;
+
     @Nonnull
     @Component
-    private Module module;
+    private DataSourceTracker dataSourceTracker;
 
     @Nonnull
     @Service
@@ -45,25 +52,52 @@ abstract class Action
         this.methodHandle = methodHandle;
         this.dataSourceName = dataSourceName;
         this.transactionName = this.methodHandle.getName();
-        this.readOnly = readOnly;
+
+        ReadOnly readOnlyAnn = this.methodHandle.getAnnotation( ReadOnly.class );
+        ReadWrite readWriteAnn = this.methodHandle.getAnnotation( ReadWrite.class );
+        if( readOnlyAnn != null && readWriteAnn != null )
+        {
+            throw new DaoException( "method " + methodHandle + " cannot be annotated by both @ReadOnly and @ReadWrite" );
+        }
+        else if( readOnlyAnn != null )
+        {
+            this.readOnly = true;
+            this.isolation = readOnlyAnn.isolation();
+            this.timeout = readOnlyAnn.timeout();
+        }
+        else if( readWriteAnn != null )
+        {
+            this.readOnly = false;
+            this.isolation = readWriteAnn.isolation();
+            this.timeout = readWriteAnn.timeout();
+        }
+        else
+        {
+            this.readOnly = readOnly;
+            this.isolation = null;
+            this.timeout = -1;
+        }
     }
 
     @Nullable
     final Object execute( @Nonnull Object... arguments ) throws SQLException
     {
-        Transaction tx = this.transactionManager.startTransaction( this.transactionName, this.readOnly );
+        Transaction tx = this.isolation != null
+                         ? this.transactionManager.startTransaction( this.transactionName, this.readOnly, this.isolation, this.timeout )
+                         : this.transactionManager.startTransaction( this.transactionName, this.readOnly );
         try
         {
-            ServiceReference<DataSource> reference = this.module.findService( DataSource.class, property( "name", this.dataSourceName ) );
-            if( reference == null )
+            DataSource dataSource = getDataSourceBinding().getDataSource();
+            if( dataSource == null )
             {
                 throw new DaoException( "data source '" + this.dataSourceName + "' not available" );
             }
 
-            try( Connection connection = reference.service().get().getConnection() )
-            {
-                return invoke( connection, arguments );
-            }
+            // the connection is owned (and eventually released) by the transaction, so we must not close it here
+            Connection connection = dataSource.getConnection();
+            Object result = invoke( connection, tx.getRemainingTimeout(), arguments );
+            tx.commit();
+            return result;
         }
         catch( Throwable e )
         {
@@ -82,7 +116,24 @@ abstract class Action
         return this.methodHandle;
     }
 
+    /**
+     * @param queryTimeout seconds left until the transaction times out, or {@code 0} for no limit
+     */
     @Nullable
-    protected abstract Object invoke( @Nonnull Connection connection, @Nonnull Object... arguments )
-            throws SQLException;
+    protected abstract Object invoke( @Nonnull Connection connection,
+                                      int queryTimeout,
+                                      @Nonnull Object... arguments ) throws SQLException;
+
+    @Nonnull
+    private DataSourceTracker.Binding getDataSourceBinding()
+    {
+        // resolved once, on first use; the binding itself is kept up to date by the tracker
+        DataSourceTracker.Binding binding = this.dataSourceBinding;
+        if( binding == null )
+        {
+            binding = this.dataSourceTracker.getBinding( this.dataSourceName );
+            this.dataSourceBinding = binding;
+        }
+        return binding;
+    }
 }
@@ -0,0 +1,121 @@
+package org.mosaic.dao.impl;
+
+import com.google.common.base.Optional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+import org.mosaic.modules.Component;
+import org.mosaic.modules.OnServiceAdded;
+import org.mosaic.modules.OnServiceRemoved;
+import org.mosaic.modules.ServiceReference;
+
+/**
+ * Tracks data source services by name, so that DAO actions can resolve their data source once and have it updated on
+ * service events, rather than querying the service registry on every invocation.
+ *
+ * @author arik
+ */
+@Component
+final class DataSourceTracker
+{
+    @Nonnull
+    private final Map<String, Binding> bindings = new ConcurrentHashMap<>();
+
+    @Nonnull
+    Binding getBinding( @Nonnull String name )
+    {
+        Binding binding = this.bindings.get( name );
+        if( binding == null )
+        {
+            synchronized( this.bindings )
+            {
+                binding = this.bindings.get( name );
+                if( binding == null )
+                {
+                    binding = new Binding( name );
+                    this.bindings.put( name, binding );
+                }
+            }
+        }
+        return binding;
+    }
+
+    @OnServiceAdded
+    void addDataSource( @Nonnull ServiceReference<DataSource> reference )
+    {
+        String name = reference.getProperties().find( "name", String.class ).orNull();
+        Optional<DataSource> dataSource = reference.service();
+        if( name != null && dataSource.isPresent() )
+        {
+            getBinding( name ).bind( reference.getId(), dataSource.get() );
+        }
+    }
+
+    @OnServiceRemoved
+    void removeDataSource( @Nonnull ServiceReference<DataSource> reference )
+    {
+        String name = reference.getProperties().find( "name", String.class ).orNull();
+        if( name != null )
+        {
+            getBinding( name ).unbind( reference.getId() );
+        }
+    }
+
+    static final class Binding
+    {
+        @Nonnull
+        private final String name;
+
+        @Nullable
+        private volatile BoundDataSource bound;
+
+        private Binding( @Nonnull String name )
+        {
+            this.name = name;
+        }
+
+        @Nonnull
+        String getName()
+        {
+            return this.name;
+        }
+
+        @Nullable
+        DataSource getDataSource()
+        {
+            BoundDataSource bound = this.bound;
+            return bound != null ? bound.dataSource : null;
+        }
+
+        private synchronized void bind( long serviceId, @Nonnull DataSource dataSource )
+        {
+            this.bound = new BoundDataSource( serviceId, dataSource );
+        }
+
+        private synchronized void unbind( long serviceId )
+        {
+            // only unbind if this is the data source we're bound to (it might have been replaced already)
+            BoundDataSource bound = this.bound;
+            if( bound != null && bound.serviceId == serviceId )
+            {
+                this.bound = null;
+            }
+        }
+    }
+
+    private static final class BoundDataSource
+    {
+        private final long serviceId;
+
+        @Nonnull
+        private final DataSource dataSource;
+
+        private BoundDataSource( long serviceId, @Nonnull DataSource dataSource )
+        {
+            this.serviceId = serviceId;
+            this.dataSource = dataSource;
+        }
+    }
+}
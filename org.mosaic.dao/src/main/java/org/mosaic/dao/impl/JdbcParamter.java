@@ -26,7 +26,8 @@ final class JdbcParamter
 
     JdbcParamter( @Nonnull MethodParameter methodParameter, int index )
     {
-        this.jdbcParameterIndex = index;
+        // JDBC parameter indices are 1-based
+        this.jdbcParameterIndex = index + 1;
 
         JdbcType jdbcTypeHolder = methodParameter.getAnnotation( JdbcType.class );
         if( jdbcTypeHolder != null )
@@ -15,6 +15,8 @@ import org.mosaic.dao.DaoException;
 import org.mosaic.dao.Query;
 import org.mosaic.dao.extract.ListResultSetExtractor;
 import org.mosaic.dao.extract.ResultSetExtractor;
+import org.mosaic.metrics.Histogram;
+import org.mosaic.metrics.Metrics;
 import org.mosaic.modules.Service;
 import org.mosaic.util.conversion.ConversionService;
 import org.mosaic.util.io.CharStream;
@@ -40,6 +42,9 @@ final class QueryAction extends Action
     @Nonnull
     private final ResultSetExtractor resultSetExtractor;
 
+    @Nonnull
+    private final Histogram latency;
+
     @Nonnull
     @Service
     private ConversionService conversionService;
@@ -89,6 +94,7 @@ final class QueryAction extends Action
         }
         this.sql = sql.toString();
         this.queryParameters = queryParameters;
+        this.latency = Metrics.histogram( "dao.queries." + getMethodHandle().getDeclaringClass().getName() + "." + getMethodHandle().getName() );
 
         // if one of the parameters if of type ResultSetExtractor - we'll use that
         MethodParameter resultSetExtractorParameter = null;
@@ -163,10 +169,16 @@ final class QueryAction extends Action
 
     @Nullable
     @Override
-    protected Object invoke( @Nonnull Connection connection, @Nonnull Object... arguments ) throws SQLException
+    protected Object invoke( @Nonnull Connection connection, int queryTimeout, @Nonnull Object... arguments )
+            throws SQLException
     {
+        long start = System.nanoTime();
         try( PreparedStatement stmt = connection.prepareStatement( this.sql ) )
         {
+            if( queryTimeout > 0 )
+            {
+                stmt.setQueryTimeout( queryTimeout );
+            }
             for( int i = 0; i < this.queryParameters.size(); i++ )
             {
                 this.queryParameters.get( i ).apply( stmt, arguments[ i ] );
@@ -177,6 +189,10 @@ final class QueryAction extends Action
                 return this.resultSetExtractor.extract( rs, arguments );
             }
         }
+        finally
+        {
+            this.latency.record( System.nanoTime() - start );
+        }
     }
 
     @SuppressWarnings( "unchecked" )
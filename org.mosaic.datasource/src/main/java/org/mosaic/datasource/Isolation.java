@@ -0,0 +1,31 @@
+package org.mosaic.datasource;
+
+import java.sql.Connection;
+
+/**
+ * Transaction isolation levels, as applied to the JDBC connection of a transaction.
+ *
+ * @author arik
+ */
+public enum Isolation
+{
+    READ_UNCOMMITTED( Connection.TRANSACTION_READ_UNCOMMITTED ),
+    READ_COMMITTED( Connection.TRANSACTION_READ_COMMITTED ),
+    REPEATABLE_READ( Connection.TRANSACTION_REPEATABLE_READ ),
+    SERIALIZABLE( Connection.TRANSACTION_SERIALIZABLE );
+
+    private final int level;
+
+    Isolation( int level )
+    {
+        this.level = level;
+    }
+
+    /**
+     * @return the matching {@code java.sql.Connection.TRANSACTION_*} constant
+     */
+    public int getLevel()
+    {
+        return this.level;
+    }
+}
@@ -6,10 +6,22 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
+ * Runs the annotated method in a read-only transaction. If the method is called within an existing transaction which
+ * already acquired a connection, that connection's isolation level is kept.
+ *
  * @author arik
  */
 @Target( ElementType.METHOD )
 @Retention( RetentionPolicy.RUNTIME )
 public @interface ReadOnly
 {
+    /**
+     * Isolation level for the transaction's connection.
+     */
+    Isolation isolation() default Isolation.READ_COMMITTED;
+
+    /**
+     * Timeout in seconds for the transaction (and any nested transactions), or {@code -1} for no timeout.
+     */
+    int timeout() default -1;
 }
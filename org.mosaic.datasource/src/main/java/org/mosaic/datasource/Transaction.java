@@ -17,6 +17,17 @@ public interface Transaction
 
     boolean isReadOnly();
 
+    @Nonnull
+    Isolation getIsolation();
+
+    /**
+     * Returns the number of seconds left until this transaction (or any of its parents) times out, rounded up, or
+     * {@code 0} if it has no timeout - suitable for {@link java.sql.Statement#setQueryTimeout(int)}.
+     *
+     * @throws TransactionTimeoutException if the transaction has already timed out
+     */
+    int getRemainingTimeout();
+
     @Nonnull
     MapEx<String, Object> getAttributes();
 
@@ -8,9 +8,21 @@ import javax.annotation.Nullable;
  */
 public interface TransactionManager
 {
+    /**
+     * Starts a transaction which inherits the isolation level and timeout of the current transaction; top-level
+     * transactions started this way use {@link Isolation#READ_COMMITTED} if read-only, {@link Isolation#SERIALIZABLE}
+     * otherwise, and have no timeout.
+     */
     @Nonnull
     Transaction startTransaction( @Nonnull String name, boolean readOnly );
 
+    /**
+     * Starts a transaction with the given isolation level and timeout (in seconds, or {@code -1} for none). The
+     * isolation level only takes effect if no connection was acquired yet by an enclosing transaction.
+     */
+    @Nonnull
+    Transaction startTransaction( @Nonnull String name, boolean readOnly, @Nonnull Isolation isolation, int timeout );
+
     @Nullable
     Transaction getTransaction();
 
@@ -0,0 +1,17 @@
+package org.mosaic.datasource;
+
+/**
+ * @author arik
+ */
+public class TransactionTimeoutException extends TransactionException
+{
+    public TransactionTimeoutException( String message )
+    {
+        super( message );
+    }
+
+    public TransactionTimeoutException( String message, Throwable cause )
+    {
+        super( message, cause );
+    }
+}
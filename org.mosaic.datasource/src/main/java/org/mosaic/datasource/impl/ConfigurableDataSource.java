@@ -13,6 +13,9 @@ import java.util.logging.Logger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.sql.DataSource;
+import org.mosaic.metrics.Gauge;
+import org.mosaic.metrics.Histogram;
+import org.mosaic.metrics.Metrics;
 import org.mosaic.modules.Component;
 import org.mosaic.modules.Module;
 import org.mosaic.modules.Property;
@@ -29,6 +32,10 @@ final class ConfigurableDataSource implements DataSource
 
     static final String TX_CONNECTION_KEY = ConfigurableDataSource.class.getName() + "#connection";
 
+    static final String TX_ORIGINAL_ISOLATION_KEY = ConfigurableDataSource.class.getName() + "#originalIsolation";
+
+    static final String TX_ORIGINAL_READ_ONLY_KEY = ConfigurableDataSource.class.getName() + "#originalReadOnly";
+
     @Nonnull
     private final String name;
 
@@ -46,9 +53,13 @@ final class ConfigurableDataSource implements DataSource
     @Nullable
     private ServiceRegistration<DataSource> registration;
 
+    @Nonnull
+    private final Histogram checkoutTime;
+
     ConfigurableDataSource( @Nonnull String name )
     {
         this.name = name;
+        this.checkoutTime = Metrics.histogram( "datasource." + this.name + ".checkout" );
     }
 
     @Nonnull
@@ -70,13 +81,27 @@ final class ConfigurableDataSource implements DataSource
         Optional<Connection> conHolder = transaction.getAttributes().find( TX_CONNECTION_KEY, Connection.class );
         if( !conHolder.isPresent() )
         {
+            long start = System.nanoTime();
             Connection connection = dataSource.getConnection();
+            this.checkoutTime.record( System.nanoTime() - start );
             try
             {
                 connection.setAutoCommit( false );
                 connection.setHoldability( ResultSet.CLOSE_CURSORS_AT_COMMIT );
-                connection.setReadOnly( transaction.isReadOnly() );
-                connection.setTransactionIsolation( Connection.TRANSACTION_SERIALIZABLE );
+
+                boolean originalReadOnly = connection.isReadOnly();
+                if( originalReadOnly != transaction.isReadOnly() )
+                {
+                    transaction.getAttributes().put( TX_ORIGINAL_READ_ONLY_KEY, originalReadOnly );
+                    connection.setReadOnly( transaction.isReadOnly() );
+                }
+
+                int originalIsolation = connection.getTransactionIsolation();
+                if( originalIsolation != transaction.getIsolation().getLevel() )
+                {
+                    transaction.getAttributes().put( TX_ORIGINAL_ISOLATION_KEY, originalIsolation );
+                    connection.setTransactionIsolation( transaction.getIsolation().getLevel() );
+                }
             }
             catch( Exception e )
             {
@@ -193,6 +218,7 @@ final class ConfigurableDataSource implements DataSource
         {
             this.dataSource = dataSource;
             this.registration = this.module.register( DataSource.class, this, Property.property( "name", this.name ) );
+            registerPoolGauges( dataSource );
         }
         catch( Exception e )
         {
@@ -208,6 +234,11 @@ final class ConfigurableDataSource implements DataSource
             this.registration = null;
         }
 
+        Metrics.remove( "datasource." + this.name + ".connections.busy" );
+        Metrics.remove( "datasource." + this.name + ".connections.idle" );
+        Metrics.remove( "datasource." + this.name + ".connections.total" );
+        Metrics.remove( "datasource." + this.name + ".threadsAwaitingCheckout" );
+
         if( this.dataSource != null )
         {
             try
@@ -221,6 +252,42 @@ final class ConfigurableDataSource implements DataSource
         }
     }
 
+    private void registerPoolGauges( @Nonnull final ComboPooledDataSource dataSource )
+    {
+        Metrics.gauge( "datasource." + this.name + ".connections.busy", new Gauge()
+        {
+            @Override
+            public long getValue() throws Exception
+            {
+                return dataSource.getNumBusyConnectionsDefaultUser();
+            }
+        } );
+        Metrics.gauge( "datasource." + this.name + ".connections.idle", new Gauge()
+        {
+            @Override
+            public long getValue() throws Exception
+            {
+                return dataSource.getNumIdleConnectionsDefaultUser();
+            }
+        } );
+        Metrics.gauge( "datasource." + this.name + ".connections.total", new Gauge()
+        {
+            @Override
+            public long getValue() throws Exception
+            {
+                return dataSource.getNumConnectionsDefaultUser();
+            }
+        } );
+        Metrics.gauge( "datasource." + this.name + ".threadsAwaitingCheckout", new Gauge()
+        {
+            @Override
+            public long getValue() throws Exception
+            {
+                return dataSource.getNumThreadsAwaitingCheckoutDefaultUser();
+            }
+        } );
+    }
+
     @Nonnull
     private DataSource getDataSource()
     {
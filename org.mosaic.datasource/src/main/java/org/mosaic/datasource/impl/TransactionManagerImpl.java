@@ -3,6 +3,7 @@ package org.mosaic.datasource.impl;
 import com.google.common.base.Optional;
 import com.mchange.v2.c3p0.C3P0ProxyConnection;
 import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.mosaic.datasource.*;
@@ -29,7 +30,25 @@ public class TransactionManagerImpl implements TransactionManager
     @Override
     public TransactionImpl startTransaction( @Nonnull String name, boolean readOnly )
     {
-        TransactionImpl tx = new TransactionImpl( name, getTransaction(), readOnly );
+        TransactionImpl parent = getTransaction();
+        if( parent != null )
+        {
+            return startTransaction( name, readOnly, parent.isolation, -1 );
+        }
+        else
+        {
+            return startTransaction( name, readOnly, readOnly ? Isolation.READ_COMMITTED : Isolation.SERIALIZABLE, -1 );
+        }
+    }
+
+    @Nonnull
+    @Override
+    public TransactionImpl startTransaction( @Nonnull String name,
+                                             boolean readOnly,
+                                             @Nonnull Isolation isolation,
+                                             int timeout )
+    {
+        TransactionImpl tx = new TransactionImpl( name, getTransaction(), readOnly, isolation, timeout );
         this.transactionHolder.set( tx );
         return tx;
     }
@@ -63,14 +82,31 @@ public class TransactionManagerImpl implements TransactionManager
 
         private final boolean readOnly;
 
+        @Nonnull
+        private final Isolation isolation;
+
+        /**
+         * Deadline (in {@link System#nanoTime()} terms) of this transaction, or {@link Long#MAX_VALUE} if none.
+         */
+        private final long deadline;
+
         @Nonnull
         private final MapEx<String, Object> attributes;
 
-        private TransactionImpl( @Nonnull String name, @Nullable TransactionImpl parent, boolean readOnly )
+        private TransactionImpl( @Nonnull String name,
+                                 @Nullable TransactionImpl parent,
+                                 boolean readOnly,
+                                 @Nonnull Isolation isolation,
+                                 int timeout )
         {
             this.name = name;
             this.parent = parent;
             this.readOnly = readOnly;
+            this.isolation = isolation;
+
+            long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos( timeout ) : Long.MAX_VALUE;
+            this.deadline = this.parent != null && this.parent.deadline - deadline < 0 ? this.parent.deadline : deadline;
+
             this.attributes = this.parent != null ? this.parent.attributes : new HashMapEx<String, Object>();
             if( this.parent != null && this.parent.readOnly && !this.readOnly )
             {
@@ -98,6 +134,29 @@ public class TransactionManagerImpl implements TransactionManager
             return this.readOnly;
         }
 
+        @Nonnull
+        @Override
+        public Isolation getIsolation()
+        {
+            return this.isolation;
+        }
+
+        @Override
+        public int getRemainingTimeout()
+        {
+            if( this.deadline == Long.MAX_VALUE )
+            {
+                return 0;
+            }
+
+            long remaining = this.deadline - System.nanoTime();
+            if( remaining <= 0 )
+            {
+                throw new TransactionTimeoutException( "transaction '" + this.name + "' timed out" );
+            }
+            return ( int ) Math.min( Integer.MAX_VALUE, ( remaining + TimeUnit.SECONDS.toNanos( 1 ) - 1 ) / TimeUnit.SECONDS.toNanos( 1 ) );
+        }
+
         @Nonnull
         @Override
         public MapEx<String, Object> getAttributes()
@@ -169,6 +228,7 @@ public class TransactionManagerImpl implements TransactionManager
                 Optional<Connection> conHolder = this.attributes.find( ConfigurableDataSource.TX_CONNECTION_KEY, Connection.class );
                 if( conHolder.isPresent() )
                 {
+                    restoreConnection( conHolder.get() );
                     try
                     {
                         conHolder.get().close();
@@ -183,6 +243,28 @@ public class TransactionManagerImpl implements TransactionManager
             TransactionManagerImpl.this.transactionHolder.set( this.parent );
         }
 
+        private void restoreConnection( @Nonnull Connection connection )
+        {
+            // return the connection to the pool the way we found it
+            Optional<Integer> isolationHolder = this.attributes.find( ConfigurableDataSource.TX_ORIGINAL_ISOLATION_KEY, Integer.class );
+            Optional<Boolean> readOnlyHolder = this.attributes.find( ConfigurableDataSource.TX_ORIGINAL_READ_ONLY_KEY, Boolean.class );
+            try
+            {
+                if( isolationHolder.isPresent() && isolationHolder.get() != Connection.TRANSACTION_NONE )
+                {
+                    connection.setTransactionIsolation( isolationHolder.get() );
+                }
+                if( readOnlyHolder.isPresent() )
+                {
+                    connection.setReadOnly( readOnlyHolder.get() );
+                }
+            }
+            catch( Exception e )
+            {
+                LOG.warn( "Could not restore connection state at end of transaction '{}': {}", this.name, e.getMessage(), e );
+            }
+        }
+
         private void killConnection( @Nonnull Connection connection )
         {
             try
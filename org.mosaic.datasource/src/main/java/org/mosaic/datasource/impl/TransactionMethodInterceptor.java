@@ -3,6 +3,7 @@ package org.mosaic.datasource.impl;
 import java.lang.reflect.Method;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.mosaic.datasource.Isolation;
 import org.mosaic.datasource.ReadOnly;
 import org.mosaic.datasource.ReadWrite;
 import org.mosaic.modules.Component;
@@ -28,15 +29,21 @@ final class TransactionMethodInterceptor implements MethodInterceptor
     @Override
     public boolean interestedIn( @Nonnull Method method, @Nonnull MapEx<String, Object> context )
     {
-        if( MethodAnnotations.getMetaAnnotation( method, ReadOnly.class ) != null )
+        ReadOnly readOnly = MethodAnnotations.getMetaAnnotation( method, ReadOnly.class );
+        if( readOnly != null )
         {
             context.put( "readOnly", true );
+            context.put( "isolation", readOnly.isolation() );
+            context.put( "timeout", readOnly.timeout() );
             return true;
         }
 
-        if( MethodAnnotations.getMetaAnnotation( method, ReadWrite.class ) != null )
+        ReadWrite readWrite = MethodAnnotations.getMetaAnnotation( method, ReadWrite.class );
+        if( readWrite != null )
         {
             context.put( "readOnly", false );
+            context.put( "isolation", readWrite.isolation() );
+            context.put( "timeout", readWrite.timeout() );
             return true;
         }
 
@@ -48,11 +55,14 @@ final class TransactionMethodInterceptor implements MethodInterceptor
     public BeforeInvocationDecision beforeInvocation( @Nonnull BeforeMethodInvocation invocation )
             throws Throwable
     {
+        MapEx<String, Object> interceptorContext = invocation.getInterceptorContext();
         invocation.getInvocationContext().put(
                 "tx",
                 this.transactionManager.startTransaction(
                         invocation.getMethod().getName(),
-                        invocation.getInterceptorContext().find( "readOnly", boolean.class ).get() ) );
+                        interceptorContext.find( "readOnly", boolean.class ).get(),
+                        interceptorContext.find( "isolation", Isolation.class ).get(),
+                        interceptorContext.find( "timeout", int.class ).get() ) );
 
         return invocation.continueInvocation();
     }
@@ -1,18 +1,19 @@
 package org.mosaic.launcher;
 
-import com.google.common.base.Optional;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.osgi.framework.*;
-import org.osgi.framework.namespace.PackageNamespace;
 import org.osgi.framework.startlevel.BundleStartLevel;
-import org.osgi.framework.wiring.BundleWire;
-import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.framework.wiring.FrameworkWiring;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,15 +22,25 @@ import static java.lang.Integer.MAX_VALUE;
 import static java.lang.Integer.parseInt;
 import static java.nio.file.FileVisitOption.FOLLOW_LINKS;
 import static java.nio.file.Files.*;
-import static java.util.Arrays.asList;
 
 /**
+ * Scans the server's {@code lib} directory, installing, updating and uninstalling modules to match the jars in it.
+ * <p/>
+ * Jars are compared by content hash (re-hashed only when their size or modification time changes), so touching or
+ * re-copying an unchanged jar does not update its module. Changes are collected into a batch which is only applied
+ * once no further changes were seen for the settle window (the {@code mosaic.scanner.settleWindow} system property, in
+ * milliseconds) - so dropping many jars at once (or a jar still being copied) results in a single batch. The batch is
+ * applied with a single framework refresh, after which the modules restarted as a consequence are reported.
+ *
  * @author arik
  */
 final class BundleScanner implements Runnable
 {
     private static final Logger LOG = LoggerFactory.getLogger( BundleScanner.class );
 
+    private static final long SETTLE_WINDOW_NANOS =
+            TimeUnit.MILLISECONDS.toNanos( Long.getLong( "mosaic.scanner.settleWindow", 2000 ) );
+
     @Nonnull
     private static final Map<String, Integer> BOOT_BUNDLES;
 
@@ -60,6 +71,26 @@ final class BundleScanner implements Runnable
     @Nonnull
     private final BundleContext bundleContext;
 
+    /**
+     * Last observed state of each jar, so unchanged jars are not re-hashed.
+     */
+    @Nonnull
+    private final Map<Path, JarState> observed = new HashMap<>();
+
+    /**
+     * Content hash of each jar, as last installed or updated into the framework.
+     */
+    @Nonnull
+    private final Map<Path, String> applied = new HashMap<>();
+
+    /**
+     * Changes detected by the previous scan but not applied yet.
+     */
+    @Nonnull
+    private Map<Path, String> pending = Collections.emptyMap();
+
+    private long pendingSince;
+
     private boolean running;
 
     BundleScanner( @Nonnull BundleContext bundleContext )
@@ -69,6 +100,19 @@ final class BundleScanner implements Runnable
 
     @Override
     public void run()
+    {
+        scan( SETTLE_WINDOW_NANOS );
+    }
+
+    /**
+     * Scans and applies any changes immediately, without waiting for them to settle (used when the server starts).
+     */
+    void runNow()
+    {
+        scan( 0 );
+    }
+
+    private void scan( long settleWindowNanos )
     {
         // this scanner is not re-entrant; if we're already running on another thread, return
         synchronized( this )
@@ -80,10 +124,10 @@ final class BundleScanner implements Runnable
             this.running = true;
         }
 
-        // traverse our bundles directory
-        final Context context = new Context();
         try
         {
+            // traverse our bundles directory
+            final Map<Path, JarState> jars = new HashMap<>();
             walkFileTree( Mosaic.getLib(), EnumSet.of( FOLLOW_LINKS ), MAX_VALUE, new SimpleFileVisitor<Path>()
             {
                 @Nonnull
@@ -94,26 +138,36 @@ final class BundleScanner implements Runnable
                     // only process *.jar files
                     if( BundleScanner.this.jarsPathMatcher.matches( file ) )
                     {
-                        if( isSymbolicLink( file ) )
+                        if( isSymbolicLink( file ) && !exists( file ) )
                         {
-                            if( exists( file ) )
-                            {
-                                context.handleFile( file );
-                            }
-                            else
-                            {
-                                handleFileError( "Link '{}' is invalid", file );
-                            }
+                            handleFileError( "Link '{}' is invalid", file );
                         }
                         else
                         {
-                            context.handleFile( file );
+                            JarState state = observe( file, attrs );
+                            if( state != null )
+                            {
+                                jars.put( file.normalize().toAbsolutePath(), state );
+                            }
                         }
                     }
                     return FileVisitResult.CONTINUE;
                 }
             } );
-            context.process();
+            this.observed.keySet().retainAll( jars.keySet() );
+
+            // compare with installed bundles, and apply the changes once they have settled
+            Batch batch = new Batch( jars );
+            if( !batch.changes.equals( this.pending ) )
+            {
+                this.pending = batch.changes;
+                this.pendingSince = System.nanoTime();
+            }
+            if( !batch.changes.isEmpty() && System.nanoTime() - this.pendingSince >= settleWindowNanos )
+            {
+                this.pending = Collections.emptyMap();
+                batch.apply();
+            }
         }
         catch( Throwable e )
         {
@@ -121,10 +175,67 @@ final class BundleScanner implements Runnable
         }
         finally
         {
-            this.running = false;
+            synchronized( this )
+            {
+                this.running = false;
+            }
         }
     }
 
+    @Nullable
+    private JarState observe( @Nonnull Path file, @Nonnull BasicFileAttributes attrs )
+    {
+        Path key = file.normalize().toAbsolutePath();
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+
+        JarState state = this.observed.get( key );
+        if( state == null || state.size != size || state.modified != modified )
+        {
+            try
+            {
+                state = new JarState( size, modified, hash( file ) );
+                this.observed.put( key, state );
+            }
+            catch( IOException e )
+            {
+                handleFileError( "Could not read '{}': {}", file, e.getMessage(), e );
+                return null;
+            }
+        }
+        return state;
+    }
+
+    @Nonnull
+    private String hash( @Nonnull Path file ) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not supported by this JVM", e );
+        }
+
+        byte[] buffer = new byte[ 1024 * 64 ];
+        try( InputStream inputStream = new DigestInputStream( newInputStream( file ), digest ) )
+        {
+            while( inputStream.read( buffer ) >= 0 )
+            {
+                // reading updates the digest
+            }
+        }
+
+        StringBuilder hash = new StringBuilder( 40 );
+        for( byte b : digest.digest() )
+        {
+            hash.append( String.format( "%02x", b ) );
+        }
+        return hash.toString();
+    }
+
     @Nonnull
     private String getLocationFromFile( @Nonnull Path file )
     {
@@ -160,251 +271,278 @@ final class BundleScanner implements Runnable
         LOG.error( message, args );
     }
 
-    private class Context
+    @Nonnull
+    private static String getBundleName( @Nonnull Bundle bundle )
     {
-        @Nonnull
-        private Optional<List<Path>> locationsToInstall = Optional.absent();
+        return bundle.getSymbolicName() + "-" + bundle.getVersion() + "[" + bundle.getBundleId() + "]";
+    }
 
-        @Nonnull
-        private Optional<List<Path>> locationsToUpdate = Optional.absent();
+    private static class JarState
+    {
+        private final long size;
+
+        private final long modified;
 
         @Nonnull
-        private Optional<List<Bundle>> bundlesToStart = Optional.absent();
+        private final String hash;
 
-        private void handleFile( @Nonnull Path file )
+        private JarState( long size, long modified, @Nonnull String hash )
         {
-            Bundle bundle = bundleContext.getBundle( getLocationFromFile( file ) );
-            if( bundle == null )
-            {
-                this.locationsToInstall = addToList( this.locationsToInstall, file );
-            }
-            else
-            {
-                try
-                {
-                    // get file modification time, so we can compare it with the bundle's modification time
-                    // we'll ignore files modified in the last second (probably still being modified)
-                    long fileModTime = Files.getLastModifiedTime( file ).toMillis();
-                    if( fileModTime <= System.currentTimeMillis() - 1000 )
-                    {
-                        // only update the corresponding bundle if it is NOT up-to-date
-                        if( fileModTime > bundle.getLastModified() )
-                        {
-                            this.locationsToUpdate = addToList( this.locationsToUpdate, file );
-                        }
-                    }
-                }
-                catch( IOException e )
-                {
-                    handleFileError( "Could not extract file modification time of '{}': {}", file, e.getMessage(), e );
-                }
-            }
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
         }
+    }
 
-        private void process()
-        {
-            // uninstall bundles whose location files no longer exist
-            uninstallBundles();
-
-            // install new bundles
-            installBundles();
-
-            // update bundles
-            updateBundles();
-
-            // start bundles
-            startBundles();
-        }
+    private class Batch
+    {
+        /**
+         * Detected changes - the hash of each new or updated jar, or an empty string for removed jars.
+         */
+        @Nonnull
+        private final Map<Path, String> changes = new HashMap<>();
 
-        private void uninstallBundles()
+        private Batch( @Nonnull Map<Path, JarState> jars )
         {
+            // removed jars
             for( Bundle bundle : bundleContext.getBundles() )
             {
                 String location = bundle.getLocation();
                 if( location.startsWith( "file:" ) )
                 {
                     Path file = Paths.get( location.substring( "file:".length() ) );
-                    if( notExists( file ) )
+                    if( !jars.containsKey( file ) && notExists( file ) )
                     {
-                        try
-                        {
-                            bundle.uninstall();
-                        }
-                        catch( BundleException e )
-                        {
-                            handleFileError( "Could not uninstall bundle from '{}': {}", file, e.getMessage(), e );
-                        }
+                        this.changes.put( file, "" );
                     }
                 }
             }
-        }
 
-        private void installBundles()
-        {
-            if( this.locationsToInstall.isPresent() )
+            // new and modified jars
+            for( Map.Entry<Path, JarState> entry : jars.entrySet() )
             {
-                for( Path file : this.locationsToInstall.get() )
+                Path file = entry.getKey();
+                JarState state = entry.getValue();
+
+                Bundle bundle = bundleContext.getBundle( getLocationFromFile( file ) );
+                String appliedHash = applied.get( file );
+                if( bundle == null )
                 {
-                    try
+                    this.changes.put( file, state.hash );
+                }
+                else if( appliedHash == null )
+                {
+                    // installed before this scanner saw it (eg. by a previous server run) - we have no hash to compare
+                    // to, so rely on modification times to decide whether it is up-to-date
+                    if( state.modified > bundle.getLastModified() )
                     {
-                        Bundle bundle = bundleContext.installBundle( getLocationFromFile( file ) );
-                        Integer startlevel = getAppropriateStartLevel( bundle );
-                        if( startlevel != null )
-                        {
-                            bundle.adapt( BundleStartLevel.class ).setStartLevel( startlevel );
-                        }
-                        this.bundlesToStart = addToList( this.bundlesToStart, bundle );
+                        this.changes.put( file, state.hash );
                     }
-                    catch( BundleException e )
+                    else
                     {
-                        handleFileError( "Could not install bundle from '{}': {}", file, e.getMessage(), e );
+                        applied.put( file, state.hash );
                     }
                 }
+                else if( !appliedHash.equals( state.hash ) )
+                {
+                    this.changes.put( file, state.hash );
+                }
             }
         }
 
-        private void updateBundles()
+        private void apply()
         {
-            if( this.locationsToUpdate.isPresent() )
+            List<Bundle> toUninstall = new LinkedList<>();
+            List<Bundle> toUpdate = new LinkedList<>();
+            List<Path> toInstall = new LinkedList<>();
+            for( Map.Entry<Path, String> entry : this.changes.entrySet() )
             {
-                for( Path file : this.locationsToUpdate.get() )
+                Path file = entry.getKey();
+                Bundle bundle = bundleContext.getBundle( getLocationFromFile( file ) );
+                if( entry.getValue().isEmpty() )
                 {
-                    Bundle bundle = bundleContext.getBundle( getLocationFromFile( file ) );
+                    applied.remove( file );
                     if( bundle != null )
                     {
-                        // remember if bundle was active, so we'll know whether to start it if update is successful
-                        boolean wasActive = bundle.getState() == Bundle.ACTIVE;
+                        toUninstall.add( bundle );
+                    }
+                }
+                else if( bundle == null )
+                {
+                    toInstall.add( file );
+                }
+                else
+                {
+                    toUpdate.add( bundle );
+                }
+            }
 
-                        // stop bundles that depend on this bundle, but also collect them
-                        // to our list of bundles to be  started, if they are active now
-                        stopAndCollectDependents( bundle );
+            // remember which modules are active now and will be affected by the refresh, so we can tell which were restarted
+            FrameworkWiring frameworkWiring = bundleContext.getBundle( 0 ).adapt( FrameworkWiring.class );
+            List<Bundle> toRefresh = new LinkedList<>( toUninstall );
+            toRefresh.addAll( toUpdate );
+            Set<Bundle> affected = new LinkedHashSet<>();
+            if( !toRefresh.isEmpty() )
+            {
+                for( Bundle bundle : frameworkWiring.getDependencyClosure( toRefresh ) )
+                {
+                    if( bundle.getState() == Bundle.ACTIVE )
+                    {
+                        affected.add( bundle );
+                    }
+                }
+            }
 
-                        // now stop the bundle
-                        try
-                        {
-                            bundle.stop( Bundle.STOP_TRANSIENT );
-                        }
-                        catch( Exception e )
-                        {
-                            LOG.error( "Error stopping module at '{}' (stopping in order to update it): {}", file, e.getMessage(), e );
-                            continue;
-                        }
+            List<Bundle> toStart = new LinkedList<>();
+            uninstallBundles( toUninstall );
+            installBundles( toInstall, toStart );
+            updateBundles( toUpdate, toStart );
+            refreshBundles( frameworkWiring, toRefresh );
+            startBundles( toStart );
 
-                        // now update the bundle
-                        try
-                        {
-                            bundle.update();
-                        }
-                        catch( Exception e )
-                        {
-                            LOG.error( "Error updating module at '{}': {}", file, e.getMessage(), e );
-                            continue;
-                        }
-
-                        // refresh packages
-                        refreshPackages( bundle );
+            // report
+            List<String> restarted = new LinkedList<>(), stopped = new LinkedList<>();
+            for( Bundle bundle : affected )
+            {
+                if( bundle.getState() == Bundle.ACTIVE )
+                {
+                    restarted.add( getBundleName( bundle ) );
+                }
+                else if( bundle.getState() != Bundle.UNINSTALLED )
+                {
+                    stopped.add( getBundleName( bundle ) );
+                }
+            }
+            LOG.info( "Applied module changes ({} installed, {} updated, {} uninstalled) - restarted modules: {}",
+                      toInstall.size(), toUpdate.size(), toUninstall.size(), restarted );
+            if( !stopped.isEmpty() )
+            {
+                LOG.warn( "Modules stopped by the module changes that failed to restart: {}", stopped );
+            }
+        }
 
-                        // update successful - if our bundle was active to begin with, remember to start it later
-                        if( wasActive )
-                        {
-                            this.bundlesToStart = addToList( this.bundlesToStart, bundle );
-                        }
-                    }
+        private void uninstallBundles( @Nonnull List<Bundle> bundles )
+        {
+            for( Bundle bundle : bundles )
+            {
+                try
+                {
+                    bundle.uninstall();
+                }
+                catch( BundleException e )
+                {
+                    handleFileError( "Could not uninstall bundle from '{}': {}", bundle.getLocation(), e.getMessage(), e );
                 }
             }
         }
 
-        private void startBundles()
+        private void installBundles( @Nonnull List<Path> files, @Nonnull List<Bundle> toStart )
         {
-            if( this.bundlesToStart.isPresent() )
+            for( Path file : files )
             {
-                for( Bundle bundle : this.bundlesToStart.get() )
+                try
                 {
-                    try
-                    {
-                        bundle.start();
-                    }
-                    catch( BundleException e )
+                    Bundle bundle = bundleContext.installBundle( getLocationFromFile( file ) );
+                    Integer startlevel = getAppropriateStartLevel( bundle );
+                    if( startlevel != null )
                     {
-                        LOG.warn( "Error starting bundle '{}-{}[{}]': {}", bundle.getSymbolicName(), bundle.getVersion(), bundle.getBundleId(), e.getMessage(), e );
+                        bundle.adapt( BundleStartLevel.class ).setStartLevel( startlevel );
                     }
+                    applied.put( file, this.changes.get( file ) );
+                    toStart.add( bundle );
+                }
+                catch( BundleException e )
+                {
+                    handleFileError( "Could not install bundle from '{}': {}", file, e.getMessage(), e );
                 }
             }
         }
 
-        private void refreshPackages( @Nonnull Bundle bundle )
+        private void updateBundles( @Nonnull List<Bundle> bundles, @Nonnull List<Bundle> toStart )
         {
-            FrameworkWiring frameworkWiring = bundleContext.getBundle( 0 ).adapt( FrameworkWiring.class );
-            if( frameworkWiring == null )
+            for( Bundle bundle : bundles )
             {
-                LOG.warn( "Could not find framework wiring service! This should not be happening..." );
-                return;
-            }
+                Path file = Paths.get( bundle.getLocation().substring( "file:".length() ) );
 
-            final AtomicBoolean refreshComplete = new AtomicBoolean( false );
-            frameworkWiring.refreshBundles( asList( bundle ), new FrameworkListener()
-            {
-                @Override
-                public void frameworkEvent( FrameworkEvent event )
+                // remember if bundle was active, so we'll know whether to start it if update is successful
+                boolean wasActive = bundle.getState() == Bundle.ACTIVE;
+
+                // stop the bundle, so the update does not start it only for the refresh to stop it again; its
+                // dependents are stopped (and restarted) by the refresh
+                try
                 {
-                    refreshComplete.set( true );
+                    bundle.stop( Bundle.STOP_TRANSIENT );
                 }
-            } );
-            while( !refreshComplete.get() )
-            {
+                catch( Exception e )
+                {
+                    LOG.error( "Error stopping module at '{}' (stopping in order to update it): {}", file, e.getMessage(), e );
+                    continue;
+                }
+
+                // now update the bundle
                 try
                 {
-                    Thread.sleep( 10 );
+                    bundle.update();
+                    applied.put( file, this.changes.get( file ) );
                 }
-                catch( InterruptedException e )
+                catch( Exception e )
+                {
+                    LOG.error( "Error updating module at '{}': {}", file, e.getMessage(), e );
+                }
+
+                // if our bundle was active to begin with, remember to start it after the refresh
+                if( wasActive )
                 {
-                    LOG.error( "Bundle update process of '{}' was interrupted", bundle.getLocation() );
-                    return;
+                    toStart.add( bundle );
                 }
             }
         }
 
-        private void stopAndCollectDependents( @Nonnull Bundle bundle )
+        private void refreshBundles( @Nonnull FrameworkWiring frameworkWiring, @Nonnull List<Bundle> bundles )
         {
-            BundleWiring bundleWiring = bundle.adapt( BundleWiring.class );
-            if( bundleWiring != null )
+            if( bundles.isEmpty() )
             {
-                List<BundleWire> packageWires = bundleWiring.getProvidedWires( PackageNamespace.PACKAGE_NAMESPACE );
-                if( packageWires != null )
+                return;
+            }
+
+            final CountDownLatch refreshComplete = new CountDownLatch( 1 );
+            frameworkWiring.refreshBundles( bundles, new FrameworkListener()
+            {
+                @Override
+                public void frameworkEvent( FrameworkEvent event )
                 {
-                    for( BundleWire packageWire : packageWires )
-                    {
-                        Bundle requirer = packageWire.getRequirer().getBundle();
-                        if( requirer.getState() == Bundle.ACTIVE )
-                        {
-                            try
-                            {
-                                requirer.stop( Bundle.STOP_TRANSIENT );
-                                this.bundlesToStart = addToList( this.bundlesToStart, requirer );
-                            }
-                            catch( BundleException e )
-                            {
-                                LOG.error( "Error stopping module {}-{}[{}] (stopping because depends on {}-{}[{}]): {}",
-                                           requirer.getSymbolicName(), requirer.getVersion(), requirer.getBundleId(),
-                                           bundle.getSymbolicName(), bundle.getVersion(), bundle.getBundleId(),
-                                           e.getMessage(), e );
-                            }
-                        }
-                    }
+                    refreshComplete.countDown();
                 }
+            } );
+            try
+            {
+                refreshComplete.await();
+            }
+            catch( InterruptedException e )
+            {
+                LOG.error( "Refresh of updated modules was interrupted" );
+                Thread.currentThread().interrupt();
             }
         }
 
-        @Nonnull
-        private <T> Optional<List<T>> addToList( @Nonnull Optional<List<T>> listHolder, @Nonnull T item )
+        private void startBundles( @Nonnull List<Bundle> bundles )
         {
-            if( !listHolder.isPresent() )
+            for( Bundle bundle : bundles )
             {
-                List<T> list = new LinkedList<>();
-                listHolder = Optional.of( list );
+                if( bundle.getState() == Bundle.UNINSTALLED )
+                {
+                    continue;
+                }
+
+                try
+                {
+                    bundle.start();
+                }
+                catch( BundleException e )
+                {
+                    LOG.warn( "Error starting bundle '{}': {}", getBundleName( bundle ), e.getMessage(), e );
+                }
             }
-            listHolder.get().add( item );
-            return listHolder;
         }
     }
 }
@@ -3,7 +3,7 @@ package org.mosaic.launcher;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CountDownLatch;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.felix.framework.Felix;
@@ -102,6 +102,8 @@ final class InitFelixTask extends InitTask
             bundleContext.addFrameworkListener( loggingListener );
             bundleContext.addServiceListener( loggingListener );
             bundleContext.addBundleListener( loggingListener );
+            StartupTimeline startupTimeline = new StartupTimeline();
+            bundleContext.addBundleListener( startupTimeline );
 
             // felix started!
             this.felix = felix;
@@ -112,29 +114,32 @@ final class InitFelixTask extends InitTask
             Hashtable<String, Object> bundleScannerDict = new Hashtable<>();
             bundleScannerDict.put( "bundleScanner", true );
             bundleContext.registerService( Runnable.class, bundleScanner, bundleScannerDict );
-            bundleScanner.run();
+            bundleScanner.runNow();
 
-            // climb the start levels
+            // climb the start levels, one at a time, proceeding to the next level when the framework notifies us that
+            // the current level has been reached (ie. all its bundles have been started)
             FrameworkStartLevel frameworkStartLevel = bundleContext.getBundle().adapt( FrameworkStartLevel.class );
             for( int i = 1; i <= 5; i++ )
             {
-                final AtomicBoolean done = new AtomicBoolean( false );
+                final CountDownLatch startLevelReached = new CountDownLatch( 1 );
                 frameworkStartLevel.setStartLevel( i, new FrameworkListener()
                 {
                     @Override
                     public void frameworkEvent( FrameworkEvent event )
                     {
-                        done.set( true );
+                        if( event.getType() == FrameworkEvent.STARTLEVEL_CHANGED )
+                        {
+                            startLevelReached.countDown();
+                        }
                     }
                 } );
-                while( !done.get() )
-                {
-                    Thread.sleep( 100 );
-                }
-                Thread.sleep( 200 );
+                startLevelReached.await();
+                startupTimeline.startLevelReached( i );
             }
 
             // started!
+            bundleContext.removeBundleListener( startupTimeline );
+            startupTimeline.print( bundleContext );
             printEmphasizedInfoMessage( "MOSAIC STARTED!" );
         }
         catch( Exception e )
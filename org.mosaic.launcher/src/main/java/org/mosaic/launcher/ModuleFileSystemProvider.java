@@ -1,6 +1,9 @@
 package org.mosaic.launcher;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
 import java.io.IOException;
@@ -8,11 +11,15 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.*;
 import java.nio.file.spi.FileSystemProvider;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.osgi.framework.Bundle;
@@ -23,6 +30,10 @@ import org.slf4j.LoggerFactory;
  * A file system provider for modules.
  * <p/>
  * URI syntax should be: {@code module://{moduleId}{pathInModule}}
+ * <p/>
+ * Entries of exploded (directory) modules are read through plain {@link FileChannel}s. Entries of jar modules are
+ * inflated once into a size-bounded cache (see the {@code mosaic.modules.entryCacheSize} system property, in
+ * kilobytes) shared by all channels opened for them, so repeated opens and random access do not re-read the entry.
  *
  * @author arik
  */
@@ -45,6 +56,25 @@ public class ModuleFileSystemProvider extends FileSystemProvider
     @Nonnull
     private final Map<Long, ModuleFileSystem> fileSystems = new HashMap<>();
 
+    /**
+     * Contents of jar module entries, keyed by entry URL and module modification time (so updated modules never see
+     * stale contents). Channels read through their own view of the cached buffer, so evicting an entry does not affect
+     * channels already reading it.
+     */
+    @Nonnull
+    private final Cache<String, ByteBuffer> entryContents =
+            CacheBuilder.newBuilder()
+                        .maximumWeight( Long.getLong( "mosaic.modules.entryCacheSize", 32 * 1024 ) * 1024 )
+                        .weigher( new Weigher<String, ByteBuffer>()
+                        {
+                            @Override
+                            public int weigh( @Nonnull String key, @Nonnull ByteBuffer value )
+                            {
+                                return value.capacity();
+                            }
+                        } )
+                        .build();
+
     @Nonnull
     @Override
     public String getScheme()
@@ -176,7 +206,15 @@ public class ModuleFileSystemProvider extends FileSystemProvider
         }
 
         // create the channel
-        return new EntrySeekableByteChannel( entry );
+        Path file = getExplodedEntryFile( bundle, modulePath );
+        if( file != null )
+        {
+            return FileChannel.open( file, StandardOpenOption.READ );
+        }
+        else
+        {
+            return new EntrySeekableByteChannel( getEntryContents( bundle, entry ) );
+        }
     }
 
     @Nonnull
@@ -410,6 +448,7 @@ public class ModuleFileSystemProvider extends FileSystemProvider
         }
         regularFile = !directory;
         entry = url;
+        final Path file = directory ? null : getExplodedEntryFile( bundle, modulePath );
 
         if( type == BasicFileAttributes.class )
         {
@@ -460,9 +499,9 @@ public class ModuleFileSystemProvider extends FileSystemProvider
                 @Override
                 public long size()
                 {
-                    try( InputStream inputStream = entry.openStream() )
+                    try
                     {
-                        return ByteStreams.toByteArray( inputStream ).length;
+                        return file != null ? Files.size( file ) : getEntryContents( bundle, entry ).remaining();
                     }
                     catch( IOException e )
                     {
@@ -512,6 +551,62 @@ public class ModuleFileSystemProvider extends FileSystemProvider
         }
     }
 
+    /**
+     * Returns the file backing the given path, if the module is an exploded (directory) module.
+     */
+    @Nullable
+    private Path getExplodedEntryFile( @Nonnull Bundle bundle, @Nonnull ModulePath modulePath )
+    {
+        String location = bundle.getLocation();
+        if( location.startsWith( "reference:" ) )
+        {
+            location = location.substring( "reference:".length() );
+        }
+        if( !location.startsWith( "file:" ) )
+        {
+            return null;
+        }
+
+        Path root = Paths.get( location.substring( "file:".length() ) ).toAbsolutePath().normalize();
+        if( !Files.isDirectory( root ) )
+        {
+            return null;
+        }
+
+        String entryPath = modulePath.getPath();
+        Path file = root.resolve( entryPath.startsWith( "/" ) ? entryPath.substring( 1 ) : entryPath ).normalize();
+        return file.startsWith( root ) && Files.isRegularFile( file ) ? file : null;
+    }
+
+    @Nonnull
+    private ByteBuffer getEntryContents( @Nonnull Bundle bundle, @Nonnull final URL entry ) throws IOException
+    {
+        try
+        {
+            ByteBuffer contents = this.entryContents.get( entry.toExternalForm() + "@" + bundle.getLastModified(), new Callable<ByteBuffer>()
+            {
+                @Override
+                public ByteBuffer call() throws Exception
+                {
+                    try( InputStream inputStream = entry.openStream() )
+                    {
+                        return ByteBuffer.wrap( ByteStreams.toByteArray( inputStream ) ).asReadOnlyBuffer();
+                    }
+                }
+            } );
+            return contents.duplicate();
+        }
+        catch( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if( cause instanceof IOException )
+            {
+                throw ( IOException ) cause;
+            }
+            throw new IOException( "Could not read module entry '" + entry + "': " + cause.getMessage(), cause );
+        }
+    }
+
     private long getModuleId( @Nonnull URI uri )
     {
         if( !uri.getScheme().equals( "module" ) )
@@ -535,39 +630,41 @@ public class ModuleFileSystemProvider extends FileSystemProvider
         }
     }
 
-    private class EntrySeekableByteChannel implements SeekableByteChannel
+    private static class EntrySeekableByteChannel implements SeekableByteChannel
     {
+        /**
+         * This channel's own view of the (shared) entry contents; its position is the channel's position.
+         */
         @Nonnull
-        private final byte[] bytes;
+        private final ByteBuffer contents;
 
-        private int position;
+        private boolean open = true;
 
-        private EntrySeekableByteChannel( @Nonnull URL url ) throws IOException
+        private EntrySeekableByteChannel( @Nonnull ByteBuffer contents )
         {
-            try( InputStream inputStream = url.openStream() )
-            {
-                this.bytes = ByteStreams.toByteArray( inputStream );
-            }
+            this.contents = contents;
         }
 
         @Override
         public int read( ByteBuffer dst ) throws IOException
         {
-            if( this.position >= this.bytes.length )
+            ensureOpen();
+
+            if( !this.contents.hasRemaining() )
             {
                 return -1;
             }
 
-            int remaining = dst.remaining();
-            if( remaining <= 0 )
+            int length = Math.min( this.contents.remaining(), dst.remaining() );
+            if( length <= 0 )
             {
                 return 0;
             }
 
-            int available = this.bytes.length - this.position;
-            int length = Math.min( available, remaining );
-            dst.put( this.bytes, this.position, length );
-            this.position += length;
+            ByteBuffer chunk = this.contents.duplicate();
+            chunk.limit( chunk.position() + length );
+            dst.put( chunk );
+            this.contents.position( this.contents.position() + length );
             return length;
         }
 
@@ -580,21 +677,24 @@ public class ModuleFileSystemProvider extends FileSystemProvider
         @Override
         public long position() throws IOException
         {
-            return this.position;
+            ensureOpen();
+            return this.contents.position();
         }
 
         @Override
         public SeekableByteChannel position( long newPosition ) throws IOException
         {
+            ensureOpen();
             Preconditions.checkArgument( newPosition >= 0, "new position must not be negative" );
-            this.position = Math.min( ( int ) newPosition, this.bytes.length );
+            this.contents.position( ( int ) Math.min( newPosition, this.contents.limit() ) );
             return this;
         }
 
         @Override
         public long size() throws IOException
         {
-            return this.bytes.length;
+            ensureOpen();
+            return this.contents.limit();
         }
 
         @Override
@@ -606,13 +706,21 @@ public class ModuleFileSystemProvider extends FileSystemProvider
         @Override
         public boolean isOpen()
         {
-            return true;
+            return this.open;
         }
 
         @Override
         public void close() throws IOException
         {
-            // no-op
+            this.open = false;
+        }
+
+        private void ensureOpen() throws ClosedChannelException
+        {
+            if( !this.open )
+            {
+                throw new ClosedChannelException();
+            }
         }
     }
 }
@@ -170,14 +170,8 @@ public final class Mosaic
         return work;
     }
 
-    public static void main( String[] args ) throws InterruptedException
+    public static void main( String[] args )
     {
-        if( Boolean.getBoolean( "dev" ) )
-        {
-            // sleep so that BundleScanner will think enough time has passed since their last modification
-            Thread.sleep( 1500 );
-        }
-
         // ensure split verifier is not used
         assertJvmSplitVerifierIsDisabled();
 
@@ -0,0 +1,159 @@
+package org.mosaic.launcher;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.osgi.framework.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records where time went during server startup - when each start level was reached, how long each bundle took to
+ * start, and how long each module took to activate - and prints it once startup completes.
+ * <p/>
+ * Bundle start times are collected from bundle events; module activation times are obtained from the modules bundle,
+ * through the {@link Callable} service it registers with the {@code startupTimeline} property (since modules may be
+ * activated in parallel, after their bundles have started).
+ *
+ * @author arik
+ */
+final class StartupTimeline implements SynchronousBundleListener
+{
+    private static final Logger LOG = LoggerFactory.getLogger( "org.mosaic.startup" );
+
+    private final long startTime = System.currentTimeMillis();
+
+    @Nonnull
+    private final Map<Long, BundleTimes> bundles = new ConcurrentHashMap<>();
+
+    @Nonnull
+    private final Map<Integer, Long> startLevels = new LinkedHashMap<>();
+
+    @Override
+    public void bundleChanged( @Nonnull BundleEvent event )
+    {
+        Bundle bundle = event.getBundle();
+        switch( event.getType() )
+        {
+            case BundleEvent.STARTING:
+                BundleTimes times = new BundleTimes( bundle );
+                times.starting = System.currentTimeMillis();
+                this.bundles.put( bundle.getBundleId(), times );
+                break;
+
+            case BundleEvent.STARTED:
+                BundleTimes startedTimes = this.bundles.get( bundle.getBundleId() );
+                if( startedTimes != null )
+                {
+                    startedTimes.started = System.currentTimeMillis();
+                }
+                break;
+        }
+    }
+
+    synchronized void startLevelReached( int startLevel )
+    {
+        this.startLevels.put( startLevel, System.currentTimeMillis() );
+    }
+
+    synchronized void print( @Nonnull BundleContext bundleContext )
+    {
+        Map<Long, long[]> activations = getModuleActivations( bundleContext );
+        long endTime = System.currentTimeMillis();
+
+        List<BundleTimes> bundles = new ArrayList<>( this.bundles.values() );
+        for( BundleTimes times : bundles )
+        {
+            long[] activation = activations.get( times.id );
+            if( activation != null && activation[ 0 ] > 0 )
+            {
+                times.activating = activation[ 0 ];
+                times.activated = activation[ 1 ];
+                endTime = Math.max( endTime, times.activated );
+            }
+        }
+        Collections.sort( bundles, new Comparator<BundleTimes>()
+        {
+            @Override
+            public int compare( BundleTimes o1, BundleTimes o2 )
+            {
+                return Long.compare( o1.getReadyTime(), o2.getReadyTime() );
+            }
+        } );
+
+        LOG.info( "Startup timeline (total {} ms):", endTime - this.startTime );
+        for( Map.Entry<Integer, Long> entry : this.startLevels.entrySet() )
+        {
+            LOG.info( String.format( "    %+8d ms    start level %d reached", entry.getValue() - this.startTime, entry.getKey() ) );
+        }
+        LOG.info( String.format( "    %11s    %-60s %10s %12s", "ready at", "bundle", "start", "activation" ) );
+        for( BundleTimes times : bundles )
+        {
+            LOG.info( String.format( "    %+8d ms    %-60s %7s ms %9s ms",
+                                     times.getReadyTime() - this.startTime,
+                                     times.name,
+                                     times.started > 0 ? times.started - times.starting : "?",
+                                     times.activating == 0 ? "-" : times.activated > 0 ? times.activated - times.activating : "?" ) );
+        }
+    }
+
+    @Nonnull
+    private Map<Long, long[]> getModuleActivations( @Nonnull BundleContext bundleContext )
+    {
+        try
+        {
+            Collection<ServiceReference<Callable>> references = bundleContext.getServiceReferences( Callable.class, "(startupTimeline=true)" );
+            for( ServiceReference<Callable> reference : references )
+            {
+                Callable<?> callable = bundleContext.getService( reference );
+                if( callable != null )
+                {
+                    try
+                    {
+                        @SuppressWarnings( "unchecked" )
+                        Map<Long, long[]> activations = ( Map<Long, long[]> ) callable.call();
+                        return activations;
+                    }
+                    finally
+                    {
+                        bundleContext.ungetService( reference );
+                    }
+                }
+            }
+        }
+        catch( Exception e )
+        {
+            LOG.warn( "Could not obtain module activation times: {}", e.getMessage(), e );
+        }
+        return Collections.emptyMap();
+    }
+
+    private static class BundleTimes
+    {
+        private final long id;
+
+        @Nonnull
+        private final String name;
+
+        private long starting;
+
+        private long started;
+
+        private long activating;
+
+        private long activated;
+
+        private BundleTimes( @Nonnull Bundle bundle )
+        {
+            this.id = bundle.getBundleId();
+            this.name = bundle.getSymbolicName() + "-" + bundle.getVersion() + "[" + bundle.getBundleId() + "]";
+        }
+
+        private long getReadyTime()
+        {
+            return Math.max( this.activated, Math.max( this.started, this.starting ) );
+        }
+    }
+}
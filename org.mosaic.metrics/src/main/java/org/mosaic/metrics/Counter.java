@@ -0,0 +1,43 @@
+package org.mosaic.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, monotonically increasing counter.
+ * <p/>
+ * Updates are spread over several cells (selected by the updating thread) so that concurrent threads do not contend on
+ * a single cache line; reading the count sums all cells.
+ *
+ * @author arik
+ */
+public final class Counter implements Metric
+{
+    private static final int STRIPES = Integer.highestOneBit( Math.max( 1, Runtime.getRuntime().availableProcessors() ) * 2 );
+
+    /**
+     * Distance between used cells, so that each cell resides in its own 64-byte cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray( STRIPES * PADDING );
+
+    public void increment()
+    {
+        add( 1 );
+    }
+
+    public void add( long delta )
+    {
+        this.cells.getAndAdd( ( ( int ) Thread.currentThread().getId() & ( STRIPES - 1 ) ) * PADDING, delta );
+    }
+
+    public long getCount()
+    {
+        long count = 0;
+        for( int i = 0; i < STRIPES; i++ )
+        {
+            count += this.cells.get( i * PADDING );
+        }
+        return count;
+    }
+}
@@ -0,0 +1,11 @@
+package org.mosaic.metrics;
+
+/**
+ * A metric whose value is sampled on demand (eg. when metrics are displayed) rather than recorded.
+ *
+ * @author arik
+ */
+public interface Gauge extends Metric
+{
+    long getValue() throws Exception;
+}
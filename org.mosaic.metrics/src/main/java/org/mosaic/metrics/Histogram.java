@@ -0,0 +1,176 @@
+package org.mosaic.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.Nonnull;
+
+/**
+ * A lock-free histogram of non-negative long values, using HDR-style log-linear buckets: values are grouped by their
+ * magnitude (power of two), and each magnitude is split into {@code 2^(SUB_BUCKET_BITS-1)} linear sub-buckets. This
+ * gives a relative precision of ~3% over the entire {@code long} range, using a fixed amount of memory (~15KB).
+ * <p/>
+ * Recording a value computes its bucket with a few bit operations and performs a single atomic increment (plus a
+ * striped add for the sum, and a rare compare-and-set for new minimum/maximum values).
+ *
+ * @author arik
+ */
+public final class Histogram implements Metric
+{
+    private static final int SUB_BUCKET_BITS = 6;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_HALF_COUNT_BITS = SUB_BUCKET_BITS - 1;
+
+    private static final long SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+    private static final int BUCKETS = ( 64 - SUB_BUCKET_BITS + 1 ) << SUB_BUCKET_HALF_COUNT_BITS;
+
+    static int indexOf( long value )
+    {
+        int magnitude = 64 - Long.numberOfLeadingZeros( value | SUB_BUCKET_MASK ) - SUB_BUCKET_BITS;
+        return ( magnitude << SUB_BUCKET_HALF_COUNT_BITS ) + ( int ) ( value >>> magnitude );
+    }
+
+    static long lowestValueAt( int index )
+    {
+        if( index < SUB_BUCKET_COUNT )
+        {
+            return index;
+        }
+        int magnitude = ( index >> SUB_BUCKET_HALF_COUNT_BITS ) - 1;
+        return ( long ) ( index - ( magnitude << SUB_BUCKET_HALF_COUNT_BITS ) ) << magnitude;
+    }
+
+    static long highestValueAt( int index )
+    {
+        int magnitude = index < SUB_BUCKET_COUNT ? 0 : ( index >> SUB_BUCKET_HALF_COUNT_BITS ) - 1;
+        return lowestValueAt( index ) + ( 1L << magnitude ) - 1;
+    }
+
+    @Nonnull
+    private final AtomicLongArray counts = new AtomicLongArray( BUCKETS );
+
+    @Nonnull
+    private final Counter sum = new Counter();
+
+    @Nonnull
+    private final AtomicLong min = new AtomicLong( Long.MAX_VALUE );
+
+    @Nonnull
+    private final AtomicLong max = new AtomicLong( -1 );
+
+    public void record( long value )
+    {
+        if( value < 0 )
+        {
+            value = 0;
+        }
+
+        this.counts.incrementAndGet( indexOf( value ) );
+        this.sum.add( value );
+
+        long currentMax = this.max.get();
+        while( value > currentMax && !this.max.compareAndSet( currentMax, value ) )
+        {
+            currentMax = this.max.get();
+        }
+
+        long currentMin = this.min.get();
+        while( value < currentMin && !this.min.compareAndSet( currentMin, value ) )
+        {
+            currentMin = this.min.get();
+        }
+    }
+
+    @Nonnull
+    public Snapshot getSnapshot()
+    {
+        return new Snapshot();
+    }
+
+    /**
+     * A point-in-time copy of the histogram's buckets. Since recording is not blocked while a snapshot is taken, values
+     * recorded concurrently may or may not be reflected in it.
+     */
+    public final class Snapshot
+    {
+        @Nonnull
+        private final long[] counts = new long[ BUCKETS ];
+
+        private final long count;
+
+        private final long sum;
+
+        private final long min;
+
+        private final long max;
+
+        private Snapshot()
+        {
+            long count = 0;
+            for( int i = 0; i < BUCKETS; i++ )
+            {
+                long bucketCount = Histogram.this.counts.get( i );
+                this.counts[ i ] = bucketCount;
+                count += bucketCount;
+            }
+            this.count = count;
+            this.sum = Histogram.this.sum.getCount();
+            this.min = count == 0 ? 0 : Histogram.this.min.get();
+            this.max = count == 0 ? 0 : Histogram.this.max.get();
+        }
+
+        public long getCount()
+        {
+            return this.count;
+        }
+
+        public long getSum()
+        {
+            return this.sum;
+        }
+
+        public long getMin()
+        {
+            return this.min;
+        }
+
+        public long getMax()
+        {
+            return this.max;
+        }
+
+        public double getMean()
+        {
+            return this.count == 0 ? 0 : ( double ) this.sum / this.count;
+        }
+
+        /**
+         * Returns the value below (or at) which the given percentage of recorded values fall, with the histogram's
+         * precision.
+         *
+         * @param percentile percentile to compute, between 0 and 100
+         * @return highest value equivalent to the value at the given percentile, or 0 if no values were recorded
+         */
+        public long getValueAtPercentile( double percentile )
+        {
+            if( this.count == 0 )
+            {
+                return 0;
+            }
+
+            long target = Math.max( 1, ( long ) Math.ceil( Math.min( 100, Math.max( 0, percentile ) ) / 100 * this.count ) );
+            long total = 0;
+            for( int i = 0; i < BUCKETS; i++ )
+            {
+                total += this.counts[ i ];
+                if( total >= target )
+                {
+                    return Math.max( this.min, Math.min( this.max, highestValueAt( i ) ) );
+                }
+            }
+            return this.max;
+        }
+    }
+}
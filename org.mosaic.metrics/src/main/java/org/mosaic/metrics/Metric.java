@@ -0,0 +1,10 @@
+package org.mosaic.metrics;
+
+/**
+ * Marker interface for metrics registered in the {@link Metrics} registry.
+ *
+ * @author arik
+ */
+public interface Metric
+{
+}
@@ -0,0 +1,98 @@
+package org.mosaic.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+
+/**
+ * Registry of named metrics.
+ * <p/>
+ * The registry is static so that instrumented code can obtain its metrics once (eg. into a final field) and record to
+ * them directly, without service lookups on hot paths. Latency histograms, by convention, record nanoseconds; metric
+ * names are dot-separated, starting with the name of the reporting subsystem (eg. {@code web.request.handle}).
+ *
+ * @author arik
+ */
+public final class Metrics
+{
+    @Nonnull
+    private static final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>( 100 );
+
+    @Nonnull
+    public static Counter counter( @Nonnull String name )
+    {
+        return getOrCreate( name, Counter.class );
+    }
+
+    @Nonnull
+    public static Histogram histogram( @Nonnull String name )
+    {
+        return getOrCreate( name, Histogram.class );
+    }
+
+    /**
+     * Registers the given gauge, replacing any gauge previously registered under the same name.
+     */
+    public static void gauge( @Nonnull String name, @Nonnull Gauge gauge )
+    {
+        Metric existing = Metrics.metrics.get( name );
+        if( existing != null && !( existing instanceof Gauge ) )
+        {
+            throw new IllegalArgumentException( "metric '" + name + "' is a " + existing.getClass().getSimpleName() + ", not a gauge" );
+        }
+        Metrics.metrics.put( name, gauge );
+    }
+
+    public static void remove( @Nonnull String name )
+    {
+        Metrics.metrics.remove( name );
+    }
+
+    /**
+     * @return a copy of all registered metrics, sorted by name
+     */
+    @Nonnull
+    public static Map<String, Metric> getMetrics()
+    {
+        return new TreeMap<>( Metrics.metrics );
+    }
+
+    @Nonnull
+    private static <T extends Metric> T getOrCreate( @Nonnull String name, @Nonnull Class<T> type )
+    {
+        Metric metric = Metrics.metrics.get( name );
+        if( metric == null )
+        {
+            Metric newMetric;
+            try
+            {
+                newMetric = type.newInstance();
+            }
+            catch( InstantiationException | IllegalAccessException e )
+            {
+                throw new IllegalStateException( "could not create metric of type " + type.getName() + ": " + e.getMessage(), e );
+            }
+
+            metric = Metrics.metrics.putIfAbsent( name, newMetric );
+            if( metric == null )
+            {
+                metric = newMetric;
+            }
+        }
+
+        if( type.isInstance( metric ) )
+        {
+            return type.cast( metric );
+        }
+        else
+        {
+            throw new IllegalArgumentException( "metric '" + name + "' is a " + metric.getClass().getSimpleName() + ", not a " + type.getSimpleName() );
+        }
+    }
+
+    private Metrics()
+    {
+    }
+}
@@ -0,0 +1,169 @@
+package org.mosaic.metrics.impl;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.mosaic.console.BadUsageException;
+import org.mosaic.console.Command;
+import org.mosaic.console.Console;
+import org.mosaic.console.util.table.SimpleColumn;
+import org.mosaic.console.util.table.TablePrinter;
+import org.mosaic.metrics.*;
+import org.mosaic.modules.Component;
+
+/**
+ * @author arik
+ */
+@Component
+final class MetricsCommands
+{
+    @Command( synopsis = "show metrics",
+              description = "This command will show the current values of registered metrics (counters, gauges and " +
+                            "histograms), possibly filtered by a given filter." )
+    void metrics( @Nonnull
+                  Console console,
+
+                  @Nonnull
+                  @Command.Option( names = { "u", "unit" },
+                                   defaultValue = "ms",
+                                   synopsis = "time unit for histogram values: 'ns', 'us', 'ms' or 's'",
+                                   description = "Histograms record nanoseconds; this option selects the unit in which their values are shown." )
+                  String unit,
+
+                  @Nullable
+                  @Command.Arg( synopsis = "metric names filter",
+                                description = "Only metrics whose names contain this text will be shown." )
+                  String filter ) throws IOException
+    {
+        final TimeUnit timeUnit = parseTimeUnit( unit );
+
+        @SuppressWarnings( "unchecked" )
+        TablePrinter<Map.Entry<String, Metric>> table = new TablePrinter<>(
+                console,
+                new SimpleColumn<Map.Entry<String, Metric>>( "Name", 50 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull Map.Entry<String, Metric> entry )
+                    {
+                        return entry.getKey();
+                    }
+                },
+                new SimpleColumn<Map.Entry<String, Metric>>( "Count/Value", 12 )
+                {
+                    @Nullable
+                    @Override
+                    public String getValue( @Nonnull Map.Entry<String, Metric> entry )
+                    {
+                        Metric metric = entry.getValue();
+                        if( metric instanceof Counter )
+                        {
+                            return ( ( Counter ) metric ).getCount() + "";
+                        }
+                        else if( metric instanceof Gauge )
+                        {
+                            try
+                            {
+                                return ( ( Gauge ) metric ).getValue() + "";
+                            }
+                            catch( Exception e )
+                            {
+                                return "error: " + e.getMessage();
+                            }
+                        }
+                        else if( metric instanceof Histogram )
+                        {
+                            return ( ( Histogram ) metric ).getSnapshot().getCount() + "";
+                        }
+                        else
+                        {
+                            return null;
+                        }
+                    }
+                },
+                new HistogramColumn( "Mean", timeUnit, -1 ),
+                new HistogramColumn( "P50", timeUnit, 50 ),
+                new HistogramColumn( "P90", timeUnit, 90 ),
+                new HistogramColumn( "P99", timeUnit, 99 ),
+                new HistogramColumn( "Max", timeUnit, 100 )
+        );
+
+        for( Map.Entry<String, Metric> entry : Metrics.getMetrics().entrySet() )
+        {
+            if( filter == null || entry.getKey().contains( filter ) )
+            {
+                table.print( entry );
+            }
+        }
+        table.endTable();
+    }
+
+    @Nonnull
+    private TimeUnit parseTimeUnit( @Nonnull String unit )
+    {
+        switch( unit.toLowerCase() )
+        {
+            case "ns":
+                return TimeUnit.NANOSECONDS;
+            case "us":
+                return TimeUnit.MICROSECONDS;
+            case "ms":
+                return TimeUnit.MILLISECONDS;
+            case "s":
+                return TimeUnit.SECONDS;
+            default:
+                throw new BadUsageException( "unknown time unit: " + unit );
+        }
+    }
+
+    private static class HistogramColumn extends SimpleColumn<Map.Entry<String, Metric>>
+    {
+        private final double nanosPerUnit;
+
+        /**
+         * Percentile to show, or a negative number to show the mean.
+         */
+        private final double percentile;
+
+        private HistogramColumn( @Nonnull String header, @Nonnull TimeUnit unit, double percentile )
+        {
+            super( header + " (" + unitName( unit ) + ")", 11 );
+            this.nanosPerUnit = unit.toNanos( 1 );
+            this.percentile = percentile;
+        }
+
+        @Nullable
+        @Override
+        public String getValue( @Nonnull Map.Entry<String, Metric> entry )
+        {
+            if( entry.getValue() instanceof Histogram )
+            {
+                Histogram.Snapshot snapshot = ( ( Histogram ) entry.getValue() ).getSnapshot();
+                double value = this.percentile < 0 ? snapshot.getMean() : snapshot.getValueAtPercentile( this.percentile );
+                return String.format( "%.3f", value / this.nanosPerUnit );
+            }
+            else
+            {
+                return null;
+            }
+        }
+
+        @Nonnull
+        private static String unitName( @Nonnull TimeUnit unit )
+        {
+            switch( unit )
+            {
+                case NANOSECONDS:
+                    return "ns";
+                case MICROSECONDS:
+                    return "us";
+                case MILLISECONDS:
+                    return "ms";
+                default:
+                    return "s";
+            }
+        }
+    }
+}
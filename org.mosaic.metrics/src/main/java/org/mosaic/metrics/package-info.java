@@ -0,0 +1,3 @@
+@Version("1.0.0") package org.mosaic.metrics;
+
+import aQute.bnd.annotation.Version;
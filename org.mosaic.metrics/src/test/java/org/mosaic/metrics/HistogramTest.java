@@ -0,0 +1,116 @@
+package org.mosaic.metrics;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author arik
+ */
+public class HistogramTest
+{
+    @Test
+    public void testBucketBoundaries()
+    {
+        int previousIndex = -1;
+        for( long value = 0; value < 100000; value++ )
+        {
+            int index = Histogram.indexOf( value );
+            assertTrue( "index of " + value + " went backwards", index >= previousIndex );
+            assertTrue( value + " below bucket " + index, Histogram.lowestValueAt( index ) <= value );
+            assertTrue( value + " above bucket " + index, Histogram.highestValueAt( index ) >= value );
+            previousIndex = index;
+        }
+
+        assertThat( Histogram.indexOf( 0 ), is( 0 ) );
+        assertThat( Histogram.highestValueAt( Histogram.indexOf( Long.MAX_VALUE ) ), is( Long.MAX_VALUE ) );
+    }
+
+    @Test
+    public void testPrecision()
+    {
+        Random random = new Random( 1 );
+        for( int i = 0; i < 100000; i++ )
+        {
+            long value = random.nextLong() >>> ( 1 + random.nextInt( 63 ) );
+            int index = Histogram.indexOf( value );
+            long width = Histogram.highestValueAt( index ) - Histogram.lowestValueAt( index ) + 1;
+            assertTrue( "bucket of " + value + " is too wide: " + width, width == 1 || width <= value / 16 );
+        }
+    }
+
+    @Test
+    public void testSnapshot()
+    {
+        Histogram histogram = new Histogram();
+        assertThat( histogram.getSnapshot().getCount(), is( 0L ) );
+        assertThat( histogram.getSnapshot().getValueAtPercentile( 99 ), is( 0L ) );
+
+        long[] values = new long[ 10000 ];
+        Random random = new Random( 2 );
+        for( int i = 0; i < values.length; i++ )
+        {
+            values[ i ] = 1000 + random.nextInt( 1000000 );
+            histogram.record( values[ i ] );
+        }
+        Arrays.sort( values );
+
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+        assertThat( snapshot.getCount(), is( ( long ) values.length ) );
+        assertThat( snapshot.getMin(), is( values[ 0 ] ) );
+        assertThat( snapshot.getMax(), is( values[ values.length - 1 ] ) );
+        assertThat( snapshot.getValueAtPercentile( 100 ), is( values[ values.length - 1 ] ) );
+        for( double percentile : new double[] { 1, 50, 90, 99, 99.9 } )
+        {
+            long expected = values[ ( int ) Math.ceil( percentile / 100 * values.length ) - 1 ];
+            long actual = snapshot.getValueAtPercentile( percentile );
+            assertTrue( "p" + percentile + " was " + actual + ", expected " + expected, actual >= expected && actual <= expected * 1.04 );
+        }
+    }
+
+    @Test
+    public void testNegativeValuesRecordedAsZero()
+    {
+        Histogram histogram = new Histogram();
+        histogram.record( -5 );
+        assertThat( histogram.getSnapshot().getMax(), equalTo( 0L ) );
+        assertThat( histogram.getSnapshot().getCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException
+    {
+        final Histogram histogram = new Histogram();
+        final Counter counter = new Counter();
+        Thread[] threads = new Thread[ 8 ];
+        for( int i = 0; i < threads.length; i++ )
+        {
+            threads[ i ] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for( int j = 0; j < 100000; j++ )
+                    {
+                        histogram.record( j );
+                        counter.increment();
+                    }
+                }
+            };
+            threads[ i ].start();
+        }
+        for( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertThat( histogram.getSnapshot().getCount(), is( 800000L ) );
+        assertThat( histogram.getSnapshot().getSum(), is( 8L * ( 99999L * 100000L / 2 ) ) );
+        assertThat( counter.getCount(), is( 800000L ) );
+    }
+}
@@ -1,8 +1,12 @@
 package org.mosaic.modules;
 
 import com.google.common.base.Optional;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.List;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.mosaic.util.version.Version;
 
 /**
@@ -21,4 +25,43 @@ public interface ModuleManager
 
     @Nonnull
     Optional<? extends Module> getModuleFor( @Nonnull Object source );
+
+    /**
+     * Returns the timed phases recorded while modules were resolved, woven, started and activated, in the order they
+     * ended. Recording is always on, and bounded - once enough phases were recorded, newer phases are discarded.
+     */
+    @Nonnull
+    List<? extends StartupPhase> getStartupPhases();
+
+    /**
+     * Writes the recorded startup phases as a Chrome trace-event JSON file (viewable in {@code chrome://tracing})
+     * under the server's work directory, and returns its location.
+     */
+    @Nonnull
+    Path dumpStartupTrace() throws IOException;
+
+    interface StartupPhase
+    {
+        @Nonnull
+        String getModule();
+
+        /**
+         * The component, class or service this phase refers to, or {@code null} if it refers to the module itself.
+         */
+        @Nullable
+        String getSubject();
+
+        @Nonnull
+        String getName();
+
+        @Nonnull
+        String getThreadName();
+
+        /**
+         * Nanoseconds from the time recording started (when the modules bundle was loaded) until this phase started.
+         */
+        long getStartNanos();
+
+        long getDurationNanos();
+    }
 }
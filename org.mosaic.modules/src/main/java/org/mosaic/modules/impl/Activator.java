@@ -2,6 +2,9 @@ package org.mosaic.modules.impl;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -31,6 +34,9 @@ public final class Activator implements BundleActivator
     @Nonnull
     private static final SimpleServiceTracker<ConversionService> conversionServiceTracker = new SimpleServiceTracker<>( Activator.class, ConversionService.class );
 
+    @Nonnull
+    private static final StartupRecorder startupRecorder = new StartupRecorder();
+
     @Nullable
     private static ModuleManagerImpl moduleManager;
 
@@ -48,6 +54,12 @@ public final class Activator implements BundleActivator
         }
     }
 
+    @Nonnull
+    static StartupRecorder getStartupRecorder()
+    {
+        return Activator.startupRecorder;
+    }
+
     @Nonnull
     public static PathMatcher getPathMatcher()
     {
@@ -89,6 +101,9 @@ public final class Activator implements BundleActivator
     @Nullable
     private ServiceRegistration<ConfigValuesManager> configValuesManagerServiceRegistration;
 
+    @Nullable
+    private ServiceRegistration<Callable> startupTimelineServiceRegistration;
+
     @Nullable
     private ServiceTracker<Runnable, Runnable> bundleScannerTracker;
 
@@ -105,6 +120,23 @@ public final class Activator implements BundleActivator
         moduleManager.open( context );
         this.moduleManagerServiceRegistration = context.registerService( ModuleManager.class, moduleManager, null );
 
+        // provides module activation times to the launcher's startup timeline (which can't see our classes)
+        Hashtable<String, Object> startupTimelineProperties = new Hashtable<>();
+        startupTimelineProperties.put( "startupTimeline", true );
+        this.startupTimelineServiceRegistration = context.registerService( Callable.class, new Callable<Map<Long, long[]>>()
+        {
+            @Override
+            public Map<Long, long[]> call() throws Exception
+            {
+                ModuleManagerImpl moduleManager = Activator.moduleManager;
+                if( moduleManager == null )
+                {
+                    throw new IllegalStateException( "module manager is not available" );
+                }
+                return moduleManager.getActivationTimeline( 60000 );
+            }
+        }, startupTimelineProperties );
+
         this.configValuesManagerServiceRegistration = context.registerService( ConfigValuesManager.class,
                                                                                new ConfigValuesManager(), null );
 
@@ -149,6 +181,19 @@ public final class Activator implements BundleActivator
             this.bundleScannerTracker = null;
         }
 
+        ServiceRegistration<Callable> startupTimelineServiceRegistration = this.startupTimelineServiceRegistration;
+        if( startupTimelineServiceRegistration != null )
+        {
+            try
+            {
+                startupTimelineServiceRegistration.unregister();
+            }
+            catch( Exception ignore )
+            {
+            }
+            this.startupTimelineServiceRegistration = null;
+        }
+
         ServiceRegistration<ConfigValuesManager> configValuesManagerServiceRegistration = this.configValuesManagerServiceRegistration;
         if( configValuesManagerServiceRegistration != null )
         {
@@ -0,0 +1,269 @@
+package org.mosaic.modules.impl;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import java.net.URL;
+import java.util.*;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleRevision;
+
+/**
+ * Immutable trie of a bundle revision's entries (as returned by {@link Bundle#findEntries(String, String, boolean)}),
+ * keyed by path segment.
+ * <p/>
+ * Finding the entries matching a glob walks the trie along the glob's (compiled and cached) segments: literal segments
+ * are hash lookups, wildcard segments only descend into children whose names match, and {@code **} descends into all
+ * children. Subtrees that cannot match are never visited, so a lookup costs roughly as much as the number of entries
+ * it visits along the way to matches, rather than the number of entries in the bundle.
+ * <p/>
+ * Segment matching is conservative - it may accept entries the glob does not match (eg. for template variables such
+ * as {@code {name}}, or a trailing '/' difference between a directory entry and the glob), so callers should confirm
+ * each returned entry with the path matcher. Entries are returned in the order the bundle enumerated them.
+ *
+ * @author arik
+ */
+final class BundleEntryIndex
+{
+    private static final LoadingCache<String, Segment[]> COMPILED_GLOBS =
+            CacheBuilder.newBuilder()
+                        .maximumSize( 1000 )
+                        .build( new CacheLoader<String, Segment[]>()
+                        {
+                            @Override
+                            public Segment[] load( @Nonnull String glob ) throws Exception
+                            {
+                                return compile( glob );
+                            }
+                        } );
+
+    @Nonnull
+    static BundleEntryIndex create( @Nonnull Bundle bundle, @Nullable BundleRevision revision )
+    {
+        Node root = new Node();
+
+        Enumeration<URL> entries = bundle.findEntries( "/", "*", true );
+        if( entries != null )
+        {
+            int index = 0;
+            while( entries.hasMoreElements() )
+            {
+                String entryPath = entries.nextElement().getPath();
+
+                Node node = root;
+                for( String name : entryPath.split( "/" ) )
+                {
+                    if( !name.isEmpty() )
+                    {
+                        Node child = node.children.get( name );
+                        if( child == null )
+                        {
+                            child = new Node();
+                            node.children.put( name, child );
+                        }
+                        node = child;
+                    }
+                }
+                node.path = entryPath;
+                node.index = index++;
+            }
+        }
+        return new BundleEntryIndex( revision, root );
+    }
+
+    @Nonnull
+    private static Segment[] compile( @Nonnull String glob )
+    {
+        List<Segment> segments = new ArrayList<>();
+        for( String segment : glob.split( "/" ) )
+        {
+            if( segment.isEmpty() )
+            {
+                continue;
+            }
+            else if( "**".equals( segment ) )
+            {
+                // consecutive '**' segments are equivalent to a single one
+                if( segments.isEmpty() || segments.get( segments.size() - 1 ) != Segment.ANY_DEPTH )
+                {
+                    segments.add( Segment.ANY_DEPTH );
+                }
+            }
+            else if( segment.indexOf( '*' ) < 0 && segment.indexOf( '?' ) < 0 && segment.indexOf( '{' ) < 0 )
+            {
+                segments.add( new Segment( segment, null ) );
+            }
+            else
+            {
+                StringBuilder regex = new StringBuilder( segment.length() + 10 );
+                int literalStart = 0;
+                for( int i = 0; i < segment.length(); i++ )
+                {
+                    char c = segment.charAt( i );
+                    if( c == '*' || c == '?' || c == '{' )
+                    {
+                        if( i > literalStart )
+                        {
+                            regex.append( Pattern.quote( segment.substring( literalStart, i ) ) );
+                        }
+
+                        if( c == '{' )
+                        {
+                            // template variable (possibly with a regex) - accept anything, and let the matcher decide
+                            int end = segment.indexOf( '}', i );
+                            i = end < 0 ? segment.length() - 1 : end;
+                            regex.append( ".*" );
+                        }
+                        else
+                        {
+                            regex.append( c == '*' ? ".*" : "." );
+                        }
+                        literalStart = i + 1;
+                    }
+                }
+                if( literalStart < segment.length() )
+                {
+                    regex.append( Pattern.quote( segment.substring( literalStart ) ) );
+                }
+                segments.add( new Segment( null, Pattern.compile( regex.toString() ) ) );
+            }
+        }
+        return segments.toArray( new Segment[ segments.size() ] );
+    }
+
+    @Nullable
+    private final BundleRevision revision;
+
+    @Nonnull
+    private final Node root;
+
+    private BundleEntryIndex( @Nullable BundleRevision revision, @Nonnull Node root )
+    {
+        this.revision = revision;
+        this.root = root;
+    }
+
+    /**
+     * Checks whether this index was created for the given bundle revision.
+     */
+    boolean isFor( @Nullable BundleRevision revision )
+    {
+        return this.revision == revision;
+    }
+
+    /**
+     * Returns the paths of the entries that may match the given glob, in bundle enumeration order.
+     */
+    @Nonnull
+    List<String> find( @Nonnull String glob )
+    {
+        List<Node> matches = new ArrayList<>();
+        collect( this.root, COMPILED_GLOBS.getUnchecked( glob ), 0, matches );
+        if( matches.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        // '**' may reach the same entry through several routes
+        Collections.sort( matches, Node.ENUMERATION_ORDER );
+
+        List<String> paths = new ArrayList<>( matches.size() );
+        Node previous = null;
+        for( Node match : matches )
+        {
+            if( match != previous )
+            {
+                paths.add( match.path );
+                previous = match;
+            }
+        }
+        return paths;
+    }
+
+    private void collect( @Nonnull Node node, @Nonnull Segment[] segments, int index, @Nonnull List<Node> matches )
+    {
+        if( index == segments.length )
+        {
+            if( node.path != null )
+            {
+                matches.add( node );
+            }
+            return;
+        }
+
+        Segment segment = segments[ index ];
+        if( segment == Segment.ANY_DEPTH )
+        {
+            // '**' matches zero or more segments
+            collect( node, segments, index + 1, matches );
+            for( Node child : node.children.values() )
+            {
+                collect( child, segments, index, matches );
+            }
+        }
+        else if( segment.literal != null )
+        {
+            Node child = node.children.get( segment.literal );
+            if( child != null )
+            {
+                collect( child, segments, index + 1, matches );
+            }
+        }
+        else if( segment.pattern != null )
+        {
+            for( Map.Entry<String, Node> entry : node.children.entrySet() )
+            {
+                if( segment.pattern.matcher( entry.getKey() ).matches() )
+                {
+                    collect( entry.getValue(), segments, index + 1, matches );
+                }
+            }
+        }
+    }
+
+    private static final class Segment
+    {
+        private static final Segment ANY_DEPTH = new Segment( null, null );
+
+        @Nullable
+        private final String literal;
+
+        @Nullable
+        private final Pattern pattern;
+
+        private Segment( @Nullable String literal, @Nullable Pattern pattern )
+        {
+            this.literal = literal;
+            this.pattern = pattern;
+        }
+    }
+
+    private static final class Node
+    {
+        private static final Comparator<Node> ENUMERATION_ORDER = new Comparator<Node>()
+        {
+            @Override
+            public int compare( Node o1, Node o2 )
+            {
+                return Integer.compare( o1.index, o2.index );
+            }
+        };
+
+        /**
+         * Children by segment name; only modified while the index is being created.
+         */
+        @Nonnull
+        private final Map<String, Node> children = new HashMap<>( 4 );
+
+        /**
+         * The entry path of this node, or {@code null} if the bundle has no entry for it (ie. an implicit directory).
+         */
+        @Nullable
+        private String path;
+
+        private int index = -1;
+    }
+}
@@ -45,11 +45,13 @@ class BytecodeWeavingHook implements WeavingHook
         }
 
         // compile
+        long start = System.nanoTime();
         byte[] bytes = this.compiler.compile( wovenClass );
         if( bytes != null )
         {
             wovenClass.setBytes( bytes );
         }
+        Activator.getStartupRecorder().record( StartupRecorder.getModuleLabel( bundle ), wovenClass.getClassName(), "weave", start );
     }
 
     void stop()
@@ -76,6 +76,7 @@ class Component extends Lifecycle
     @Override
     protected synchronized void onBeforeActivate()
     {
+        long start = System.nanoTime();
         try
         {
             Constructor<?> defaultConstructor = this.typeDescriptor.getType().getDeclaredConstructor();
@@ -86,6 +87,7 @@ class Component extends Lifecycle
         {
             throw new ComponentCreateException( e, this.typeDescriptor.getType(), this.typeDescriptor.getModule() );
         }
+        Activator.getStartupRecorder().record( getModule().toString(), getType().getName(), "instantiate", start );
     }
 
     @Override
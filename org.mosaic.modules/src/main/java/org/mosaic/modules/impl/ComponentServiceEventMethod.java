@@ -1,8 +1,11 @@
 package org.mosaic.modules.impl;
 
 import com.google.common.base.Optional;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -23,6 +26,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Invokes a component's {@link OnServiceAdded @OnServiceAdded} or {@link OnServiceRemoved @OnServiceRemoved} method
+ * for matching services. Services found when the component is activated are delivered synchronously, before activation
+ * completes; later events are queued to the module's {@link ServiceEventDispatcher}, so the thread registering or
+ * unregistering the service does not wait for the component. Synchronous deliveries bypass the dispatcher's ordering,
+ * so they may overlap queued callbacks for services registered while the component activates.
+ *
  * @author arik
  */
 @SuppressWarnings("unchecked")
@@ -31,6 +40,11 @@ final class ComponentServiceEventMethod extends Lifecycle
 {
     private static final Logger LOG = LoggerFactory.getLogger( ComponentServiceEventMethod.class );
 
+    /**
+     * Maximum time to wait for queued callbacks when the component is deactivated.
+     */
+    private static final long DEACTIVATION_TIMEOUT_MILLIS = 10000;
+
     @Nonnull
     private final Component component;
 
@@ -53,6 +67,21 @@ final class ComponentServiceEventMethod extends Lifecycle
     @Nonnull
     private final Map<Long, ServiceReferenceImpl> references = new ConcurrentHashMap<>();
 
+    /**
+     * The method, adapted to a {@code (Object instance, Object reference)} signature so it can be invoked without
+     * reflection.
+     */
+    @Nonnull
+    private final MethodHandle invoker;
+
+    @Nonnull
+    private final Object pendingCallbacksLock = new Object();
+
+    private int pendingCallbacks;
+
+    @Nullable
+    private volatile Thread openingThread;
+
     ComponentServiceEventMethod( @Nonnull Component component, @Nonnull Method method )
     {
         this.component = component;
@@ -66,6 +95,21 @@ final class ComponentServiceEventMethod extends Lifecycle
             throw new ComponentDefinitionException( msg, this.component.getType(), this.component.getModule() );
         }
 
+        try
+        {
+            MethodHandle handle = MethodHandles.lookup().unreflect( this.method );
+            if( Modifier.isStatic( this.method.getModifiers() ) )
+            {
+                handle = MethodHandles.dropArguments( handle, 0, Object.class );
+            }
+            this.invoker = handle.asType( MethodType.methodType( void.class, Object.class, Object.class ) );
+        }
+        catch( IllegalAccessException e )
+        {
+            String msg = "Service event method " + this + " is not accessible: " + e.getMessage();
+            throw new ComponentDefinitionException( msg, this.component.getType(), this.component.getModule() );
+        }
+
         this.serviceType = ServiceTypeHandle.createToken(
                 parameterTypes[ 0 ],
                 ServiceTypeHandle.ServiceToken.class,
@@ -113,7 +157,7 @@ final class ComponentServiceEventMethod extends Lifecycle
                 throw new IllegalStateException( "no bundle context for module " + this.component.getModule() );
             }
 
-            Filter filter = FrameworkUtil.createFilter( this.filter );
+            Filter filter = FilterBuilder.parse( this.filter );
             this.serviceTracker = new ServiceTracker( bundleContext, filter, this );
         }
         catch( InvalidSyntaxException e )
@@ -186,18 +230,7 @@ final class ComponentServiceEventMethod extends Lifecycle
             this.references.put( ( Long ) reference.getProperty( Constants.SERVICE_ID ), mosaicReference );
             if( this.invokeOnAdd )
             {
-                try
-                {
-                    this.method.invoke( this.component.getInstance(), mosaicReference );
-                }
-                catch( Throwable e )
-                {
-                    if( e instanceof InvocationTargetException )
-                    {
-                        e = e.getCause();
-                    }
-                    LOG.error( "@OnServiceAdded method '{}' failed: {}", this.method.getName(), e.getMessage(), e );
-                }
+                invoke( new Callback( "@OnServiceAdded", mosaicReference ) );
             }
         }
         return service;
@@ -218,14 +251,7 @@ final class ComponentServiceEventMethod extends Lifecycle
         {
             if( this.invokeOnRemove )
             {
-                try
-                {
-                    this.method.invoke( this.component.getInstance(), mosaicReference );
-                }
-                catch( Throwable e )
-                {
-                    LOG.error( "@OnServiceRemoved method '{}' failed: {}", this.method.getName(), e.getMessage(), e );
-                }
+                invoke( new Callback( "@OnServiceRemoved", mosaicReference ) );
             }
         }
     }
@@ -233,13 +259,120 @@ final class ComponentServiceEventMethod extends Lifecycle
     @Override
     protected synchronized void onAfterActivate()
     {
-        this.serviceTracker.open();
+        this.openingThread = Thread.currentThread();
+        try
+        {
+            this.serviceTracker.open();
+        }
+        finally
+        {
+            this.openingThread = null;
+        }
     }
 
     @Override
     protected synchronized void onBeforeDeactivate()
     {
         this.serviceTracker.close();
+        awaitPendingCallbacks();
+    }
+
+    private void invoke( @Nonnull Callback callback )
+    {
+        if( Thread.currentThread() == this.openingThread )
+        {
+            try
+            {
+                callback.invoke();
+            }
+            catch( Throwable e )
+            {
+                LOG.error( "{} method '{}' failed: {}", callback.event, this.method.getName(), e.getMessage(), e );
+            }
+        }
+        else
+        {
+            synchronized( this.pendingCallbacksLock )
+            {
+                this.pendingCallbacks++;
+            }
+            this.component.getModule().getServiceEventDispatcher().dispatch( callback );
+        }
+    }
+
+    private void awaitPendingCallbacks()
+    {
+        if( this.component.getModule().getServiceEventDispatcher().isDispatchingThread() )
+        {
+            // we're being deactivated by one of our module's callbacks - pending callbacks can only run after it returns
+            return;
+        }
+
+        long deadline = System.currentTimeMillis() + DEACTIVATION_TIMEOUT_MILLIS;
+        synchronized( this.pendingCallbacksLock )
+        {
+            while( this.pendingCallbacks > 0 )
+            {
+                long remaining = deadline - System.currentTimeMillis();
+                if( remaining <= 0 )
+                {
+                    LOG.warn( "Deactivating {} with {} service event callbacks still pending", this, this.pendingCallbacks );
+                    return;
+                }
+
+                try
+                {
+                    this.pendingCallbacksLock.wait( remaining );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private class Callback extends ServiceEventDispatcher.Callback
+    {
+        @Nonnull
+        private final String event;
+
+        @Nullable
+        private final Object instance;
+
+        @Nonnull
+        private final ServiceReferenceImpl reference;
+
+        private Callback( @Nonnull String event, @Nonnull ServiceReferenceImpl reference )
+        {
+            this.event = event;
+            this.instance = ComponentServiceEventMethod.this.component.getInstance();
+            this.reference = reference;
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.event + " method '" + ComponentServiceEventMethod.this.method.getName() + "' of " +
+                   ComponentServiceEventMethod.this.component + " for service " + this.reference.getId();
+        }
+
+        @Override
+        protected void invoke() throws Throwable
+        {
+            ComponentServiceEventMethod.this.invoker.invokeExact( this.instance, ( Object ) this.reference );
+        }
+
+        @Override
+        protected void done( long durationNanos )
+        {
+            synchronized( ComponentServiceEventMethod.this.pendingCallbacksLock )
+            {
+                ComponentServiceEventMethod.this.pendingCallbacks--;
+                ComponentServiceEventMethod.this.pendingCallbacksLock.notifyAll();
+            }
+        }
     }
 
     private class ServiceReferenceImpl implements ServiceReference
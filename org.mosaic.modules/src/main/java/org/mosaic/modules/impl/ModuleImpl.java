@@ -11,7 +11,6 @@ import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
-import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
@@ -92,6 +91,9 @@ final class ModuleImpl extends Lifecycle implements Module
     @Nonnull
     private final ModuleManagerImpl moduleManager;
 
+    @Nonnull
+    private final ServiceEventDispatcher serviceEventDispatcher;
+
     @Nonnull
     private final Bundle bundle;
 
@@ -104,10 +106,24 @@ final class ModuleImpl extends Lifecycle implements Module
     @Nullable
     private ModuleActivator activator;
 
+    private volatile long activatingTime;
+
+    private volatile long activatedTime;
+
+    private long installedNanos;
+
+    private long startingNanos;
+
+    private long activatingNanos;
+
+    @Nullable
+    private volatile BundleEntryIndex entryIndex;
+
     ModuleImpl( @Nonnull ModuleManagerImpl moduleManager, @Nonnull Bundle bundle )
     {
         this.moduleManager = moduleManager;
         this.bundle = bundle;
+        this.serviceEventDispatcher = new ServiceEventDispatcher( this, moduleManager.getServiceEventsExecutor() );
         this.resourceCache = CacheBuilder.newBuilder()
                                          .concurrencyLevel( 10 )
                                          .initialCapacity( 1000 )
@@ -122,26 +138,19 @@ final class ModuleImpl extends Lifecycle implements Module
                                                  }
                                                  List<Path> paths = null;
 
-                                                 Bundle bundle = ModuleImpl.this.bundle;
-
-                                                 Enumeration<URL> entries = bundle.findEntries( "/", "*", true );
-                                                 if( entries != null )
+                                                 // the index only narrows down candidates - the path matcher has the final say
+                                                 Path root = Paths.get( URI.create( "module://" + ModuleImpl.this.bundle.getBundleId() + "/" ) );
+                                                 for( String entryPath : getEntryIndex().find( key ) )
                                                  {
-                                                     Path root = Paths.get( URI.create( "module://" + bundle.getBundleId() + "/" ) );
-                                                     while( entries.hasMoreElements() )
+                                                     if( Activator.getPathMatcher().matches( key, entryPath ) )
                                                      {
-                                                         URL entry = entries.nextElement();
-                                                         String entryPath = entry.getPath();
-                                                         if( Activator.getPathMatcher().matches( key, entryPath ) )
-                                                         {
-                                                             Path path = root.resolve( entryPath );
+                                                         Path path = root.resolve( entryPath );
 
-                                                             if( paths == null )
-                                                             {
-                                                                 paths = new LinkedList<>();
-                                                             }
-                                                             paths.add( path );
+                                                         if( paths == null )
+                                                         {
+                                                             paths = new LinkedList<>();
                                                          }
+                                                         paths.add( path );
                                                      }
                                                  }
                                                  return paths == null ? Collections.<Path>emptyList() : paths;
@@ -534,36 +543,45 @@ final class ModuleImpl extends Lifecycle implements Module
             throw new IllegalStateException( "module '" + this + "' not active" );
         }
 
-        FilterBuilder filterBuilder = null;
-        for( Property property : properties )
+        // simple equality lookups are served from the service index; others fall back to a filter over the registry
+        org.osgi.framework.ServiceReference<T> ref = null;
+        if( ServiceIndex.isIndexable( properties ) )
+        {
+            ref = this.moduleManager.getServiceIndex().find( this.bundle, type, properties );
+        }
+        else
         {
-            if( filterBuilder == null )
+            FilterBuilder filterBuilder = new FilterBuilder();
+            for( Property property : properties )
             {
-                filterBuilder = new FilterBuilder();
+                filterBuilder.addEquals( property.getKey(), Objects.toString( property.getValue(), "null" ) );
+            }
+
+            Filter filter;
+            try
+            {
+                filter = FilterBuilder.parse( filterBuilder.toString() );
+            }
+            catch( InvalidSyntaxException e )
+            {
+                throw new IllegalArgumentException( "could not build service filter '" + filterBuilder + "': " + e.getMessage(), e );
             }
-            filterBuilder.addEquals( property.getKey(), Objects.toString( property.getValue(), "null" ) );
-        }
 
-        org.osgi.framework.ServiceReference<T> ref = null;
-        if( filterBuilder != null )
-        {
             try
             {
-                Collection<org.osgi.framework.ServiceReference<T>> references = bundleContext.getServiceReferences( type, filterBuilder.toString() );
-                if( references != null && !references.isEmpty() )
+                for( org.osgi.framework.ServiceReference<T> reference : bundleContext.getServiceReferences( type, null ) )
                 {
-                    ref = references.iterator().next();
+                    if( filter.match( reference ) && ( ref == null || reference.compareTo( ref ) > 0 ) )
+                    {
+                        ref = reference;
+                    }
                 }
             }
             catch( InvalidSyntaxException e )
             {
-                throw new IllegalArgumentException( "could not build service filter '" + filterBuilder + "': " + e.getMessage(), e );
+                throw new IllegalStateException( "could not list services of type '" + type.getName() + "': " + e.getMessage(), e );
             }
         }
-        else
-        {
-            ref = bundleContext.getServiceReference( type );
-        }
 
         if( ref == null )
         {
@@ -639,17 +657,54 @@ final class ModuleImpl extends Lifecycle implements Module
         return this.bundle;
     }
 
+    /**
+     * Returns the times (in epoch milliseconds) at which this module's last activation started and ended; the end time
+     * is zero if the module is being activated, and both are zero if it was never activated.
+     */
+    @Nonnull
+    long[] getActivationTimes()
+    {
+        return new long[] { this.activatingTime, this.activatedTime };
+    }
+
+    @Nonnull
+    BundleEntryIndex getEntryIndex()
+    {
+        // entries are enumerated once per bundle revision
+        BundleRevision revision = this.bundle.adapt( BundleRevision.class );
+        BundleEntryIndex entryIndex = this.entryIndex;
+        if( entryIndex == null || !entryIndex.isFor( revision ) )
+        {
+            entryIndex = BundleEntryIndex.create( this.bundle, revision );
+            this.entryIndex = entryIndex;
+        }
+        return entryIndex;
+    }
+
+    @Nonnull
+    ServiceEventDispatcher getServiceEventDispatcher()
+    {
+        return this.serviceEventDispatcher;
+    }
+
     @Override
     protected synchronized void onBeforeStart()
     {
         MODULE_STARTING_LOG.info( "STARTING {}", this );
+        this.startingNanos = System.nanoTime();
         postModuleEvent( ModuleEventType.STARTING );
 
         // create a map of all components in the module
         // then, create a cache of component descriptors for component type (including non-concrete keys)
         // then, create a directed graph mapping dependencies between loaded components
+        StartupRecorder recorder = Activator.getStartupRecorder();
+        long start = System.nanoTime();
         Map<Class<?>, org.mosaic.modules.impl.TypeDescriptor> types = createComponentsMap();
+        recorder.record( toString(), null, "scan components", start );
+
+        start = System.nanoTime();
         SimpleDirectedGraph<org.mosaic.modules.impl.TypeDescriptor, ComponentDependency> componentsGraph = createComponentsGraph( types );
+        recorder.record( toString(), null, "build component graph", start );
 
         // find the module activator, if any
         String moduleActivatorClassName = this.bundle.getHeaders().get( "Module-Activator" );
@@ -681,6 +736,7 @@ final class ModuleImpl extends Lifecycle implements Module
     protected synchronized void onAfterStart()
     {
         MODULE_STARTED_LOG.info( "STARTED {}", this );
+        Activator.getStartupRecorder().record( toString(), null, "start", this.startingNanos );
         postModuleEvent( ModuleEventType.STARTED );
 
         if( this.moduleActivatorClassName != null )
@@ -728,6 +784,9 @@ final class ModuleImpl extends Lifecycle implements Module
     protected synchronized void onBeforeActivate()
     {
         MODULE_ACTIVATING_LOG.info( "ACTIVATING {}", this );
+        this.activatingTime = System.currentTimeMillis();
+        this.activatedTime = 0;
+        this.activatingNanos = System.nanoTime();
         if( this.activator != null )
         {
             this.activator.onBeforeActivate( this );
@@ -739,6 +798,8 @@ final class ModuleImpl extends Lifecycle implements Module
     protected synchronized void onAfterActivate()
     {
         MODULE_ACTIVATED_LOG.info( "ACTIVATED {}", this );
+        this.activatedTime = System.currentTimeMillis();
+        Activator.getStartupRecorder().record( toString(), null, "activate", this.activatingNanos );
         postModuleEvent( ModuleEventType.ACTIVATED );
 
         if( this.activator != null )
@@ -775,12 +836,20 @@ final class ModuleImpl extends Lifecycle implements Module
     synchronized void onBundleInstalled()
     {
         MODULE_INSTALL_LOG.info( "INSTALLED {}", this );
+        this.installedNanos = System.nanoTime();
         postModuleEvent( ModuleEventType.INSTALLED );
     }
 
     synchronized void onBundleResolved()
     {
         MODULE_RESOLVE_LOG.info( "RESOLVED {}", this );
+        if( this.installedNanos > 0 )
+        {
+            // the framework resolves bundles lazily, so this includes the time the bundle waited to be resolved
+            Activator.getStartupRecorder().record( toString(), null, "install to resolve", this.installedNanos );
+            this.installedNanos = 0;
+        }
+        this.entryIndex = null;
         this.resourceCache.invalidateAll();
         postModuleEvent( ModuleEventType.RESOLVED );
     }
@@ -828,6 +897,7 @@ final class ModuleImpl extends Lifecycle implements Module
     synchronized void onBundleUnresolved()
     {
         MODULE_UNRESOLVED_LOG.info( "UNRESOLVED {}", this );
+        this.entryIndex = null;
         this.resourceCache.invalidateAll();
         postModuleEvent( ModuleEventType.UNRESOLVED );
     }
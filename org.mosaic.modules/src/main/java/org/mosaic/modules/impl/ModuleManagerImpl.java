@@ -1,10 +1,11 @@
 package org.mosaic.modules.impl;
 
 import com.google.common.base.Optional;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
 import javax.annotation.Nonnull;
 import org.mosaic.modules.Module;
 import org.mosaic.modules.ModuleManager;
@@ -25,6 +26,42 @@ final class ModuleManagerImpl implements ModuleManager
     @Nonnull
     private final Map<Long, ModuleImpl> modules = new ConcurrentHashMap<>( 100 );
 
+    @Nonnull
+    private final ServiceIndex serviceIndex = new ServiceIndex();
+
+    @Nonnull
+    private final ExecutorService serviceEventsExecutor =
+            Executors.newCachedThreadPool( new ThreadFactoryBuilder()
+                                                   .setNameFormat( "mosaic-service-events-%d" )
+                                                   .setDaemon( true )
+                                                   .build() );
+
+    /**
+     * Activates started modules, so that modules started by the framework's start level thread are activated in
+     * parallel rather than one after the other. Modules requiring services of other modules are not activatable until
+     * those services are registered, at which point they are activated by the thread registering the service; thus
+     * modules are effectively activated along their service dependency graph, with independent modules in parallel.
+     */
+    @Nonnull
+    private final ExecutorService activationExecutor =
+            Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors(),
+                                          new ThreadFactoryBuilder()
+                                                  .setNameFormat( "mosaic-module-activation-%d" )
+                                                  .setDaemon( true )
+                                                  .build() );
+
+    @Nonnull
+    private final Object pendingActivationsLock = new Object();
+
+    private int pendingActivations;
+
+    @Nonnull
+    private final ScheduledExecutorService serviceEventsWatchdog =
+            Executors.newSingleThreadScheduledExecutor( new ThreadFactoryBuilder()
+                                                                .setNameFormat( "mosaic-service-events-watchdog" )
+                                                                .setDaemon( true )
+                                                                .build() );
+
     @Nonnull
     @Override
     public Optional<ModuleImpl> getModule( long id )
@@ -79,8 +116,88 @@ final class ModuleManagerImpl implements ModuleManager
         }
     }
 
+    @Nonnull
+    ServiceIndex getServiceIndex()
+    {
+        return this.serviceIndex;
+    }
+
+    @Nonnull
+    Executor getServiceEventsExecutor()
+    {
+        return this.serviceEventsExecutor;
+    }
+
+    /**
+     * Returns the activation start and end times ({@link ModuleImpl#getActivationTimes()}) of all modules, keyed by
+     * their bundle IDs, after waiting (up to the given timeout) for modules being activated to finish.
+     */
+    @Nonnull
+    Map<Long, long[]> getActivationTimeline( long timeoutMillis ) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized( this.pendingActivationsLock )
+        {
+            while( this.pendingActivations > 0 )
+            {
+                long remaining = deadline - System.currentTimeMillis();
+                if( remaining <= 0 )
+                {
+                    LOG.warn( "Timed out waiting for {} modules to finish activating", this.pendingActivations );
+                    break;
+                }
+                this.pendingActivationsLock.wait( remaining );
+            }
+        }
+
+        Map<Long, long[]> timeline = new HashMap<>();
+        for( ModuleImpl module : this.modules.values() )
+        {
+            timeline.put( module.getId(), module.getActivationTimes() );
+        }
+        return timeline;
+    }
+
+    @Nonnull
+    @Override
+    public List<? extends StartupPhase> getStartupPhases()
+    {
+        StartupRecorder recorder = Activator.getStartupRecorder();
+        int discarded = recorder.getDiscardedCount();
+        if( discarded > 0 )
+        {
+            LOG.warn( "{} startup phases were discarded (the startup recorder is full)", discarded );
+        }
+        return recorder.getPhases();
+    }
+
+    @Nonnull
+    @Override
+    public Path dumpStartupTrace() throws IOException
+    {
+        Path file = Activator.getWorkPath().resolve( "startup-trace.json" );
+        Activator.getStartupRecorder().writeTrace( file );
+        return file;
+    }
+
     void open( @Nonnull BundleContext bundleContext ) throws BundleException
     {
+        // index services before modules are activated, since activation looks up services
+        this.serviceIndex.open( bundleContext );
+
+        // periodically report service event callbacks that block their module's callback queue
+        this.serviceEventsWatchdog.scheduleWithFixedDelay( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for( ModuleImpl module : ModuleManagerImpl.this.modules.values() )
+                {
+                    module.getServiceEventDispatcher().checkSlowCallbacks();
+                }
+            }
+        }, 1, 1, TimeUnit.SECONDS );
+
         // synchronize our modules with existing OSGi state
         for( Bundle bundle : bundleContext.getBundles() )
         {
@@ -137,6 +254,10 @@ final class ModuleManagerImpl implements ModuleManager
                 }
             }
         }
+        this.activationExecutor.shutdown();
+        this.serviceEventsWatchdog.shutdown();
+        this.serviceEventsExecutor.shutdown();
+        this.serviceIndex.close();
     }
 
     private synchronized void handleBundleEvent( @Nonnull BundleEvent bundleEvent )
@@ -164,7 +285,7 @@ final class ModuleManagerImpl implements ModuleManager
                 break;
 
             case STARTED:
-                module.get().onBundleStarted();
+                activate( module.get() );
                 break;
 
             case STOPPING:
@@ -188,4 +309,42 @@ final class ModuleManagerImpl implements ModuleManager
                 break;
         }
     }
+
+    private void activate( @Nonnull final ModuleImpl module )
+    {
+        synchronized( this.pendingActivationsLock )
+        {
+            this.pendingActivations++;
+        }
+
+        Runnable activation = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    module.onBundleStarted();
+                }
+                finally
+                {
+                    synchronized( ModuleManagerImpl.this.pendingActivationsLock )
+                    {
+                        ModuleManagerImpl.this.pendingActivations--;
+                        ModuleManagerImpl.this.pendingActivationsLock.notifyAll();
+                    }
+                }
+            }
+        };
+
+        try
+        {
+            this.activationExecutor.execute( activation );
+        }
+        catch( RejectedExecutionException e )
+        {
+            // shutting down - activate on this thread
+            activation.run();
+        }
+    }
 }
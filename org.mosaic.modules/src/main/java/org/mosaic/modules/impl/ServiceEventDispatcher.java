@@ -0,0 +1,193 @@
+package org.mosaic.modules.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ordered, asynchronous queue of service event callbacks of a single module.
+ * <p/>
+ * Service trackers receive service events on the thread that registered, modified or unregistered the service, so
+ * invoking component callbacks on that thread makes the registering module wait for every listener. Instead, callbacks
+ * are queued here and invoked one at a time, in the order they were queued, on a shared pool thread - so queued
+ * callbacks of the same module never run concurrently with each other or out of order.
+ * <p/>
+ * Callbacks for services found while a component is being activated are not queued: they run synchronously on the
+ * activating thread (see {@link ComponentServiceEventMethod}), and may therefore run concurrently with queued callbacks
+ * of the same module, including callbacks of the same component for services registered during its activation. A
+ * service's removal is still never delivered before its addition, since the service tracker only reports the removal
+ * after the synchronous addition callback returns.
+ * <p/>
+ * Callbacks running longer than the slow-listener threshold (the {@code mosaic.modules.serviceEvents.slowThreshold}
+ * system property, in milliseconds) are reported: once while still running (see {@link #checkSlowCallbacks()}), and
+ * again when they complete.
+ *
+ * @author arik
+ */
+final class ServiceEventDispatcher
+{
+    private static final Logger LOG = LoggerFactory.getLogger( ServiceEventDispatcher.class );
+
+    private static final long SLOW_THRESHOLD_NANOS =
+            TimeUnit.MILLISECONDS.toNanos( Long.getLong( "mosaic.modules.serviceEvents.slowThreshold", 1000 ) );
+
+    /**
+     * Maximum number of callbacks to invoke before yielding the pool thread to other modules.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    @Nonnull
+    private final ModuleImpl module;
+
+    @Nonnull
+    private final Executor executor;
+
+    @Nonnull
+    private final Queue<Callback> queue = new ConcurrentLinkedQueue<>();
+
+    @Nonnull
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    @Nonnull
+    private final Runnable drainer = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            drain();
+        }
+    };
+
+    @Nullable
+    private volatile Thread dispatchingThread;
+
+    @Nullable
+    private volatile Callback current;
+
+    ServiceEventDispatcher( @Nonnull ModuleImpl module, @Nonnull Executor executor )
+    {
+        this.module = module;
+        this.executor = executor;
+    }
+
+    void dispatch( @Nonnull Callback callback )
+    {
+        this.queue.add( callback );
+        schedule();
+    }
+
+    /**
+     * Checks whether the calling thread is the thread currently invoking this module's callbacks. Such a thread must not
+     * wait for queued callbacks, since they can only run after it returns.
+     */
+    boolean isDispatchingThread()
+    {
+        return this.dispatchingThread == Thread.currentThread();
+    }
+
+    /**
+     * Reports the currently running callback if it has been running longer than the slow-listener threshold, and it
+     * has not been reported yet. Called periodically by the module manager.
+     */
+    void checkSlowCallbacks()
+    {
+        Callback callback = this.current;
+        if( callback != null && !callback.reported )
+        {
+            long duration = System.nanoTime() - callback.started;
+            if( duration > SLOW_THRESHOLD_NANOS )
+            {
+                callback.reported = true;
+                LOG.warn( "Service event callback {} of module {} is still running after {} ms ({} callbacks waiting behind it)",
+                          callback, this.module, TimeUnit.NANOSECONDS.toMillis( duration ), this.queue.size() );
+            }
+        }
+    }
+
+    private void schedule()
+    {
+        if( this.scheduled.compareAndSet( false, true ) )
+        {
+            try
+            {
+                this.executor.execute( this.drainer );
+            }
+            catch( RejectedExecutionException e )
+            {
+                // shutting down - invoke remaining callbacks on this thread rather than losing them
+                drain();
+            }
+        }
+    }
+
+    private void drain()
+    {
+        this.dispatchingThread = Thread.currentThread();
+        try
+        {
+            int count = 0;
+            Callback callback;
+            while( count++ < BATCH_SIZE && ( callback = this.queue.poll() ) != null )
+            {
+                invoke( callback );
+            }
+        }
+        finally
+        {
+            this.dispatchingThread = null;
+            this.scheduled.set( false );
+        }
+
+        // callbacks may have been queued after we stopped polling but before we cleared the 'scheduled' flag
+        if( !this.queue.isEmpty() )
+        {
+            schedule();
+        }
+    }
+
+    private void invoke( @Nonnull Callback callback )
+    {
+        callback.started = System.nanoTime();
+        this.current = callback;
+        try
+        {
+            callback.invoke();
+        }
+        catch( Throwable e )
+        {
+            LOG.error( "Service event callback {} of module {} failed: {}", callback, this.module, e.getMessage(), e );
+        }
+        finally
+        {
+            this.current = null;
+            long duration = System.nanoTime() - callback.started;
+            callback.done( duration );
+            if( duration > SLOW_THRESHOLD_NANOS )
+            {
+                LOG.warn( "Service event callback {} of module {} took {} ms",
+                          callback, this.module, TimeUnit.NANOSECONDS.toMillis( duration ) );
+            }
+        }
+    }
+
+    abstract static class Callback
+    {
+        private volatile long started;
+
+        private volatile boolean reported;
+
+        protected abstract void invoke() throws Throwable;
+
+        protected void done( long durationNanos )
+        {
+            // no-op
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package org.mosaic.modules.impl;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.mosaic.modules.Property;
+import org.osgi.framework.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of all registered services by service class, and by service class and property value, kept current by
+ * listening to service events. Allows looking up a service by type and property equality (as done by
+ * {@link ModuleImpl#findService(Class, Property...)}) with hash lookups instead of building, parsing and evaluating an
+ * OSGi filter against the service registry on each call.
+ * <p/>
+ * The index is updated copy-on-write per service class, so lookups never block. Properties are matched by the string
+ * form of their values (or of their elements, for array and collection values) and case-insensitive keys, which
+ * mirrors how an LDAP equality filter matches them; lookups whose values contain filter syntax characters are not
+ * indexable, and should be performed with a filter instead.
+ *
+ * @author arik
+ */
+final class ServiceIndex implements AllServiceListener
+{
+    private static final Logger LOG = LoggerFactory.getLogger( ServiceIndex.class );
+
+    @Nonnull
+    private final ConcurrentMap<String, ClassIndex> classes = new ConcurrentHashMap<>( 500 );
+
+    @Nullable
+    private BundleContext bundleContext;
+
+    /**
+     * Checks whether the given properties can be matched by the index, ie. whether matching them by their string
+     * values is equivalent to matching them with an equality filter.
+     */
+    static boolean isIndexable( @Nonnull Property... properties )
+    {
+        for( Property property : properties )
+        {
+            String value = toIndexValue( property.getValue() );
+            for( int i = 0; i < value.length(); i++ )
+            {
+                char c = value.charAt( i );
+                if( c == '*' || c == '(' || c == ')' || c == '\\' )
+                {
+                    return false;
+                }
+            }
+            if( !value.equals( value.trim() ) || !property.getKey().equals( property.getKey().trim() ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized void open( @Nonnull BundleContext bundleContext )
+    {
+        this.bundleContext = bundleContext;
+
+        // listen before indexing existing services, so we don't miss services registered in between
+        bundleContext.addServiceListener( this );
+        try
+        {
+            ServiceReference<?>[] references = bundleContext.getAllServiceReferences( null, null );
+            if( references != null )
+            {
+                for( ServiceReference<?> reference : references )
+                {
+                    add( reference );
+                }
+            }
+        }
+        catch( InvalidSyntaxException e )
+        {
+            throw new IllegalStateException( "could not list existing services: " + e.getMessage(), e );
+        }
+    }
+
+    synchronized void close()
+    {
+        BundleContext bundleContext = this.bundleContext;
+        if( bundleContext != null )
+        {
+            try
+            {
+                bundleContext.removeServiceListener( this );
+            }
+            catch( IllegalStateException ignore )
+            {
+                // bundle context already invalid
+            }
+            this.bundleContext = null;
+        }
+        this.classes.clear();
+    }
+
+    @Override
+    public synchronized void serviceChanged( @Nonnull ServiceEvent event )
+    {
+        ServiceReference<?> reference = event.getServiceReference();
+        switch( event.getType() )
+        {
+            case ServiceEvent.REGISTERED:
+                add( reference );
+                break;
+
+            case ServiceEvent.MODIFIED:
+            case ServiceEvent.MODIFIED_ENDMATCH:
+                remove( reference );
+                add( reference );
+                break;
+
+            case ServiceEvent.UNREGISTERING:
+                remove( reference );
+                break;
+        }
+    }
+
+    /**
+     * Finds the highest-ranking service of the given type, whose properties match all given properties, and whose
+     * class is the same class the given bundle sees for that type.
+     *
+     * @see #isIndexable(Property...)
+     */
+    @Nullable
+    <T> ServiceReference<T> find( @Nonnull Bundle bundle, @Nonnull Class<T> type, @Nonnull Property... properties )
+    {
+        String className = type.getName();
+
+        ClassIndex classIndex = this.classes.get( className );
+        if( classIndex == null )
+        {
+            return null;
+        }
+
+        List<ServiceReference<?>> candidates;
+        if( properties.length == 0 )
+        {
+            candidates = classIndex.references;
+        }
+        else
+        {
+            candidates = classIndex.referencesByProperty.get( toIndexKey( properties[ 0 ].getKey(), properties[ 0 ].getValue() ) );
+            if( candidates == null )
+            {
+                return null;
+            }
+        }
+
+        for( ServiceReference<?> candidate : candidates )
+        {
+            if( matches( classIndex.propertiesByReference.get( candidate ), properties ) && candidate.isAssignableTo( bundle, className ) )
+            {
+                @SuppressWarnings( "unchecked" )
+                ServiceReference<T> typedReference = ( ServiceReference<T> ) candidate;
+                return typedReference;
+            }
+        }
+        return null;
+    }
+
+    private void add( @Nonnull ServiceReference<?> reference )
+    {
+        Object objectClass = reference.getProperty( Constants.OBJECTCLASS );
+        if( !( objectClass instanceof String[] ) )
+        {
+            LOG.warn( "Service {} has no object classes - it will not be indexed", reference );
+            return;
+        }
+
+        Set<String> properties = new HashSet<>();
+        for( String key : reference.getPropertyKeys() )
+        {
+            Object value = reference.getProperty( key );
+            if( value != null && value.getClass().isArray() )
+            {
+                for( int i = 0; i < Array.getLength( value ); i++ )
+                {
+                    properties.add( toIndexKey( key, Array.get( value, i ) ) );
+                }
+            }
+            else if( value instanceof Collection )
+            {
+                for( Object item : ( Collection<?> ) value )
+                {
+                    properties.add( toIndexKey( key, item ) );
+                }
+            }
+            else
+            {
+                properties.add( toIndexKey( key, value ) );
+            }
+        }
+
+        for( String className : ( String[] ) objectClass )
+        {
+            ClassIndex classIndex = this.classes.get( className );
+            this.classes.put( className, classIndex == null
+                                         ? new ClassIndex( reference, properties )
+                                         : classIndex.with( reference, properties ) );
+        }
+    }
+
+    private void remove( @Nonnull ServiceReference<?> reference )
+    {
+        Object objectClass = reference.getProperty( Constants.OBJECTCLASS );
+        if( objectClass instanceof String[] )
+        {
+            for( String className : ( String[] ) objectClass )
+            {
+                ClassIndex classIndex = this.classes.get( className );
+                if( classIndex != null )
+                {
+                    ClassIndex updated = classIndex.without( reference );
+                    if( updated == null )
+                    {
+                        this.classes.remove( className );
+                    }
+                    else
+                    {
+                        this.classes.put( className, updated );
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean matches( @Nullable Set<String> referenceProperties, @Nonnull Property... properties )
+    {
+        if( referenceProperties == null )
+        {
+            return false;
+        }
+        for( Property property : properties )
+        {
+            if( !referenceProperties.contains( toIndexKey( property.getKey(), property.getValue() ) ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nonnull
+    private static String toIndexKey( @Nonnull String key, @Nullable Object value )
+    {
+        return key.toLowerCase() + "=" + toIndexValue( value );
+    }
+
+    @Nonnull
+    private static String toIndexValue( @Nullable Object value )
+    {
+        return Objects.toString( value, "null" );
+    }
+
+    /**
+     * Immutable index of the services registered under a single class.
+     */
+    private static final class ClassIndex
+    {
+        /**
+         * Sorts references from highest to lowest ranking (and by registration order within the same ranking).
+         */
+        private static final Comparator<ServiceReference<?>> RANKING_ORDER = new Comparator<ServiceReference<?>>()
+        {
+            @Override
+            public int compare( ServiceReference<?> o1, ServiceReference<?> o2 )
+            {
+                return o2.compareTo( o1 );
+            }
+        };
+
+        @Nonnull
+        private final List<ServiceReference<?>> references;
+
+        @Nonnull
+        private final Map<ServiceReference<?>, Set<String>> propertiesByReference;
+
+        @Nonnull
+        private final Map<String, List<ServiceReference<?>>> referencesByProperty;
+
+        private ClassIndex( @Nonnull ServiceReference<?> reference, @Nonnull Set<String> properties )
+        {
+            this( Collections.<ServiceReference<?>, Set<String>>singletonMap( reference, properties ) );
+        }
+
+        private ClassIndex( @Nonnull Map<ServiceReference<?>, Set<String>> propertiesByReference )
+        {
+            List<ServiceReference<?>> references = new ArrayList<>( propertiesByReference.keySet() );
+            Collections.sort( references, RANKING_ORDER );
+
+            Map<String, List<ServiceReference<?>>> referencesByProperty = new HashMap<>();
+            for( ServiceReference<?> reference : references )
+            {
+                for( String property : propertiesByReference.get( reference ) )
+                {
+                    List<ServiceReference<?>> propertyReferences = referencesByProperty.get( property );
+                    if( propertyReferences == null )
+                    {
+                        propertyReferences = new ArrayList<>( 2 );
+                        referencesByProperty.put( property, propertyReferences );
+                    }
+                    propertyReferences.add( reference );
+                }
+            }
+
+            this.references = references;
+            this.propertiesByReference = propertiesByReference;
+            this.referencesByProperty = referencesByProperty;
+        }
+
+        @Nonnull
+        private ClassIndex with( @Nonnull ServiceReference<?> reference, @Nonnull Set<String> properties )
+        {
+            Map<ServiceReference<?>, Set<String>> propertiesByReference = new HashMap<>( this.propertiesByReference );
+            propertiesByReference.put( reference, properties );
+            return new ClassIndex( propertiesByReference );
+        }
+
+        @Nullable
+        private ClassIndex without( @Nonnull ServiceReference<?> reference )
+        {
+            if( !this.propertiesByReference.containsKey( reference ) )
+            {
+                return this;
+            }
+            else if( this.propertiesByReference.size() == 1 )
+            {
+                return null;
+            }
+
+            Map<ServiceReference<?>, Set<String>> propertiesByReference = new HashMap<>( this.propertiesByReference );
+            propertiesByReference.remove( reference );
+            return new ClassIndex( propertiesByReference );
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package org.mosaic.modules.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.mosaic.modules.ModuleManager;
+
+/**
+ * Always-on recorder of timed module phases (resolution, weaving, component scanning, start, activation, dependency
+ * waits, etc).
+ * <p/>
+ * Recording a phase costs a {@link System#nanoTime()} call, a small allocation and an atomic increment. Phases are
+ * kept in a fixed-size array, so memory is bounded: once it fills up, further phases are counted but discarded (the
+ * interesting phases - those of server startup - are the first ones anyway).
+ *
+ * @author arik
+ */
+final class StartupRecorder
+{
+    private static final int MAX_PHASES = 50000;
+
+    private final long baseNanos = System.nanoTime();
+
+    @Nonnull
+    private final AtomicReferenceArray<Phase> phases = new AtomicReferenceArray<>( MAX_PHASES );
+
+    @Nonnull
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Nonnull
+    static String getModuleLabel( @Nonnull org.osgi.framework.Bundle bundle )
+    {
+        return bundle.getSymbolicName() + "@" + bundle.getVersion() + "[" + bundle.getBundleId() + "]";
+    }
+
+    /**
+     * Records a phase that started at the given {@link System#nanoTime() nano time} and ends now.
+     */
+    void record( @Nonnull String module, @Nullable String subject, @Nonnull String name, long startNanos )
+    {
+        long endNanos = System.nanoTime();
+        int index = this.count.getAndIncrement();
+        if( index < MAX_PHASES )
+        {
+            this.phases.set( index, new Phase( module,
+                                               subject,
+                                               name,
+                                               Thread.currentThread().getName(),
+                                               startNanos - this.baseNanos,
+                                               endNanos - startNanos ) );
+        }
+    }
+
+    @Nonnull
+    List<Phase> getPhases()
+    {
+        int count = Math.min( this.count.get(), MAX_PHASES );
+
+        List<Phase> phases = new ArrayList<>( count );
+        for( int i = 0; i < count; i++ )
+        {
+            // may be null if its recording thread has not stored it yet
+            Phase phase = this.phases.get( i );
+            if( phase != null )
+            {
+                phases.add( phase );
+            }
+        }
+        return phases;
+    }
+
+    int getDiscardedCount()
+    {
+        return Math.max( this.count.get() - MAX_PHASES, 0 );
+    }
+
+    /**
+     * Writes recorded phases as a Chrome trace-event JSON file: a complete ("X") event per phase, and a thread name
+     * metadata ("M") event per thread, so parallel activation shows up as parallel tracks.
+     */
+    void writeTrace( @Nonnull Path file ) throws IOException
+    {
+        Files.createDirectories( file.getParent() );
+        try( BufferedWriter writer = Files.newBufferedWriter( file, StandardCharsets.UTF_8 ) )
+        {
+            writer.write( "{\"traceEvents\":[" );
+
+            Map<String, Integer> threadIds = new LinkedHashMap<>();
+            boolean first = true;
+            for( Phase phase : getPhases() )
+            {
+                Integer threadId = threadIds.get( phase.threadName );
+                if( threadId == null )
+                {
+                    threadId = threadIds.size() + 1;
+                    threadIds.put( phase.threadName, threadId );
+                }
+
+                writer.write( first ? "\n" : ",\n" );
+                first = false;
+
+                writer.write( "{\"name\":" );
+                writeString( writer, phase.subject == null ? phase.name + " " + phase.module : phase.name + " " + phase.subject );
+                writer.write( ",\"cat\":" );
+                writeString( writer, phase.name );
+                writer.write( ",\"ph\":\"X\",\"pid\":1,\"tid\":" + threadId );
+                writer.write( ",\"ts\":" + toMicros( phase.startNanos ) );
+                writer.write( ",\"dur\":" + toMicros( phase.durationNanos ) );
+                writer.write( ",\"args\":{\"module\":" );
+                writeString( writer, phase.module );
+                if( phase.subject != null )
+                {
+                    writer.write( ",\"subject\":" );
+                    writeString( writer, phase.subject );
+                }
+                writer.write( "}}" );
+            }
+
+            for( Map.Entry<String, Integer> entry : threadIds.entrySet() )
+            {
+                writer.write( first ? "\n" : ",\n" );
+                first = false;
+
+                writer.write( "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + entry.getValue() + ",\"args\":{\"name\":" );
+                writeString( writer, entry.getKey() );
+                writer.write( "}}" );
+            }
+
+            writer.write( "\n],\"displayTimeUnit\":\"ms\"}\n" );
+        }
+    }
+
+    @Nonnull
+    private static String toMicros( long nanos )
+    {
+        return String.format( Locale.ENGLISH, "%.3f", nanos / ( double ) TimeUnit.MICROSECONDS.toNanos( 1 ) );
+    }
+
+    private static void writeString( @Nonnull BufferedWriter writer, @Nonnull String value ) throws IOException
+    {
+        writer.write( '"' );
+        for( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if( c == '"' || c == '\\' )
+            {
+                writer.write( '\\' );
+                writer.write( c );
+            }
+            else if( c < 0x20 )
+            {
+                writer.write( String.format( "\\u%04x", ( int ) c ) );
+            }
+            else
+            {
+                writer.write( c );
+            }
+        }
+        writer.write( '"' );
+    }
+
+    static final class Phase implements ModuleManager.StartupPhase
+    {
+        @Nonnull
+        private final String module;
+
+        @Nullable
+        private final String subject;
+
+        @Nonnull
+        private final String name;
+
+        @Nonnull
+        private final String threadName;
+
+        private final long startNanos;
+
+        private final long durationNanos;
+
+        private Phase( @Nonnull String module,
+                       @Nullable String subject,
+                       @Nonnull String name,
+                       @Nonnull String threadName,
+                       long startNanos,
+                       long durationNanos )
+        {
+            this.module = module;
+            this.subject = subject;
+            this.name = name;
+            this.threadName = threadName;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+
+        @Nonnull
+        @Override
+        public String getModule()
+        {
+            return this.module;
+        }
+
+        @Nullable
+        @Override
+        public String getSubject()
+        {
+            return this.subject;
+        }
+
+        @Nonnull
+        @Override
+        public String getName()
+        {
+            return this.name;
+        }
+
+        @Nonnull
+        @Override
+        public String getThreadName()
+        {
+            return this.threadName;
+        }
+
+        @Override
+        public long getStartNanos()
+        {
+            return this.startNanos;
+        }
+
+        @Override
+        public long getDurationNanos()
+        {
+            return this.durationNanos;
+        }
+    }
+}
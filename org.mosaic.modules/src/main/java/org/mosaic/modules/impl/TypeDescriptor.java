@@ -34,6 +34,8 @@ final class TypeDescriptor extends Lifecycle implements org.mosaic.modules.TypeD
     @Nonnull
     private final Map<String, TypeDescriptorField> fields;
 
+    private long activatingNanos;
+
     TypeDescriptor( @Nonnull ModuleImpl module, @Nonnull Class<?> type )
     {
         this.module = module;
@@ -154,4 +156,16 @@ final class TypeDescriptor extends Lifecycle implements org.mosaic.modules.TypeD
     {
         return this.type;
     }
+
+    @Override
+    protected synchronized void onBeforeActivate()
+    {
+        this.activatingNanos = System.nanoTime();
+    }
+
+    @Override
+    protected synchronized void onAfterActivate()
+    {
+        Activator.getStartupRecorder().record( this.module.toString(), this.type.getName(), "activate", this.activatingNanos );
+    }
 }
@@ -18,8 +18,6 @@ import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.util.tracker.ServiceTracker;
 import org.osgi.util.tracker.ServiceTrackerCustomizer;
 
-import static org.osgi.framework.FrameworkUtil.createFilter;
-
 /**
  * @author arik
  */
@@ -67,7 +65,7 @@ final class TypeDescriptorFieldServiceList extends TypeDescriptorField
             {
                 throw new IllegalStateException( "no bundle context for module " + typeDescriptor.getModule() );
             }
-            this.serviceTracker = new ServiceTracker( bundleContext, createFilter( this.requiredFilter ), this );
+            this.serviceTracker = new ServiceTracker( bundleContext, FilterBuilder.parse( this.requiredFilter ), this );
         }
         catch( InvalidSyntaxException e )
         {
@@ -16,7 +16,6 @@ import org.mosaic.util.collections.MapEx;
 import org.mosaic.util.osgi.FilterBuilder;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
-import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.util.tracker.ServiceTracker;
@@ -44,6 +43,11 @@ final class TypeDescriptorFieldServiceProxy extends TypeDescriptorField
     @Nullable
     private Object service;
 
+    /**
+     * The time at which we started waiting for our service, or zero if we are not waiting.
+     */
+    private volatile long waitingSinceNanos;
+
     TypeDescriptorFieldServiceProxy( @Nonnull TypeDescriptor typeDescriptor, @Nonnull Field field )
     {
         super( typeDescriptor, field );
@@ -82,7 +86,7 @@ final class TypeDescriptorFieldServiceProxy extends TypeDescriptorField
             {
                 throw new IllegalStateException( "no bundle context for module " + typeDescriptor.getModule() );
             }
-            this.serviceTracker = new ServiceTracker( bundleContext, FrameworkUtil.createFilter( this.filter ), this );
+            this.serviceTracker = new ServiceTracker( bundleContext, FilterBuilder.parse( this.filter ), this );
         }
         catch( InvalidSyntaxException e )
         {
@@ -174,6 +178,16 @@ final class TypeDescriptorFieldServiceProxy extends TypeDescriptorField
             if( service != null )
             {
                 this.service = service;
+
+                long waitingSinceNanos = this.waitingSinceNanos;
+                if( waitingSinceNanos > 0 )
+                {
+                    this.waitingSinceNanos = 0;
+                    Activator.getStartupRecorder().record( this.typeDescriptor.getModule().toString(),
+                                                           this.serviceType.getServiceClass().getName(),
+                                                           "wait for service",
+                                                           waitingSinceNanos );
+                }
                 try
                 {
                     this.typeDescriptor.getModule().activate();
@@ -210,6 +224,7 @@ final class TypeDescriptorFieldServiceProxy extends TypeDescriptorField
             }
 
             this.service = null;
+            this.waitingSinceNanos = System.nanoTime();
             this.typeDescriptor.getModule().deactivate();
         }
     }
@@ -231,11 +246,16 @@ final class TypeDescriptorFieldServiceProxy extends TypeDescriptorField
     protected synchronized void onAfterStart()
     {
         this.serviceTracker.open();
+        if( this.service == null )
+        {
+            this.waitingSinceNanos = System.nanoTime();
+        }
     }
 
     @Override
     protected synchronized void onBeforeStop()
     {
+        this.waitingSinceNanos = 0;
         this.serviceTracker.close();
     }
 
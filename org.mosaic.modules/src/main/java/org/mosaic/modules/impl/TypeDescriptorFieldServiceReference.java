@@ -17,7 +17,6 @@ import org.mosaic.util.collections.MapEx;
 import org.mosaic.util.osgi.FilterBuilder;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
-import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.util.tracker.ServiceTracker;
 
@@ -65,7 +64,7 @@ final class TypeDescriptorFieldServiceReference extends TypeDescriptorField
             {
                 throw new IllegalStateException( "no bundle context for module " + this.typeDescriptor.getModule() );
             }
-            this.serviceTracker = new ServiceTracker( bundleContext, FrameworkUtil.createFilter( this.filter ), null );
+            this.serviceTracker = new ServiceTracker( bundleContext, FilterBuilder.parse( this.filter ), null );
         }
         catch( InvalidSyntaxException e )
         {
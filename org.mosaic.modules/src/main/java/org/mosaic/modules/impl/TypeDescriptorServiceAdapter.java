@@ -101,7 +101,7 @@ final class TypeDescriptorServiceAdapter extends Lifecycle
             {
                 throw new IllegalStateException( "no bundle context for module " + typeDescriptor.getModule() );
             }
-            this.serviceTracker = new ServiceTracker<>( bundleContext, FrameworkUtil.createFilter( this.filter ), this );
+            this.serviceTracker = new ServiceTracker<>( bundleContext, FilterBuilder.parse( this.filter ), this );
         }
         catch( InvalidSyntaxException e )
         {
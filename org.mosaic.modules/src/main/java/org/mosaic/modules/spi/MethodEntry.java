@@ -50,6 +50,13 @@ public class MethodEntry
         }
     }
 
+    MethodEntry( long id, long moduleId, @Nonnull Method method )
+    {
+        this.id = id;
+        this.moduleId = moduleId;
+        this.method = method;
+    }
+
     public long getId()
     {
         return this.id;
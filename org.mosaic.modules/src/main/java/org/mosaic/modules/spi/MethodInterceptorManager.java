@@ -10,6 +10,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.mosaic.util.collections.HashMapEx;
 import org.mosaic.util.collections.MapEx;
+import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.osgi.util.tracker.ServiceTracker;
 import org.osgi.util.tracker.ServiceTrackerCustomizer;
@@ -71,34 +72,7 @@ final class MethodInterceptorManager
                         } );
 
     @Nonnull
-    private final ServiceTracker<MethodInterceptor, MethodInterceptor> interceptorsTracker =
-            new ServiceTracker<>( bundleContext( getClass() ),
-                                  MethodInterceptor.class,
-                                  new ServiceTrackerCustomizer<MethodInterceptor, MethodInterceptor>()
-                                  {
-                                      @Override
-                                      public MethodInterceptor addingService( @Nonnull ServiceReference<MethodInterceptor> reference )
-                                      {
-                                          MethodInterceptorManager.this.methodInterceptorsCache.invalidateAll();
-                                          //noinspection ConstantConditions
-                                          return bundleContext( getClass() ).getService( reference );
-                                      }
-
-                                      @Override
-                                      public void modifiedService( @Nonnull ServiceReference<MethodInterceptor> reference,
-                                                                   @Nonnull MethodInterceptor service )
-                                      {
-                                          MethodInterceptorManager.this.methodInterceptorsCache.invalidateAll();
-                                      }
-
-                                      @Override
-                                      public void removedService( @Nonnull ServiceReference<MethodInterceptor> reference,
-                                                                  @Nonnull MethodInterceptor service )
-                                      {
-                                          MethodInterceptorManager.this.methodInterceptorsCache.invalidateAll();
-                                      }
-                                  }
-            );
+    private final ServiceTracker<MethodInterceptor, MethodInterceptor> interceptorsTracker;
 
     @Nonnull
     private final ThreadLocal<Deque<InvocationContext>> contextHolder = new ThreadLocal<Deque<InvocationContext>>()
@@ -112,6 +86,39 @@ final class MethodInterceptorManager
 
     MethodInterceptorManager()
     {
+        //noinspection ConstantConditions
+        this( bundleContext( MethodInterceptorManager.class ) );
+    }
+
+    MethodInterceptorManager( @Nonnull final BundleContext bundleContext )
+    {
+        this.interceptorsTracker = new ServiceTracker<>(
+                bundleContext,
+                MethodInterceptor.class,
+                new ServiceTrackerCustomizer<MethodInterceptor, MethodInterceptor>()
+                {
+                    @Override
+                    public MethodInterceptor addingService( @Nonnull ServiceReference<MethodInterceptor> reference )
+                    {
+                        MethodInterceptorManager.this.methodInterceptorsCache.invalidateAll();
+                        return bundleContext.getService( reference );
+                    }
+
+                    @Override
+                    public void modifiedService( @Nonnull ServiceReference<MethodInterceptor> reference,
+                                                 @Nonnull MethodInterceptor service )
+                    {
+                        MethodInterceptorManager.this.methodInterceptorsCache.invalidateAll();
+                    }
+
+                    @Override
+                    public void removedService( @Nonnull ServiceReference<MethodInterceptor> reference,
+                                                @Nonnull MethodInterceptor service )
+                    {
+                        MethodInterceptorManager.this.methodInterceptorsCache.invalidateAll();
+                    }
+                }
+        );
         this.interceptorsTracker.open();
     }
 
@@ -0,0 +1,128 @@
+package org.mosaic.security.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.mosaic.security.AuthenticationResult;
+
+/**
+ * Short-lived cache of successful credential verifications, allowing repeated logins (e.g. HTTP Basic authentication,
+ * which sends the credentials on every request) to skip the slow password hash.
+ * <p/>
+ * Entries are keyed by an HMAC of the realm, user name and password, computed with a random per-process key - neither
+ * the password nor an offline-attackable hash of it is ever kept in memory.
+ * <p/>
+ * Verifications are stored along with the {@link #getGeneration() generation} at which the verified password was read,
+ * so a verification against a password which was replaced (and the cache {@link #clear() cleared}) in the meantime is
+ * never stored.
+ *
+ * @author arik
+ */
+final class CredentialsCache
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    @Nonnull
+    private final SecretKeySpec key;
+
+    @Nonnull
+    private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>()
+    {
+        @Override
+        protected Mac initialValue()
+        {
+            try
+            {
+                Mac mac = Mac.getInstance( MAC_ALGORITHM );
+                mac.init( CredentialsCache.this.key );
+                return mac;
+            }
+            catch( GeneralSecurityException e )
+            {
+                throw new IllegalStateException( "could not create " + MAC_ALGORITHM + " instance: " + e.getMessage(), e );
+            }
+        }
+    };
+
+    @Nonnull
+    private final Cache<ByteBuffer, AuthenticationResult> results;
+
+    @Nonnull
+    private final AtomicLong generation = new AtomicLong();
+
+    CredentialsCache( long ttl, @Nonnull TimeUnit unit, long maximumSize )
+    {
+        byte[] keyBytes = new byte[ 32 ];
+        new SecureRandom().nextBytes( keyBytes );
+        this.key = new SecretKeySpec( keyBytes, MAC_ALGORITHM );
+        this.results = CacheBuilder.newBuilder()
+                                   .concurrencyLevel( 16 )
+                                   .expireAfterWrite( ttl, unit )
+                                   .maximumSize( maximumSize )
+                                   .build();
+    }
+
+    @Nullable
+    AuthenticationResult get( @Nonnull String realm, @Nonnull String username, @Nonnull byte[] password )
+    {
+        return this.results.getIfPresent( digest( realm, username, password ) );
+    }
+
+    /**
+     * Returns the current generation, which must be read before reading the password that is then verified and
+     * {@link #put(String, String, byte[], AuthenticationResult, long) put}.
+     */
+    long getGeneration()
+    {
+        return this.generation.get();
+    }
+
+    void put( @Nonnull String realm,
+              @Nonnull String username,
+              @Nonnull byte[] password,
+              @Nonnull AuthenticationResult result,
+              long generation )
+    {
+        ByteBuffer digest = digest( realm, username, password );
+        this.results.put( digest, result );
+
+        // if cleared since the password was read, the verification may be stale - and that clear may have missed it
+        if( this.generation.get() != generation )
+        {
+            this.results.invalidate( digest );
+        }
+    }
+
+    void clear()
+    {
+        this.generation.incrementAndGet();
+        this.results.invalidateAll();
+    }
+
+    @Nonnull
+    private ByteBuffer digest( @Nonnull String realm, @Nonnull String username, @Nonnull byte[] password )
+    {
+        byte[] realmBytes = realm.getBytes( UTF_8 );
+        byte[] usernameBytes = username.getBytes( UTF_8 );
+
+        // length-prefix each component so that ("ab","c") and ("a","bc") produce different digests
+        Mac mac = this.macs.get();
+        mac.update( ByteBuffer.allocate( 4 ).putInt( 0, realmBytes.length ) );
+        mac.update( realmBytes );
+        mac.update( ByteBuffer.allocate( 4 ).putInt( 0, usernameBytes.length ) );
+        mac.update( usernameBytes );
+        mac.update( password );
+        return ByteBuffer.wrap( mac.doFinal() );
+    }
+}
@@ -6,21 +6,28 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import org.mosaic.modules.Component;
-import org.mosaic.modules.Service;
+import org.mosaic.pathwatchers.OnPathCreated;
+import org.mosaic.pathwatchers.OnPathDeleted;
+import org.mosaic.pathwatchers.OnPathModified;
 import org.mosaic.security.*;
 import org.mosaic.security.support.PublicKeyAuthenticationToken;
 import org.mosaic.security.support.UsernameNoneAuthToken;
 import org.mosaic.security.support.UsernamePasswordAuthToken;
-import org.mosaic.server.Server;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static java.nio.file.Files.*;
-
 /**
+ * Authenticates users defined in the {@code etc/security/local} directory: passwords are read from the {@code passwd}
+ * file (see {@link StoredPassword} for supported formats) and SSH public keys from {@code <user>.keys} files. Both are
+ * indexed in memory and re-loaded by the path watcher when changed.
+ *
  * @author arik
  */
 @Component
@@ -28,11 +35,24 @@ final class LocalUsersRealm
 {
     private static final Logger LOG = LoggerFactory.getLogger( LocalUsersRealm.class );
 
-    @Service
+    private static final String REALM_NAME = "localUsers";
+
+    private static final String LOCAL_SECURITY_PATH = "${mosaic.home.etc}/security/local/*";
+
+    private static final String PASSWD_FILE_NAME = "passwd";
+
+    private static final String KEYS_FILE_SUFFIX = ".keys";
+
+    @Nonnull
+    private final CredentialsCache credentialsCache = new CredentialsCache( 30, TimeUnit.SECONDS, 10000 );
+
+    @Nonnull
+    private volatile Map<String, StoredPassword> passwords = Collections.emptyMap();
+
     @Nonnull
-    private Server server;
+    private final Map<String, AuthorizedKeys> authorizedKeys = new ConcurrentHashMap<>();
 
-    @Realm("localUsers")
+    @Realm( REALM_NAME )
     public AuthenticationResult authenticateLocalUser( @Nonnull AuthenticationToken authenticationToken )
     {
         if( authenticationToken instanceof UsernamePasswordAuthToken )
@@ -50,76 +70,142 @@ final class LocalUsersRealm
         throw new IllegalArgumentException( "Unsupported authentication token: " + authenticationToken );
     }
 
-    @Nonnull
-    private AuthenticationResult authenticateUsernameAndPassword( @Nonnull UsernamePasswordAuthToken token )
+    @OnPathCreated( LOCAL_SECURITY_PATH )
+    @OnPathModified( LOCAL_SECURITY_PATH )
+    void loadLocalSecurityFile( @Nonnull Path file )
     {
-        Path passwdFile = getLocalSecurityHome().resolve( "passwd" );
-        if( notExists( passwdFile ) || !isReadable( passwdFile ) )
+        String fileName = file.getFileName().toString();
+        if( PASSWD_FILE_NAME.equals( fileName ) )
         {
-            throw new AuthenticationException( "bad credentials", token );
+            loadPasswords( file );
+        }
+        else if( fileName.endsWith( KEYS_FILE_SUFFIX ) )
+        {
+            loadAuthorizedKeys( file, fileName.substring( 0, fileName.length() - KEYS_FILE_SUFFIX.length() ) );
+        }
+    }
+
+    @OnPathDeleted( LOCAL_SECURITY_PATH )
+    void unloadLocalSecurityFile( @Nonnull Path file )
+    {
+        String fileName = file.getFileName().toString();
+        if( PASSWD_FILE_NAME.equals( fileName ) )
+        {
+            this.passwords = Collections.emptyMap();
+            this.credentialsCache.clear();
+        }
+        else if( fileName.endsWith( KEYS_FILE_SUFFIX ) )
+        {
+            this.authorizedKeys.remove( fileName.substring( 0, fileName.length() - KEYS_FILE_SUFFIX.length() ) );
         }
+    }
 
+    private void loadPasswords( @Nonnull Path passwdFile )
+    {
         Properties properties = new Properties();
-        try( Reader reader = newBufferedReader( passwdFile, Charset.forName( "UTF-8" ) ) )
+        try( Reader reader = Files.newBufferedReader( passwdFile, Charset.forName( "UTF-8" ) ) )
         {
             properties.load( reader );
         }
         catch( Exception e )
         {
             LOG.warn( "Error reading passwords from '{}': {}", passwdFile, e.getMessage(), e );
-            throw new AuthenticationException( "bad credentials", token );
+            return;
         }
 
-        String storedPassword = properties.getProperty( token.getUsername() );
-        if( storedPassword == null || storedPassword.isEmpty() )
+        Map<String, StoredPassword> passwords = new HashMap<>();
+        for( String username : properties.stringPropertyNames() )
         {
-            throw new AuthenticationException( "bad credentials", token );
+            String value = properties.getProperty( username );
+            if( value != null && !value.isEmpty() )
+            {
+                try
+                {
+                    passwords.put( username, StoredPassword.parse( value ) );
+                }
+                catch( Exception e )
+                {
+                    LOG.warn( "Illegal password entry for user '{}' in '{}': {}", username, passwdFile, e.getMessage() );
+                }
+            }
         }
 
-        byte[] attemptedPasswordBytes = token.getPassword();
-        if( attemptedPasswordBytes == null )
+        // passwords may have been changed or removed - any cached verification is potentially stale now
+        this.passwords = Collections.unmodifiableMap( passwords );
+        this.credentialsCache.clear();
+    }
+
+    private void loadAuthorizedKeys( @Nonnull Path keysFile, @Nonnull String username )
+    {
+        try
+        {
+            String keys = new String( Files.readAllBytes( keysFile ), Charset.forName( "UTF-8" ) );
+            this.authorizedKeys.put( username, new AuthorizedKeys( keys.trim() ) );
+        }
+        catch( IOException e )
+        {
+            LOG.warn( "Error reading SSH authorized keys for user '{}' from '{}': {}", username, keysFile, e.getMessage(), e );
+            this.authorizedKeys.remove( username );
+        }
+    }
+
+    @Nonnull
+    private AuthenticationResult authenticateUsernameAndPassword( @Nonnull UsernamePasswordAuthToken token )
+    {
+        byte[] attemptedPassword = token.getPassword();
+        if( attemptedPassword == null )
         {
             throw new AuthenticationException( "bad credentials", token );
         }
-        String attemptedPassword = new String( attemptedPasswordBytes, Charset.forName( "UTF-8" ) );
 
-        if( !storedPassword.equals( attemptedPassword ) )
+        long generation = this.credentialsCache.getGeneration();
+        StoredPassword storedPassword = this.passwords.get( token.getUsername() );
+        if( storedPassword == null )
         {
             throw new AuthenticationException( "bad credentials", token );
         }
+        else if( !storedPassword.isSlow() )
+        {
+            if( !storedPassword.matches( attemptedPassword ) )
+            {
+                throw new AuthenticationException( "bad credentials", token );
+            }
+            return createAuthenticationResult( token.getUsername() );
+        }
 
-        return new AuthenticationResult( token.getUsername(),
-                                         Collections.<String>emptySet(),
-                                         Collections.<Principal>emptySet(),
-                                         Collections.emptySet() );
+        AuthenticationResult result = this.credentialsCache.get( REALM_NAME, token.getUsername(), attemptedPassword );
+        if( result == null )
+        {
+            if( !storedPassword.matches( attemptedPassword ) )
+            {
+                throw new AuthenticationException( "bad credentials", token );
+            }
+            result = createAuthenticationResult( token.getUsername() );
+            this.credentialsCache.put( REALM_NAME, token.getUsername(), attemptedPassword, result, generation );
+        }
+        return result;
     }
 
     @Nonnull
     private AuthenticationResult authenticatePublicKey( @Nonnull PublicKeyAuthenticationToken token )
     {
-        Path keysFile = getLocalSecurityHome().resolve( token.getUsername() + ".keys" );
-        if( notExists( keysFile ) || !isReadable( keysFile ) )
+        AuthorizedKeys authorizedKeys = this.authorizedKeys.get( token.getUsername() );
+        if( authorizedKeys == null )
         {
             throw new AuthenticationException( "bad credentials", token );
         }
 
         try
         {
-            String keys = new String( Files.readAllBytes( keysFile ), Charset.forName( "UTF-8" ) );
-            AuthorizedKeys authorizedKeys = new AuthorizedKeys( keys.trim() );
             if( !authorizedKeys.authorizedFor( token.getPublicKey() ) )
             {
                 throw new AuthenticationException( "bad credentials", token );
             }
-
-            return new AuthenticationResult( token.getUsername(),
-                                             Collections.<String>emptySet(),
-                                             Collections.<Principal>emptySet(),
-                                             Collections.emptySet() );
+            return createAuthenticationResult( token.getUsername() );
         }
         catch( IOException e )
         {
-            LOG.warn( "Error reading SSH authorized keys for user '{}' from '{}': {}", token.getUsername(), keysFile, e.getMessage(), e );
+            LOG.warn( "Error matching SSH authorized keys for user '{}': {}", token.getUsername(), e.getMessage(), e );
             throw new AuthenticationException( "bad credentials", token );
         }
     }
@@ -127,15 +213,15 @@ final class LocalUsersRealm
     @Nonnull
     private AuthenticationResult authenticateNone( @Nonnull UsernameNoneAuthToken token )
     {
-        return new AuthenticationResult( token.getUsername(),
-                                         Collections.<String>emptySet(),
-                                         Collections.<Principal>emptySet(),
-                                         Collections.emptySet() );
+        return createAuthenticationResult( token.getUsername() );
     }
 
     @Nonnull
-    private Path getLocalSecurityHome()
+    private AuthenticationResult createAuthenticationResult( @Nonnull String username )
     {
-        return this.server.getEtcPath().resolve( "security" ).resolve( "local" );
+        return new AuthenticationResult( username,
+                                         Collections.<String>emptySet(),
+                                         Collections.<Principal>emptySet(),
+                                         Collections.emptySet() );
     }
 }
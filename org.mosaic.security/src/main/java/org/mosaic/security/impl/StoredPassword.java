@@ -0,0 +1,157 @@
+package org.mosaic.security.impl;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import javax.annotation.Nonnull;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * A password entry from the local users {@code passwd} file.
+ * <p/>
+ * Entries are either plain text (for backwards compatibility) or salted PBKDF2 hashes in the form
+ * {@code {PBKDF2}<iterations>:<base64 salt>:<base64 hash>} (HMAC-SHA1) or
+ * {@code {PBKDF2-SHA256}<iterations>:<base64 salt>:<base64 hash>} (HMAC-SHA256, where supported by the JVM).
+ *
+ * @author arik
+ */
+abstract class StoredPassword
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final String PBKDF2_SHA1_PREFIX = "{PBKDF2}";
+
+    private static final String PBKDF2_SHA256_PREFIX = "{PBKDF2-SHA256}";
+
+    @Nonnull
+    static StoredPassword parse( @Nonnull String value ) throws GeneralSecurityException
+    {
+        if( value.startsWith( PBKDF2_SHA1_PREFIX ) )
+        {
+            return new Pbkdf2Password( "PBKDF2WithHmacSHA1", value.substring( PBKDF2_SHA1_PREFIX.length() ) );
+        }
+        else if( value.startsWith( PBKDF2_SHA256_PREFIX ) )
+        {
+            return new Pbkdf2Password( "PBKDF2WithHmacSHA256", value.substring( PBKDF2_SHA256_PREFIX.length() ) );
+        }
+        else
+        {
+            return new PlainPassword( value );
+        }
+    }
+
+    @Nonnull
+    private static byte[] pbkdf2( @Nonnull String algorithm,
+                                  @Nonnull byte[] password,
+                                  @Nonnull byte[] salt,
+                                  int iterations,
+                                  int keyLength )
+            throws NoSuchAlgorithmException, InvalidKeySpecException
+    {
+        PBEKeySpec spec = new PBEKeySpec( new String( password, UTF_8 ).toCharArray(), salt, iterations, keyLength );
+        try
+        {
+            return SecretKeyFactory.getInstance( algorithm ).generateSecret( spec ).getEncoded();
+        }
+        finally
+        {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * Returns {@code true} if verifying this password is expensive enough to be worth caching.
+     */
+    abstract boolean isSlow();
+
+    abstract boolean matches( @Nonnull byte[] attemptedPassword );
+
+    private static final class PlainPassword extends StoredPassword
+    {
+        @Nonnull
+        private final byte[] password;
+
+        private PlainPassword( @Nonnull String password )
+        {
+            this.password = password.getBytes( UTF_8 );
+        }
+
+        @Override
+        boolean isSlow()
+        {
+            return false;
+        }
+
+        @Override
+        boolean matches( @Nonnull byte[] attemptedPassword )
+        {
+            return MessageDigest.isEqual( this.password, attemptedPassword );
+        }
+    }
+
+    private static final class Pbkdf2Password extends StoredPassword
+    {
+        @Nonnull
+        private final String algorithm;
+
+        private final int iterations;
+
+        @Nonnull
+        private final byte[] salt;
+
+        @Nonnull
+        private final byte[] hash;
+
+        private Pbkdf2Password( @Nonnull String algorithm, @Nonnull String value ) throws GeneralSecurityException
+        {
+            String[] tokens = value.split( ":" );
+            if( tokens.length != 3 )
+            {
+                throw new InvalidKeySpecException( "illegal PBKDF2 password entry (expected '<iterations>:<salt>:<hash>')" );
+            }
+
+            this.algorithm = algorithm;
+            try
+            {
+                this.iterations = Integer.parseInt( tokens[ 0 ] );
+            }
+            catch( NumberFormatException e )
+            {
+                throw new InvalidKeySpecException( "illegal PBKDF2 iterations count: " + tokens[ 0 ] );
+            }
+            this.salt = Base64.decodeBase64( tokens[ 1 ] );
+            this.hash = Base64.decodeBase64( tokens[ 2 ] );
+            if( this.iterations <= 0 || this.salt.length == 0 || this.hash.length == 0 )
+            {
+                throw new InvalidKeySpecException( "illegal PBKDF2 password entry" );
+            }
+
+            // fail now rather than on first login if this JVM does not support the algorithm
+            SecretKeyFactory.getInstance( this.algorithm );
+        }
+
+        @Override
+        boolean isSlow()
+        {
+            return true;
+        }
+
+        @Override
+        boolean matches( @Nonnull byte[] attemptedPassword )
+        {
+            try
+            {
+                byte[] attemptedHash = pbkdf2( this.algorithm, attemptedPassword, this.salt, this.iterations, this.hash.length * 8 );
+                return MessageDigest.isEqual( this.hash, attemptedHash );
+            }
+            catch( GeneralSecurityException e )
+            {
+                throw new IllegalStateException( "could not compute " + this.algorithm + " hash: " + e.getMessage(), e );
+            }
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.google.common.base.Optional;
 import java.util.Collections;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.mosaic.metrics.Counter;
+import org.mosaic.metrics.Metrics;
 import org.mosaic.modules.MethodEndpoint;
 import org.mosaic.tasks.Task;
 import org.mosaic.util.collections.MapEx;
@@ -19,6 +21,8 @@ final class TaskAdapter
 {
     private static final Logger LOG = LoggerFactory.getLogger( TaskAdapter.class );
 
+    private static final Counter FAILURES = Metrics.counter( "tasks.failures" );
+
     @Nonnull
     private final MethodEndpoint<Task> endpoint;
 
@@ -67,6 +71,7 @@ final class TaskAdapter
         }
         catch( Throwable e )
         {
+            FAILURES.increment();
             LOG.error( "Task '{}' threw an exception: {}", this.endpoint, e.getMessage(), e );
         }
     }
@@ -12,6 +12,8 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
 import org.mosaic.config.Configurable;
+import org.mosaic.metrics.Histogram;
+import org.mosaic.metrics.Metrics;
 import org.mosaic.modules.Component;
 import org.mosaic.util.collections.EmptyMapEx;
 import org.mosaic.util.collections.HashMapEx;
@@ -152,6 +154,9 @@ final class TaskSchedulerImpl
         @Nonnull
         private final MapEx<String, String> properties;
 
+        @Nonnull
+        private final Histogram executionTime;
+
         private TaskSchedule( @Nonnull String taskName,
                               @Nonnull CronExpression cronExpression,
                               @Nonnull MapEx<String, String> taskProperties )
@@ -159,6 +164,7 @@ final class TaskSchedulerImpl
             this.taskName = taskName;
             this.cronExpression = cronExpression;
             this.properties = taskProperties;
+            this.executionTime = Metrics.histogram( "tasks." + taskName );
         }
 
         private void scheduleNextInvocation()
@@ -210,7 +216,9 @@ final class TaskSchedulerImpl
                 TaskAdapter adapter = TaskSchedulerImpl.this.tasksManager.findTask( TaskSchedule.this.taskName );
                 if( adapter != null )
                 {
+                    long start = System.nanoTime();
                     adapter.execute( TaskSchedule.this.properties );
+                    TaskSchedule.this.executionTime.record( System.nanoTime() - start );
                 }
 
                 // schedule next invocation
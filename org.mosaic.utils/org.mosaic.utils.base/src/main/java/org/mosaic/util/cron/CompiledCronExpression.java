@@ -0,0 +1,463 @@
+package org.mosaic.util.cron;
+
+import java.util.Set;
+import java.util.TimeZone;
+import javax.annotation.Nonnull;
+
+/**
+ * Bitmask-compiled form of a {@link CronExpression}, used to compute next fire times without {@link java.util.Calendar}
+ * instances or boxed integers.
+ * <p>
+ * Each field is compiled into a {@code long} bitmask (years into an array of such masks), and the search for the next
+ * fire time jumps between set bits using {@link Long#numberOfTrailingZeros(long)}. The search is performed on local
+ * ("wall") date/time fields which are converted to an instant only when a candidate is found, using the same
+ * resolution rules as {@link java.util.GregorianCalendar} does: wall times falling into a daylight-saving gap do not
+ * exist and are skipped, and ambiguous wall times (during a daylight-saving overlap) resolve to the later instant.
+ * <p>
+ * Expressions using the {@code L}, {@code W} or {@code #} modifiers are not compiled - {@link #compile(CronExpression)}
+ * returns {@code null} for those and the expression keeps using its calendar-based computation.
+ *
+ * @author arik
+ */
+final class CompiledCronExpression
+{
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * MILLIS_PER_SECOND;
+
+    /**
+     * Days between 0000-03-01 and 1970-01-01 in the proleptic Gregorian calendar.
+     */
+    private static final long DAYS_0000_TO_1970 = 719468L;
+
+    /**
+     * Maximum distance (in each direction) to look for a nearby time-zone offset transition when resolving wall times.
+     */
+    private static final long TRANSITION_WINDOW = 6L * 60 * 60 * MILLIS_PER_SECOND;
+
+    private static final int MAX_YEAR = 2999;
+
+    /**
+     * Returned by {@link #getTimeAfter(long, TimeZone)} when the expression never fires again (any other value,
+     * including negative ones for fire times before 1970, is a valid instant).
+     */
+    static final long NO_TIME = Long.MIN_VALUE;
+
+    static CompiledCronExpression compile( @Nonnull CronExpression expression )
+    {
+        if( expression.lastdayOfWeek || expression.nthdayOfWeek != 0 || expression.lastdayOfMonth || expression.nearestWeekday )
+        {
+            return null;
+        }
+
+        boolean dayOfWeekMode = expression.daysOfMonth.contains( CronExpression.NO_SPEC );
+
+        int baseYear = Integer.MAX_VALUE;
+        int maxYear = Integer.MIN_VALUE;
+        for( Integer year : expression.years )
+        {
+            if( !isMarker( year ) )
+            {
+                baseYear = Math.min( baseYear, year );
+                maxYear = Math.max( maxYear, year );
+            }
+        }
+        long[] years;
+        if( baseYear > maxYear )
+        {
+            baseYear = 0;
+            years = new long[ 0 ];
+        }
+        else
+        {
+            years = new long[ ( maxYear - baseYear ) / 64 + 1 ];
+            for( Integer year : expression.years )
+            {
+                if( !isMarker( year ) )
+                {
+                    int bit = year - baseYear;
+                    years[ bit >>> 6 ] |= 1L << bit;
+                }
+            }
+        }
+
+        return new CompiledCronExpression( toMask( expression.seconds ),
+                                           toMask( expression.minutes ),
+                                           toMask( expression.hours ),
+                                           dayOfWeekMode ? 0 : toMask( expression.daysOfMonth ),
+                                           toMask( expression.months ),
+                                           dayOfWeekMode ? toMask( expression.daysOfWeek ) : 0,
+                                           dayOfWeekMode,
+                                           baseYear,
+                                           years,
+                                           Math.min( CronExpression.MAX_YEAR, MAX_YEAR ) );
+    }
+
+    private static boolean isMarker( int value )
+    {
+        return value == CronExpression.ALL_SPEC_INT || value == CronExpression.NO_SPEC_INT;
+    }
+
+    private static long toMask( @Nonnull Set<Integer> values )
+    {
+        long mask = 0;
+        for( Integer value : values )
+        {
+            if( !isMarker( value ) && value >= 0 && value < 64 )
+            {
+                mask |= 1L << value;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the lowest set bit in {@code mask} which is greater than or equal to {@code from}, or {@code -1} if none.
+     */
+    private static int nextSetBit( long mask, int from )
+    {
+        if( from >= 64 )
+        {
+            return -1;
+        }
+        long masked = mask & ( -1L << from );
+        return masked == 0 ? -1 : Long.numberOfTrailingZeros( masked );
+    }
+
+    private static long floorDiv( long x, long y )
+    {
+        long q = x / y;
+        if( ( x % y != 0 ) && ( ( x ^ y ) < 0 ) )
+        {
+            q--;
+        }
+        return q;
+    }
+
+    private static boolean isLeapYear( int year )
+    {
+        return ( year % 4 == 0 && year % 100 != 0 ) || year % 400 == 0;
+    }
+
+    private static int getLastDayOfMonth( int month, int year )
+    {
+        switch( month )
+        {
+            case 2:
+                return isLeapYear( year ) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Converts a civil date to days since 1970-01-01 (proleptic Gregorian calendar).
+     */
+    private static long toEpochDay( int year, int month, int day )
+    {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv( y, 400 );
+        long yearOfEra = y - era * 400;
+        long dayOfYear = ( 153 * ( month + ( month > 2 ? -3 : 9 ) ) + 2 ) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * Returns the day-of-week of the given epoch day, using {@link java.util.Calendar} numbering (Sunday=1..Saturday=7).
+     */
+    private static int getDayOfWeek( long epochDay )
+    {
+        // 1970-01-01 was a Thursday (5)
+        int dow = ( int ) ( ( epochDay + 4 ) % 7 );
+        return ( dow < 0 ? dow + 7 : dow ) + 1;
+    }
+
+    private final long seconds;
+
+    private final long minutes;
+
+    private final long hours;
+
+    private final long daysOfMonth;
+
+    private final long months;
+
+    private final long daysOfWeek;
+
+    private final boolean dayOfWeekMode;
+
+    private final int baseYear;
+
+    @Nonnull
+    private final long[] years;
+
+    private final int maxYear;
+
+    private CompiledCronExpression( long seconds,
+                                    long minutes,
+                                    long hours,
+                                    long daysOfMonth,
+                                    long months,
+                                    long daysOfWeek,
+                                    boolean dayOfWeekMode,
+                                    int baseYear,
+                                    @Nonnull long[] years,
+                                    int maxYear )
+    {
+        this.seconds = seconds;
+        this.minutes = minutes;
+        this.hours = hours;
+        this.daysOfMonth = daysOfMonth;
+        this.months = months;
+        this.daysOfWeek = daysOfWeek;
+        this.dayOfWeekMode = dayOfWeekMode;
+        this.baseYear = baseYear;
+        this.years = years;
+        this.maxYear = maxYear;
+    }
+
+    /**
+     * Computes the first fire time strictly after the given instant.
+     *
+     * @param afterTime the instant (epoch millis) to compute the next fire time after
+     * @param timeZone  the time-zone in which the expression is evaluated
+     * @return the next fire time (epoch millis), or {@link #NO_TIME} if the expression never fires again
+     */
+    long getTimeAfter( long afterTime, @Nonnull TimeZone timeZone )
+    {
+        // move ahead one second (we're computing the time *after* the given time) and drop milliseconds
+        long start = floorDiv( afterTime + MILLIS_PER_SECOND, MILLIS_PER_SECOND ) * MILLIS_PER_SECOND;
+
+        // break the start instant into local date/time fields
+        long local = start + timeZone.getOffset( start );
+        long epochDay = floorDiv( local, MILLIS_PER_DAY );
+        int secondOfDay = ( int ) ( ( local - epochDay * MILLIS_PER_DAY ) / MILLIS_PER_SECOND );
+
+        long shiftedDay = epochDay + DAYS_0000_TO_1970;
+        long era = floorDiv( shiftedDay, 146097 );
+        long dayOfEra = shiftedDay - era * 146097;
+        long yearOfEra = ( dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096 ) / 365;
+        long dayOfYear = dayOfEra - ( 365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100 );
+        long mp = ( 5 * dayOfYear + 2 ) / 153;
+
+        int day = ( int ) ( dayOfYear - ( 153 * mp + 2 ) / 5 + 1 );
+        int month = ( int ) ( mp < 10 ? mp + 3 : mp - 9 );
+        int year = ( int ) ( yearOfEra + era * 400 + ( month <= 2 ? 1 : 0 ) );
+        int hour = secondOfDay / 3600;
+        int minute = secondOfDay / 60 % 60;
+        int second = secondOfDay % 60;
+
+        while( true )
+        {
+            // propagate carries from a previous iteration
+            if( second > 59 )
+            {
+                second = 0;
+                minute++;
+            }
+            if( minute > 59 )
+            {
+                minute = 0;
+                hour++;
+            }
+            if( hour > 23 )
+            {
+                hour = 0;
+                day++;
+            }
+            if( day > getLastDayOfMonth( month, year ) )
+            {
+                day = 1;
+                month++;
+            }
+            if( month > 12 )
+            {
+                month = 1;
+                year++;
+            }
+            if( year > this.maxYear )
+            {
+                return NO_TIME;
+            }
+
+            // year
+            int nextYear = nextYear( year );
+            if( nextYear < 0 || nextYear > this.maxYear )
+            {
+                return NO_TIME;
+            }
+            else if( nextYear != year )
+            {
+                year = nextYear;
+                month = 1;
+                day = 1;
+                hour = minute = second = 0;
+            }
+
+            // month
+            int nextMonth = nextSetBit( this.months, month );
+            if( nextMonth < 0 )
+            {
+                year++;
+                month = 1;
+                day = 1;
+                hour = minute = second = 0;
+                continue;
+            }
+            else if( nextMonth != month )
+            {
+                month = nextMonth;
+                day = 1;
+                hour = minute = second = 0;
+            }
+
+            // day
+            int nextDay = nextDay( year, month, day );
+            if( nextDay < 0 )
+            {
+                month++;
+                day = 1;
+                hour = minute = second = 0;
+                continue;
+            }
+            else if( nextDay != day )
+            {
+                day = nextDay;
+                hour = minute = second = 0;
+            }
+
+            // hour
+            int nextHour = nextSetBit( this.hours, hour );
+            if( nextHour < 0 )
+            {
+                day++;
+                hour = minute = second = 0;
+                continue;
+            }
+            else if( nextHour != hour )
+            {
+                hour = nextHour;
+                minute = second = 0;
+            }
+
+            // minute
+            int nextMinute = nextSetBit( this.minutes, minute );
+            if( nextMinute < 0 )
+            {
+                hour++;
+                minute = second = 0;
+                continue;
+            }
+            else if( nextMinute != minute )
+            {
+                minute = nextMinute;
+                second = 0;
+            }
+
+            // second
+            int nextSecond = nextSetBit( this.seconds, second );
+            if( nextSecond < 0 )
+            {
+                minute++;
+                second = 0;
+                continue;
+            }
+            second = nextSecond;
+
+            // convert to an instant; wall times inside a daylight-saving gap do not exist, so skip them
+            long wall = toEpochDay( year, month, day ) * MILLIS_PER_DAY + ( hour * 3600 + minute * 60 + second ) * MILLIS_PER_SECOND;
+            long instant = toInstant( wall, timeZone );
+            if( instant + timeZone.getOffset( instant ) == wall )
+            {
+                return instant;
+            }
+            second++;
+        }
+    }
+
+    private int nextYear( int year )
+    {
+        int bit = year - this.baseYear;
+        if( bit < 0 )
+        {
+            bit = 0;
+        }
+
+        int word = bit >>> 6;
+        if( word >= this.years.length )
+        {
+            return -1;
+        }
+
+        long masked = this.years[ word ] & ( -1L << bit );
+        while( masked == 0 )
+        {
+            word++;
+            if( word >= this.years.length )
+            {
+                return -1;
+            }
+            masked = this.years[ word ];
+        }
+        return this.baseYear + ( word << 6 ) + Long.numberOfTrailingZeros( masked );
+    }
+
+    private int nextDay( int year, int month, int day )
+    {
+        int lastDay = getLastDayOfMonth( month, year );
+        if( this.dayOfWeekMode )
+        {
+            // double the 7-bit day-of-week mask so that wrapping into next week is a simple bit search
+            int dow = getDayOfWeek( toEpochDay( year, month, day ) );
+            long weeks = this.daysOfWeek | ( this.daysOfWeek << 7 );
+            int nextDow = nextSetBit( weeks, dow );
+            if( nextDow < 0 )
+            {
+                return -1;
+            }
+            int nextDay = day + nextDow - dow;
+            return nextDay > lastDay ? -1 : nextDay;
+        }
+        else
+        {
+            int nextDay = nextSetBit( this.daysOfMonth, day );
+            return nextDay > lastDay ? -1 : nextDay;
+        }
+    }
+
+    /**
+     * Converts local wall time (expressed as millis since the local epoch) to an instant, resolving daylight-saving
+     * gaps and overlaps the way {@link java.util.GregorianCalendar} does: both resolve to the instant computed using
+     * the lower of the two surrounding offsets.
+     */
+    private long toInstant( long wall, @Nonnull TimeZone timeZone )
+    {
+        // estimate using the offsets in force around that date (the zone's current raw offset may have changed since)
+        long estimate = wall - timeZone.getOffset( wall - timeZone.getOffset( wall ) );
+        int offsetBefore = timeZone.getOffset( estimate - TRANSITION_WINDOW );
+        int offsetAfter = timeZone.getOffset( estimate + TRANSITION_WINDOW );
+        if( offsetBefore == offsetAfter )
+        {
+            return wall - offsetBefore;
+        }
+
+        int lowOffset = Math.min( offsetBefore, offsetAfter );
+        int highOffset = Math.max( offsetBefore, offsetAfter );
+        long candidate = wall - lowOffset;
+        if( timeZone.getOffset( candidate ) != lowOffset )
+        {
+            long alternative = wall - highOffset;
+            if( timeZone.getOffset( alternative ) == highOffset )
+            {
+                return alternative;
+            }
+        }
+        return candidate;
+    }
+}
@@ -112,6 +112,12 @@ public final class CronExpression
 
     protected transient boolean expressionParsed = false;
 
+    /**
+     * Bitmask-compiled form of this expression, or {@code null} if the expression uses modifiers (such as {@code L},
+     * {@code W} or {@code #}) that are only supported by the calendar-based computation.
+     */
+    private transient CompiledCronExpression compiledExpression;
+
     private TimeZone timeZone = null;
 
     public CronExpression( String cronExpression )
@@ -266,6 +272,17 @@ public final class CronExpression
     }
 
     public Date getTimeAfter( Date afterTime )
+    {
+        CompiledCronExpression compiledExpression = this.compiledExpression;
+        if( compiledExpression != null )
+        {
+            long timeAfter = compiledExpression.getTimeAfter( afterTime.getTime(), getTimeZone() );
+            return timeAfter == CompiledCronExpression.NO_TIME ? null : new Date( timeAfter );
+        }
+        return getTimeAfterUsingCalendar( afterTime );
+    }
+
+    Date getTimeAfterUsingCalendar( Date afterTime )
     {
 
         // Computation is based on Gregorian year only.
@@ -843,6 +860,8 @@ public final class CronExpression
                             "Support for specifying both a day-of-week AND a day-of-month parameter is not implemented.", 0 );
                 }
             }
+
+            compiledExpression = CompiledCronExpression.compile( this );
         }
         catch( ParseException pe )
         {
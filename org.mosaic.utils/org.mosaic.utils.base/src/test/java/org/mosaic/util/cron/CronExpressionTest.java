@@ -0,0 +1,221 @@
+package org.mosaic.util.cron;
+
+import java.util.*;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Verifies the bitmask-compiled next-fire-time computation against the original calendar-based one.
+ *
+ * @author arik
+ */
+public class CronExpressionTest
+{
+    private static final String[] EXPRESSIONS = {
+            "* * * * * ?",
+            "0 * * * * ?",
+            "0 0 * * * ?",
+            "0 0 0 * * ?",
+            "0 30 2 * * ?",
+            "0 30 1 * * ?",
+            "0 0/15 * * * ?",
+            "15,45 */7 1-5 * * ?",
+            "0 0 12 ? * MON-FRI",
+            "0 0 3 ? * SUN",
+            "0 15 10 ? * 6,7",
+            "30 0 0 1 * ?",
+            "0 0 0 31 * ?",
+            "0 0 0 29 2 ?",
+            "0 0 10 1,15 JAN,JUL ?",
+            "0 45 23 10-20 * ?",
+            "59 59 23 31 12 ?",
+            "0 0 0 ? 2 MON",
+            "0 0 22-2 * * ?",
+            "0 0 0 1 1 ? 2020-2030",
+            "0 0 9 ? * FRI-MON 2015/3"
+    };
+
+    private static final String[] TIME_ZONES = {
+            "UTC",
+            "America/New_York",
+            "Europe/London",
+            "Asia/Jerusalem",
+            "America/Sao_Paulo",
+            "Australia/Lord_Howe",
+            "Pacific/Apia",
+            "America/Caracas"
+    };
+
+    private static final long PRE_EPOCH_START = -2208988800000L;     // 1900-01-01
+
+    private static final long START = 31536000000L;      // 1971-01-01
+
+    private static final long END = 4102444800000L;      // 2100-01-01
+
+    private static final long HOUR = 60L * 60 * 1000;
+
+    @Test
+    public void testCompiledMatchesCalendarForRandomTimes()
+    {
+        Random random = new Random( 20131019L );
+        for( String timeZoneId : TIME_ZONES )
+        {
+            for( String expression : EXPRESSIONS )
+            {
+                CronExpression cronExpression = createExpression( expression, timeZoneId );
+                for( int i = 0; i < 10000; i++ )
+                {
+                    long time = START + ( long ) ( random.nextDouble() * ( END - START ) );
+                    assertSameTimeAfter( cronExpression, time );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompiledMatchesCalendarBeforeEpoch()
+    {
+        Random random = new Random( 20131021L );
+        for( String timeZoneId : TIME_ZONES )
+        {
+            for( String expression : EXPRESSIONS )
+            {
+                CronExpression cronExpression = createExpression( expression, timeZoneId );
+                for( int i = 0; i < 1000; i++ )
+                {
+                    long time = PRE_EPOCH_START + ( long ) ( random.nextDouble() * ( START - PRE_EPOCH_START ) );
+                    assertSameTimeAfter( cronExpression, time );
+                }
+            }
+        }
+
+        // British Standard Time (1968-1971) kept London a whole hour off its current raw offset
+        CronExpression cronExpression = createExpression( "0 0 1 * * ?", "Europe/London" );
+        Date time = new Date( -63158400000L ); // 1968-01-01
+        for( int i = 0; i < 500; i++ )
+        {
+            Date next = cronExpression.getTimeAfter( time );
+            assertThat( cronExpression.toString(), next, equalTo( cronExpression.getTimeAfterUsingCalendar( time ) ) );
+            time = next;
+        }
+    }
+
+    @Test
+    public void testCompiledMatchesCalendarAroundDaylightSavingTransitions()
+    {
+        Random random = new Random( 20131020L );
+        for( String timeZoneId : TIME_ZONES )
+        {
+            TimeZone timeZone = TimeZone.getTimeZone( timeZoneId );
+            List<Long> transitions = findTransitions( timeZone, 946684800000L, 2208988800000L ); // 2000-2040
+            for( String expression : EXPRESSIONS )
+            {
+                CronExpression cronExpression = createExpression( expression, timeZoneId );
+                for( long transition : transitions )
+                {
+                    // every 5 minutes in the 3 hours around the transition, plus random times within that window
+                    for( long time = transition - 3 * HOUR; time <= transition + 3 * HOUR; time += 5 * 60 * 1000 )
+                    {
+                        assertSameTimeAfter( cronExpression, time );
+                    }
+                    for( int i = 0; i < 100; i++ )
+                    {
+                        assertSameTimeAfter( cronExpression, transition - 3 * HOUR + ( long ) ( random.nextDouble() * 6 * HOUR ) );
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIterationMatchesCalendar()
+    {
+        for( String timeZoneId : TIME_ZONES )
+        {
+            for( String expression : EXPRESSIONS )
+            {
+                CronExpression cronExpression = createExpression( expression, timeZoneId );
+                Date compiled = new Date( 1356998400000L ); // 2013-01-01
+                Date calendar = compiled;
+                for( int i = 0; i < 500 && compiled != null; i++ )
+                {
+                    compiled = cronExpression.getTimeAfter( compiled );
+                    calendar = cronExpression.getTimeAfterUsingCalendar( calendar );
+                    assertThat( expression + " in " + timeZoneId, compiled, equalTo( calendar ) );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSpecialModifiersUseCalendar()
+    {
+        for( String expression : new String[] { "0 0 0 L * ?", "0 0 0 15W * ?", "0 0 0 ? * 6L", "0 0 0 ? * 2#3" } )
+        {
+            CronExpression cronExpression = createExpression( expression, "Europe/London" );
+            Date time = new Date( 1356998400000L );
+            for( int i = 0; i < 50; i++ )
+            {
+                Date next = cronExpression.getTimeAfter( time );
+                assertThat( expression, next, equalTo( cronExpression.getTimeAfterUsingCalendar( time ) ) );
+                time = next;
+            }
+        }
+    }
+
+    @Test
+    public void testExhaustedYears()
+    {
+        CronExpression cronExpression = createExpression( "0 0 0 1 1 ? 2020", "UTC" );
+        assertThat( cronExpression.getTimeAfter( new Date( 1356998400000L ) ), notNullValue() );
+        assertThat( cronExpression.getTimeAfter( new Date( 1609459200000L ) ), nullValue() ); // 2021-01-01
+    }
+
+    private static CronExpression createExpression( String expression, String timeZoneId )
+    {
+        CronExpression cronExpression = new CronExpression( expression );
+        cronExpression.setTimeZone( TimeZone.getTimeZone( timeZoneId ) );
+        return cronExpression;
+    }
+
+    private static void assertSameTimeAfter( CronExpression cronExpression, long time )
+    {
+        Date date = new Date( time );
+        Date compiled = cronExpression.getTimeAfter( date );
+        Date calendar = cronExpression.getTimeAfterUsingCalendar( date );
+        if( compiled == null ? calendar != null : !compiled.equals( calendar ) )
+        {
+            // only build the failure message when actually failing - this is called millions of times
+            assertThat( cronExpression + " in " + cronExpression.getTimeZone().getID() + " after " + time, compiled, equalTo( calendar ) );
+        }
+    }
+
+    private static List<Long> findTransitions( TimeZone timeZone, long from, long to )
+    {
+        List<Long> transitions = new LinkedList<>();
+        for( long time = from; time < to; time += HOUR )
+        {
+            if( timeZone.getOffset( time ) != timeZone.getOffset( time + HOUR ) )
+            {
+                // narrow down to the minute
+                long low = time, high = time + HOUR;
+                while( high - low > 60 * 1000 )
+                {
+                    long mid = ( low + high ) / 2;
+                    if( timeZone.getOffset( mid ) == timeZone.getOffset( low ) )
+                    {
+                        low = mid;
+                    }
+                    else
+                    {
+                        high = mid;
+                    }
+                }
+                transitions.add( high );
+            }
+        }
+        return transitions;
+    }
+}
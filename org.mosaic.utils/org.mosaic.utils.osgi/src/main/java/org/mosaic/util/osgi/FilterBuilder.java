@@ -1,5 +1,7 @@
 package org.mosaic.util.osgi;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.util.LinkedList;
 import java.util.List;
 import javax.annotation.Nonnull;
@@ -14,6 +16,27 @@ import org.osgi.framework.InvalidSyntaxException;
  */
 public class FilterBuilder
 {
+    /**
+     * Parsed filters by their string form - OSGi filters are immutable and thread-safe, so they can be shared.
+     */
+    @Nonnull
+    private static final Cache<String, Filter> FILTERS_CACHE = CacheBuilder.newBuilder().maximumSize( 1000 ).build();
+
+    /**
+     * Parses the given filter, re-using a previously parsed instance of the same filter if possible.
+     */
+    @Nonnull
+    public static Filter parse( @Nonnull String filter ) throws InvalidSyntaxException
+    {
+        Filter parsed = FILTERS_CACHE.getIfPresent( filter );
+        if( parsed == null )
+        {
+            parsed = FrameworkUtil.createFilter( filter );
+            FILTERS_CACHE.put( filter, parsed );
+        }
+        return parsed;
+    }
+
     @Nonnull
     public static Filter create( @Nonnull Class<?> type, @Nullable String additionalFilter )
     {
@@ -22,7 +45,7 @@ public class FilterBuilder
         filterBuilder.add( additionalFilter );
         try
         {
-            return FrameworkUtil.createFilter( filterBuilder.toString() );
+            return parse( filterBuilder.toString() );
         }
         catch( InvalidSyntaxException e )
         {
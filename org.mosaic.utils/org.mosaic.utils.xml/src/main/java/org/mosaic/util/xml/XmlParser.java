@@ -28,4 +28,27 @@ public interface XmlParser
     XmlDocument parse( @Nonnull String systemId,
                        @Nonnull Schema schema,
                        @Nonnull InputStream is ) throws ParserConfigurationException, IOException, SAXException;
+
+    /**
+     * Streams the given file, passing each element with the given local name (at any depth) to the handler as the root
+     * of its own small document. Only one such element is kept in memory at a time, so this is suitable for large
+     * documents consisting of many repeating elements. A matching element nested inside another matching element is
+     * part of the outer element's document and is not passed to the handler on its own. Exceptions thrown by the handler
+     * are wrapped in a {@link SAXException}. Schema validation is not performed.
+     */
+    void parseElements( @Nonnull Path file, @Nonnull String elementName, @Nonnull ElementHandler handler )
+            throws ParserConfigurationException, IOException, SAXException;
+
+    /**
+     * @see #parseElements(Path, String, ElementHandler)
+     */
+    void parseElements( @Nonnull String systemId,
+                        @Nonnull InputStream is,
+                        @Nonnull String elementName,
+                        @Nonnull ElementHandler handler ) throws ParserConfigurationException, IOException, SAXException;
+
+    interface ElementHandler
+    {
+        void handle( @Nonnull XmlDocument document ) throws Exception;
+    }
 }
@@ -1,20 +1,31 @@
 package org.mosaic.util.xml.impl;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.validation.Schema;
 import javax.xml.xpath.*;
 import org.mosaic.util.xml.StrictErrorHandler;
@@ -28,6 +39,12 @@ import static java.util.Collections.emptyList;
 import static org.mosaic.util.xml.impl.ConversionServiceTracker.conversionService;
 
 /**
+ * XML parser implementation.
+ * <p/>
+ * Parser factories are created once: document builders are pooled per schema (builders are not thread-safe, so each
+ * is used by one parse at a time and reset before being returned to its pool), and compiled XPath expressions are
+ * cached by expression and namespace mappings, shared by all documents.
+ *
  * @author arik
  */
 final class XmlParserImpl implements XmlParser
@@ -35,6 +52,59 @@ final class XmlParserImpl implements XmlParser
     @Nonnull
     private static final String USER_DATA_XMLELEMENT_KEY = XmlDocumentImpl.XmlElementImpl.class.getName();
 
+    /**
+     * Maximum number of idle document builders kept per schema.
+     */
+    private static final int MAX_POOLED_BUILDERS = 16;
+
+    @Nonnull
+    private final DocumentBuilderPool builders = new DocumentBuilderPool( null );
+
+    @Nonnull
+    private final LoadingCache<Schema, DocumentBuilderPool> schemaBuilders =
+            CacheBuilder.newBuilder()
+                        .weakKeys()
+                        .build( new CacheLoader<Schema, DocumentBuilderPool>()
+                        {
+                            @Override
+                            public DocumentBuilderPool load( @Nonnull Schema schema ) throws Exception
+                            {
+                                return new DocumentBuilderPool( schema );
+                            }
+                        } );
+
+    @Nonnull
+    private final XPathFactory xpathFactory = XPathFactory.newInstance();
+
+    @Nonnull
+    private final LoadingCache<XPathKey, XPathExpression> xpathExpressions =
+            CacheBuilder.newBuilder()
+                        .maximumSize( 5000 )
+                        .build( new CacheLoader<XPathKey, XPathExpression>()
+                        {
+                            @Override
+                            public XPathExpression load( @Nonnull XPathKey key ) throws Exception
+                            {
+                                // XPath factories and XPath objects are not thread-safe
+                                synchronized( XmlParserImpl.this.xpathFactory )
+                                {
+                                    XPath xp = XmlParserImpl.this.xpathFactory.newXPath();
+                                    xp.setNamespaceContext( key );
+                                    return xp.compile( key.xpath );
+                                }
+                            }
+                        } );
+
+    @Nonnull
+    private final XMLInputFactory xmlInputFactory;
+
+    XmlParserImpl()
+    {
+        this.xmlInputFactory = XMLInputFactory.newInstance();
+        this.xmlInputFactory.setProperty( XMLInputFactory.IS_NAMESPACE_AWARE, true );
+        this.xmlInputFactory.setProperty( XMLInputFactory.IS_COALESCING, true );
+    }
+
     @Nonnull
     @Override
     public XmlDocument parse( @Nonnull Path file ) throws ParserConfigurationException, IOException, SAXException
@@ -61,12 +131,7 @@ final class XmlParserImpl implements XmlParser
     public XmlDocument parse( @Nonnull String systemId, @Nonnull InputStream is )
             throws ParserConfigurationException, IOException, SAXException
     {
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        dbf.setNamespaceAware( true );
-
-        DocumentBuilder db = dbf.newDocumentBuilder();
-        db.setErrorHandler( StrictErrorHandler.INSTANCE );
-        return new XmlDocumentImpl( db.parse( is, systemId ) );
+        return this.builders.parse( systemId, is );
     }
 
     @Nonnull
@@ -75,45 +140,262 @@ final class XmlParserImpl implements XmlParser
                               @Nonnull Schema schema,
                               @Nonnull InputStream is ) throws ParserConfigurationException, IOException, SAXException
     {
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        dbf.setNamespaceAware( true );
-        dbf.setSchema( schema );
+        DocumentBuilderPool pool;
+        try
+        {
+            pool = this.schemaBuilders.getUnchecked( schema );
+        }
+        catch( UncheckedExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) cause;
+            }
+            else
+            {
+                throw e;
+            }
+        }
+        return pool.parse( systemId, is );
+    }
+
+    @Override
+    public void parseElements( @Nonnull Path file, @Nonnull String elementName, @Nonnull ElementHandler handler )
+            throws ParserConfigurationException, IOException, SAXException
+    {
+        try( InputStream is = Files.newInputStream( file, StandardOpenOption.READ ) )
+        {
+            parseElements( file.toUri().toString(), is, elementName, handler );
+        }
+    }
+
+    @Override
+    public void parseElements( @Nonnull String systemId,
+                               @Nonnull InputStream is,
+                               @Nonnull String elementName,
+                               @Nonnull ElementHandler handler )
+            throws ParserConfigurationException, IOException, SAXException
+    {
+        XMLStreamReader reader;
+        try
+        {
+            // like the other factories, StAX factories are not guaranteed to be thread-safe (readers are per-parse)
+            synchronized( this.xmlInputFactory )
+            {
+                reader = this.xmlInputFactory.createXMLStreamReader( systemId, is );
+            }
+        }
+        catch( XMLStreamException e )
+        {
+            throw new SAXException( "Could not parse '" + systemId + "': " + e.getMessage(), e );
+        }
+
+        DocumentBuilder db = this.builders.borrow();
+        try
+        {
+            while( reader.hasNext() )
+            {
+                if( reader.next() == XMLStreamConstants.START_ELEMENT && elementName.equals( reader.getLocalName() ) )
+                {
+                    XmlDocument document = new XmlDocumentImpl( readElement( reader, db.newDocument() ) );
+                    try
+                    {
+                        handler.handle( document );
+                    }
+                    catch( Exception e )
+                    {
+                        throw new SAXException( e );
+                    }
+                }
+            }
+        }
+        catch( XMLStreamException e )
+        {
+            throw new SAXException( "Could not parse '" + systemId + "': " + e.getMessage(), e );
+        }
+        finally
+        {
+            this.builders.release( db );
+            try
+            {
+                reader.close();
+            }
+            catch( XMLStreamException ignore )
+            {
+            }
+        }
+    }
+
+    /**
+     * Reads the element the given reader is positioned at (including its descendants) into the given document, leaving
+     * the reader positioned at its end tag.
+     */
+    @Nonnull
+    private Document readElement( @Nonnull XMLStreamReader reader, @Nonnull Document document )
+            throws XMLStreamException
+    {
+        Node parent = document;
+        int depth = 0;
+        while( true )
+        {
+            switch( reader.getEventType() )
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                    Element element = document.createElementNS( emptyToNull( reader.getNamespaceURI() ), getQualifiedName( reader.getPrefix(), reader.getLocalName() ) );
+                    for( int i = 0; i < reader.getNamespaceCount(); i++ )
+                    {
+                        String prefix = reader.getNamespacePrefix( i );
+                        element.setAttributeNS( XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                                                prefix == null || prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix,
+                                                reader.getNamespaceURI( i ) );
+                    }
+                    for( int i = 0; i < reader.getAttributeCount(); i++ )
+                    {
+                        element.setAttributeNS( emptyToNull( reader.getAttributeNamespace( i ) ),
+                                                getQualifiedName( reader.getAttributePrefix( i ), reader.getAttributeLocalName( i ) ),
+                                                reader.getAttributeValue( i ) );
+                    }
+                    parent.appendChild( element );
+                    parent = element;
+                    depth++;
+                    break;
+
+                case XMLStreamConstants.END_ELEMENT:
+                    parent = parent.getParentNode();
+                    depth--;
+                    break;
+
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    parent.appendChild( document.createTextNode( reader.getText() ) );
+                    break;
+
+                case XMLStreamConstants.CDATA:
+                    parent.appendChild( document.createCDATASection( reader.getText() ) );
+                    break;
+            }
+
+            if( depth == 0 )
+            {
+                return document;
+            }
+            reader.next();
+        }
+    }
+
+    @Nullable
+    private static String emptyToNull( @Nullable String value )
+    {
+        return value == null || value.isEmpty() ? null : value;
+    }
 
-        DocumentBuilder db = dbf.newDocumentBuilder();
-        db.setErrorHandler( StrictErrorHandler.INSTANCE );
-        return new XmlDocumentImpl( db.parse( is, systemId ) );
+    @Nonnull
+    private static String getQualifiedName( @Nullable String prefix, @Nonnull String localName )
+    {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
     }
 
-    private class XmlDocumentImpl implements XmlDocument, NamespaceContext
+    private class DocumentBuilderPool
     {
         @Nonnull
-        private final Map<String, String> namespaces = new ConcurrentHashMap<>( 5 );
+        private final DocumentBuilderFactory factory;
 
         @Nonnull
-        private final Document document;
+        private final Queue<DocumentBuilder> builders = new ConcurrentLinkedQueue<>();
+
+        private DocumentBuilderPool( @Nullable Schema schema )
+        {
+            this.factory = DocumentBuilderFactory.newInstance();
+            this.factory.setNamespaceAware( true );
+            if( schema != null )
+            {
+                this.factory.setSchema( schema );
+            }
+        }
 
         @Nonnull
-        private final XmlElement rootElement;
+        private XmlDocument parse( @Nonnull String systemId, @Nonnull InputStream is )
+                throws ParserConfigurationException, IOException, SAXException
+        {
+            DocumentBuilder db = borrow();
+            try
+            {
+                return new XmlDocumentImpl( db.parse( is, systemId ) );
+            }
+            finally
+            {
+                release( db );
+            }
+        }
 
-        private XmlDocumentImpl( @Nonnull Document document )
+        @Nonnull
+        private DocumentBuilder borrow() throws ParserConfigurationException
         {
-            this.namespaces.put( XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI );
-            this.namespaces.put( XMLConstants.XMLNS_ATTRIBUTE, XMLConstants.XMLNS_ATTRIBUTE_NS_URI );
-            this.document = document;
-            this.rootElement = new XmlElementImpl( this.document.getDocumentElement() );
+            DocumentBuilder db = this.builders.poll();
+            if( db == null )
+            {
+                // factories are not thread-safe
+                synchronized( this.factory )
+                {
+                    db = this.factory.newDocumentBuilder();
+                }
+            }
+            db.setErrorHandler( StrictErrorHandler.INSTANCE );
+            return db;
         }
 
-        @Override
-        public void addNamespace( @Nonnull String prefix, @Nonnull String uri )
+        private void release( @Nonnull DocumentBuilder db )
         {
-            this.namespaces.put( prefix, uri );
+            db.reset();
+            if( this.builders.size() < MAX_POOLED_BUILDERS )
+            {
+                this.builders.offer( db );
+            }
         }
+    }
+
+    /**
+     * Key of a compiled XPath expression - the expression and the namespace mappings it was compiled with (which it
+     * also provides, as the namespace context for compiling it).
+     */
+    private static final class XPathKey implements NamespaceContext
+    {
+        @Nonnull
+        private final String xpath;
 
         @Nonnull
+        private final Map<String, String> namespaces;
+
+        private final int hashCode;
+
+        private XPathKey( @Nonnull String xpath, @Nonnull Map<String, String> namespaces )
+        {
+            this.xpath = xpath;
+            this.namespaces = namespaces;
+            this.hashCode = 31 * xpath.hashCode() + namespaces.hashCode();
+        }
+
         @Override
-        public XmlElement getRoot()
+        public boolean equals( Object o )
         {
-            return this.rootElement;
+            if( this == o )
+            {
+                return true;
+            }
+            else if( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+
+            XPathKey that = ( XPathKey ) o;
+            return this.hashCode == that.hashCode && this.xpath.equals( that.xpath ) && this.namespaces.equals( that.namespaces );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
         }
 
         @Nonnull
@@ -149,14 +431,75 @@ final class XmlParserImpl implements XmlParser
         {
             throw new UnsupportedOperationException();
         }
+    }
+
+    private class XmlDocumentImpl implements XmlDocument
+    {
+        /**
+         * Immutable, so XPath keys can share it; replaced whenever a namespace is added.
+         */
+        @Nonnull
+        private volatile Map<String, String> namespaces = ImmutableMap.of( XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI,
+                                                                           XMLConstants.XMLNS_ATTRIBUTE, XMLConstants.XMLNS_ATTRIBUTE_NS_URI );
+
+        @Nonnull
+        private final Document document;
+
+        @Nonnull
+        private final XmlElement rootElement;
+
+        private XmlDocumentImpl( @Nonnull Document document )
+        {
+            this.document = document;
+            this.rootElement = new XmlElementImpl( this.document.getDocumentElement() );
+        }
+
+        @Override
+        public synchronized void addNamespace( @Nonnull String prefix, @Nonnull String uri )
+        {
+            Map<String, String> namespaces = new LinkedHashMap<>( this.namespaces );
+            namespaces.put( prefix, uri );
+            this.namespaces = ImmutableMap.copyOf( namespaces );
+        }
 
         @Nonnull
-        private XPathExpression getXPathExpression( String xpath ) throws XPathException
+        @Override
+        public XmlElement getRoot()
         {
-            XPathFactory xpf = XPathFactory.newInstance();
-            XPath xp = xpf.newXPath();
-            xp.setNamespaceContext( this );
-            return xp.compile( xpath );
+            return this.rootElement;
+        }
+
+        @Nullable
+        private Object evaluate( @Nonnull String xpath, @Nonnull Node node, @Nonnull QName returnType )
+                throws XPathException
+        {
+            XPathExpression expr;
+            try
+            {
+                expr = xpathExpressions.getUnchecked( new XPathKey( xpath, this.namespaces ) );
+            }
+            catch( UncheckedExecutionException e )
+            {
+                Throwable cause = e.getCause();
+                if( cause instanceof XPathException )
+                {
+                    throw ( XPathException ) cause;
+                }
+                else if( cause instanceof RuntimeException )
+                {
+                    throw ( RuntimeException ) cause;
+                }
+                else
+                {
+                    throw e;
+                }
+            }
+
+            // compiled expressions are shared, but are not guaranteed to be thread-safe
+            synchronized( expr )
+            {
+                return expr.evaluate( node, returnType );
+            }
         }
 
         private class XmlElementImpl implements XmlElement
@@ -212,9 +555,7 @@ final class XmlParserImpl implements XmlParser
             @Nonnull
             public <T> Optional<T> find( @Nonnull String xpath, @Nonnull TypeToken<T> type ) throws XPathException
             {
-                XPathExpression expr = getXPathExpression( xpath );
-
-                Node node = ( Node ) expr.evaluate( this.element, XPathConstants.NODE );
+                Node node = ( Node ) evaluate( xpath, this.element, XPathConstants.NODE );
                 return node == null ? Optional.<T>absent() : Optional.fromNullable( conversionService().convert( node.getTextContent(), type ) );
             }
 
@@ -290,8 +631,7 @@ final class XmlParserImpl implements XmlParser
             @Nonnull
             public List<String> findTexts( @Nonnull String xpath ) throws XPathException
             {
-                XPathExpression expr = getXPathExpression( xpath );
-                NodeList nodes = ( NodeList ) expr.evaluate( this.element, XPathConstants.NODESET );
+                NodeList nodes = ( NodeList ) evaluate( xpath, this.element, XPathConstants.NODESET );
                 if( nodes.getLength() > 0 )
                 {
                     List<String> values = null;
@@ -324,8 +664,7 @@ final class XmlParserImpl implements XmlParser
             @Nonnull
             public Optional<XmlElement> findFirstElement( @Nonnull String xpath ) throws XPathException
             {
-                XPathExpression expr = getXPathExpression( xpath );
-                NodeList nodes = ( NodeList ) expr.evaluate( this.element, XPathConstants.NODESET );
+                NodeList nodes = ( NodeList ) evaluate( xpath, this.element, XPathConstants.NODESET );
                 for( int i = 0; i < nodes.getLength(); i++ )
                 {
                     Node node = nodes.item( i );
@@ -341,8 +680,7 @@ final class XmlParserImpl implements XmlParser
             @Nonnull
             public List<XmlElement> findElements( @Nonnull String xpath ) throws XPathException
             {
-                XPathExpression expr = getXPathExpression( xpath );
-                NodeList nodes = ( NodeList ) expr.evaluate( this.element, XPathConstants.NODESET );
+                NodeList nodes = ( NodeList ) evaluate( xpath, this.element, XPathConstants.NODESET );
                 return getXmlElementsFromNodeList( nodes );
             }
 
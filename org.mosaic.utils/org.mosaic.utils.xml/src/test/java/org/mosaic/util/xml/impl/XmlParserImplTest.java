@@ -1,9 +1,227 @@
 package org.mosaic.util.xml.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import javax.annotation.Nonnull;
+import org.junit.Test;
+import org.mosaic.util.xml.XmlDocument;
+import org.mosaic.util.xml.XmlElement;
+import org.mosaic.util.xml.XmlParser;
+import org.xml.sax.SAXException;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
 /**
  * @author arik
  */
 public class XmlParserImplTest
 {
-    // TODO: write XmlParserImpl tests
+    private final XmlParserImpl parser = new XmlParserImpl();
+
+    @Test
+    public void testParseElementsPassesOutermostMatches() throws Exception
+    {
+        List<XmlDocument> documents = parseElements( "<catalog>" +
+                                                     "  <item id='1'><item id='1.1'/></item>" +
+                                                     "  <group><item id='2'/></group>" +
+                                                     "  <other id='3'/>" +
+                                                     "</catalog>", "item" );
+        assertThat( documents.size(), equalTo( 2 ) );
+
+        XmlElement first = documents.get( 0 ).getRoot();
+        assertThat( first.getName(), equalTo( "item" ) );
+        assertThat( first.getAttribute( "id" ).get(), equalTo( "1" ) );
+
+        // nested matches are part of their outer match
+        List<XmlElement> nested = first.getChildElements( "item" );
+        assertThat( nested.size(), equalTo( 1 ) );
+        assertThat( nested.get( 0 ).getAttribute( "id" ).get(), equalTo( "1.1" ) );
+
+        XmlElement second = documents.get( 1 ).getRoot();
+        assertThat( second.getAttribute( "id" ).get(), equalTo( "2" ) );
+        assertThat( second.getChildElements().isEmpty(), is( true ) );
+    }
+
+    @Test
+    public void testParseElementsPreservesNamespaces() throws Exception
+    {
+        List<XmlDocument> documents = parseElements( "<root xmlns='urn:default' xmlns:m='urn:m'>" +
+                                                     "  <m:item m:code='a' plain='b'>" +
+                                                     "    <m:name>first</m:name>" +
+                                                     "    <name>second</name>" +
+                                                     "  </m:item>" +
+                                                     "</root>", "item" );
+        assertThat( documents.size(), equalTo( 1 ) );
+
+        XmlDocument document = documents.get( 0 );
+        document.addNamespace( "m", "urn:m" );
+        document.addNamespace( "d", "urn:default" );
+
+        XmlElement item = document.getRoot();
+        assertThat( item.getName(), equalTo( "item" ) );
+        assertThat( item.getAttribute( "plain" ).get(), equalTo( "b" ) );
+        assertThat( item.findTexts( "@m:code" ), equalTo( Arrays.asList( "a" ) ) );
+        assertThat( item.findTexts( "m:name" ), equalTo( Arrays.asList( "first" ) ) );
+        assertThat( item.findTexts( "d:name" ), equalTo( Arrays.asList( "second" ) ) );
+        assertThat( item.findTexts( "name" ).isEmpty(), is( true ) );
+    }
+
+    @Test
+    public void testParseElementsKeepsMixedContent() throws Exception
+    {
+        List<XmlDocument> documents = parseElements( "<root><item>a<![CDATA[<b> & ]]>c<sub>d</sub>e</item></root>", "item" );
+        assertThat( documents.size(), equalTo( 1 ) );
+
+        XmlElement item = documents.get( 0 ).getRoot();
+        assertThat( item.getValue().get(), equalTo( "a<b> & cde" ) );
+        assertThat( item.getFirstChildElement( "sub" ).get().getValue().get(), equalTo( "d" ) );
+    }
+
+    @Test
+    public void testParseElementsWrapsHandlerExceptions() throws Exception
+    {
+        final IOException failure = new IOException( "handler failed" );
+        try
+        {
+            this.parser.parseElements( "test", toStream( "<root><item/><item/></root>" ), "item", new XmlParser.ElementHandler()
+            {
+                @Override
+                public void handle( @Nonnull XmlDocument document ) throws Exception
+                {
+                    throw failure;
+                }
+            } );
+            fail( "expected handler exception to be thrown" );
+        }
+        catch( SAXException e )
+        {
+            assertThat( e.getException(), sameInstance( ( Exception ) failure ) );
+        }
+    }
+
+    @Test
+    public void testParseElementsFromFile() throws Exception
+    {
+        Path file = Files.createTempFile( "xml-parser-test", ".xml" );
+        try
+        {
+            Files.write( file, "<root><item>1</item><item>2</item></root>".getBytes( Charset.forName( "UTF-8" ) ) );
+
+            final List<String> values = new ArrayList<>();
+            this.parser.parseElements( file, "item", new XmlParser.ElementHandler()
+            {
+                @Override
+                public void handle( @Nonnull XmlDocument document ) throws Exception
+                {
+                    values.add( document.getRoot().getValue().get() );
+                }
+            } );
+            assertThat( values, equalTo( Arrays.asList( "1", "2" ) ) );
+        }
+        finally
+        {
+            Files.delete( file );
+        }
+    }
+
+    @Test
+    public void testParseAfterFailedParse() throws Exception
+    {
+        try
+        {
+            this.parser.parse( "test", toStream( "<root><unclosed></root>" ) );
+            fail( "expected malformed document to fail" );
+        }
+        catch( SAXException ignore )
+        {
+        }
+
+        // the builder used by the failed parse was reset and returned to the pool
+        XmlDocument document = this.parser.parse( "test", toStream( "<root><child/></root>" ) );
+        assertThat( document.getRoot().getChildElements().size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void testXPathUsesEachDocumentNamespaces() throws Exception
+    {
+        XmlDocument first = this.parser.parse( "test", toStream( "<root xmlns:a='urn:a' xmlns:b='urn:b'><a:x>a</a:x><b:x>b</b:x></root>" ) );
+        XmlDocument second = this.parser.parse( "test", toStream( "<root xmlns:a='urn:a' xmlns:b='urn:b'><a:x>a</a:x><b:x>b</b:x></root>" ) );
+
+        // the same expression, compiled with different namespace mappings
+        first.addNamespace( "p", "urn:a" );
+        second.addNamespace( "p", "urn:b" );
+        assertThat( first.getRoot().findTexts( "p:x" ), equalTo( Arrays.asList( "a" ) ) );
+        assertThat( second.getRoot().findTexts( "p:x" ), equalTo( Arrays.asList( "b" ) ) );
+
+        // re-mapping a prefix applies to later evaluations
+        first.addNamespace( "p", "urn:b" );
+        assertThat( first.getRoot().findTexts( "p:x" ), equalTo( Arrays.asList( "b" ) ) );
+    }
+
+    @Test
+    public void testConcurrentParsing() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for( int i = 0; i < 200; i++ )
+            {
+                final int index = i;
+                results.add( executor.submit( new Callable<List<String>>()
+                {
+                    @Override
+                    public List<String> call() throws Exception
+                    {
+                        XmlDocument document = XmlParserImplTest.this.parser.parse( "test", toStream( "<root><value>" + index + "</value></root>" ) );
+                        List<String> values = new ArrayList<>( document.getRoot().findTexts( "value" ) );
+                        for( XmlDocument element : parseElements( "<root><value>" + index + "</value></root>", "value" ) )
+                        {
+                            values.add( element.getRoot().getValue().get() );
+                        }
+                        return values;
+                    }
+                } ) );
+            }
+            for( int i = 0; i < results.size(); i++ )
+            {
+                assertThat( results.get( i ).get( 10, TimeUnit.SECONDS ), equalTo( Arrays.asList( i + "", i + "" ) ) );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Nonnull
+    private List<XmlDocument> parseElements( @Nonnull String xml, @Nonnull String elementName ) throws Exception
+    {
+        final List<XmlDocument> documents = new ArrayList<>();
+        this.parser.parseElements( "test", toStream( xml ), elementName, new XmlParser.ElementHandler()
+        {
+            @Override
+            public void handle( @Nonnull XmlDocument document ) throws Exception
+            {
+                documents.add( document );
+            }
+        } );
+        return documents;
+    }
+
+    @Nonnull
+    private static InputStream toStream( @Nonnull String xml )
+    {
+        return new ByteArrayInputStream( xml.getBytes( Charset.forName( "UTF-8" ) ) );
+    }
 }
@@ -1,12 +1,16 @@
 package org.mosaic.validation.impl;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
 import javax.validation.executable.ExecutableValidator;
+import javax.validation.metadata.MethodDescriptor;
+import javax.validation.metadata.ReturnValueDescriptor;
 import org.mosaic.modules.Component;
 import org.mosaic.modules.Service;
 import org.mosaic.modules.spi.MethodInterceptor;
@@ -14,6 +18,17 @@ import org.mosaic.util.collections.MapEx;
 import org.mosaic.validation.MethodValidationException;
 
 /**
+ * Validates parameters and return values of {@link Valid @Valid} methods.
+ * <p/>
+ * Each method's validation plan - its module's validator, and whether its parameters and its return value have any
+ * constraints - is computed once, when the method is first intercepted. Methods without constraints are not
+ * intercepted at all, and parameters or return values without constraints are not validated.
+ * <p/>
+ * Since {@link Valid @Valid} on a method also cascades validation into its return value, the return value is only
+ * considered unconstrained if it has no constraints of its own, and it is void, primitive, or of a final type which
+ * has no constraints either. Any other type (e.g. an interface, a collection or a non-final class) may be returned as
+ * a subtype or container whose contents have constraints, so its values are always validated.
+ *
  * @author arik
  */
 @Service
@@ -26,7 +41,30 @@ final class ValidationInterceptor implements MethodInterceptor
     @Override
     public boolean interestedIn( @Nonnull Method method, @Nonnull MapEx<String, Object> context )
     {
-        return method.isAnnotationPresent( Valid.class );
+        if( !method.isAnnotationPresent( Valid.class ) )
+        {
+            return false;
+        }
+
+        ClassLoader classLoader = method.getDeclaringClass().getClassLoader();
+        Validator validator = this.validationManager.getValidator( classLoader );
+        MethodDescriptor descriptor = validator.getConstraintsForClass( method.getDeclaringClass() )
+                                               .getConstraintsForMethod( method.getName(), method.getParameterTypes() );
+        if( descriptor == null )
+        {
+            return false;
+        }
+
+        ValidationPlan plan = new ValidationPlan( validator.forExecutables(),
+                                                  descriptor.hasConstrainedParameters(),
+                                                  isReturnValueConstrained( validator, method, descriptor ) );
+        if( !plan.validateParameters && !plan.validateReturnValue )
+        {
+            return false;
+        }
+
+        context.put( "plan", plan );
+        return true;
     }
 
     @Nullable
@@ -34,40 +72,41 @@ final class ValidationInterceptor implements MethodInterceptor
     public BeforeInvocationDecision beforeInvocation( @Nonnull BeforeMethodInvocation invocation )
             throws Throwable
     {
-        Object object = invocation.getObject();
-        Method method = invocation.getMethod();
-        Object[] arguments = invocation.getArguments();
-
-        ExecutableValidator validator = this.validationManager.getValidator().forExecutables();
-        Set<ConstraintViolation<Object>> violations = validator.validateParameters( object, method, arguments );
-        if( !violations.isEmpty() )
+        ValidationPlan plan = ( ValidationPlan ) invocation.getInterceptorContext().get( "plan" );
+        if( plan.validateParameters )
         {
-            throw new MethodValidationException( method, violations );
-        }
-        else
-        {
-            return invocation.continueInvocation();
+            Object object = invocation.getObject();
+            Method method = invocation.getMethod();
+            Object[] arguments = invocation.getArguments();
+
+            Set<ConstraintViolation<Object>> violations = plan.validator.validateParameters( object, method, arguments );
+            if( !violations.isEmpty() )
+            {
+                throw new MethodValidationException( method, violations );
+            }
         }
+        return invocation.continueInvocation();
     }
 
     @Nullable
     @Override
     public Object afterInvocation( @Nonnull AfterMethodInvocation invocation ) throws Throwable
     {
-        Object object = invocation.getObject();
-        Method method = invocation.getMethod();
         Object returnValue = invocation.getReturnValue();
 
-        ExecutableValidator validator = this.validationManager.getValidator().forExecutables();
-        Set<ConstraintViolation<Object>> violations = validator.validateReturnValue( object, method, returnValue );
-        if( !violations.isEmpty() )
-        {
-            throw new MethodValidationException( method, violations );
-        }
-        else
+        ValidationPlan plan = ( ValidationPlan ) invocation.getInterceptorContext().get( "plan" );
+        if( plan.validateReturnValue )
         {
-            return returnValue;
+            Object object = invocation.getObject();
+            Method method = invocation.getMethod();
+
+            Set<ConstraintViolation<Object>> violations = plan.validator.validateReturnValue( object, method, returnValue );
+            if( !violations.isEmpty() )
+            {
+                throw new MethodValidationException( method, violations );
+            }
         }
+        return returnValue;
     }
 
     @Nullable
@@ -76,4 +115,51 @@ final class ValidationInterceptor implements MethodInterceptor
     {
         throw invocation.getThrowable();
     }
+
+    private boolean isReturnValueConstrained( @Nonnull Validator validator,
+                                              @Nonnull Method method,
+                                              @Nonnull MethodDescriptor descriptor )
+    {
+        Class<?> returnType = method.getReturnType();
+        ReturnValueDescriptor returnValue = descriptor.getReturnValueDescriptor();
+        if( returnType == void.class || returnValue == null )
+        {
+            return false;
+        }
+        else if( returnValue.hasConstraints() )
+        {
+            return true;
+        }
+        else if( !returnValue.isCascaded() || returnType.isPrimitive() )
+        {
+            return false;
+        }
+        else if( returnType.isArray() || !Modifier.isFinal( returnType.getModifiers() ) )
+        {
+            return true;
+        }
+        else
+        {
+            return validator.getConstraintsForClass( returnType ).isBeanConstrained();
+        }
+    }
+
+    private static class ValidationPlan
+    {
+        @Nonnull
+        private final ExecutableValidator validator;
+
+        private final boolean validateParameters;
+
+        private final boolean validateReturnValue;
+
+        private ValidationPlan( @Nonnull ExecutableValidator validator,
+                                boolean validateParameters,
+                                boolean validateReturnValue )
+        {
+            this.validator = validator;
+            this.validateParameters = validateParameters;
+            this.validateReturnValue = validateReturnValue;
+        }
+    }
 }
@@ -1,12 +1,13 @@
 package org.mosaic.validation.impl;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.*;
 import javax.annotation.Nonnull;
 import javax.validation.*;
-import javax.validation.executable.ExecutableValidator;
-import javax.validation.metadata.BeanDescriptor;
 import javax.validation.spi.ValidationProvider;
 import org.hibernate.validator.HibernateValidator;
 import org.hibernate.validator.HibernateValidatorConfiguration;
@@ -22,16 +23,33 @@ import org.springframework.core.ParameterNameDiscoverer;
 import static java.util.Arrays.asList;
 
 /**
+ * Holds a validator per module class loader, whose messages are resolved from that module's {@code ValidationMessages}
+ * resource bundle.
+ *
  * @author arik
  */
 @Component
 final class ValidationManager
 {
     @Nonnull
-    private final ThreadLocal<ClassLoader> classLoaderHolder = new ThreadLocal<>();
+    private final ValidatorFactory validatorFactory;
 
     @Nonnull
-    private final Validator validator;
+    private final LoadingCache<ClassLoader, Validator> validators =
+            CacheBuilder.newBuilder()
+                        .weakKeys()
+                        .build( new CacheLoader<ClassLoader, Validator>()
+                        {
+                            @Override
+                            public Validator load( @Nonnull ClassLoader classLoader ) throws Exception
+                            {
+                                ResourceBundleLocator locator = new ModuleResourceBundleLocator( classLoader );
+                                return ValidationManager.this.validatorFactory
+                                        .usingContext()
+                                        .messageInterpolator( new ResourceBundleMessageInterpolator( locator, false ) )
+                                        .getValidator();
+                            }
+                        } );
 
     ValidationManager()
     {
@@ -47,15 +65,17 @@ final class ValidationManager
                           } )
                           .configure()
                           .ignoreXmlConfiguration()
-                          .messageInterpolator( new ResourceBundleMessageInterpolator( new MosaicAwareResourceBundleLocator(), false ) )
                           .parameterNameProvider( new MosaicValidationParameterNameProvider() );
-        this.validator = new MosaicAwareValidator( configuration.buildValidatorFactory().getValidator() );
+        this.validatorFactory = configuration.buildValidatorFactory();
     }
 
+    /**
+     * Returns the validator for classes of the given class loader (typically, of a single module).
+     */
     @Nonnull
-    Validator getValidator()
+    Validator getValidator( @Nonnull ClassLoader classLoader )
     {
-        return this.validator;
+        return this.validators.getUnchecked( classLoader );
     }
 
     @EventListener
@@ -64,179 +84,24 @@ final class ValidationManager
         if( event.getEventType() == ModuleEventType.UNRESOLVED )
         {
             ResourceBundle.clearCache();
+            this.validators.invalidateAll();
         }
     }
 
-    private class MosaicAwareValidator implements Validator, ExecutableValidator
+    private static class ModuleResourceBundleLocator implements ResourceBundleLocator
     {
         @Nonnull
-        private final Validator validator;
+        private final ClassLoader classLoader;
 
-        @Nonnull
-        private final ExecutableValidator executableValidator;
-
-        private MosaicAwareValidator( @Nonnull Validator validator )
-        {
-            this.validator = validator;
-            this.executableValidator = this.validator.forExecutables();
-        }
-
-        @Override
-        public <T> Set<ConstraintViolation<T>> validate( T object, Class<?>... groups )
-        {
-            ClassLoader prev = classLoaderHolder.get();
-            try
-            {
-                classLoaderHolder.set( object.getClass().getClassLoader() );
-                return this.validator.validate( object, groups );
-            }
-            finally
-            {
-                classLoaderHolder.set( prev );
-            }
-        }
-
-        @Override
-        public <T> Set<ConstraintViolation<T>> validateProperty( T object, String propertyName, Class<?>... groups )
-        {
-            ClassLoader prev = classLoaderHolder.get();
-            try
-            {
-                classLoaderHolder.set( object.getClass().getClassLoader() );
-                return this.validator.validateProperty( object, propertyName, groups );
-            }
-            finally
-            {
-                classLoaderHolder.set( prev );
-            }
-        }
-
-        @Override
-        public <T> Set<ConstraintViolation<T>> validateValue( Class<T> beanType,
-                                                              String propertyName,
-                                                              Object value,
-                                                              Class<?>... groups )
-        {
-            ClassLoader prev = classLoaderHolder.get();
-            try
-            {
-                classLoaderHolder.set( beanType.getClassLoader() );
-                return this.validator.validateValue( beanType, propertyName, value, groups );
-            }
-            finally
-            {
-                classLoaderHolder.set( prev );
-            }
-        }
-
-        @Override
-        public BeanDescriptor getConstraintsForClass( Class<?> clazz )
-        {
-            ClassLoader prev = classLoaderHolder.get();
-            try
-            {
-                classLoaderHolder.set( clazz.getClassLoader() );
-                return this.validator.getConstraintsForClass( clazz );
-            }
-            finally
-            {
-                classLoaderHolder.set( prev );
-            }
-        }
-
-        @Override
-        public <T> T unwrap( Class<T> type )
+        private ModuleResourceBundleLocator( @Nonnull ClassLoader classLoader )
         {
-            throw new ValidationException( "Type " + type.getName() + " not supported for unwrapping." );
+            this.classLoader = classLoader;
         }
 
-        @Override
-        public ExecutableValidator forExecutables()
-        {
-            return this;
-        }
-
-        @Override
-        public <T> Set<ConstraintViolation<T>> validateParameters( T object,
-                                                                   Method method,
-                                                                   Object[] parameterValues,
-                                                                   Class<?>... groups )
-        {
-            ClassLoader prev = classLoaderHolder.get();
-            try
-            {
-                classLoaderHolder.set( object != null
-                                       ? object.getClass().getClassLoader()
-                                       : method.getDeclaringClass().getClassLoader() );
-                return this.executableValidator.validateParameters( object, method, parameterValues, groups );
-            }
-            finally
-            {
-                classLoaderHolder.set( prev );
-            }
-        }
-
-        @Override
-        public <T> Set<ConstraintViolation<T>> validateReturnValue( T object,
-                                                                    Method method,
-                                                                    Object returnValue,
-                                                                    Class<?>... groups )
-        {
-            ClassLoader prev = classLoaderHolder.get();
-            try
-            {
-                classLoaderHolder.set( object != null
-                                       ? object.getClass().getClassLoader()
-                                       : method.getDeclaringClass().getClassLoader() );
-                return this.executableValidator.validateReturnValue( object, method, returnValue, groups );
-            }
-            finally
-            {
-                classLoaderHolder.set( prev );
-            }
-        }
-
-        @Override
-        public <T> Set<ConstraintViolation<T>> validateConstructorParameters( Constructor<? extends T> constructor,
-                                                                              Object[] parameterValues,
-                                                                              Class<?>... groups )
-        {
-            ClassLoader prev = classLoaderHolder.get();
-            try
-            {
-                classLoaderHolder.set( constructor.getDeclaringClass().getClassLoader() );
-                return this.executableValidator.validateConstructorParameters( constructor, parameterValues, groups );
-            }
-            finally
-            {
-                classLoaderHolder.set( prev );
-            }
-        }
-
-        @Override
-        public <T> Set<ConstraintViolation<T>> validateConstructorReturnValue( Constructor<? extends T> constructor,
-                                                                               T createdObject,
-                                                                               Class<?>... groups )
-        {
-            ClassLoader prev = classLoaderHolder.get();
-            try
-            {
-                classLoaderHolder.set( createdObject.getClass().getClassLoader() );
-                return this.executableValidator.validateConstructorReturnValue( constructor, createdObject, groups );
-            }
-            finally
-            {
-                classLoaderHolder.set( prev );
-            }
-        }
-    }
-
-    private class MosaicAwareResourceBundleLocator implements ResourceBundleLocator
-    {
         @Override
         public ResourceBundle getResourceBundle( Locale locale )
         {
-            return ResourceBundle.getBundle( "ValidationMessages", locale, classLoaderHolder.get() );
+            return ResourceBundle.getBundle( "ValidationMessages", locale, this.classLoader );
         }
     }
 
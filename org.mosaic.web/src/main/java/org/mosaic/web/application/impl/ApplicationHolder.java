@@ -1,15 +1,12 @@
 package org.mosaic.web.application.impl;
 
 import com.google.common.base.Optional;
-import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.validation.Schema;
-import javax.xml.xpath.XPathException;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.Period;
 import org.mosaic.modules.*;
@@ -18,18 +15,12 @@ import org.mosaic.util.collections.ConcurrentHashMapEx;
 import org.mosaic.util.collections.LinkedHashMapEx;
 import org.mosaic.util.collections.MapEx;
 import org.mosaic.util.collections.UnmodifiableMapEx;
-import org.mosaic.util.properties.PropertyPlaceholderResolver;
 import org.mosaic.util.resource.PathMatcher;
-import org.mosaic.util.xml.XmlDocument;
-import org.mosaic.util.xml.XmlElement;
-import org.mosaic.util.xml.XmlParser;
 import org.mosaic.web.application.Application;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.SAXException;
 
 import static java.nio.file.Files.exists;
-import static org.mosaic.util.reflection.TypeTokens.STRING;
 
 /**
  * @author arik
@@ -38,8 +29,6 @@ final class ApplicationHolder
 {
     private static final Logger LOG = LoggerFactory.getLogger( ApplicationHolder.class );
 
-    private static final PropertyPlaceholderResolver PROPERTY_PLACEHOLDER_RESOLVER = new PropertyPlaceholderResolver();
-
     private static final String UNKNOWN_REALM_NAME = "org.mosaic.security.realm.unknown";
 
     private static final String UNKNOWN_PERMISSION_POLICY_NAME = "org.mosaic.security.permissionPolicies.unknown";
@@ -53,6 +42,9 @@ final class ApplicationHolder
     @Nonnull
     private final String id;
 
+    @Nonnull
+    private final ApplicationPartCache partCache;
+
     @Nonnull
     private final Set<Path> applicationFiles = new HashSet<>();
 
@@ -78,18 +70,16 @@ final class ApplicationHolder
     @Service
     private PathMatcher pathMatcher;
 
-    @Nonnull
-    @Service
-    private XmlParser xmlParser;
-
     @Nullable
     private ServiceRegistration<Application> registration;
 
     ApplicationHolder( @Nonnull String id,
+                       @Nonnull ApplicationPartCache partCache,
                        @Nonnull Schema applicationSchema,
                        @Nonnull Schema applicationFragmentSchema )
     {
         this.id = id;
+        this.partCache = partCache;
         this.applicationSchema = applicationSchema;
         this.applicationFragmentSchema = applicationFragmentSchema;
     }
@@ -103,6 +93,7 @@ final class ApplicationHolder
     void removeApplicationFile( @Nonnull Path file )
     {
         this.applicationFiles.remove( file.normalize().toAbsolutePath() );
+        this.partCache.evict( file.normalize().toAbsolutePath() );
         updateApplication();
     }
 
@@ -115,18 +106,19 @@ final class ApplicationHolder
     void removeContributionFile( @Nonnull Path file )
     {
         this.contributionFiles.remove( file.normalize().toAbsolutePath() );
+        this.partCache.evict( file.normalize().toAbsolutePath() );
         updateApplication();
     }
 
     private synchronized void updateApplication()
     {
-        // parse all application files
-        Map<Path, XmlElement> xmlElements = new LinkedHashMap<>();
+        // collect the parsed application files - only files that changed since last time are actually re-parsed
+        List<ApplicationPart> parts = new LinkedList<>();
         for( Path file : ApplicationHolder.this.contributionFiles )
         {
             try
             {
-                xmlElements.put( file, parse( file, ApplicationHolder.this.applicationFragmentSchema ) );
+                parts.add( this.partCache.get( file, ApplicationHolder.this.applicationFragmentSchema ) );
             }
             catch( Throwable e )
             {
@@ -138,7 +130,7 @@ final class ApplicationHolder
         {
             try
             {
-                xmlElements.put( file, parse( file, ApplicationHolder.this.applicationSchema ) );
+                parts.add( this.partCache.get( file, ApplicationHolder.this.applicationSchema ) );
             }
             catch( Throwable e )
             {
@@ -148,7 +140,7 @@ final class ApplicationHolder
         }
 
         // if no application XML files left - destry the application
-        if( xmlElements.isEmpty() )
+        if( parts.isEmpty() )
         {
             unregisterApplication();
             LOG.info( "Application '{}' has been deleted", this.id );
@@ -158,7 +150,7 @@ final class ApplicationHolder
             ApplicationImpl application;
             try
             {
-                application = new ApplicationImpl( xmlElements );
+                application = new ApplicationImpl( parts );
             }
             catch( Throwable e )
             {
@@ -166,8 +158,14 @@ final class ApplicationHolder
                 return;
             }
 
-            unregisterApplication();
+            // register the new application before removing the old one, so that it is never missing (consumers
+            // replace the previous instance, identified by the application ID)
+            ServiceRegistration<Application> previous = this.registration;
             this.registration = this.module.register( Application.class, application, Property.property( "id", this.id ) );
+            if( previous != null )
+            {
+                previous.unregister();
+            }
             LOG.info( "Application '{}' has been added/updated", this.id );
         }
     }
@@ -182,15 +180,6 @@ final class ApplicationHolder
         }
     }
 
-    @Nonnull
-    private XmlElement parse( @Nonnull Path file, @Nonnull Schema schema )
-            throws IOException, SAXException, ParserConfigurationException
-    {
-        XmlDocument document = ApplicationHolder.this.xmlParser.parse( file, schema );
-        document.addNamespace( "m", "http://www.mosaicserver.com/application-1.0.0" );
-        return document.getRoot();
-    }
-
     private class ApplicationImpl implements Application
     {
         @Nonnull
@@ -212,13 +201,12 @@ final class ApplicationHolder
         private final String permissionPolicyName;
 
         @Nonnull
-        private final Set<SecuredPath> securityConstraints;
+        private final SecuredPathIndex securedPathIndex;
 
         @Nonnull
         private final Set<Path> contentRoots;
 
-        private ApplicationImpl( Map<Path, XmlElement> xmlElements )
-                throws IOException, SAXException, ParserConfigurationException, XPathException
+        private ApplicationImpl( @Nonnull List<ApplicationPart> parts )
         {
             String[] idTokens = StringUtils.splitByCharacterTypeCamelCase( ApplicationHolder.this.id );
             StringBuilder name = new StringBuilder();
@@ -237,44 +225,30 @@ final class ApplicationHolder
             String permissionPolicyName = UNKNOWN_PERMISSION_POLICY_NAME;
             Set<Path> contentRoots = new LinkedHashSet<>();
 
-            for( Map.Entry<Path, XmlElement> entry : xmlElements.entrySet() )
+            for( ApplicationPart part : parts )
             {
-                Path file = entry.getKey();
-                XmlElement appElt = entry.getValue();
+                Path file = part.getFile();
 
-                Optional<String> nameValue = appElt.find( "m:name", STRING );
-                if( nameValue.isPresent() )
+                if( part.getName() != null )
                 {
-                    nameHolder = nameValue.get();
+                    nameHolder = part.getName();
                 }
-
-                for( XmlElement parameterElt : appElt.findElements( "m:context/m:parameter" ) )
+                context.putAll( part.getContext() );
+                virtualHosts.addAll( part.getVirtualHosts() );
+                if( part.getMaxSessionAge() != null )
                 {
-                    Optional<String> value = parameterElt.getValue();
-                    if( value.isPresent() )
-                    {
-                        context.put( parameterElt.getAttribute( "name" ).get(), PROPERTY_PLACEHOLDER_RESOLVER.resolve( value.get() ) );
-                    }
+                    maxSessionAgeString = part.getMaxSessionAge();
                 }
-
-                for( String vhost : appElt.findTexts( "m:virtual-hosts/m:virtual-host" ) )
+                if( part.getRealmName() != null )
                 {
-                    virtualHosts.add( PROPERTY_PLACEHOLDER_RESOLVER.resolve( vhost ).toLowerCase() );
+                    realmName = part.getRealmName();
                 }
-
-                maxSessionAgeString = appElt.find( "m:max-session-age", STRING ).or( maxSessionAgeString );
-
-                realmName = appElt.find( "m:security/m:realm", STRING ).or( realmName );
-                permissionPolicyName = appElt.find( "m:security/m:permission-policy", STRING ).or( permissionPolicyName );
-                for( XmlElement constraintElt : appElt.findElements( "m:security/m:constraint" ) )
+                if( part.getPermissionPolicyName() != null )
                 {
-                    securityConstraints.add( new SecuredPathImpl( constraintElt ) );
-                }
-
-                for( String contentRootPath : appElt.findTexts( "m:resources/m:content-roots/m:content-root" ) )
-                {
-                    contentRoots.add( Paths.get( PROPERTY_PLACEHOLDER_RESOLVER.resolve( contentRootPath ) ).normalize().toAbsolutePath() );
+                    permissionPolicyName = part.getPermissionPolicyName();
                 }
+                securityConstraints.addAll( part.getSecuredPaths() );
+                contentRoots.addAll( part.getContentRoots() );
 
                 if( file.toString().equals( "/WEB-INF/application.xml" ) )
                 {
@@ -318,7 +292,7 @@ final class ApplicationHolder
             this.maxSessionAge = maxSessionAge;
             this.realmName = realmName;
             this.permissionPolicyName = permissionPolicyName;
-            this.securityConstraints = Collections.unmodifiableSet( securityConstraints );
+            this.securedPathIndex = new SecuredPathIndex( new ArrayList<>( securityConstraints ), ApplicationHolder.this.pathMatcher );
             this.contentRoots = Collections.unmodifiableSet( contentRoots );
         }
 
@@ -422,14 +396,7 @@ final class ApplicationHolder
         @Override
         public Application.SecuredPath getConstraintForPath( @Nonnull String path )
         {
-            for( SecuredPath constraint : this.securityConstraints )
-            {
-                if( ApplicationHolder.this.pathMatcher.matches( constraint.getPath(), path ) )
-                {
-                    return constraint;
-                }
-            }
-            return null;
+            return this.securedPathIndex.find( path );
         }
     }
 }
@@ -22,8 +22,6 @@ import org.mosaic.pathwatchers.OnPathDeleted;
 import org.mosaic.pathwatchers.OnPathModified;
 import org.mosaic.server.Server;
 import org.mosaic.util.xml.StrictErrorHandler;
-import org.mosaic.util.xml.XmlElement;
-import org.mosaic.util.xml.XmlParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
@@ -85,6 +83,9 @@ final class ApplicationManager
     @Nonnull
     private final Map<String, ApplicationHolder> applications = new ConcurrentHashMap<>();
 
+    @Nonnull
+    private final ApplicationPartCache partCache = new ApplicationPartCache();
+
     @Nonnull
     private final Schema applicationSchema;
 
@@ -99,10 +100,6 @@ final class ApplicationManager
     @Service
     private Server server;
 
-    @Nonnull
-    @Service
-    private XmlParser xmlParser;
-
     ApplicationManager() throws IOException, SAXException
     {
         Path appSchemaFile = this.server.getHome().resolve( "schemas/application-1.0.0.xsd" );
@@ -152,15 +149,15 @@ final class ApplicationManager
             {
                 Path file = fileHolder.get();
 
-                Optional<XmlElement> appEltHolder = getModuleApplicationXml( file );
-                if( appEltHolder.isPresent() )
+                Optional<String> idHolder = getModuleApplicationId( file );
+                if( idHolder.isPresent() )
                 {
-                    String id = appEltHolder.get().getAttribute( "id" ).get();
+                    String id = idHolder.get();
 
                     ApplicationHolder application = this.applications.get( id );
                     if( application == null )
                     {
-                        application = new ApplicationHolder( id, this.applicationSchema, this.applicationFragmentSchema );
+                        application = new ApplicationHolder( id, this.partCache, this.applicationSchema, this.applicationFragmentSchema );
                         this.applications.put( id, application );
                     }
                     application.addContributionFile( file );
@@ -191,7 +188,7 @@ final class ApplicationManager
         ApplicationHolder application = this.applications.get( id );
         if( application == null )
         {
-            application = new ApplicationHolder( id, this.applicationSchema, this.applicationFragmentSchema );
+            application = new ApplicationHolder( id, this.partCache, this.applicationSchema, this.applicationFragmentSchema );
             this.applications.put( id, application );
         }
         application.addApplicationFile( file );
@@ -217,11 +214,13 @@ final class ApplicationManager
     }
 
     @Nonnull
-    private Optional<XmlElement> getModuleApplicationXml( @Nonnull Path file )
+    private Optional<String> getModuleApplicationId( @Nonnull Path file )
     {
         try
         {
-            return Optional.of( this.xmlParser.parse( file, this.applicationFragmentSchema ).getRoot() );
+            // parsed through the shared cache, so the application holder will not parse it again
+            ApplicationPart part = this.partCache.get( file.normalize().toAbsolutePath(), this.applicationFragmentSchema );
+            return Optional.fromNullable( part.getId() );
         }
         catch( Throwable e )
         {
@@ -0,0 +1,169 @@
+package org.mosaic.web.application.impl;
+
+import com.google.common.base.Optional;
+import com.google.common.hash.HashCode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.xpath.XPathException;
+import org.mosaic.util.properties.PropertyPlaceholderResolver;
+import org.mosaic.util.xml.XmlElement;
+import org.mosaic.web.application.Application;
+
+import static org.mosaic.util.reflection.TypeTokens.STRING;
+
+/**
+ * The parsed model of a single application XML document - either an application file or a module's application
+ * fragment. Applications are merged from their parts, so a changed document only requires re-parsing that document.
+ *
+ * @author arik
+ */
+final class ApplicationPart
+{
+    private static final PropertyPlaceholderResolver PROPERTY_PLACEHOLDER_RESOLVER = new PropertyPlaceholderResolver();
+
+    @Nonnull
+    private final Path file;
+
+    @Nonnull
+    private final HashCode hash;
+
+    @Nullable
+    private final String id;
+
+    @Nullable
+    private final String name;
+
+    @Nonnull
+    private final Map<String, String> context;
+
+    @Nonnull
+    private final List<String> virtualHosts;
+
+    @Nullable
+    private final String maxSessionAge;
+
+    @Nullable
+    private final String realmName;
+
+    @Nullable
+    private final String permissionPolicyName;
+
+    @Nonnull
+    private final List<Application.SecuredPath> securedPaths;
+
+    @Nonnull
+    private final List<Path> contentRoots;
+
+    ApplicationPart( @Nonnull Path file, @Nonnull HashCode hash, @Nonnull XmlElement appElt ) throws XPathException
+    {
+        this.file = file;
+        this.hash = hash;
+        this.id = appElt.getAttribute( "id" ).orNull();
+        this.name = appElt.find( "m:name", STRING ).orNull();
+
+        Map<String, String> context = new LinkedHashMap<>();
+        for( XmlElement parameterElt : appElt.findElements( "m:context/m:parameter" ) )
+        {
+            Optional<String> value = parameterElt.getValue();
+            if( value.isPresent() )
+            {
+                context.put( parameterElt.getAttribute( "name" ).get(), PROPERTY_PLACEHOLDER_RESOLVER.resolve( value.get() ) );
+            }
+        }
+        this.context = Collections.unmodifiableMap( context );
+
+        List<String> virtualHosts = new LinkedList<>();
+        for( String vhost : appElt.findTexts( "m:virtual-hosts/m:virtual-host" ) )
+        {
+            virtualHosts.add( PROPERTY_PLACEHOLDER_RESOLVER.resolve( vhost ).toLowerCase() );
+        }
+        this.virtualHosts = Collections.unmodifiableList( virtualHosts );
+
+        this.maxSessionAge = appElt.find( "m:max-session-age", STRING ).orNull();
+        this.realmName = appElt.find( "m:security/m:realm", STRING ).orNull();
+        this.permissionPolicyName = appElt.find( "m:security/m:permission-policy", STRING ).orNull();
+
+        List<Application.SecuredPath> securedPaths = new LinkedList<>();
+        for( XmlElement constraintElt : appElt.findElements( "m:security/m:constraint" ) )
+        {
+            securedPaths.add( new SecuredPathImpl( constraintElt ) );
+        }
+        this.securedPaths = Collections.unmodifiableList( securedPaths );
+
+        List<Path> contentRoots = new LinkedList<>();
+        for( String contentRootPath : appElt.findTexts( "m:resources/m:content-roots/m:content-root" ) )
+        {
+            contentRoots.add( Paths.get( PROPERTY_PLACEHOLDER_RESOLVER.resolve( contentRootPath ) ).normalize().toAbsolutePath() );
+        }
+        this.contentRoots = Collections.unmodifiableList( contentRoots );
+    }
+
+    @Nonnull
+    Path getFile()
+    {
+        return this.file;
+    }
+
+    @Nonnull
+    HashCode getHash()
+    {
+        return this.hash;
+    }
+
+    @Nullable
+    String getId()
+    {
+        return this.id;
+    }
+
+    @Nullable
+    String getName()
+    {
+        return this.name;
+    }
+
+    @Nonnull
+    Map<String, String> getContext()
+    {
+        return this.context;
+    }
+
+    @Nonnull
+    List<String> getVirtualHosts()
+    {
+        return this.virtualHosts;
+    }
+
+    @Nullable
+    String getMaxSessionAge()
+    {
+        return this.maxSessionAge;
+    }
+
+    @Nullable
+    String getRealmName()
+    {
+        return this.realmName;
+    }
+
+    @Nullable
+    String getPermissionPolicyName()
+    {
+        return this.permissionPolicyName;
+    }
+
+    @Nonnull
+    List<Application.SecuredPath> getSecuredPaths()
+    {
+        return this.securedPaths;
+    }
+
+    @Nonnull
+    List<Path> getContentRoots()
+    {
+        return this.contentRoots;
+    }
+}
@@ -0,0 +1,67 @@
+package org.mosaic.web.application.impl;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.validation.Schema;
+import javax.xml.xpath.XPathException;
+import org.mosaic.modules.Service;
+import org.mosaic.util.xml.XmlDocument;
+import org.mosaic.util.xml.XmlParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Caches parsed {@link ApplicationPart application parts} by file and content hash, so that unchanged application
+ * documents are never re-parsed or re-validated when an application is rebuilt.
+ *
+ * @author arik
+ */
+final class ApplicationPartCache
+{
+    private static final Logger LOG = LoggerFactory.getLogger( ApplicationPartCache.class );
+
+    @Nonnull
+    private final ConcurrentMap<Path, ApplicationPart> parts = new ConcurrentHashMap<>();
+
+    @Nonnull
+    @Service
+    private XmlParser xmlParser;
+
+    /**
+     * Returns the parsed model of the given file, parsing it only if its content changed since it was last parsed.
+     */
+    @Nonnull
+    ApplicationPart get( @Nonnull Path file, @Nonnull Schema schema )
+            throws IOException, SAXException, ParserConfigurationException, XPathException
+    {
+        byte[] content = Files.readAllBytes( file );
+        HashCode hash = Hashing.sha256().hashBytes( content );
+
+        ApplicationPart part = this.parts.get( file );
+        if( part != null && part.getHash().equals( hash ) )
+        {
+            return part;
+        }
+
+        LOG.debug( "Parsing application file '{}'", file );
+        XmlDocument document = this.xmlParser.parse( file.toUri().toString(), schema, new ByteArrayInputStream( content ) );
+        document.addNamespace( "m", "http://www.mosaicserver.com/application-1.0.0" );
+        part = new ApplicationPart( file, hash, document.getRoot() );
+        this.parts.put( file, part );
+        return part;
+    }
+
+    void evict( @Nonnull Path file )
+    {
+        this.parts.remove( file );
+    }
+}
@@ -0,0 +1,295 @@
+package org.mosaic.web.application.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.*;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.mosaic.util.resource.PathMatcher;
+import org.mosaic.web.application.Application;
+
+/**
+ * Finds the first secured path (in declaration order) whose pattern matches a given request path.
+ * <p/>
+ * Patterns are compiled into a segment trie with literal, wildcard-segment and {@code **} edges, so a lookup only
+ * walks the branches that can match the path's segments rather than trying every pattern. The trie deliberately
+ * over-approximates (e.g. it ignores leading and trailing slashes), so its candidates are confirmed by the path matcher
+ * in declaration order, which keeps the exact semantics of matching every pattern in turn. Results are memoized per
+ * normalized path in a bounded cache.
+ *
+ * @author arik
+ */
+final class SecuredPathIndex
+{
+    private static final int CACHE_SIZE = 1000;
+
+    private static final Integer NO_MATCH = -1;
+
+    @Nonnull
+    private final List<Application.SecuredPath> securedPaths;
+
+    @Nonnull
+    private final PathMatcher pathMatcher;
+
+    @Nonnull
+    private final Node root = new Node( 0 );
+
+    private final int nodeCount;
+
+    @Nonnull
+    private final Cache<String, Integer> cache = CacheBuilder.newBuilder().maximumSize( CACHE_SIZE ).build();
+
+    SecuredPathIndex( @Nonnull List<Application.SecuredPath> securedPaths, @Nonnull PathMatcher pathMatcher )
+    {
+        this.securedPaths = securedPaths;
+        this.pathMatcher = pathMatcher;
+
+        int nodeCount = 1;
+        for( int index = 0; index < securedPaths.size(); index++ )
+        {
+            Node node = this.root;
+            for( String segment : tokenize( securedPaths.get( index ).getPath() ) )
+            {
+                Node child = node.getChild( segment );
+                if( child == null )
+                {
+                    child = node.addChild( segment, new Node( nodeCount++ ) );
+                }
+                node = child;
+            }
+            node.terminals.add( index );
+        }
+        this.nodeCount = nodeCount;
+    }
+
+    @Nullable
+    Application.SecuredPath find( @Nonnull String path )
+    {
+        if( this.securedPaths.isEmpty() )
+        {
+            return null;
+        }
+
+        String normalizedPath = normalize( path );
+        Integer index = this.cache.getIfPresent( normalizedPath );
+        if( index == null )
+        {
+            index = match( normalizedPath );
+            this.cache.put( normalizedPath, index );
+        }
+        return index.equals( NO_MATCH ) ? null : this.securedPaths.get( index );
+    }
+
+    @Nonnull
+    private Integer match( @Nonnull String path )
+    {
+        String[] segments = tokenize( path );
+        BitSet candidates = new BitSet( this.securedPaths.size() );
+        collect( this.root, segments, 0, candidates, new BitSet( this.nodeCount * ( segments.length + 1 ) ) );
+
+        for( int index = candidates.nextSetBit( 0 ); index >= 0; index = candidates.nextSetBit( index + 1 ) )
+        {
+            if( this.pathMatcher.matches( this.securedPaths.get( index ).getPath(), path ) )
+            {
+                return index;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private void collect( @Nonnull Node node,
+                          @Nonnull String[] segments,
+                          int position,
+                          @Nonnull BitSet candidates,
+                          @Nonnull BitSet visited )
+    {
+        // each node is visited at most once per path position, which keeps multiple '**' patterns linear
+        int state = node.id * ( segments.length + 1 ) + position;
+        if( visited.get( state ) )
+        {
+            return;
+        }
+        visited.set( state );
+
+        if( position == segments.length )
+        {
+            for( Integer index : node.terminals )
+            {
+                candidates.set( index );
+            }
+        }
+
+        // '**' consumes zero or more segments
+        if( node.anyDepthChild != null )
+        {
+            for( int next = position; next <= segments.length; next++ )
+            {
+                collect( node.anyDepthChild, segments, next, candidates, visited );
+            }
+        }
+
+        if( position < segments.length )
+        {
+            String segment = segments[ position ];
+
+            Node literalChild = node.literalChildren.get( segment );
+            if( literalChild != null )
+            {
+                collect( literalChild, segments, position + 1, candidates, visited );
+            }
+
+            for( Map.Entry<Pattern, Node> entry : node.wildcardChildren.entrySet() )
+            {
+                if( entry.getKey().matcher( segment ).matches() )
+                {
+                    collect( entry.getValue(), segments, position + 1, candidates, visited );
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    private static String normalize( @Nonnull String path )
+    {
+        // repeated separators do not affect matching - collapse them so such paths share a cache entry
+        if( !path.contains( "//" ) )
+        {
+            return path;
+        }
+
+        StringBuilder normalized = new StringBuilder( path.length() );
+        char previous = 0;
+        for( int i = 0; i < path.length(); i++ )
+        {
+            char c = path.charAt( i );
+            if( c != '/' || previous != '/' )
+            {
+                normalized.append( c );
+            }
+            previous = c;
+        }
+        return normalized.toString();
+    }
+
+    @Nonnull
+    private static String[] tokenize( @Nonnull String path )
+    {
+        List<String> tokens = new ArrayList<>();
+        for( String token : path.split( "/" ) )
+        {
+            String trimmed = token.trim();
+            if( !trimmed.isEmpty() )
+            {
+                tokens.add( trimmed );
+            }
+        }
+        return tokens.toArray( new String[ tokens.size() ] );
+    }
+
+    @Nonnull
+    private static Pattern compileSegment( @Nonnull String segment )
+    {
+        StringBuilder regex = new StringBuilder( segment.length() + 10 );
+        int depth = 0;
+        for( int i = 0; i < segment.length(); i++ )
+        {
+            char c = segment.charAt( i );
+            if( c == '{' )
+            {
+                // URI template variables may carry arbitrary regular expressions - accept anything here, and leave
+                // the exact decision to the path matcher
+                if( depth++ == 0 )
+                {
+                    regex.append( ".*" );
+                }
+            }
+            else if( c == '}' )
+            {
+                depth = Math.max( 0, depth - 1 );
+            }
+            else if( depth == 0 )
+            {
+                if( c == '*' )
+                {
+                    regex.append( ".*" );
+                }
+                else if( c == '?' )
+                {
+                    regex.append( '.' );
+                }
+                else
+                {
+                    regex.append( Pattern.quote( String.valueOf( c ) ) );
+                }
+            }
+        }
+        return Pattern.compile( regex.toString(), Pattern.DOTALL );
+    }
+
+    private static final class Node
+    {
+        private final int id;
+
+        @Nonnull
+        private final Map<String, Node> literalChildren = new HashMap<>();
+
+        @Nonnull
+        private final Map<Pattern, Node> wildcardChildren = new LinkedHashMap<>();
+
+        @Nonnull
+        private final Map<String, Node> wildcardChildrenBySegment = new HashMap<>();
+
+        @Nullable
+        private Node anyDepthChild;
+
+        @Nonnull
+        private final List<Integer> terminals = new ArrayList<>( 1 );
+
+        private Node( int id )
+        {
+            this.id = id;
+        }
+
+        @Nullable
+        private Node getChild( @Nonnull String segment )
+        {
+            if( "**".equals( segment ) )
+            {
+                return this.anyDepthChild;
+            }
+            else if( isWildcard( segment ) )
+            {
+                return this.wildcardChildrenBySegment.get( segment );
+            }
+            else
+            {
+                return this.literalChildren.get( segment );
+            }
+        }
+
+        @Nonnull
+        private Node addChild( @Nonnull String segment, @Nonnull Node child )
+        {
+            if( "**".equals( segment ) )
+            {
+                this.anyDepthChild = child;
+            }
+            else if( isWildcard( segment ) )
+            {
+                this.wildcardChildren.put( compileSegment( segment ), child );
+                this.wildcardChildrenBySegment.put( segment, child );
+            }
+            else
+            {
+                this.literalChildren.put( segment, child );
+            }
+            return child;
+        }
+
+        private static boolean isWildcard( @Nonnull String segment )
+        {
+            return segment.indexOf( '*' ) >= 0 || segment.indexOf( '?' ) >= 0 || segment.indexOf( '{' ) >= 0;
+        }
+    }
+}
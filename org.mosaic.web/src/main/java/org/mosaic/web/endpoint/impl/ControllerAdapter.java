@@ -5,6 +5,8 @@ import java.lang.annotation.Annotation;
 import java.util.*;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.mosaic.metrics.Histogram;
+import org.mosaic.metrics.Metrics;
 import org.mosaic.modules.Adapter;
 import org.mosaic.modules.MethodEndpoint;
 import org.mosaic.modules.Service;
@@ -50,6 +52,9 @@ final class ControllerAdapter implements RequestHandler, org.mosaic.web.server.S
     @Nullable
     private final ControllerSecurityConstraint securityConstraint;
 
+    @Nonnull
+    private final Histogram latency;
+
     @Nonnull
     @Service
     private ExpressionParser expressionParser;
@@ -84,6 +89,9 @@ final class ControllerAdapter implements RequestHandler, org.mosaic.web.server.S
         Secured securedAnn = this.endpoint.getMethodHandle().getAnnotation( Secured.class );
         this.securityConstraint = securedAnn != null ? new ControllerSecurityConstraint( securedAnn ) : null;
 
+        String controllerClassName = this.endpoint.getMethodHandle().getDeclaringClass().getName();
+        this.latency = Metrics.histogram( "web.controllers." + controllerClassName + "." + this.endpoint.getName() );
+
         // TODO: add resolvers for request query, headers, cookies etc
         this.invoker = this.endpoint.createInvoker(
                 new SimpleParameterResolver<>( "invocation", WebInvocation.class ),
@@ -136,7 +144,16 @@ final class ControllerAdapter implements RequestHandler, org.mosaic.web.server.S
         context.put( "invocation", invocation );
         context.put( "request", invocation.getHttpRequest() );
         context.put( "response", invocation.getHttpResponse() );
-        return this.invoker.resolve( context ).invoke();
+
+        long start = System.nanoTime();
+        try
+        {
+            return this.invoker.resolve( context ).invoke();
+        }
+        finally
+        {
+            this.latency.record( System.nanoTime() - start );
+        }
     }
 
     private class ControllerSecurityConstraint implements SecurityConstraint
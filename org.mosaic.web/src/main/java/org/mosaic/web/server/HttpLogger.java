@@ -18,6 +18,9 @@ public class HttpLogger
     @Nonnull
     private final HttpRequest request;
 
+    @Nullable
+    private String debugString;
+
     public HttpLogger( @Nonnull Logger logger, @Nonnull HttpRequest request )
     {
         this.logger = logger;
@@ -66,6 +69,19 @@ public class HttpLogger
 
     @Nonnull
     private String getDebugString()
+    {
+        // only built once per request, and only when a message is actually logged
+        String debugString = this.debugString;
+        if( debugString == null )
+        {
+            debugString = createDebugString();
+            this.debugString = debugString;
+        }
+        return debugString;
+    }
+
+    @Nonnull
+    private String createDebugString()
     {
         HttpRequestUri uri = this.request.getUri();
 
@@ -146,7 +146,11 @@ public interface HttpRequest
     Reader reader() throws IOException;
 
     @Nonnull
-    <T> T unmarshall( @Nonnull Class<T> type );
+    <T> T unmarshall( @Nonnull Class<T> type ) throws IOException;
+
+    <T> void unmarshallElements( @Nonnull Class<T> elementType,
+                                 @Nonnull HttpRequestBodyUnmarshaller.ElementHandler<? super T> handler )
+            throws IOException;
 
     @Nullable
     HttpRequestPart getPart( @Nonnull String name ) throws IOException;
@@ -172,7 +176,11 @@ public interface HttpRequest
         Reader reader() throws IOException;
 
         @Nonnull
-        <T> T unmarshall( @Nonnull Class<T> type );
+        <T> T unmarshall( @Nonnull Class<T> type ) throws IOException;
+
+        <T> void unmarshallElements( @Nonnull Class<T> elementType,
+                                     @Nonnull HttpRequestBodyUnmarshaller.ElementHandler<? super T> handler )
+                throws IOException;
 
         void saveLocally( @Nonnull Path file ) throws IOException;
 
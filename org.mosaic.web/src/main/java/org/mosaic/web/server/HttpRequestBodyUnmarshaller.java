@@ -0,0 +1,44 @@
+package org.mosaic.web.server;
+
+import com.google.common.net.MediaType;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nonnull;
+
+/**
+ * Converts request bodies (or multipart request parts) of supported content types into objects. Implementations are
+ * published as services and negotiated on the request's {@code Content-Type} header, in service ranking order.
+ * <p/>
+ * Implementations must read directly from the given stream, never buffering the whole body in memory.
+ *
+ * @author arik
+ */
+public interface HttpRequestBodyUnmarshaller
+{
+    boolean canUnmarshall( @Nonnull MediaType mediaType, @Nonnull Class<?> type );
+
+    /**
+     * Reads the entire body into a single object of the given type.
+     *
+     * @throws MalformedRequestBodyException if the body is not valid for the given media type or target type
+     */
+    @Nonnull
+    <T> T unmarshall( @Nonnull InputStream stream, @Nonnull MediaType mediaType, @Nonnull Class<T> type )
+            throws IOException;
+
+    /**
+     * Reads the body as a sequence of elements of the given type (e.g. the items of a JSON array, or CSV rows), passing
+     * each one to the given handler as soon as it is read.
+     *
+     * @throws MalformedRequestBodyException if the body is not valid for the given media type or element type
+     */
+    <T> void unmarshallElements( @Nonnull InputStream stream,
+                                 @Nonnull MediaType mediaType,
+                                 @Nonnull Class<T> elementType,
+                                 @Nonnull ElementHandler<? super T> handler ) throws IOException;
+
+    interface ElementHandler<T>
+    {
+        void handle( @Nonnull T element ) throws IOException;
+    }
+}
@@ -0,0 +1,17 @@
+package org.mosaic.web.server;
+
+/**
+ * @author arik
+ */
+public class MalformedRequestBodyException extends RuntimeException
+{
+    public MalformedRequestBodyException( String message )
+    {
+        super( message );
+    }
+
+    public MalformedRequestBodyException( String message, Throwable cause )
+    {
+        super( message, cause );
+    }
+}
@@ -0,0 +1,36 @@
+package org.mosaic.web.server;
+
+import com.google.common.net.MediaType;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * @author arik
+ */
+public class UnsupportedRequestBodyException extends RuntimeException
+{
+    @Nullable
+    private final MediaType mediaType;
+
+    @Nonnull
+    private final Class<?> type;
+
+    public UnsupportedRequestBodyException( @Nullable MediaType mediaType, @Nonnull Class<?> type )
+    {
+        super( "could not unmarshall request body of type '" + mediaType + "' into '" + type.getName() + "'" );
+        this.mediaType = mediaType;
+        this.type = type;
+    }
+
+    @Nullable
+    public MediaType getMediaType()
+    {
+        return mediaType;
+    }
+
+    @Nonnull
+    public Class<?> getType()
+    {
+        return type;
+    }
+}
@@ -6,6 +6,12 @@ import org.joda.time.Duration;
 import org.mosaic.util.collections.MapEx;
 
 /**
+ * A web session, persisted by the configured {@link WebSessionStore} when the request using it completes.
+ * <p/>
+ * Attribute values should be {@link java.io.Serializable serializable} - other values are only available for the rest
+ * of the request that set them. Sessions are only re-saved when their attributes map is modified, so a value changed
+ * in place must be put into the map again for the change to be saved.
+ *
  * @author arik
  */
 public interface WebSession
@@ -0,0 +1,108 @@
+package org.mosaic.web.server;
+
+import java.io.IOException;
+import java.util.Collection;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Persistent storage for web sessions. Implementations are published as services with a {@code type} property, and
+ * the store to use is selected by the {@code session.store} web configuration key (defaults to {@code file}, an
+ * embedded memory-mapped file store).
+ * <p/>
+ * Stores only deal with opaque, already-serialized session attributes; they are called concurrently and must be
+ * thread-safe.
+ *
+ * @author arik
+ */
+public interface WebSessionStore
+{
+    @Nullable
+    StoredSession load( @Nonnull String id ) throws IOException;
+
+    /**
+     * Creates or fully replaces the given session.
+     */
+    void store( @Nonnull StoredSession session ) throws IOException;
+
+    /**
+     * Updates the last access time of the given session, leaving its attributes untouched. Does nothing if the session
+     * does not exist.
+     */
+    void touch( @Nonnull String id, long lastAccessTime ) throws IOException;
+
+    void remove( @Nonnull String id ) throws IOException;
+
+    /**
+     * Removes all sessions that were inactive longer than their maximum inactive interval as of the given time.
+     *
+     * @return the IDs of the removed sessions
+     */
+    @Nonnull
+    Collection<String> expire( long now ) throws IOException;
+
+    final class StoredSession
+    {
+        @Nonnull
+        private final String id;
+
+        private final long creationTime;
+
+        private final long lastAccessTime;
+
+        private final int maxInactiveInterval;
+
+        @Nonnull
+        private final byte[] attributes;
+
+        /**
+         * @param maxInactiveInterval maximum inactivity in seconds before the session expires; {@code 0} or less for
+         *                            sessions that never expire
+         * @param attributes          serialized session attributes
+         */
+        public StoredSession( @Nonnull String id,
+                              long creationTime,
+                              long lastAccessTime,
+                              int maxInactiveInterval,
+                              @Nonnull byte[] attributes )
+        {
+            this.id = id;
+            this.creationTime = creationTime;
+            this.lastAccessTime = lastAccessTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+            this.attributes = attributes;
+        }
+
+        @Nonnull
+        public String getId()
+        {
+            return this.id;
+        }
+
+        public long getCreationTime()
+        {
+            return this.creationTime;
+        }
+
+        public long getLastAccessTime()
+        {
+            return this.lastAccessTime;
+        }
+
+        public int getMaxInactiveInterval()
+        {
+            return this.maxInactiveInterval;
+        }
+
+        @Nonnull
+        public byte[] getAttributes()
+        {
+            return this.attributes;
+        }
+
+        public boolean isExpired( long now )
+        {
+            return this.maxInactiveInterval > 0 && this.lastAccessTime + this.maxInactiveInterval * 1000l < now;
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package org.mosaic.web.server.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Request;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.mosaic.config.Configurable;
+import org.mosaic.modules.Component;
+import org.mosaic.modules.Service;
+import org.mosaic.security.Subject;
+import org.mosaic.server.Server;
+import org.mosaic.util.collections.MapEx;
+import org.mosaic.web.application.Application;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes an access log entry for each request to {@code access.log} in the server's logs directory.
+ * <p/>
+ * Request threads only copy the request's details into a pre-allocated {@link AccessLogBuffer ring buffer} event; a
+ * background thread formats the events (in the common log format, or as JSON objects) and writes them to the file,
+ * rolling it when it grows beyond the configured size. Configured via the {@code accessLog.*} settings of the web
+ * configuration.
+ *
+ * @author arik
+ */
+@Component
+final class AccessLog
+{
+    private static final Logger LOG = LoggerFactory.getLogger( AccessLog.class );
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final DateTimeFormatter COMMON_DATE_FORMAT = DateTimeFormat.forPattern( "dd/MMM/yyyy:HH:mm:ss Z" ).withLocale( Locale.ENGLISH );
+
+    private static final DateTimeFormatter JSON_DATE_FORMAT = ISODateTimeFormat.dateTime();
+
+    private enum Format
+    {
+        COMMON,
+        JSON
+    }
+
+    @Nonnull
+    @Service
+    private Server server;
+
+    @Nullable
+    private volatile AccessLogBuffer buffer;
+
+    @Nullable
+    private AccessLogWriter writer;
+
+    @Configurable("web")
+    synchronized void configure( @Nonnull MapEx<String, String> cfg )
+    {
+        stop();
+
+        if( !cfg.find( "accessLog.enabled", Boolean.class ).or( true ) )
+        {
+            LOG.info( "Access log is disabled" );
+            return;
+        }
+
+        Format format;
+        String formatName = cfg.find( "accessLog.format" ).or( "common" );
+        try
+        {
+            format = Format.valueOf( formatName.toUpperCase() );
+        }
+        catch( IllegalArgumentException e )
+        {
+            LOG.warn( "Unknown access log format '{}' - using common log format", formatName );
+            format = Format.COMMON;
+        }
+
+        AccessLogBuffer buffer = new AccessLogBuffer( cfg.find( "accessLog.bufferSize", Integer.class ).or( 8192 ) );
+        AccessLogWriter writer = new AccessLogWriter( buffer,
+                                                      this.server.getLogsPath().resolve( "access.log" ),
+                                                      format,
+                                                      cfg.find( "accessLog.maxFileSize", Long.class ).or( 100 * 1024 * 1024l ),
+                                                      cfg.find( "accessLog.maxFiles", Integer.class ).or( 10 ) );
+        writer.start();
+        this.writer = writer;
+        this.buffer = buffer;
+    }
+
+    @PreDestroy
+    synchronized void destroy()
+    {
+        stop();
+    }
+
+    /**
+     * Records the given completed request. Only copies references and numbers into the buffer - all formatting and I/O
+     * happens on the access log thread, except for the client address, which this Jetty version only exposes as a string.
+     */
+    void record( @Nonnull Request request,
+                 long startNanos,
+                 @Nullable Application application,
+                 @Nullable RequestPlan plan )
+    {
+        AccessLogBuffer buffer = this.buffer;
+        if( buffer == null )
+        {
+            return;
+        }
+
+        AccessLogBuffer.Event event = buffer.claim();
+        if( event == null )
+        {
+            return;
+        }
+
+        // the slot must be published even if filling it fails, or the access log thread would wait for it forever
+        boolean filled = false;
+        try
+        {
+            event.timestamp = request.getTimeStamp();
+            event.durationNanos = System.nanoTime() - startNanos;
+            event.status = request.getResponse().getStatus();
+            event.bytes = request.getResponse().getHttpOutput().getWritten();
+            event.method = request.getMethod();
+            event.uri = request.getRequestURI();
+            event.query = request.getQueryString();
+            event.protocol = request.getProtocol();
+            event.clientAddress = request.getRemoteAddr();
+            event.referer = request.getHttpFields().getStringField( HttpHeader.REFERER );
+            event.userAgent = request.getHttpFields().getStringField( HttpHeader.USER_AGENT );
+            event.application = application == null ? null : application.getId();
+            event.handler = plan == null ? null : plan.getRequestHandler();
+            event.user = plan == null ? null : plan.getSubject();
+            filled = true;
+        }
+        finally
+        {
+            event.skipped = !filled;
+            buffer.publish( event );
+        }
+    }
+
+    private void stop()
+    {
+        this.buffer = null;
+
+        AccessLogWriter writer = this.writer;
+        if( writer != null )
+        {
+            writer.shutdown();
+            this.writer = null;
+        }
+    }
+
+    private static class AccessLogWriter extends Thread
+    {
+        private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos( 10 );
+
+        @Nonnull
+        private final AccessLogBuffer buffer;
+
+        @Nonnull
+        private final Path file;
+
+        @Nonnull
+        private final Format format;
+
+        private final long maxFileSize;
+
+        private final int maxFiles;
+
+        @Nonnull
+        private final StringBuilder line = new StringBuilder( 512 );
+
+        @Nullable
+        private Writer out;
+
+        private long fileSize;
+
+        private boolean dirty;
+
+        private long reportedDropped;
+
+        private volatile boolean running = true;
+
+        private AccessLogWriter( @Nonnull AccessLogBuffer buffer,
+                                 @Nonnull Path file,
+                                 @Nonnull Format format,
+                                 long maxFileSize,
+                                 int maxFiles )
+        {
+            super( "mosaic-web-access-log" );
+            setDaemon( true );
+            this.buffer = buffer;
+            this.file = file;
+            this.format = format;
+            this.maxFileSize = maxFileSize;
+            this.maxFiles = maxFiles;
+        }
+
+        @Override
+        public void run()
+        {
+            while( true )
+            {
+                AccessLogBuffer.Event event = this.buffer.poll();
+                if( event != null )
+                {
+                    try
+                    {
+                        if( !event.skipped )
+                        {
+                            write( event );
+                        }
+                    }
+                    catch( RuntimeException e )
+                    {
+                        LOG.warn( "Could not format access log entry: {}", e.getMessage(), e );
+                    }
+                    finally
+                    {
+                        this.buffer.release( event );
+                    }
+                }
+                else if( this.running )
+                {
+                    idle();
+                    LockSupport.parkNanos( this, IDLE_PARK_NANOS );
+                }
+                else
+                {
+                    // stopped, and everything has been written
+                    idle();
+                    close();
+                    return;
+                }
+            }
+        }
+
+        private void shutdown()
+        {
+            this.running = false;
+            LockSupport.unpark( this );
+            try
+            {
+                join( 5000 );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void idle()
+        {
+            Writer out = this.out;
+            if( out != null && this.dirty )
+            {
+                try
+                {
+                    out.flush();
+                    this.dirty = false;
+                }
+                catch( IOException e )
+                {
+                    LOG.error( "Could not write to access log '{}': {}", this.file, e.getMessage(), e );
+                    close();
+                }
+            }
+
+            long dropped = this.buffer.getDropped();
+            if( dropped > this.reportedDropped )
+            {
+                LOG.warn( "Dropped {} access log entries - access log buffer is full", dropped - this.reportedDropped );
+                this.reportedDropped = dropped;
+            }
+        }
+
+        private void write( @Nonnull AccessLogBuffer.Event event )
+        {
+            this.line.setLength( 0 );
+            if( this.format == Format.JSON )
+            {
+                formatJson( event );
+            }
+            else
+            {
+                formatCommon( event );
+            }
+            this.line.append( '\n' );
+
+            try
+            {
+                Writer out = this.out;
+                if( out == null || this.fileSize + this.line.length() > this.maxFileSize )
+                {
+                    out = roll();
+                }
+                out.append( this.line );
+                this.fileSize += this.line.length();
+                this.dirty = true;
+            }
+            catch( IOException e )
+            {
+                LOG.error( "Could not write to access log '{}': {}", this.file, e.getMessage(), e );
+                close();
+            }
+        }
+
+        @Nonnull
+        private Writer roll() throws IOException
+        {
+            if( this.out != null )
+            {
+                close();
+                for( int i = this.maxFiles - 1; i > 0; i-- )
+                {
+                    Path rolled = this.file.resolveSibling( this.file.getFileName() + "." + i );
+                    if( Files.exists( rolled ) )
+                    {
+                        if( i == this.maxFiles - 1 )
+                        {
+                            Files.delete( rolled );
+                        }
+                        else
+                        {
+                            Files.move( rolled, this.file.resolveSibling( this.file.getFileName() + "." + ( i + 1 ) ), StandardCopyOption.REPLACE_EXISTING );
+                        }
+                    }
+                }
+                if( Files.notExists( this.file ) )
+                {
+                    // deleted by someone else in the meantime - nothing to roll
+                }
+                else if( this.maxFiles > 1 )
+                {
+                    Files.move( this.file, this.file.resolveSibling( this.file.getFileName() + ".1" ), StandardCopyOption.REPLACE_EXISTING );
+                }
+                else
+                {
+                    Files.delete( this.file );
+                }
+            }
+
+            Files.createDirectories( this.file.getParent() );
+            this.fileSize = Files.exists( this.file ) ? Files.size( this.file ) : 0;
+            this.out = new BufferedWriter(
+                    new OutputStreamWriter( Files.newOutputStream( this.file, StandardOpenOption.CREATE, StandardOpenOption.APPEND ), UTF_8 ),
+                    64 * 1024 );
+            return this.out;
+        }
+
+        private void close()
+        {
+            Writer out = this.out;
+            if( out != null )
+            {
+                this.out = null;
+                try
+                {
+                    out.close();
+                }
+                catch( IOException e )
+                {
+                    LOG.warn( "Could not close access log '{}': {}", this.file, e.getMessage(), e );
+                }
+            }
+        }
+
+        private void formatCommon( @Nonnull AccessLogBuffer.Event event )
+        {
+            StringBuilder line = this.line;
+            line.append( getClientAddress( event ) ).append( " - " ).append( orDash( getUserName( event ) ) );
+            line.append( " [" ).append( COMMON_DATE_FORMAT.print( event.timestamp ) ).append( "] \"" ).append( event.method ).append( ' ' ).append( event.uri );
+            if( event.query != null )
+            {
+                line.append( '?' ).append( event.query );
+            }
+            line.append( ' ' ).append( event.protocol ).append( "\" " ).append( event.status ).append( ' ' );
+            if( event.bytes > 0 )
+            {
+                line.append( event.bytes );
+            }
+            else
+            {
+                line.append( '-' );
+            }
+        }
+
+        private void formatJson( @Nonnull AccessLogBuffer.Event event )
+        {
+            StringBuilder line = this.line;
+            line.append( "{\"time\":\"" ).append( JSON_DATE_FORMAT.print( event.timestamp ) );
+            line.append( "\",\"durationMicros\":" ).append( TimeUnit.NANOSECONDS.toMicros( event.durationNanos ) );
+            line.append( ",\"client\":" );
+            appendJsonString( getClientAddress( event ) );
+            line.append( ",\"user\":" );
+            appendJsonString( getUserName( event ) );
+            line.append( ",\"method\":" );
+            appendJsonString( event.method );
+            line.append( ",\"uri\":" );
+            appendJsonString( event.uri );
+            line.append( ",\"query\":" );
+            appendJsonString( event.query );
+            line.append( ",\"protocol\":" );
+            appendJsonString( event.protocol );
+            line.append( ",\"status\":" ).append( event.status );
+            line.append( ",\"bytes\":" ).append( Math.max( event.bytes, 0 ) );
+            line.append( ",\"application\":" );
+            appendJsonString( event.application );
+            line.append( ",\"handler\":" );
+            appendJsonString( event.handler == null ? null : event.handler.toString() );
+            line.append( ",\"referer\":" );
+            appendJsonString( event.referer );
+            line.append( ",\"userAgent\":" );
+            appendJsonString( event.userAgent );
+            line.append( '}' );
+        }
+
+        private void appendJsonString( @Nullable String value )
+        {
+            StringBuilder line = this.line;
+            if( value == null )
+            {
+                line.append( "null" );
+                return;
+            }
+
+            line.append( '"' );
+            for( int i = 0; i < value.length(); i++ )
+            {
+                char c = value.charAt( i );
+                switch( c )
+                {
+                    case '"':
+                        line.append( "\\\"" );
+                        break;
+                    case '\\':
+                        line.append( "\\\\" );
+                        break;
+                    case '\n':
+                        line.append( "\\n" );
+                        break;
+                    case '\r':
+                        line.append( "\\r" );
+                        break;
+                    case '\t':
+                        line.append( "\\t" );
+                        break;
+                    default:
+                        if( c < 0x20 )
+                        {
+                            line.append( String.format( "\\u%04x", ( int ) c ) );
+                        }
+                        else
+                        {
+                            line.append( c );
+                        }
+                }
+            }
+            line.append( '"' );
+        }
+
+        @Nonnull
+        private static String getClientAddress( @Nonnull AccessLogBuffer.Event event )
+        {
+            String clientAddress = event.clientAddress;
+            return clientAddress == null ? "-" : clientAddress;
+        }
+
+        @Nullable
+        private static String getUserName( @Nonnull AccessLogBuffer.Event event )
+        {
+            Subject user = event.user;
+            return user != null && user.isAuthenticated() ? user.getName() : null;
+        }
+
+        @Nonnull
+        private static String orDash( @Nullable String value )
+        {
+            return value == null ? "-" : value;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.mosaic.web.server.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.mosaic.security.Subject;
+
+/**
+ * Bounded, lock-free ring buffer of access log events, written by request threads and read by a single consumer.
+ * <p/>
+ * Events are pre-allocated and re-used, so recording a request allocates nothing and never blocks: producers claim a
+ * slot with a single CAS, fill it and publish it by writing its sequence number. If the consumer falls behind and the
+ * buffer is full, events are dropped (and counted) rather than slowing down requests.
+ *
+ * @author arik
+ */
+final class AccessLogBuffer
+{
+    @Nonnull
+    private final Event[] events;
+
+    private final int mask;
+
+    @Nonnull
+    private final AtomicLong claimed = new AtomicLong();
+
+    @Nonnull
+    private final AtomicLong consumed = new AtomicLong();
+
+    @Nonnull
+    private final AtomicLong dropped = new AtomicLong();
+
+    AccessLogBuffer( int minCapacity )
+    {
+        int capacity = Integer.highestOneBit( Math.max( minCapacity, 2 ) - 1 ) << 1;
+        this.events = new Event[ capacity ];
+        for( int i = 0; i < capacity; i++ )
+        {
+            this.events[ i ] = new Event();
+        }
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Claims the next event slot, or returns {@code null} if the buffer is full. A claimed event must be filled and then
+     * {@link #publish(Event) published} - even if filling it failed, in which case it must be marked as
+     * {@link Event#skipped skipped} - since the consumer waits for events in claim order.
+     */
+    @Nullable
+    Event claim()
+    {
+        while( true )
+        {
+            long sequence = this.claimed.get();
+            if( sequence - this.consumed.get() >= this.events.length )
+            {
+                this.dropped.incrementAndGet();
+                return null;
+            }
+            else if( this.claimed.compareAndSet( sequence, sequence + 1 ) )
+            {
+                Event event = this.events[ ( int ) ( sequence & this.mask ) ];
+                event.claimedSequence = sequence;
+                return event;
+            }
+        }
+    }
+
+    void publish( @Nonnull Event event )
+    {
+        event.sequence = event.claimedSequence;
+    }
+
+    /**
+     * Returns the next published event, or {@code null} if there is none yet. Must only be called by the consumer, which
+     * must {@link #release(Event) release} the event when done with it.
+     */
+    @Nullable
+    Event poll()
+    {
+        long sequence = this.consumed.get();
+        Event event = this.events[ ( int ) ( sequence & this.mask ) ];
+        return event.sequence == sequence ? event : null;
+    }
+
+    void release( @Nonnull Event event )
+    {
+        event.clear();
+        this.consumed.lazySet( event.sequence + 1 );
+    }
+
+    long getDropped()
+    {
+        return this.dropped.get();
+    }
+
+    static final class Event
+    {
+        private volatile long sequence = -1;
+
+        private long claimedSequence;
+
+        long timestamp;
+
+        long durationNanos;
+
+        int status;
+
+        long bytes;
+
+        @Nullable
+        String method;
+
+        @Nullable
+        String uri;
+
+        @Nullable
+        String query;
+
+        @Nullable
+        String protocol;
+
+        @Nullable
+        String clientAddress;
+
+        @Nullable
+        String referer;
+
+        @Nullable
+        String userAgent;
+
+        @Nullable
+        String application;
+
+        @Nullable
+        Object handler;
+
+        @Nullable
+        Subject user;
+
+        /**
+         * Whether this event could not be filled, and should not be written.
+         */
+        boolean skipped;
+
+        private void clear()
+        {
+            this.skipped = false;
+            this.method = null;
+            this.uri = null;
+            this.query = null;
+            this.protocol = null;
+            this.clientAddress = null;
+            this.referer = null;
+            this.userAgent = null;
+            this.application = null;
+            this.handler = null;
+            this.user = null;
+        }
+    }
+}
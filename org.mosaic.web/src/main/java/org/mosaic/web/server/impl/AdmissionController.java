@@ -0,0 +1,190 @@
+package org.mosaic.web.server.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.mosaic.metrics.Counter;
+import org.mosaic.metrics.Metrics;
+import org.mosaic.util.collections.MapEx;
+import org.mosaic.web.application.Application;
+
+/**
+ * Decides whether incoming requests are admitted for processing, shedding load once the server's thread pool queue is
+ * too deep, or once too many requests are concurrently processed for an application or a virtual host.
+ * <p/>
+ * Limits are read from the web configuration:
+ * <ul>
+ * <li>{@code admission.maxQueuedRequests} - maximum thread pool queue depth (defaults to half the queue capacity)</li>
+ * <li>{@code admission.virtualHost.<host>.maxConcurrentRequests} - per virtual host concurrency limit</li>
+ * <li>{@code admission.retryAfter} - seconds clients are asked to wait before retrying (defaults to 5)</li>
+ * </ul>
+ * and per application from the {@code admission.maxConcurrentRequests} application context parameter.
+ *
+ * @author arik
+ */
+final class AdmissionController
+{
+    private static final Counter REJECTED = Metrics.counter( "web.request.rejected" );
+
+    private static final String VHOST_PREFIX = "admission.virtualHost.";
+
+    private static final String VHOST_SUFFIX = ".maxConcurrentRequests";
+
+    @Nonnull
+    private final BlockingQueue<Runnable> threadPoolQueue;
+
+    private final int maxQueuedRequests;
+
+    private final int retryAfter;
+
+    @Nonnull
+    private final Map<String, Limiter> virtualHostLimiters;
+
+    @Nonnull
+    private final Map<String, Limiter> applicationLimiters = new ConcurrentHashMap<>();
+
+    AdmissionController( @Nonnull BlockingQueue<Runnable> threadPoolQueue,
+                         int queueCapacity,
+                         @Nonnull MapEx<String, String> cfg )
+    {
+        this.threadPoolQueue = threadPoolQueue;
+        this.maxQueuedRequests = cfg.find( "admission.maxQueuedRequests", Integer.class ).or( queueCapacity / 2 );
+        this.retryAfter = cfg.find( "admission.retryAfter", Integer.class ).or( 5 );
+
+        Map<String, Limiter> virtualHostLimiters = new HashMap<>();
+        for( String key : cfg.keySet() )
+        {
+            if( key.startsWith( VHOST_PREFIX ) && key.endsWith( VHOST_SUFFIX ) )
+            {
+                String host = key.substring( VHOST_PREFIX.length(), key.length() - VHOST_SUFFIX.length() ).toLowerCase();
+                virtualHostLimiters.put( host, new Limiter( null, cfg.find( key, Integer.class ).get() ) );
+            }
+        }
+        this.virtualHostLimiters = virtualHostLimiters;
+    }
+
+    int getRetryAfter()
+    {
+        return this.retryAfter;
+    }
+
+    /**
+     * Attempts to admit a request for the given application and host.
+     *
+     * @return an admission which must be {@link Admission#release() released} once the request is done, or {@code null}
+     * if the request should be rejected
+     */
+    @Nullable
+    Admission admit( @Nonnull Application application, @Nonnull String host )
+    {
+        if( this.maxQueuedRequests > 0 && this.threadPoolQueue.size() > this.maxQueuedRequests )
+        {
+            REJECTED.increment();
+            return null;
+        }
+
+        Limiter virtualHostLimiter = this.virtualHostLimiters.get( host );
+        if( virtualHostLimiter != null && !virtualHostLimiter.tryAcquire() )
+        {
+            REJECTED.increment();
+            return null;
+        }
+
+        Limiter applicationLimiter = getApplicationLimiter( application );
+        if( !applicationLimiter.tryAcquire() )
+        {
+            if( virtualHostLimiter != null )
+            {
+                virtualHostLimiter.release();
+            }
+            REJECTED.increment();
+            return null;
+        }
+
+        return new Admission( virtualHostLimiter, applicationLimiter );
+    }
+
+    @Nonnull
+    private Limiter getApplicationLimiter( @Nonnull Application application )
+    {
+        // applications are re-created when re-configured, in which case we re-read their limit
+        Limiter limiter = this.applicationLimiters.get( application.getId() );
+        if( limiter == null || limiter.application != application )
+        {
+            int limit = application.getContext().find( "admission.maxConcurrentRequests", Integer.class ).or( 0 );
+            limiter = new Limiter( application, limit );
+            this.applicationLimiters.put( application.getId(), limiter );
+        }
+        return limiter;
+    }
+
+    static final class Admission
+    {
+        @Nullable
+        private final Limiter virtualHostLimiter;
+
+        @Nonnull
+        private final Limiter applicationLimiter;
+
+        private Admission( @Nullable Limiter virtualHostLimiter, @Nonnull Limiter applicationLimiter )
+        {
+            this.virtualHostLimiter = virtualHostLimiter;
+            this.applicationLimiter = applicationLimiter;
+        }
+
+        void release()
+        {
+            if( this.virtualHostLimiter != null )
+            {
+                this.virtualHostLimiter.release();
+            }
+            this.applicationLimiter.release();
+        }
+    }
+
+    private static final class Limiter
+    {
+        @Nullable
+        private final Application application;
+
+        private final int limit;
+
+        @Nonnull
+        private final AtomicInteger active = new AtomicInteger();
+
+        private Limiter( @Nullable Application application, int limit )
+        {
+            this.application = application;
+            this.limit = limit;
+        }
+
+        private boolean tryAcquire()
+        {
+            if( this.limit <= 0 )
+            {
+                return true;
+            }
+            else if( this.active.incrementAndGet() > this.limit )
+            {
+                this.active.decrementAndGet();
+                return false;
+            }
+            else
+            {
+                return true;
+            }
+        }
+
+        private void release()
+        {
+            if( this.limit > 0 )
+            {
+                this.active.decrementAndGet();
+            }
+        }
+    }
+}
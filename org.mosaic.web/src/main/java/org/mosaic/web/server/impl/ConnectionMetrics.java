@@ -0,0 +1,98 @@
+package org.mosaic.web.server.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.net.ssl.SSLSession;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.server.HttpConnection;
+import org.mosaic.metrics.Counter;
+import org.mosaic.metrics.Gauge;
+import org.mosaic.metrics.Histogram;
+import org.mosaic.metrics.Metrics;
+
+/**
+ * Connection-level metrics of a connector, collected by listening to its connections (registered as a bean of the
+ * connector). Metrics are named after the connector ({@code web.connector.<name>.*}), so a replaced connector
+ * continues the counters of its predecessor:
+ * <ul>
+ * <li>{@code connections} - number of accepted connections</li>
+ * <li>{@code connections.open} - number of currently open connections</li>
+ * <li>{@code requestsPerConnection} - number of requests served on each closed connection</li>
+ * <li>{@code tls.handshakes} - TLS connections that negotiated a new session (full handshake)</li>
+ * <li>{@code tls.resumptions} - TLS connections that resumed a cached session (abbreviated handshake)</li>
+ * </ul>
+ *
+ * @author arik
+ */
+final class ConnectionMetrics implements Connection.Listener
+{
+    @Nonnull
+    private final Counter connections;
+
+    @Nonnull
+    private final AtomicLong openConnections = new AtomicLong();
+
+    @Nonnull
+    private final Histogram requestsPerConnection;
+
+    @Nonnull
+    private final Counter tlsHandshakes;
+
+    @Nonnull
+    private final Counter tlsResumptions;
+
+    ConnectionMetrics( @Nonnull String connectorName )
+    {
+        String prefix = "web.connector." + connectorName + ".";
+        this.connections = Metrics.counter( prefix + "connections" );
+        this.requestsPerConnection = Metrics.histogram( prefix + "requestsPerConnection" );
+        this.tlsHandshakes = Metrics.counter( prefix + "tls.handshakes" );
+        this.tlsResumptions = Metrics.counter( prefix + "tls.resumptions" );
+        Metrics.gauge( prefix + "connections.open", new Gauge()
+        {
+            @Override
+            public long getValue()
+            {
+                return openConnections.get();
+            }
+        } );
+    }
+
+    @Override
+    public void onOpened( Connection connection )
+    {
+        // TLS connections consist of an SSL connection wrapping an HTTP connection - count the HTTP connection only
+        if( connection instanceof HttpConnection )
+        {
+            this.connections.increment();
+            this.openConnections.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onClosed( Connection connection )
+    {
+        if( connection instanceof HttpConnection )
+        {
+            this.openConnections.decrementAndGet();
+            this.requestsPerConnection.record( connection.getMessagesIn() );
+        }
+        else if( connection instanceof SslConnection )
+        {
+            SSLSession session = ( ( SslConnection ) connection ).getSSLEngine().getSession();
+            if( session != null && session.getId() != null && session.getId().length > 0 )
+            {
+                // a session created before this connection was opened must have been resumed from the session cache
+                if( session.getCreationTime() < connection.getCreatedTimeStamp() )
+                {
+                    this.tlsResumptions.increment();
+                }
+                else
+                {
+                    this.tlsHandshakes.increment();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.mosaic.web.server.impl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A server connector which can be gracefully retired: it stops accepting new connections (releasing its port), then
+ * waits for its open connections to finish before stopping.
+ *
+ * @author arik
+ */
+final class DrainableServerConnector extends ServerConnector
+{
+    private static final Logger LOG = LoggerFactory.getLogger( DrainableServerConnector.class );
+
+    private volatile boolean draining;
+
+    DrainableServerConnector( @Nonnull Server server,
+                              int acceptors,
+                              int selectors,
+                              @Nonnull ConnectionFactory... factories )
+    {
+        // null executor, scheduler and buffer pool select the server's defaults
+        super( server, null, null, null, acceptors, selectors, factories );
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        // a connector restarted after it stopped accepting (e.g. when its replacement failed to start) accepts again
+        this.draining = false;
+        super.doStart();
+    }
+
+    @Override
+    public void accept( int acceptorID ) throws IOException
+    {
+        if( this.draining )
+        {
+            // acceptor threads keep looping until the connector is stopped - don't let them spin on the closed channel
+            try
+            {
+                Thread.sleep( 100 );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        else
+        {
+            super.accept( acceptorID );
+        }
+    }
+
+    /**
+     * Stops accepting new connections and closes the server socket, so that another connector may bind its port.
+     */
+    void stopAccepting()
+    {
+        this.draining = true;
+        close();
+    }
+
+    /**
+     * Waits (up to the given timeout) for open connections to be closed, then stops this connector and removes it from
+     * its server.
+     */
+    void drain( long timeout )
+    {
+        stopAccepting();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeout );
+        try
+        {
+            while( !getConnectedEndPoints().isEmpty() && System.nanoTime() < deadline )
+            {
+                Thread.sleep( 100 );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        int remaining = getConnectedEndPoints().size();
+        if( remaining > 0 )
+        {
+            LOG.warn( "Connector '{}' still has {} open connections after {}ms - closing them", getName(), remaining, timeout );
+        }
+
+        try
+        {
+            stop();
+        }
+        catch( Exception e )
+        {
+            LOG.warn( "Could not stop connector '{}': {}", getName(), e.getMessage(), e );
+        }
+        getServer().removeConnector( this );
+    }
+}
@@ -1,6 +1,10 @@
 package org.mosaic.web.server.impl;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.net.HttpHeaders;
@@ -8,6 +12,8 @@ import com.google.common.net.MediaType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
 import java.util.*;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -21,10 +27,22 @@ import static java.util.Collections.list;
 import static org.eclipse.jetty.http.HttpFields.qualityList;
 
 /**
+ * Typed access to request or response headers.
+ * <p/>
+ * Parsed header values are memoized until the header is changed through this object, so repeated calls to getters
+ * during a request are cheap. Quality-sorted media type lists (e.g. the {@code Accept} header) are additionally
+ * cached globally by their raw header value, since the set of distinct values sent by clients is small.
+ *
  * @author arik
  */
 final class Headers
 {
+    private static final int MEDIA_TYPES_CACHE_SIZE = 500;
+
+    private static final List<MediaType> ANY_MEDIA_TYPES = ImmutableList.of( MediaType.ANY_TYPE );
+
+    private static final Cache<String, List<MediaType>> MEDIA_TYPES_CACHE = CacheBuilder.newBuilder().maximumSize( MEDIA_TYPES_CACHE_SIZE ).build();
+
     private static final Map<String, HeaderValuesExtractor> HEADER_EXTRACTORS;
 
     private static final HeaderValuesExtractor SINGLE_VALUE_EXTRACTOR = new HeaderValuesExtractor()
@@ -168,7 +186,7 @@ final class Headers
     private final HttpFields httpFields;
 
     @Nonnull
-    private final Map<String, List<String>> multiValues = new HashMap<>( 15 );
+    private final Map<String, ParsedHeader> parsedHeaders = new HashMap<>( 15 );
 
     Headers( @Nonnull HttpFields httpFields )
     {
@@ -180,6 +198,15 @@ final class Headers
         return this.httpFields.size();
     }
 
+    /**
+     * Discards all parsed header values - must be called when the underlying fields are modified directly (e.g. when
+     * they are cleared by a response reset).
+     */
+    void clearParsedHeaders()
+    {
+        this.parsedHeaders.clear();
+    }
+
     boolean containsKey( @Nonnull String headerName )
     {
         return this.httpFields.containsKey( headerName );
@@ -198,26 +225,25 @@ final class Headers
 
     void remove( @Nonnull String headerName )
     {
+        this.parsedHeaders.remove( headerName.toLowerCase() );
         this.httpFields.remove( headerName );
     }
 
     @Nonnull
     List<String> getStrings( @Nonnull String headerName )
     {
-        String lcHeaderName = headerName.toLowerCase();
-
-        List<String> values = this.multiValues.get( lcHeaderName );
-        if( values == null )
+        ParsedHeader parsedHeader = getParsedHeader( headerName );
+        if( parsedHeader.strings == null )
         {
-            HeaderValuesExtractor extractor = getExtractor( lcHeaderName );
-            values = extractor.extract( lcHeaderName, this.httpFields );
-            this.multiValues.put( lcHeaderName, values );
+            HeaderValuesExtractor extractor = getExtractor( parsedHeader.name );
+            parsedHeader.strings = Collections.unmodifiableList( extractor.extract( parsedHeader.name, this.httpFields ) );
         }
-        return values;
+        return parsedHeader.strings;
     }
 
     void setStrings( @Nonnull String headerName, @Nullable List<String> values )
     {
+        this.parsedHeaders.remove( headerName.toLowerCase() );
         if( values == null )
         {
             this.httpFields.remove( headerName );
@@ -246,6 +272,7 @@ final class Headers
 
     void setString( @Nonnull String headerName, @Nullable String value )
     {
+        this.parsedHeaders.remove( headerName.toLowerCase() );
         this.httpFields.put( headerName, value );
     }
 
@@ -262,6 +289,7 @@ final class Headers
 
     void setInteger( @Nonnull String headerName, @Nullable Integer value )
     {
+        this.parsedHeaders.remove( headerName.toLowerCase() );
         if( value == null )
         {
             this.httpFields.remove( headerName );
@@ -285,6 +313,7 @@ final class Headers
 
     void setLong( @Nonnull String headerName, @Nullable Long value )
     {
+        this.parsedHeaders.remove( headerName.toLowerCase() );
         if( value == null )
         {
             this.httpFields.remove( headerName );
@@ -298,17 +327,24 @@ final class Headers
     @Nullable
     DateTime getDateTime( @Nonnull String headerName )
     {
-        String value = getString( headerName );
-        if( value != null )
+        ParsedHeader parsedHeader = getParsedHeader( headerName );
+        if( parsedHeader.dateTime == null )
         {
-            long millis = HttpFields.parseDate( HttpFields.valueParameters( value, null ) );
-            return millis < 0 ? null : new DateTime( millis );
+            DateTime dateTime = null;
+            String value = getString( headerName );
+            if( value != null )
+            {
+                long millis = HttpFields.parseDate( HttpFields.valueParameters( value, null ) );
+                dateTime = millis < 0 ? null : new DateTime( millis );
+            }
+            parsedHeader.dateTime = Optional.fromNullable( dateTime );
         }
-        return null;
+        return parsedHeader.dateTime.orNull();
     }
 
     void setDateTime( @Nonnull String headerName, @Nullable DateTime value )
     {
+        this.parsedHeaders.remove( headerName.toLowerCase() );
         if( value == null )
         {
             this.httpFields.remove( headerName );
@@ -322,11 +358,13 @@ final class Headers
     @Nullable
     Locale getLocale( @Nonnull String headerName )
     {
-        return STRING_TO_LOCALE_TRANSFORM_FUNCTION.apply( getString( headerName ) );
+        List<Locale> locales = getLocales( headerName );
+        return locales.isEmpty() ? null : locales.get( 0 );
     }
 
     void setLocale( @Nonnull String headerName, @Nullable Locale value )
     {
+        this.parsedHeaders.remove( headerName.toLowerCase() );
         if( value == null )
         {
             this.httpFields.remove( headerName );
@@ -340,11 +378,17 @@ final class Headers
     @Nonnull
     List<Locale> getLocales( @Nonnull String headerName )
     {
-        return Lists.transform( getStrings( headerName ), STRING_TO_LOCALE_TRANSFORM_FUNCTION );
+        ParsedHeader parsedHeader = getParsedHeader( headerName );
+        if( parsedHeader.locales == null )
+        {
+            parsedHeader.locales = ImmutableList.copyOf( Lists.transform( getStrings( headerName ), STRING_TO_LOCALE_TRANSFORM_FUNCTION ) );
+        }
+        return parsedHeader.locales;
     }
 
     void setLocales( @Nonnull String headerName, @Nullable List<Locale> value )
     {
+        this.parsedHeaders.remove( headerName.toLowerCase() );
         if( value == null )
         {
             this.httpFields.remove( headerName );
@@ -358,7 +402,12 @@ final class Headers
     @Nullable
     MediaType getMediaType( @Nonnull String headerName )
     {
-        return MEDIA_TYPE_TO_STRING_TRANSFORM_FUNCTION.apply( getString( headerName ) );
+        ParsedHeader parsedHeader = getParsedHeader( headerName );
+        if( parsedHeader.mediaType == null )
+        {
+            parsedHeader.mediaType = Optional.fromNullable( MEDIA_TYPE_TO_STRING_TRANSFORM_FUNCTION.apply( getString( headerName ) ) );
+        }
+        return parsedHeader.mediaType.orNull();
     }
 
     void setMediaType( @Nonnull String headerName, @Nullable MediaType value )
@@ -369,13 +418,36 @@ final class Headers
     @Nonnull
     List<MediaType> getMediaTypes( @Nonnull String headerName )
     {
-        List<String> mediaTypes = getStrings( headerName );
-        if( mediaTypes.isEmpty() )
+        ParsedHeader parsedHeader = getParsedHeader( headerName );
+        if( parsedHeader.mediaTypes == null )
         {
-            // this can happen when client is wget or curl or any other rest client...
-            mediaTypes = asList( "*/*" );
+            // quality-sorted lists can be shared between requests sending the same raw header value
+            String rawValue = null;
+            if( getExtractor( parsedHeader.name ) == QUALIFIED_COMMA_SEPARATED_VALUE_EXTRACTOR )
+            {
+                rawValue = getRawValue( parsedHeader.name );
+                parsedHeader.mediaTypes = rawValue == null ? null : MEDIA_TYPES_CACHE.getIfPresent( rawValue );
+            }
+
+            if( parsedHeader.mediaTypes == null )
+            {
+                List<String> mediaTypes = getStrings( headerName );
+                if( mediaTypes.isEmpty() )
+                {
+                    // this can happen when client is wget or curl or any other rest client...
+                    parsedHeader.mediaTypes = ANY_MEDIA_TYPES;
+                }
+                else
+                {
+                    parsedHeader.mediaTypes = ImmutableList.copyOf( Lists.transform( mediaTypes, MEDIA_TYPE_TO_STRING_TRANSFORM_FUNCTION ) );
+                    if( rawValue != null )
+                    {
+                        MEDIA_TYPES_CACHE.put( rawValue, parsedHeader.mediaTypes );
+                    }
+                }
+            }
         }
-        return Lists.transform( mediaTypes, MEDIA_TYPE_TO_STRING_TRANSFORM_FUNCTION );
+        return parsedHeader.mediaTypes;
     }
 
     @Nullable
@@ -387,7 +459,61 @@ final class Headers
     @Nonnull
     List<Charset> getCharsets( @Nonnull String headerName )
     {
-        return Lists.transform( getStrings( headerName ), CHARSET_TO_STRING_TRANSFORM_FUNCTION );
+        ParsedHeader parsedHeader = getParsedHeader( headerName );
+        if( parsedHeader.charsets == null )
+        {
+            List<Charset> charsets = new ArrayList<>();
+            for( String value : getStrings( headerName ) )
+            {
+                try
+                {
+                    charsets.add( CHARSET_TO_STRING_TRANSFORM_FUNCTION.apply( value ) );
+                }
+                catch( IllegalCharsetNameException | UnsupportedCharsetException ignore )
+                {
+                    // wildcards and charsets unknown to the JVM cannot be represented - skip them
+                }
+            }
+            parsedHeader.charsets = Collections.unmodifiableList( charsets );
+        }
+        return parsedHeader.charsets;
+    }
+
+    @Nonnull
+    private ParsedHeader getParsedHeader( @Nonnull String headerName )
+    {
+        String lcHeaderName = headerName.toLowerCase();
+
+        ParsedHeader parsedHeader = this.parsedHeaders.get( lcHeaderName );
+        if( parsedHeader == null )
+        {
+            parsedHeader = new ParsedHeader( lcHeaderName );
+            this.parsedHeaders.put( lcHeaderName, parsedHeader );
+        }
+        return parsedHeader;
+    }
+
+    @Nullable
+    private String getRawValue( @Nonnull String headerName )
+    {
+        Enumeration<String> values = this.httpFields.getValues( headerName );
+        if( !values.hasMoreElements() )
+        {
+            return null;
+        }
+
+        String value = values.nextElement();
+        if( !values.hasMoreElements() )
+        {
+            return value;
+        }
+
+        StringBuilder rawValue = new StringBuilder( value );
+        while( values.hasMoreElements() )
+        {
+            rawValue.append( ',' ).append( values.nextElement() );
+        }
+        return rawValue.toString();
     }
 
     @Nonnull
@@ -396,4 +522,33 @@ final class Headers
         HeaderValuesExtractor extractor = HEADER_EXTRACTORS.get( headerName.toLowerCase() );
         return extractor == null ? SINGLE_VALUE_EXTRACTOR : extractor;
     }
+
+    private static final class ParsedHeader
+    {
+        @Nonnull
+        private final String name;
+
+        @Nullable
+        private List<String> strings;
+
+        @Nullable
+        private Optional<DateTime> dateTime;
+
+        @Nullable
+        private List<Locale> locales;
+
+        @Nullable
+        private Optional<MediaType> mediaType;
+
+        @Nullable
+        private List<MediaType> mediaTypes;
+
+        @Nullable
+        private List<Charset> charsets;
+
+        private ParsedHeader( @Nonnull String name )
+        {
+            this.name = name;
+        }
+    }
 }
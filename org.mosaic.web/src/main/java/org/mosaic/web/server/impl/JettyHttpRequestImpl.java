@@ -15,12 +15,14 @@ import javax.servlet.ServletException;
 import javax.servlet.http.Part;
 import org.eclipse.jetty.server.Request;
 import org.joda.time.DateTime;
+import org.mosaic.modules.Component;
 import org.mosaic.modules.Service;
 import org.mosaic.util.collections.HashMapEx;
 import org.mosaic.util.collections.MapEx;
 import org.mosaic.util.collections.UnmodifiableMapEx;
 import org.mosaic.util.resource.PathMatcher;
 import org.mosaic.web.server.HttpRequest;
+import org.mosaic.web.server.HttpRequestBodyUnmarshaller;
 import org.mosaic.web.server.HttpRequestUri;
 
 import static com.google.common.net.HttpHeaders.*;
@@ -48,6 +50,10 @@ final class JettyHttpRequestImpl implements HttpRequest
     @Service
     private PathMatcher pathMatcher;
 
+    @Nonnull
+    @Component
+    private UnmarshallerManager unmarshallerManager;
+
     JettyHttpRequestImpl( @Nonnull Request request )
     {
         this.request = request;
@@ -364,10 +370,17 @@ final class JettyHttpRequestImpl implements HttpRequest
 
     @Nonnull
     @Override
-    public <T> T unmarshall( @Nonnull Class<T> type )
+    public <T> T unmarshall( @Nonnull Class<T> type ) throws IOException
     {
-        // TODO arik: implement org.mosaic.web.http.impl.HttpRequestImpl.HttpRequestEntityImpl.unmarshall([type])
-        throw new UnsupportedOperationException();
+        return this.unmarshallerManager.unmarshall( stream(), getContentType(), type );
+    }
+
+    @Override
+    public <T> void unmarshallElements( @Nonnull Class<T> elementType,
+                                        @Nonnull HttpRequestBodyUnmarshaller.ElementHandler<? super T> handler )
+            throws IOException
+    {
+        this.unmarshallerManager.unmarshallElements( stream(), getContentType(), elementType, handler );
     }
 
     @Nullable
@@ -563,10 +576,23 @@ final class JettyHttpRequestImpl implements HttpRequest
 
         @Nonnull
         @Override
-        public <T> T unmarshall( @Nonnull Class<T> type )
+        public <T> T unmarshall( @Nonnull Class<T> type ) throws IOException
+        {
+            try( InputStream stream = stream() )
+            {
+                return JettyHttpRequestImpl.this.unmarshallerManager.unmarshall( stream, getContentType(), type );
+            }
+        }
+
+        @Override
+        public <T> void unmarshallElements( @Nonnull Class<T> elementType,
+                                            @Nonnull HttpRequestBodyUnmarshaller.ElementHandler<? super T> handler )
+                throws IOException
         {
-            // TODO arik: implement org.mosaic.web.http.impl.HttpRequestImpl.HttpRequestPartImpl.unmarshall([type])
-            throw new UnsupportedOperationException();
+            try( InputStream stream = stream() )
+            {
+                JettyHttpRequestImpl.this.unmarshallerManager.unmarshallElements( stream, getContentType(), elementType, handler );
+            }
         }
 
         @Override
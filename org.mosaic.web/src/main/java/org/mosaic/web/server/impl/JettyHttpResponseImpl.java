@@ -425,5 +425,6 @@ final class JettyHttpResponseImpl implements HttpResponse
     public void reset()
     {
         this.response.reset( false );
+        this.headers.clearParsedHeaders();
     }
 }
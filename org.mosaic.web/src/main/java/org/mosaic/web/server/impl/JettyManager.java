@@ -4,10 +4,13 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.Iterables;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.EnumSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Set;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
@@ -22,9 +25,10 @@ import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.servlets.CrossOriginFilter;
 import org.eclipse.jetty.servlets.MultiPartFilter;
+import org.eclipse.jetty.util.BlockingArrayQueue;
 import org.eclipse.jetty.util.ConcurrentHashSet;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
-import org.joda.time.Period;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.mosaic.config.Configurable;
 import org.mosaic.modules.*;
 import org.mosaic.util.collections.MapEx;
@@ -36,6 +40,11 @@ import static org.eclipse.jetty.util.ssl.SslContextFactory.DEFAULT_KEYMANAGERFAC
 import static org.eclipse.jetty.util.ssl.SslContextFactory.DEFAULT_TRUSTMANAGERFACTORY_ALGORITHM;
 
 /**
+ * Manages the Jetty web server. The server is started on first configuration; subsequent configuration changes are
+ * applied incrementally: thread pool limits are updated in place, only connectors whose configuration changed are
+ * replaced (draining the old ones gracefully), SSL settings and key stores are reloaded in place, and application
+ * contexts are hot-swapped without affecting other applications.
+ *
  * @author arik
  */
 @Component
@@ -45,6 +54,21 @@ final class JettyManager
 
     private static final String[] EMPTY_STRINGS_ARRAY = new String[ 0 ];
 
+    private static final Set<String> SSL_KEYS = new HashSet<>( Arrays.asList(
+            "certAlias", "crlPath", "endpointIdentificationAlgorithm", "excludeCipherSuites", "excludeProtocols",
+            "includeCipherSuites", "includeProtocols", "keyManagerPassword", "keyStorePassword", "keyStorePath",
+            "keyStoreProvider", "keyStoreType", "maxCertPathLength", "needClientAuth", "protocol", "provider",
+            "renegotiationAllowed", "secureRandomAlgorithm", "sessionCachingEnabled", "sslKeyManagerFactoryAlgorithm",
+            "sslSessionCacheSize", "sslSessionTimeout", "trustAll", "trustManagerFactoryAlgorithm", "trustStorePassword",
+            "trustStorePath", "trustStoreProvider", "trustStoreType", "validateCerts", "validatePeerCerts",
+            "wantClientAuth"
+    ) );
+
+    private static final ConnectorDefinition[] CONNECTORS = {
+            new ConnectorDefinition( "httpConnector", "connector.http.", 8080, true, false ),
+            new ConnectorDefinition( "httpsConnector", "connector.https.", 8443, false, true )
+    };
+
     private static class NoErrorPageErrorHandler extends ErrorHandler
     {
         @Override
@@ -61,9 +85,23 @@ final class JettyManager
     @Nonnull
     private final RequestDispatcher requestDispatcher = new RequestDispatcher();
 
+    @Nonnull
+    private final Map<String, ConnectorHolder> connectors = new HashMap<>();
+
     @Nullable
     private org.eclipse.jetty.server.Server jettyServer;
 
+    @Nullable
+    private QueuedThreadPool threadPool;
+
+    // the thread pool's job queue - this Jetty version does not expose its depth
+    @Nullable
+    private BlockingQueue<Runnable> threadPoolQueue;
+
+    private int queueCapacity;
+
+    private long drainTimeout;
+
     @Nonnull
     @Service
     private org.mosaic.server.Server mosaicServer;
@@ -72,14 +110,23 @@ final class JettyManager
     private ContextHandlerCollection contextHandlerCollection;
 
     @Configurable("web")
-    void configure( @Nonnull final MapEx<String, String> cfg )
+    synchronized void configure( @Nonnull final MapEx<String, String> cfg )
     {
-        LOG.info( "Web server configured - {}", this.jettyServer != null ? "restarting" : "starting" );
-        startJettyServer( cfg );
+        Server server = this.jettyServer;
+        if( server == null )
+        {
+            LOG.info( "Web server configured - starting" );
+            startJettyServer( cfg );
+        }
+        else
+        {
+            LOG.info( "Web server configured - reconfiguring" );
+            reconfigureJettyServer( server, cfg );
+        }
     }
 
     @PreDestroy
-    void destroy()
+    synchronized void destroy()
     {
         // stop the web server
         final Server server = this.jettyServer;
@@ -106,99 +153,170 @@ final class JettyManager
         this.applications.remove( application );
     }
 
-    private void addContext( @Nonnull Application application )
+    private synchronized void addContext( @Nonnull Application application )
     {
-        removeContext( application );
-
+        Server server = this.jettyServer;
         ContextHandlerCollection contextHandlerCollection = this.contextHandlerCollection;
-        if( contextHandlerCollection != null )
+        if( server != null && contextHandlerCollection != null )
         {
-            MapEx<String, String> appCtx = application.getContext();
-
-            ServletContextHandler contextHandler = new ServletContextHandler( ServletContextHandler.SESSIONS );
-            contextHandler.setAllowNullPathInfo( false );
-            contextHandler.setAttribute( Application.class.getName(), application );
-            contextHandler.setAttribute( "javax.servlet.context.tempdir", this.mosaicServer.getWorkPath().resolve( "web" ).resolve( application.getId() ).resolve( "temp" ).toFile() );
-            contextHandler.setCompactPath( true );
-            contextHandler.setDisplayName( application.getName() );
-            contextHandler.setErrorHandler( new NoErrorPageErrorHandler() );
-            contextHandler.setVirtualHosts( Iterables.toArray( application.getVirtualHosts(), String.class ) );
-
-            FilterHolder crossOriginFilter = new FilterHolder( CrossOriginFilter.class );
-            crossOriginFilter.setInitParameter( "allowedOrigins", appCtx.find( "crossOrigin.allowedOrigins" ).or( "bad://bad.com" ) );
-            crossOriginFilter.setInitParameter( "allowedMethods", appCtx.get( "crossOrigin.allowedMethods" ) );
-            crossOriginFilter.setInitParameter( "allowedHeaders", appCtx.get( "crossOrigin.allowedHeaders" ) );
-            crossOriginFilter.setInitParameter( "preflightMaxAge", appCtx.get( "crossOrigin.preflightMaxAge" ) );
-            crossOriginFilter.setInitParameter( "allowCredentials", appCtx.get( "crossOrigin.allowCredentials" ) );
-            crossOriginFilter.setInitParameter( "exposeHeaders", appCtx.get( "crossOrigin.exposeHeaders" ) );
-            crossOriginFilter.setInitParameter( "chainPreflight", appCtx.get( "crossOrigin.chainPreflight" ) );
-            contextHandler.addFilter( crossOriginFilter, "/", EnumSet.of( DispatcherType.REQUEST ) );
-
-            FilterHolder multipartFilter = new FilterHolder( MultiPartFilter.class );
-            multipartFilter.setInitParameter( "delete", "true" );
-            multipartFilter.setInitParameter( "deleteFiles", "true" );
-            multipartFilter.setInitParameter( "maxFileSize", appCtx.find( "upload.maxFileSize" ).or( 1024 * 1000 * 5 + "" ) );
-            multipartFilter.setInitParameter( "maxRequestSize", appCtx.get( "upload.maxRequestSize" ) );
-            contextHandler.addFilter( multipartFilter, "/", EnumSet.of( DispatcherType.REQUEST ) );
-
-            contextHandler.addServlet( new ServletHolder( "requestDispatcher", this.requestDispatcher ), "/" );
-
-            Period maxSessionAge = application.getMaxSessionAge();
-            int seconds = maxSessionAge.normalizedStandard().toStandardSeconds().getSeconds();
-            contextHandler.setInitParameter( SessionManager.__MaxAgeProperty, seconds + "" );
-
-            contextHandlerCollection.addHandler( contextHandler );
+            // start the new context before it becomes visible, so requests are never routed to a half-started context
+            ServletContextHandler contextHandler = createContextHandler( application );
+            contextHandler.setServer( server );
+            try
+            {
+                contextHandler.start();
+            }
+            catch( Exception e )
+            {
+                LOG.error( "Could not start web application '{}': {}", application.getName(), e.getMessage(), e );
+                return;
+            }
+
+            // swap it with the application's previous context (if any) in a single step
+            List<Handler> handlers = getContextHandlers( contextHandlerCollection );
+            ContextHandler previous = findContextHandler( handlers, application.getId() );
+            if( previous != null )
+            {
+                handlers.set( handlers.indexOf( previous ), contextHandler );
+            }
+            else
+            {
+                handlers.add( contextHandler );
+            }
+            contextHandlerCollection.setHandlers( handlers.toArray( new Handler[ handlers.size() ] ) );
+
+            if( previous != null )
+            {
+                retireContext( previous );
+            }
         }
     }
 
-    private void removeContext( @Nonnull Application application )
+    private synchronized void removeContext( @Nonnull Application application )
     {
         ContextHandlerCollection contextHandlerCollection = this.contextHandlerCollection;
         if( contextHandlerCollection != null )
         {
-            Handler[] handlers = contextHandlerCollection.getHandlers();
-            if( handlers != null )
+            List<Handler> handlers = getContextHandlers( contextHandlerCollection );
+            ContextHandler contextHandler = findContextHandler( handlers, application.getId() );
+
+            // updated applications are registered before their previous instance is removed - in which case the
+            // context was already replaced, and must be kept
+            if( contextHandler != null && contextHandler.getAttribute( Application.class.getName() ) == application )
             {
-                for( Handler handler : handlers )
-                {
-                    if( handler instanceof ContextHandler )
-                    {
-                        ContextHandler contextHandler = ( ContextHandler ) handler;
-                        Object appAttr = contextHandler.getAttribute( Application.class.getName() );
-                        if( appAttr instanceof Application )
-                        {
-                            Application app = ( Application ) appAttr;
-                            if( app.getId().equals( application.getId() ) )
-                            {
-                                contextHandlerCollection.removeHandler( contextHandler );
-                                return;
-                            }
-                        }
-                    }
-                }
+                handlers.remove( contextHandler );
+                contextHandlerCollection.setHandlers( handlers.toArray( new Handler[ handlers.size() ] ) );
+                retireContext( contextHandler );
             }
         }
     }
 
-    private synchronized void startJettyServer( @Nonnull MapEx<String, String> cfg )
+    @Nonnull
+    private ServletContextHandler createContextHandler( @Nonnull Application application )
     {
-        Server server = this.jettyServer;
+        MapEx<String, String> appCtx = application.getContext();
+
+        ServletContextHandler contextHandler = new ServletContextHandler( ServletContextHandler.NO_SESSIONS );
+        contextHandler.setAllowNullPathInfo( false );
+        contextHandler.setAttribute( Application.class.getName(), application );
+        contextHandler.setAttribute( RequestDispatcher.ACTIVE_REQUESTS_ATTR, new AtomicInteger() );
+        contextHandler.setAttribute( "javax.servlet.context.tempdir", this.mosaicServer.getWorkPath().resolve( "web" ).resolve( application.getId() ).resolve( "temp" ).toFile() );
+        contextHandler.setCompactPath( true );
+        contextHandler.setDisplayName( application.getName() );
+        contextHandler.setErrorHandler( new NoErrorPageErrorHandler() );
+        contextHandler.setVirtualHosts( Iterables.toArray( application.getVirtualHosts(), String.class ) );
+
+        FilterHolder crossOriginFilter = new FilterHolder( CrossOriginFilter.class );
+        crossOriginFilter.setInitParameter( "allowedOrigins", appCtx.find( "crossOrigin.allowedOrigins" ).or( "bad://bad.com" ) );
+        crossOriginFilter.setInitParameter( "allowedMethods", appCtx.get( "crossOrigin.allowedMethods" ) );
+        crossOriginFilter.setInitParameter( "allowedHeaders", appCtx.get( "crossOrigin.allowedHeaders" ) );
+        crossOriginFilter.setInitParameter( "preflightMaxAge", appCtx.get( "crossOrigin.preflightMaxAge" ) );
+        crossOriginFilter.setInitParameter( "allowCredentials", appCtx.get( "crossOrigin.allowCredentials" ) );
+        crossOriginFilter.setInitParameter( "exposeHeaders", appCtx.get( "crossOrigin.exposeHeaders" ) );
+        crossOriginFilter.setInitParameter( "chainPreflight", appCtx.get( "crossOrigin.chainPreflight" ) );
+        contextHandler.addFilter( crossOriginFilter, "/", EnumSet.of( DispatcherType.REQUEST ) );
+
+        FilterHolder multipartFilter = new FilterHolder( MultiPartFilter.class );
+        multipartFilter.setInitParameter( "delete", "true" );
+        multipartFilter.setInitParameter( "deleteFiles", "true" );
+        multipartFilter.setInitParameter( "maxFileSize", appCtx.find( "upload.maxFileSize" ).or( 1024 * 1000 * 5 + "" ) );
+        multipartFilter.setInitParameter( "maxRequestSize", appCtx.get( "upload.maxRequestSize" ) );
+        contextHandler.addFilter( multipartFilter, "/", EnumSet.of( DispatcherType.REQUEST ) );
+
+        contextHandler.addServlet( new ServletHolder( "requestDispatcher", this.requestDispatcher ), "/" );
+        return contextHandler;
+    }
 
-        // stop the web server
-        if( server != null )
+    @Nonnull
+    private List<Handler> getContextHandlers( @Nonnull ContextHandlerCollection contextHandlerCollection )
+    {
+        Handler[] handlers = contextHandlerCollection.getHandlers();
+        return handlers == null ? new ArrayList<Handler>() : new ArrayList<>( Arrays.asList( handlers ) );
+    }
+
+    @Nullable
+    private ContextHandler findContextHandler( @Nonnull List<Handler> handlers, @Nonnull String applicationId )
+    {
+        for( Handler handler : handlers )
         {
-            stopJettyServer( server );
+            if( handler instanceof ContextHandler )
+            {
+                ContextHandler contextHandler = ( ContextHandler ) handler;
+                Object appAttr = contextHandler.getAttribute( Application.class.getName() );
+                if( appAttr instanceof Application && ( ( Application ) appAttr ).getId().equals( applicationId ) )
+                {
+                    return contextHandler;
+                }
+            }
         }
+        return null;
+    }
 
-        // create and start the web server
-        server = null;
+    private void retireContext( @Nonnull final ContextHandler contextHandler )
+    {
+        final long timeout = this.drainTimeout;
+        runInBackground( "drain-" + contextHandler.getDisplayName(), new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // wait for requests still being processed by the context to finish before stopping it
+                AtomicInteger activeRequests = ( AtomicInteger ) contextHandler.getAttribute( RequestDispatcher.ACTIVE_REQUESTS_ATTR );
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeout );
+                try
+                {
+                    while( activeRequests != null && activeRequests.get() > 0 && System.nanoTime() < deadline )
+                    {
+                        Thread.sleep( 100 );
+                    }
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+
+                try
+                {
+                    contextHandler.stop();
+                }
+                catch( Exception e )
+                {
+                    LOG.warn( "Could not stop retired web context '{}': {}", contextHandler.getDisplayName(), e.getMessage(), e );
+                }
+            }
+        } );
+    }
+
+    private void startJettyServer( @Nonnull MapEx<String, String> cfg )
+    {
+        Server server = null;
         try
         {
             server = createServer( cfg );
             server.start();
             this.jettyServer = server;
 
-            this.contextHandlerCollection = ( ContextHandlerCollection ) this.jettyServer.getHandler();
+            this.contextHandlerCollection = ( ContextHandlerCollection ) server.getHandler();
 
             for( Application application : this.applications )
             {
@@ -217,7 +335,121 @@ final class JettyManager
         }
     }
 
-    private synchronized void stopJettyServer( @Nonnull Server server )
+    private void reconfigureJettyServer( @Nonnull Server server, @Nonnull MapEx<String, String> cfg )
+    {
+        QueuedThreadPool threadPool = this.threadPool;
+        BlockingQueue<Runnable> threadPoolQueue = this.threadPoolQueue;
+        if( threadPool != null && threadPoolQueue != null )
+        {
+            configureThreadPool( threadPool, cfg );
+            if( cfg.find( "threadPool.maxQueued", Integer.class ).or( 1024 ) != this.queueCapacity )
+            {
+                LOG.warn( "Web server thread pool queue capacity cannot be changed while running - will take effect on next restart" );
+            }
+            this.requestDispatcher.setAdmissionController( new AdmissionController( threadPoolQueue, this.queueCapacity, cfg ) );
+        }
+
+        configureServer( server, cfg );
+
+        HttpConfiguration httpCfg = createHttpConfiguration( cfg );
+        for( ConnectorDefinition definition : CONNECTORS )
+        {
+            try
+            {
+                reconfigureConnector( server, cfg, httpCfg, definition );
+            }
+            catch( Exception e )
+            {
+                LOG.error( "Could not reconfigure connector '{}': {}", definition.name, e.getMessage(), e );
+            }
+        }
+        LOG.info( "Reconfigured web server" );
+    }
+
+    private void reconfigureConnector( @Nonnull Server server,
+                                       @Nonnull MapEx<String, String> cfg,
+                                       @Nonnull HttpConfiguration httpCfg,
+                                       @Nonnull ConnectorDefinition definition ) throws Exception
+    {
+        ConnectorHolder current = this.connectors.get( definition.name );
+        if( !cfg.find( definition.prefix + "enable", Boolean.class ).or( definition.enabledByDefault ) )
+        {
+            if( current != null )
+            {
+                LOG.info( "Removing connector '{}'", definition.name );
+                this.connectors.remove( definition.name );
+                retireConnector( current.connector );
+            }
+            return;
+        }
+
+        Map<String, String> socketSignature = getSocketSignature( cfg, definition );
+        if( current != null && current.socketSignature.equals( socketSignature ) )
+        {
+            if( current.sslContextFactory != null )
+            {
+                Map<String, String> sslSignature = getSslSignature( cfg, definition );
+                if( !current.sslSignature.equals( sslSignature ) )
+                {
+                    current.sslContextFactory.reload( createSslContextFactory( cfg, definition.prefix ) );
+                    current.sslSignature = sslSignature;
+                    LOG.info( "Reloaded SSL configuration of connector '{}'", definition.name );
+                }
+            }
+            return;
+        }
+
+        // the connector is new or its socket/protocol configuration changed - replace it; if it binds the same address as
+        // the connector it replaces, the old one must release it first (it will keep serving its open connections)
+        ConnectorHolder replacement = createConnector( server, cfg, httpCfg, definition );
+        boolean sameAddress = current != null
+                              && Objects.equals( current.connector.getHost(), replacement.connector.getHost() )
+                              && current.connector.getPort() == replacement.connector.getPort();
+        if( sameAddress )
+        {
+            current.connector.stopAccepting();
+        }
+
+        LOG.info( "{} connector '{}'", current == null ? "Adding" : "Replacing", definition.name );
+        server.addConnector( replacement.connector );
+        try
+        {
+            replacement.connector.start();
+        }
+        catch( Exception e )
+        {
+            server.removeConnector( replacement.connector );
+            if( sameAddress )
+            {
+                // the previous connector released its port already - restart it so we keep serving
+                current.connector.stop();
+                current.connector.start();
+            }
+            throw e;
+        }
+
+        this.connectors.put( definition.name, replacement );
+        if( current != null )
+        {
+            retireConnector( current.connector );
+        }
+    }
+
+    private void retireConnector( @Nonnull final DrainableServerConnector connector )
+    {
+        final long timeout = this.drainTimeout;
+        connector.stopAccepting();
+        runInBackground( "drain-" + connector.getName(), new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                connector.drain( timeout );
+            }
+        } );
+    }
+
+    private void stopJettyServer( @Nonnull Server server )
     {
         try
         {
@@ -230,52 +462,116 @@ final class JettyManager
         }
         finally
         {
+            this.requestDispatcher.setAdmissionController( null );
+            this.connectors.clear();
             this.contextHandlerCollection = null;
+            this.threadPool = null;
+            this.threadPoolQueue = null;
             this.jettyServer = null;
         }
     }
 
     private Server createServer( MapEx<String, String> cfg ) throws Exception
     {
-        Server server = new Server();
+        this.queueCapacity = cfg.find( "threadPool.maxQueued", Integer.class ).or( 1024 );
+        BlockingQueue<Runnable> threadPoolQueue = new BlockingArrayQueue<>( Math.min( this.queueCapacity, 128 ), 128, this.queueCapacity );
+        QueuedThreadPool threadPool = new QueuedThreadPool( 200, 8, 60 * 1000, threadPoolQueue );
+        threadPool.setName( "mosaic-web" );
+        configureThreadPool( threadPool, cfg );
+        this.threadPool = threadPool;
+        this.threadPoolQueue = threadPoolQueue;
+        this.requestDispatcher.setAdmissionController( new AdmissionController( threadPoolQueue, this.queueCapacity, cfg ) );
+
+        Server server = new Server( threadPool );
         server.setDumpAfterStart( false );
         server.setDumpBeforeStop( false );
         server.setStopAtShutdown( false ); // mosaic will close the module on jvm close anyway
+        configureServer( server, cfg );
+
+        HttpConfiguration httpCfg = createHttpConfiguration( cfg );
+        for( ConnectorDefinition definition : CONNECTORS )
+        {
+            if( cfg.find( definition.prefix + "enable", Boolean.class ).or( definition.enabledByDefault ) )
+            {
+                ConnectorHolder holder = createConnector( server, cfg, httpCfg, definition );
+                server.addConnector( holder.connector );
+                this.connectors.put( definition.name, holder );
+            }
+        }
+
+        server.setHandler( new ContextHandlerCollection() );
+        return server;
+    }
+
+    private void configureThreadPool( @Nonnull QueuedThreadPool threadPool, @Nonnull MapEx<String, String> cfg )
+    {
+        threadPool.setMaxThreads( cfg.find( "threadPool.maxThreads", Integer.class ).or( 200 ) );
+        threadPool.setMinThreads( cfg.find( "threadPool.minThreads", Integer.class ).or( 8 ) );
+        threadPool.setIdleTimeout( cfg.find( "threadPool.idleTimeout", Integer.class ).or( 60 * 1000 ) );
+    }
+
+    private void configureServer( @Nonnull Server server, @Nonnull MapEx<String, String> cfg )
+    {
+        this.drainTimeout = cfg.find( "drainTimeout", Long.class ).or( 30 * 1000l );
         server.setStopTimeout( cfg.find( "stopTimeout", Long.class ).or( 60 * 1000l ) );
-        server.setConnectors( createConnectors( server, cfg ) );
         server.setAttribute( "org.eclipse.jetty.server.Request.maxFormContentSize", cfg.find( "maxFormContentSize", Integer.class ).or( 100000 ) );
         server.setAttribute( "org.eclipse.jetty.server.Request.maxFormKeys", cfg.find( "maxFormKeys", Integer.class ).or( 2000 ) );
-        server.setHandler( new ContextHandlerCollection() );
-        return server;
     }
 
     @Nonnull
-    private Connector[] createConnectors( @Nonnull Server server, @Nonnull MapEx<String, String> cfg )
+    private ConnectorHolder createConnector( @Nonnull Server server,
+                                             @Nonnull MapEx<String, String> cfg,
+                                             @Nonnull HttpConfiguration httpCfg,
+                                             @Nonnull ConnectorDefinition definition )
     {
-        List<NetworkConnector> connectors = new LinkedList<>();
+        String prefix = definition.prefix;
 
-        HttpConfiguration httpCfg = createHttpConfiguration( cfg );
-
-        if( cfg.find( "connector.http.enable", Boolean.class ).or( true ) )
+        // HTTP/2 (h2 over ALPN, or cleartext h2c) requires a newer Jetty than the one we embed; accept these protocols in
+        // the configuration, but serve HTTP/1.1 (with keep-alive and TLS session resumption) until we upgrade
+        for( String protocol : parseStringArray( cfg, prefix + "protocols" ) )
         {
-            ServerConnector connector = createConnector( server, cfg, "httpConnector", "connector.http.", 8080 );
-            connector.addConnectionFactory( createHttpConnectionFactory( httpCfg, cfg, "connector.http." ) );
-            connectors.add( connector );
+            if( !"http/1.1".equalsIgnoreCase( protocol ) )
+            {
+                LOG.warn( "Protocol '{}' of connector '{}' is not supported by this web server - using HTTP/1.1", protocol, definition.name );
+            }
         }
 
-        if( cfg.find( "connector.https.enable", Boolean.class ).or( false ) )
+        List<ConnectionFactory> factories = new LinkedList<>();
+        ReloadableSslContextFactory sslContextFactory = null;
+        if( definition.secure )
         {
-            ServerConnector connector = createConnector( server, cfg, "httpsConnector", "connector.https.", 8443 );
-            connector.addConnectionFactory( createHttpsConnectionFactory( cfg, "connector.https." ) );
+            sslContextFactory = new ReloadableSslContextFactory( createSslContextFactory( cfg, prefix ) );
+            SslConnectionFactory sslConnectionFactory = new SslConnectionFactory( sslContextFactory, "http/1.1" );
+            sslConnectionFactory.setInputBufferSize( cfg.find( prefix + "inputBufferSize", Integer.class ).or( 8192 ) );
+            factories.add( sslConnectionFactory );
 
             HttpConfiguration sslHttpCfg = new HttpConfiguration( httpCfg );
             sslHttpCfg.addCustomizer( new SecureRequestCustomizer() );
-            connector.addConnectionFactory( createHttpConnectionFactory( sslHttpCfg, cfg, "connector.https." ) );
-
-            connectors.add( connector );
+            factories.add( createHttpConnectionFactory( sslHttpCfg, cfg, prefix ) );
+        }
+        else
+        {
+            factories.add( createHttpConnectionFactory( httpCfg, cfg, prefix ) );
         }
 
-        return connectors.toArray( new Connector[ connectors.size() ] );
+        DrainableServerConnector connector = new DrainableServerConnector( server,
+                                                                           cfg.find( prefix + "acceptors", Integer.class ).or( -1 ),
+                                                                           cfg.find( prefix + "selectors", Integer.class ).or( -1 ),
+                                                                           factories.toArray( new ConnectionFactory[ factories.size() ] ) );
+        connector.setName( definition.name );
+        connector.setAcceptQueueSize( cfg.find( prefix + "acceptQueueSize", Integer.class ).or( 1024 ) );
+        connector.setHost( cfg.get( prefix + "host" ) );
+        connector.setIdleTimeout( cfg.find( prefix + "idleTimeout", Long.class ).or( 30 * 1000l ) );
+        connector.setPort( cfg.find( prefix + "port", Integer.class ).or( definition.defaultPort ) );
+        connector.setReuseAddress( cfg.find( prefix + "reuseAddress", Boolean.class ).or( true ) );
+        connector.setSoLingerTime( cfg.find( prefix + "soLingerTime", Integer.class ).or( -1 ) );
+        connector.setStopTimeout( cfg.find( prefix + "stopTimeout", Long.class ).or( 10 * 1000l ) );
+        connector.addBean( new ConnectionMetrics( definition.name ) );
+
+        return new ConnectorHolder( connector,
+                                    getSocketSignature( cfg, definition ),
+                                    sslContextFactory,
+                                    definition.secure ? getSslSignature( cfg, definition ) : Collections.<String, String>emptyMap() );
     }
 
     @Nonnull
@@ -295,25 +591,6 @@ final class JettyManager
         return httpCfg;
     }
 
-    @Nonnull
-    private ServerConnector createConnector( @Nonnull Server server,
-                                             @Nonnull MapEx<String, String> cfg,
-                                             @Nonnull String name,
-                                             @Nonnull String prefix,
-                                             int defaultPort )
-    {
-        ServerConnector httpConnector = new ServerConnector( server );
-        httpConnector.setName( name );
-        httpConnector.setAcceptQueueSize( cfg.find( prefix + "acceptQueueSize", Integer.class ).or( 1024 ) );
-        httpConnector.setHost( cfg.get( prefix + "host" ) );
-        httpConnector.setIdleTimeout( cfg.find( prefix + "idleTimeout", Long.class ).or( 30 * 1000l ) );
-        httpConnector.setPort( cfg.find( prefix + "port", Integer.class ).or( defaultPort ) );
-        httpConnector.setReuseAddress( cfg.find( prefix + "reuseAddress", Boolean.class ).or( true ) );
-        httpConnector.setSoLingerTime( cfg.find( prefix + "soLingerTime", Integer.class ).or( -1 ) );
-        httpConnector.setStopTimeout( cfg.find( prefix + "stopTimeout", Long.class ).or( 10 * 1000l ) );
-        return httpConnector;
-    }
-
     @Nonnull
     private HttpConnectionFactory createHttpConnectionFactory( @Nonnull HttpConfiguration httpCfg,
                                                                @Nonnull MapEx<String, String> cfg,
@@ -325,8 +602,7 @@ final class JettyManager
     }
 
     @Nonnull
-    private SslConnectionFactory createHttpsConnectionFactory( @Nonnull MapEx<String, String> cfg,
-                                                               @Nonnull String prefix )
+    private SslContextFactory createSslContextFactory( @Nonnull MapEx<String, String> cfg, @Nonnull String prefix )
     {
         SslContextFactory sslContextFactory = new SslContextFactory();
         sslContextFactory.setCertAlias( cfg.get( prefix + "certAlias" ) );
@@ -349,8 +625,10 @@ final class JettyManager
         sslContextFactory.setSecureRandomAlgorithm( cfg.get( prefix + "secureRandomAlgorithm" ) );
         sslContextFactory.setSessionCachingEnabled( cfg.find( prefix + "sessionCachingEnabled", Boolean.class ).or( true ) );
         sslContextFactory.setSslKeyManagerFactoryAlgorithm( cfg.find( prefix + "sslKeyManagerFactoryAlgorithm" ).or( DEFAULT_KEYMANAGERFACTORY_ALGORITHM ) );
-        sslContextFactory.setSslSessionCacheSize( cfg.find( prefix + "sslSessionCacheSize", Integer.class ).or( 0 ) );
-        sslContextFactory.setSslSessionTimeout( cfg.find( prefix + "sslSessionTimeout", Integer.class ).or( 0 ) );
+        // bound the session cache (the JVM default is unlimited, with sessions kept for 24 hours) so that session
+        // resumption does not cost unbounded memory
+        sslContextFactory.setSslSessionCacheSize( cfg.find( prefix + "sslSessionCacheSize", Integer.class ).or( 20000 ) );
+        sslContextFactory.setSslSessionTimeout( cfg.find( prefix + "sslSessionTimeout", Integer.class ).or( 3600 ) );
         sslContextFactory.setTrustAll( cfg.find( prefix + "trustAll", Boolean.class ).or( false ) );
         sslContextFactory.setTrustManagerFactoryAlgorithm( cfg.find( prefix + "trustManagerFactoryAlgorithm" ).or( DEFAULT_TRUSTMANAGERFACTORY_ALGORITHM ) );
         sslContextFactory.setTrustStorePassword( cfg.get( prefix + "trustStorePassword" ) );
@@ -360,10 +638,70 @@ final class JettyManager
         sslContextFactory.setValidateCerts( cfg.find( prefix + "validateCerts", Boolean.class ).or( false ) );
         sslContextFactory.setValidatePeerCerts( cfg.find( prefix + "validatePeerCerts", Boolean.class ).or( false ) );
         sslContextFactory.setWantClientAuth( cfg.find( prefix + "wantClientAuth", Boolean.class ).or( false ) );
+        return sslContextFactory;
+    }
 
-        SslConnectionFactory sslConnectionFactory = new SslConnectionFactory( sslContextFactory, "http/1.1" );
-        sslConnectionFactory.setInputBufferSize( cfg.find( prefix + "inputBufferSize", Integer.class ).or( 8192 ) );
-        return sslConnectionFactory;
+    /**
+     * Returns the configuration which, when changed, requires replacing the connector: its own non-SSL settings and the
+     * shared HTTP settings.
+     */
+    @Nonnull
+    private Map<String, String> getSocketSignature( @Nonnull MapEx<String, String> cfg,
+                                                    @Nonnull ConnectorDefinition definition )
+    {
+        Map<String, String> signature = new TreeMap<>();
+        for( Map.Entry<String, String> entry : cfg.entrySet() )
+        {
+            String key = entry.getKey();
+            if( key.startsWith( "http." ) )
+            {
+                signature.put( key, entry.getValue() );
+            }
+            else if( key.startsWith( definition.prefix ) && !SSL_KEYS.contains( key.substring( definition.prefix.length() ) ) )
+            {
+                signature.put( key, entry.getValue() );
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Returns the configuration which, when changed, requires reloading the connector's SSL context: its SSL settings,
+     * and the modification times of its key and trust stores (so that replaced certificates are picked up too).
+     */
+    @Nonnull
+    private Map<String, String> getSslSignature( @Nonnull MapEx<String, String> cfg,
+                                                 @Nonnull ConnectorDefinition definition )
+    {
+        Map<String, String> signature = new TreeMap<>();
+        for( String key : SSL_KEYS )
+        {
+            String value = cfg.get( definition.prefix + key );
+            if( value != null )
+            {
+                signature.put( key, value );
+            }
+        }
+        for( String storeKey : new String[] { "keyStorePath", "trustStorePath" } )
+        {
+            String storePath = cfg.get( definition.prefix + storeKey );
+            if( storePath != null )
+            {
+                try
+                {
+                    Path path = Paths.get( storePath );
+                    if( Files.exists( path ) )
+                    {
+                        signature.put( storeKey + "#modified", Files.getLastModifiedTime( path ).toMillis() + "" );
+                    }
+                }
+                catch( Exception ignore )
+                {
+                    // not a file-system path (e.g. a URL) - only the setting itself is tracked
+                }
+            }
+        }
+        return signature;
     }
 
     @Nonnull
@@ -380,4 +718,65 @@ final class JettyManager
             return EMPTY_STRINGS_ARRAY;
         }
     }
+
+    private void runInBackground( @Nonnull String name, @Nonnull Runnable runnable )
+    {
+        Thread thread = new Thread( runnable, "mosaic-web-" + name );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    private static final class ConnectorDefinition
+    {
+        @Nonnull
+        private final String name;
+
+        @Nonnull
+        private final String prefix;
+
+        private final int defaultPort;
+
+        private final boolean enabledByDefault;
+
+        private final boolean secure;
+
+        private ConnectorDefinition( @Nonnull String name,
+                                     @Nonnull String prefix,
+                                     int defaultPort,
+                                     boolean enabledByDefault,
+                                     boolean secure )
+        {
+            this.name = name;
+            this.prefix = prefix;
+            this.defaultPort = defaultPort;
+            this.enabledByDefault = enabledByDefault;
+            this.secure = secure;
+        }
+    }
+
+    private static final class ConnectorHolder
+    {
+        @Nonnull
+        private final DrainableServerConnector connector;
+
+        @Nonnull
+        private final Map<String, String> socketSignature;
+
+        @Nullable
+        private final ReloadableSslContextFactory sslContextFactory;
+
+        @Nonnull
+        private Map<String, String> sslSignature;
+
+        private ConnectorHolder( @Nonnull DrainableServerConnector connector,
+                                 @Nonnull Map<String, String> socketSignature,
+                                 @Nullable ReloadableSslContextFactory sslContextFactory,
+                                 @Nonnull Map<String, String> sslSignature )
+        {
+            this.connector = connector;
+            this.socketSignature = socketSignature;
+            this.sslContextFactory = sslContextFactory;
+            this.sslSignature = sslSignature;
+        }
+    }
 }
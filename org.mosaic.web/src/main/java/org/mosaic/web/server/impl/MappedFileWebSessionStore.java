@@ -0,0 +1,482 @@
+package org.mosaic.web.server.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import org.mosaic.modules.Service;
+import org.mosaic.server.Server;
+import org.mosaic.web.server.WebSessionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Embedded session store keeping sessions in a memory-mapped file under the server's work directory, so sessions
+ * survive restarts and their contents stay off the Java heap. Only a small ID-to-offset index is kept on-heap.
+ * <p/>
+ * The file is an append-only log of session records: storing a session appends a new record and marks the previous
+ * one dead, while touching a session updates its last access time in place. Dead records are reclaimed by compacting
+ * the file whenever it would otherwise need to grow and most of it is dead.
+ * <p/>
+ * Requests only hold the store's monitor while reading or writing their own record; the periodic expiry sweep checks
+ * sessions in small chunks, releasing the monitor between them, and flushes dirty pages to disk without holding it.
+ *
+ * @author arik
+ */
+@Service(properties = @Service.P(key = "type", value = "file"))
+final class MappedFileWebSessionStore implements WebSessionStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger( MappedFileWebSessionStore.class );
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final int MAGIC = 0x4d575353;
+
+    private static final int VERSION = 1;
+
+    private static final int FILE_HEADER_SIZE = 8;
+
+    private static final int INITIAL_SIZE = 16 * 1024 * 1024;
+
+    private static final byte DEAD = 0;
+
+    private static final byte LIVE = 1;
+
+    // record layout: length(4) status(1) creationTime(8) lastAccessTime(8) maxInactiveInterval(4) idLength(2) id attributesLength(4) attributes
+    private static final int STATUS_OFFSET = 4;
+
+    private static final int CREATION_TIME_OFFSET = 5;
+
+    private static final int LAST_ACCESS_TIME_OFFSET = 13;
+
+    private static final int MAX_INACTIVE_INTERVAL_OFFSET = 21;
+
+    private static final int ID_LENGTH_OFFSET = 25;
+
+    private static final int ID_OFFSET = 27;
+
+    private static final int RECORD_OVERHEAD = ID_OFFSET + 4;
+
+    private static final int EXPIRE_CHUNK_SIZE = 256;
+
+    // modified only under the store's monitor, but concurrent so the expiry sweep can iterate it without holding it
+    @Nonnull
+    private final Map<String, Integer> index = new ConcurrentHashMap<>();
+
+    @Nullable
+    private final Path file;
+
+    @Nonnull
+    @Service
+    private Server server;
+
+    @Nullable
+    private FileChannel channel;
+
+    @Nullable
+    private MappedByteBuffer buffer;
+
+    private int end;
+
+    private long deadBytes;
+
+    MappedFileWebSessionStore()
+    {
+        this.file = null;
+    }
+
+    /**
+     * Creates a store using the given file rather than one under the server's work directory.
+     */
+    MappedFileWebSessionStore( @Nonnull Path file )
+    {
+        this.file = file;
+    }
+
+    @PreDestroy
+    synchronized void close()
+    {
+        FileChannel channel = this.channel;
+        if( channel != null )
+        {
+            try
+            {
+                if( this.buffer != null )
+                {
+                    this.buffer.force();
+                }
+                channel.close();
+            }
+            catch( IOException e )
+            {
+                LOG.warn( "Could not close web sessions file: {}", e.getMessage(), e );
+            }
+            finally
+            {
+                this.index.clear();
+                this.channel = null;
+                this.buffer = null;
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public synchronized StoredSession load( @Nonnull String id ) throws IOException
+    {
+        ByteBuffer buffer = open();
+        Integer offset = this.index.get( id );
+        if( offset == null )
+        {
+            return null;
+        }
+
+        int idLength = buffer.getShort( offset + ID_LENGTH_OFFSET );
+        int attributesOffset = offset + ID_OFFSET + idLength;
+        byte[] attributes = new byte[ buffer.getInt( attributesOffset ) ];
+        ByteBuffer source = buffer.duplicate();
+        source.position( attributesOffset + 4 );
+        source.get( attributes );
+
+        return new StoredSession( id,
+                                  buffer.getLong( offset + CREATION_TIME_OFFSET ),
+                                  buffer.getLong( offset + LAST_ACCESS_TIME_OFFSET ),
+                                  buffer.getInt( offset + MAX_INACTIVE_INTERVAL_OFFSET ),
+                                  attributes );
+    }
+
+    @Override
+    public synchronized void store( @Nonnull StoredSession session ) throws IOException
+    {
+        open();
+
+        byte[] id = session.getId().getBytes( UTF_8 );
+        byte[] attributes = session.getAttributes();
+        int length = RECORD_OVERHEAD + id.length + attributes.length;
+        ensureCapacity( length );
+
+        // append first, then kill the previous record - a crash in between leaves two live records, and the later wins
+        ByteBuffer buffer = this.buffer;
+        int offset = this.end;
+        buffer.putInt( offset, length );
+        buffer.put( offset + STATUS_OFFSET, LIVE );
+        buffer.putLong( offset + CREATION_TIME_OFFSET, session.getCreationTime() );
+        buffer.putLong( offset + LAST_ACCESS_TIME_OFFSET, session.getLastAccessTime() );
+        buffer.putInt( offset + MAX_INACTIVE_INTERVAL_OFFSET, session.getMaxInactiveInterval() );
+        buffer.putShort( offset + ID_LENGTH_OFFSET, ( short ) id.length );
+        ByteBuffer target = buffer.duplicate();
+        target.position( offset + ID_OFFSET );
+        target.put( id );
+        target.putInt( attributes.length );
+        target.put( attributes );
+        this.end = offset + length;
+        buffer.putInt( this.end, 0 );
+
+        Integer previous = this.index.put( session.getId(), offset );
+        if( previous != null )
+        {
+            kill( buffer, previous );
+        }
+    }
+
+    @Override
+    public synchronized void touch( @Nonnull String id, long lastAccessTime ) throws IOException
+    {
+        ByteBuffer buffer = open();
+        Integer offset = this.index.get( id );
+        if( offset != null )
+        {
+            buffer.putLong( offset + LAST_ACCESS_TIME_OFFSET, lastAccessTime );
+        }
+    }
+
+    @Override
+    public synchronized void remove( @Nonnull String id ) throws IOException
+    {
+        ByteBuffer buffer = open();
+        Integer offset = this.index.remove( id );
+        if( offset != null )
+        {
+            kill( buffer, offset );
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Collection<String> expire( long now ) throws IOException
+    {
+        synchronized( this )
+        {
+            open();
+        }
+
+        // sessions stored or removed while the sweep runs are simply picked up (or not) by the next sweep
+        List<String> expired = new LinkedList<>();
+        List<String> chunk = new ArrayList<>( EXPIRE_CHUNK_SIZE );
+        Iterator<String> iterator = this.index.keySet().iterator();
+        while( iterator.hasNext() )
+        {
+            chunk.add( iterator.next() );
+            if( chunk.size() == EXPIRE_CHUNK_SIZE || !iterator.hasNext() )
+            {
+                expire( chunk, now, expired );
+                chunk.clear();
+            }
+        }
+
+        // this runs periodically, so it's a good opportunity to flush dirty pages to disk
+        flush();
+        return expired;
+    }
+
+    private synchronized void expire( @Nonnull List<String> ids, long now, @Nonnull List<String> expired )
+    {
+        ByteBuffer buffer = this.buffer;
+        if( buffer == null )
+        {
+            // closed during the sweep
+            return;
+        }
+
+        for( String id : ids )
+        {
+            // re-read the offset - the session may have been stored again, or the file compacted, since it was listed
+            Integer offset = this.index.get( id );
+            if( offset != null )
+            {
+                int maxInactiveInterval = buffer.getInt( offset + MAX_INACTIVE_INTERVAL_OFFSET );
+                if( maxInactiveInterval > 0 && buffer.getLong( offset + LAST_ACCESS_TIME_OFFSET ) + maxInactiveInterval * 1000l < now )
+                {
+                    kill( buffer, offset );
+                    this.index.remove( id );
+                    expired.add( id );
+                }
+            }
+        }
+    }
+
+    private void flush()
+    {
+        MappedByteBuffer buffer;
+        synchronized( this )
+        {
+            buffer = this.buffer;
+        }
+        if( buffer != null )
+        {
+            // requests keep writing to the mapping while it is forced - whatever they write is flushed by the next sweep
+            try
+            {
+                buffer.force();
+            }
+            catch( RuntimeException e )
+            {
+                // the file was compacted (and the compacted copy forced) or closed meanwhile
+                LOG.debug( "Could not flush web sessions file: {}", e.getMessage(), e );
+            }
+        }
+    }
+
+    @Nonnull
+    private MappedByteBuffer open() throws IOException
+    {
+        MappedByteBuffer buffer = this.buffer;
+        if( buffer != null )
+        {
+            return buffer;
+        }
+
+        Path file = getFile();
+        Files.createDirectories( file.getParent() );
+        FileChannel channel = FileChannel.open( file, CREATE, READ, WRITE );
+        try
+        {
+            buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, Math.max( INITIAL_SIZE, channel.size() ) );
+            if( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != VERSION )
+            {
+                if( buffer.getInt( 0 ) != 0 )
+                {
+                    LOG.warn( "Web sessions file '{}' is corrupt or of an unsupported version - discarding stored sessions", file );
+                }
+                buffer.putInt( 0, MAGIC );
+                buffer.putInt( 4, VERSION );
+                buffer.putInt( FILE_HEADER_SIZE, 0 );
+                this.end = FILE_HEADER_SIZE;
+            }
+            else
+            {
+                this.end = scan( buffer );
+            }
+        }
+        catch( IOException | RuntimeException e )
+        {
+            this.index.clear();
+            channel.close();
+            throw e;
+        }
+
+        this.channel = channel;
+        this.buffer = buffer;
+        LOG.info( "Opened web sessions file '{}' with {} sessions", file, this.index.size() );
+        return buffer;
+    }
+
+    private int scan( @Nonnull ByteBuffer buffer )
+    {
+        this.index.clear();
+        this.deadBytes = 0;
+
+        int offset = FILE_HEADER_SIZE;
+        while( offset + RECORD_OVERHEAD <= buffer.capacity() )
+        {
+            int length = buffer.getInt( offset );
+            if( length < RECORD_OVERHEAD || offset + length > buffer.capacity() )
+            {
+                // end of data (or a torn write at the end of the log)
+                break;
+            }
+
+            if( buffer.get( offset + STATUS_OFFSET ) == LIVE )
+            {
+                byte[] id = new byte[ buffer.getShort( offset + ID_LENGTH_OFFSET ) ];
+                ByteBuffer source = buffer.duplicate();
+                source.position( offset + ID_OFFSET );
+                source.get( id );
+
+                Integer previous = this.index.put( new String( id, UTF_8 ), offset );
+                if( previous != null )
+                {
+                    kill( buffer, previous );
+                }
+            }
+            else
+            {
+                this.deadBytes += length;
+            }
+            offset += length;
+        }
+        return offset;
+    }
+
+    private void kill( @Nonnull ByteBuffer buffer, int offset )
+    {
+        buffer.put( offset + STATUS_OFFSET, DEAD );
+        this.deadBytes += buffer.getInt( offset );
+    }
+
+    private void ensureCapacity( int length ) throws IOException
+    {
+        MappedByteBuffer buffer = this.buffer;
+        FileChannel channel = this.channel;
+        if( buffer == null || channel == null )
+        {
+            throw new IllegalStateException( "sessions file not open" );
+        }
+
+        // keep room for the terminating zero length after the new record
+        if( ( long ) this.end + length + 4 <= buffer.capacity() )
+        {
+            return;
+        }
+
+        // prefer reclaiming dead records over growing the file
+        if( this.deadBytes > ( this.end - FILE_HEADER_SIZE ) / 2 )
+        {
+            compact();
+            buffer = this.buffer;
+            channel = this.channel;
+        }
+
+        long required = ( long ) this.end + length + 4;
+        if( required <= buffer.capacity() )
+        {
+            return;
+        }
+
+        long size = buffer.capacity();
+        while( size < required )
+        {
+            size *= 2;
+        }
+        if( size > Integer.MAX_VALUE )
+        {
+            throw new IOException( "web sessions file is full" );
+        }
+        // both mappings share the same pages, so there's no need to force the previous one before replacing it
+        this.buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, size );
+    }
+
+    private void compact() throws IOException
+    {
+        MappedByteBuffer buffer = this.buffer;
+        FileChannel channel = this.channel;
+        if( buffer == null || channel == null )
+        {
+            throw new IllegalStateException( "sessions file not open" );
+        }
+
+        Path file = getFile();
+        Path tempFile = file.resolveSibling( file.getFileName() + ".tmp" );
+        Map<String, Integer> newIndex = new HashMap<>( this.index.size() * 2 );
+        int newEnd = FILE_HEADER_SIZE;
+        try( FileChannel target = FileChannel.open( tempFile, CREATE, TRUNCATE_EXISTING, WRITE ) )
+        {
+            ByteBuffer header = ByteBuffer.allocate( FILE_HEADER_SIZE );
+            header.putInt( MAGIC ).putInt( VERSION ).flip();
+            target.write( header );
+
+            for( Map.Entry<String, Integer> entry : this.index.entrySet() )
+            {
+                int offset = entry.getValue();
+                ByteBuffer record = buffer.duplicate();
+                record.limit( offset + buffer.getInt( offset ) ).position( offset );
+                newIndex.put( entry.getKey(), newEnd );
+                newEnd += record.remaining();
+                while( record.hasRemaining() )
+                {
+                    target.write( record );
+                }
+            }
+            target.force( true );
+        }
+        Files.move( tempFile, file, REPLACE_EXISTING, ATOMIC_MOVE );
+
+        // the previous mapping is released when garbage-collected
+        channel.close();
+        long size = Math.max( INITIAL_SIZE, Math.min( Integer.MAX_VALUE, Math.max( buffer.capacity(), 2l * newEnd ) ) );
+        FileChannel newChannel = FileChannel.open( file, READ, WRITE );
+        MappedByteBuffer newBuffer = newChannel.map( FileChannel.MapMode.READ_WRITE, 0, size );
+        newBuffer.putInt( newEnd, 0 );
+
+        LOG.debug( "Compacted web sessions file from {} to {} bytes", this.end, newEnd );
+        this.channel = newChannel;
+        this.buffer = newBuffer;
+        this.index.clear();
+        this.index.putAll( newIndex );
+        this.end = newEnd;
+        this.deadBytes = 0;
+    }
+
+    @Nonnull
+    private Path getFile()
+    {
+        Path file = this.file;
+        if( file != null )
+        {
+            return file;
+        }
+        return this.server.getWorkPath().resolve( "web" ).resolve( "sessions" ).resolve( "sessions.dat" );
+    }
+}
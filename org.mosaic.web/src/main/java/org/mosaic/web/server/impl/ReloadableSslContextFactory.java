@@ -0,0 +1,81 @@
+package org.mosaic.web.server.impl;
+
+import java.net.InetSocketAddress;
+import javax.annotation.Nonnull;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SSL context factory delegating to a replaceable factory, allowing key stores and SSL settings to be reloaded in
+ * place: connections accepted after a reload use the new factory, while existing connections are not affected.
+ *
+ * @author arik
+ */
+final class ReloadableSslContextFactory extends SslContextFactory
+{
+    private static final Logger LOG = LoggerFactory.getLogger( ReloadableSslContextFactory.class );
+
+    @Nonnull
+    private volatile SslContextFactory delegate;
+
+    ReloadableSslContextFactory( @Nonnull SslContextFactory delegate )
+    {
+        this.delegate = delegate;
+    }
+
+    synchronized void reload( @Nonnull SslContextFactory delegate ) throws Exception
+    {
+        // start (and thus validate) the new factory before switching to it
+        delegate.start();
+
+        SslContextFactory previous = this.delegate;
+        this.delegate = delegate;
+        try
+        {
+            previous.stop();
+        }
+        catch( Exception e )
+        {
+            LOG.warn( "Could not stop previous SSL context factory: {}", e.getMessage(), e );
+        }
+    }
+
+    @Override
+    protected synchronized void doStart() throws Exception
+    {
+        this.delegate.start();
+    }
+
+    @Override
+    protected synchronized void doStop() throws Exception
+    {
+        this.delegate.stop();
+    }
+
+    @Override
+    public SSLContext getSslContext()
+    {
+        return this.delegate.getSslContext();
+    }
+
+    @Override
+    public SSLEngine newSSLEngine()
+    {
+        return this.delegate.newSSLEngine();
+    }
+
+    @Override
+    public SSLEngine newSSLEngine( String host, int port )
+    {
+        return this.delegate.newSSLEngine( host, port );
+    }
+
+    @Override
+    public SSLEngine newSSLEngine( InetSocketAddress address )
+    {
+        return this.delegate.newSSLEngine( address );
+    }
+}
@@ -3,6 +3,7 @@ package org.mosaic.web.server.impl;
 import com.google.common.net.HttpHeaders;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.ServletException;
@@ -10,16 +11,22 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.eclipse.jetty.server.Request;
+import org.mosaic.modules.Component;
 import org.mosaic.modules.Service;
 import org.mosaic.server.Server;
 import org.mosaic.web.application.Application;
-import org.mosaic.web.server.WebInvocation;
 
 /**
  * @author arik
  */
 final class RequestDispatcher extends HttpServlet
 {
+    /**
+     * Servlet context attribute holding the number of requests currently processed by the context, used to let
+     * retired contexts finish their in-flight requests before being stopped.
+     */
+    static final String ACTIVE_REQUESTS_ATTR = RequestDispatcher.class.getName() + ".activeRequests";
+
     @Nonnull
     @Service
     private Server server;
@@ -28,21 +35,99 @@ final class RequestDispatcher extends HttpServlet
     @Service
     private List<Application> applications;
 
+    @Nonnull
+    @Component
+    private AccessLog accessLog;
+
+    @Nullable
+    private volatile AdmissionController admissionController;
+
+    void setAdmissionController( @Nullable AdmissionController admissionController )
+    {
+        this.admissionController = admissionController;
+    }
+
     @Override
     protected void service( HttpServletRequest req, HttpServletResponse resp ) throws ServletException, IOException
     {
-        resp.setHeader( HttpHeaders.SERVER, "Mosaic Web Server/" + this.server.getVersion() );
-
-        Application application = findApplication( req );
-        if( application == null )
+        AtomicInteger activeRequests = ( AtomicInteger ) req.getServletContext().getAttribute( ACTIVE_REQUESTS_ATTR );
+        if( activeRequests == null )
         {
-            resp.sendError( HttpServletResponse.SC_NOT_FOUND );
+            dispatch( req, resp );
             return;
         }
 
-        WebInvocation request = new WebInvocationImpl( ( Request ) req, application );
-        Runnable plan = new RequestPlan( request );
-        plan.run();
+        activeRequests.incrementAndGet();
+        try
+        {
+            dispatch( req, resp );
+        }
+        finally
+        {
+            activeRequests.decrementAndGet();
+        }
+    }
+
+    private void dispatch( @Nonnull HttpServletRequest req, @Nonnull HttpServletResponse resp ) throws IOException
+    {
+        long start = System.nanoTime();
+        Application application = null;
+        RequestPlan plan = null;
+        try
+        {
+            resp.setHeader( HttpHeaders.SERVER, "Mosaic Web Server/" + this.server.getVersion() );
+
+            application = findApplication( req );
+            if( application == null )
+            {
+                resp.sendError( HttpServletResponse.SC_NOT_FOUND );
+                return;
+            }
+
+            AdmissionController admissionController = this.admissionController;
+            if( admissionController == null )
+            {
+                plan = handle( ( Request ) req, application );
+                return;
+            }
+
+            AdmissionController.Admission admission = admissionController.admit( application, req.getServerName().toLowerCase() );
+            if( admission == null )
+            {
+                resp.setHeader( HttpHeaders.RETRY_AFTER, admissionController.getRetryAfter() + "" );
+                resp.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+                return;
+            }
+
+            try
+            {
+                plan = handle( ( Request ) req, application );
+            }
+            finally
+            {
+                admission.release();
+            }
+        }
+        finally
+        {
+            this.accessLog.record( ( Request ) req, start, application, plan );
+        }
+    }
+
+    @Nonnull
+    private RequestPlan handle( @Nonnull Request req, @Nonnull Application application )
+    {
+        WebInvocationImpl request = new WebInvocationImpl( req, application );
+        try
+        {
+            RequestPlan plan = new RequestPlan( request );
+            plan.run();
+            return plan;
+        }
+        finally
+        {
+            request.releaseSession();
+        }
     }
 
     @Nullable
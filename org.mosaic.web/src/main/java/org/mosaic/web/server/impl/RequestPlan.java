@@ -6,6 +6,9 @@ import java.util.Iterator;
 import java.util.List;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.mosaic.metrics.Counter;
+import org.mosaic.metrics.Histogram;
+import org.mosaic.metrics.Metrics;
 import org.mosaic.modules.Component;
 import org.mosaic.modules.Service;
 import org.mosaic.modules.ServiceReference;
@@ -19,6 +22,16 @@ import org.mosaic.web.server.*;
  */
 public final class RequestPlan implements Runnable
 {
+    private static final Histogram AUTHENTICATE_TIME = Metrics.histogram( "web.request.authenticate" );
+
+    private static final Histogram AUTHORIZE_TIME = Metrics.histogram( "web.request.authorize" );
+
+    private static final Histogram HANDLE_TIME = Metrics.histogram( "web.request.handle" );
+
+    private static final Histogram MARSHALL_TIME = Metrics.histogram( "web.request.marshall" );
+
+    private static final Counter ERRORS = Metrics.counter( "web.request.errors" );
+
     @Nonnull
     private final InterceptorChain interceptorChain = new InterceptorChainImpl();
 
@@ -31,6 +44,9 @@ public final class RequestPlan implements Runnable
     @Nonnull
     private final RequestHandler requestHandler;
 
+    @Nullable
+    private Subject subject;
+
     @Nonnull
     @Component
     private RequestHandlersManagerImpl requestHandlersManager;
@@ -69,12 +85,36 @@ public final class RequestPlan implements Runnable
         this.interceptors = this.requestHandlersManager.findInterceptors( this.request, this.requestHandler ).iterator();
     }
 
+    @Nonnull
+    RequestHandler getRequestHandler()
+    {
+        return this.requestHandler;
+    }
+
+    /**
+     * Returns the subject the request was executed for, or {@code null} if the plan has not been run yet.
+     */
+    @Nullable
+    Subject getSubject()
+    {
+        return this.subject;
+    }
+
     @Override
     public void run()
     {
         SecurityConstraint securityConstraint = new MergedSecurityConstraint();
+
+        long start = System.nanoTime();
         Subject subject = authenticate( securityConstraint );
-        if( authorize( securityConstraint, subject ) )
+        this.subject = subject;
+        long authenticated = System.nanoTime();
+        AUTHENTICATE_TIME.record( authenticated - start );
+
+        boolean authorized = authorize( securityConstraint, subject );
+        AUTHORIZE_TIME.record( System.nanoTime() - authenticated );
+
+        if( authorized )
         {
             subject.login();
             try
@@ -82,7 +122,11 @@ public final class RequestPlan implements Runnable
                 // execute interceptors and handler
                 try
                 {
+                    long handleStart = System.nanoTime();
                     Object result = this.interceptorChain.proceed();
+                    long handled = System.nanoTime();
+                    HANDLE_TIME.record( handled - handleStart );
+
                     if( result != null )
                     {
                         try
@@ -96,10 +140,12 @@ public final class RequestPlan implements Runnable
                                     "Unable to generate " + this.request.getHttpRequest().getAccept() );
                             this.request.disableCaching();
                         }
+                        MARSHALL_TIME.record( System.nanoTime() - handled );
                     }
                 }
                 catch( Throwable throwable )
                 {
+                    ERRORS.increment();
                     handleError( throwable );
                 }
             }
@@ -194,9 +240,24 @@ public final class RequestPlan implements Runnable
     private void handleError( @Nonnull Throwable throwable )
     {
         // TODO: add application-specific error handling, maybe error page, @ErrorHandler(s), etc
-        this.request.getHttpResponse().setStatus( HttpStatus.INTERNAL_SERVER_ERROR, "Internal error" );
-        this.request.disableCaching();
-        this.request.getHttpLogger().error( "Request handling failed: {}", throwable.getMessage(), throwable );
+        if( throwable instanceof UnsupportedRequestBodyException )
+        {
+            this.request.getHttpResponse().setStatus( HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Unsupported request content type" );
+            this.request.disableCaching();
+            this.request.getHttpLogger().debug( "Request handling failed: {}", throwable.getMessage() );
+        }
+        else if( throwable instanceof MalformedRequestBodyException )
+        {
+            this.request.getHttpResponse().setStatus( HttpStatus.BAD_REQUEST, "Malformed request content" );
+            this.request.disableCaching();
+            this.request.getHttpLogger().debug( "Request handling failed: {}", throwable.getMessage() );
+        }
+        else
+        {
+            this.request.getHttpResponse().setStatus( HttpStatus.INTERNAL_SERVER_ERROR, "Internal error" );
+            this.request.disableCaching();
+            this.request.getHttpLogger().error( "Request handling failed: {}", throwable.getMessage(), throwable );
+        }
     }
 
     private class InterceptorChainImpl implements InterceptorChain
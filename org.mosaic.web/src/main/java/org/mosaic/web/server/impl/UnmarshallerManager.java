@@ -0,0 +1,55 @@
+package org.mosaic.web.server.impl;
+
+import com.google.common.net.MediaType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.mosaic.modules.Component;
+import org.mosaic.modules.Service;
+import org.mosaic.web.server.HttpRequestBodyUnmarshaller;
+import org.mosaic.web.server.UnsupportedRequestBodyException;
+
+/**
+ * @author arik
+ */
+@Component
+public class UnmarshallerManager
+{
+    @Nonnull
+    @Service
+    private List<HttpRequestBodyUnmarshaller> unmarshallers;
+
+    @Nonnull
+    public <T> T unmarshall( @Nonnull InputStream stream, @Nullable MediaType contentType, @Nonnull Class<T> type )
+            throws IOException
+    {
+        return findUnmarshaller( contentType, type ).unmarshall( stream, contentType, type );
+    }
+
+    public <T> void unmarshallElements( @Nonnull InputStream stream,
+                                        @Nullable MediaType contentType,
+                                        @Nonnull Class<T> elementType,
+                                        @Nonnull HttpRequestBodyUnmarshaller.ElementHandler<? super T> handler )
+            throws IOException
+    {
+        findUnmarshaller( contentType, elementType ).unmarshallElements( stream, contentType, elementType, handler );
+    }
+
+    @Nonnull
+    private HttpRequestBodyUnmarshaller findUnmarshaller( @Nullable MediaType contentType, @Nonnull Class<?> type )
+    {
+        if( contentType != null )
+        {
+            for( HttpRequestBodyUnmarshaller unmarshaller : this.unmarshallers )
+            {
+                if( unmarshaller.canUnmarshall( contentType, type ) )
+                {
+                    return unmarshaller;
+                }
+            }
+        }
+        throw new UnsupportedRequestBodyException( contentType, type );
+    }
+}
@@ -6,13 +6,10 @@ import java.net.UnknownHostException;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.http.Cookie;
-import javax.servlet.http.HttpSession;
-import javax.servlet.http.HttpSessionBindingEvent;
-import javax.servlet.http.HttpSessionBindingListener;
 import org.eclipse.jetty.server.Request;
 import org.joda.time.DateTime;
-import org.joda.time.Duration;
 import org.joda.time.Period;
+import org.mosaic.modules.Component;
 import org.mosaic.util.collections.ConcurrentHashMapEx;
 import org.mosaic.util.collections.MapEx;
 import org.mosaic.web.application.Application;
@@ -27,8 +24,6 @@ public final class WebInvocationImpl implements WebInvocation
 {
     private static final Logger LOG = LoggerFactory.getLogger( WebInvocationImpl.class );
 
-    private static final String WEB_SESSION_ATTR_KEY = WebSession.class.getName() + "#" + WebSession.class.hashCode();
-
     @Nonnull
     private final JettyHttpRequestImpl request;
 
@@ -50,6 +45,15 @@ public final class WebInvocationImpl implements WebInvocation
     @Nullable
     private final SecurityConstraint securityConstraint;
 
+    @Nonnull
+    @Component
+    private WebSessionManager sessionManager;
+
+    @Nullable
+    private WebSessionImpl session;
+
+    private boolean sessionResolved;
+
     public WebInvocationImpl( @Nonnull Request request, @Nonnull Application application )
     {
         this.request = new JettyHttpRequestImpl( request );
@@ -111,48 +115,52 @@ public final class WebInvocationImpl implements WebInvocation
 
     @Nullable
     @Override
-    public WebSession getSession()
+    public synchronized WebSession getSession()
     {
-        HttpSession httpSession = this.request.getJettyRequest().getSession( false );
-        if( httpSession == null )
+        if( !this.sessionResolved )
         {
-            return null;
-        }
+            this.sessionResolved = true;
 
-        Object webSession = httpSession.getAttribute( WEB_SESSION_ATTR_KEY );
-        if( webSession == null )
-        {
-            return null;
-        }
-        else if( webSession instanceof WebSession )
-        {
-            return ( WebSession ) webSession;
-        }
-        else
-        {
-            this.httpLogger.warn( "Mosaic session attribute contained a value that does not implement {}: {}", WebSession.class.getName(), webSession );
-            return null;
+            WebCookie cookie = getCookie( WebSessionManager.SESSION_COOKIE_NAME );
+            if( cookie != null && cookie.getValue() != null )
+            {
+                this.session = this.sessionManager.findSession( this.application, cookie.getValue() );
+            }
         }
+        return this.session;
     }
 
     @Nonnull
     @Override
-    public WebSession getOrCreateSession()
+    public synchronized WebSession getOrCreateSession()
     {
-        HttpSession httpSession = this.request.getJettyRequest().getSession( true );
-
-        Object webSession = httpSession.getAttribute( WEB_SESSION_ATTR_KEY );
-        if( webSession == null )
+        WebSessionImpl session = ( WebSessionImpl ) getSession();
+        if( session == null || session.isInvalidated() )
         {
-            return new WebSessionImpl( httpSession );
-        }
-        else if( webSession instanceof WebSession )
-        {
-            return ( WebSession ) webSession;
+            session = this.sessionManager.createSession( this.application );
+            this.response.getJettyResponse().getHttpFields().addSetCookie(
+                    WebSessionManager.SESSION_COOKIE_NAME, session.getId(), null, "/", -1, null,
+                    this.request.getJettyRequest().isSecure(), true, 1 );
+            if( this.session != null )
+            {
+                // the previous session was invalidated during this request - it still needs to be removed
+                this.sessionManager.releaseSession( this.session );
+            }
+            this.session = session;
         }
-        else
+        return session;
+    }
+
+    /**
+     * Saves the session used by this request (if any) back to the session store; called when the request completes.
+     */
+    synchronized void releaseSession()
+    {
+        WebSessionImpl session = this.session;
+        if( session != null )
         {
-            throw new CreateWebSessionException( "Mosaic session attribute contained a value that does not implement WebSession: " + webSession );
+            this.session = null;
+            this.sessionManager.releaseSession( session );
         }
     }
 
@@ -326,79 +334,4 @@ public final class WebInvocationImpl implements WebInvocation
             return this.cookie.getVersion();
         }
     }
-
-    private class WebSessionImpl implements WebSession, HttpSessionBindingListener
-    {
-        @Nonnull
-        private final MapEx<String, Object> attributes;
-
-        @Nonnull
-        private final HttpSession session;
-
-        WebSessionImpl( @Nonnull HttpSession session )
-        {
-            this.attributes = new ConcurrentHashMapEx<>( 10 );
-            this.session = session;
-            this.session.setAttribute( WEB_SESSION_ATTR_KEY, this );
-        }
-
-        @Override
-        public void valueBound( HttpSessionBindingEvent event )
-        {
-            LOG.debug( "Created Mosaic web session '{}'", this );
-        }
-
-        @Override
-        public void valueUnbound( HttpSessionBindingEvent event )
-        {
-            LOG.debug( "Destroyed Mosaic web session '{}'", this );
-        }
-
-        @Nonnull
-        @Override
-        public MapEx<String, Object> getAttributes()
-        {
-            return this.attributes;
-        }
-
-        @Nonnull
-        @Override
-        public String getId()
-        {
-            return this.session.getId();
-        }
-
-        @Nonnull
-        @Override
-        public DateTime getCreationTime()
-        {
-            return new DateTime( this.session.getCreationTime() );
-        }
-
-        @Nonnull
-        @Override
-        public DateTime getLastAccessTime()
-        {
-            return new DateTime( this.session.getLastAccessedTime() );
-        }
-
-        @Nonnull
-        @Override
-        public Duration getMaxInactiveIntervalInSeconds()
-        {
-            return new Duration( this.session.getMaxInactiveInterval() );
-        }
-
-        @Override
-        public boolean isNew()
-        {
-            return this.session.isNew();
-        }
-
-        @Override
-        public void invalidate()
-        {
-            this.session.invalidate();
-        }
-    }
 }
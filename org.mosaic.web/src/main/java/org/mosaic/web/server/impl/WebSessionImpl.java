@@ -0,0 +1,255 @@
+package org.mosaic.web.server.impl;
+
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.mosaic.util.collections.ConcurrentHashMapEx;
+import org.mosaic.util.collections.MapEx;
+import org.mosaic.web.server.WebSession;
+import org.mosaic.web.server.WebSessionStore;
+
+/**
+ * A live web session, shared by all in-flight requests using it. Attributes are deserialized on first access only, and
+ * tracked for changes so that unchanged sessions are not re-serialized when written back to the store.
+ *
+ * @author arik
+ */
+final class WebSessionImpl implements WebSession
+{
+    @Nonnull
+    private final WebSessionManager manager;
+
+    @Nonnull
+    private final String storeKey;
+
+    @Nonnull
+    private final String id;
+
+    private final long creationTime;
+
+    private final long lastAccessTime;
+
+    private final int maxInactiveInterval;
+
+    private final boolean isNew;
+
+    @Nonnull
+    private final byte[] serializedAttributes;
+
+    @Nullable
+    private TrackingAttributes attributes;
+
+    private boolean invalidated;
+
+    /**
+     * Whether this session was written to the store at least once.
+     */
+    private boolean persisted;
+
+    /**
+     * Number of in-flight requests using this session - guarded by the {@link WebSessionManager}.
+     */
+    int references;
+
+    WebSessionImpl( @Nonnull WebSessionManager manager,
+                    @Nonnull String storeKey,
+                    @Nonnull String id,
+                    @Nonnull WebSessionStore.StoredSession storedSession,
+                    boolean isNew )
+    {
+        this.manager = manager;
+        this.storeKey = storeKey;
+        this.id = id;
+        this.creationTime = storedSession.getCreationTime();
+        this.lastAccessTime = storedSession.getLastAccessTime();
+        this.maxInactiveInterval = storedSession.getMaxInactiveInterval();
+        this.isNew = isNew;
+        this.persisted = !isNew;
+        this.serializedAttributes = storedSession.getAttributes();
+    }
+
+    @Nonnull
+    @Override
+    public String getId()
+    {
+        return this.id;
+    }
+
+    @Nonnull
+    @Override
+    public DateTime getCreationTime()
+    {
+        return new DateTime( this.creationTime );
+    }
+
+    @Nonnull
+    @Override
+    public DateTime getLastAccessTime()
+    {
+        return new DateTime( this.lastAccessTime );
+    }
+
+    @Nonnull
+    @Override
+    public Duration getMaxInactiveIntervalInSeconds()
+    {
+        return Duration.standardSeconds( this.maxInactiveInterval );
+    }
+
+    @Override
+    public boolean isNew()
+    {
+        return this.isNew;
+    }
+
+    @Override
+    public synchronized void invalidate()
+    {
+        this.invalidated = true;
+    }
+
+    @Nonnull
+    @Override
+    public synchronized MapEx<String, Object> getAttributes()
+    {
+        TrackingAttributes attributes = this.attributes;
+        if( attributes == null )
+        {
+            attributes = new TrackingAttributes( this.manager.deserializeAttributes( this.id, this.serializedAttributes ) );
+            this.attributes = attributes;
+        }
+        return attributes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "WebSession[" + this.id + "]";
+    }
+
+    @Nonnull
+    String getStoreKey()
+    {
+        return this.storeKey;
+    }
+
+    int getMaxInactiveInterval()
+    {
+        return this.maxInactiveInterval;
+    }
+
+    synchronized boolean isInvalidated()
+    {
+        return this.invalidated;
+    }
+
+    synchronized boolean isDirty()
+    {
+        return this.attributes != null && this.attributes.dirty;
+    }
+
+    synchronized void markDirty()
+    {
+        if( this.attributes != null )
+        {
+            this.attributes.dirty = true;
+        }
+    }
+
+    synchronized boolean isPersisted()
+    {
+        return this.persisted;
+    }
+
+    synchronized void markPersisted()
+    {
+        this.persisted = true;
+    }
+
+    /**
+     * Serializes the attributes and clears the dirty flag, so only changes made after this call mark the session dirty
+     * again.
+     */
+    @Nonnull
+    synchronized byte[] takeSerializedAttributes()
+    {
+        TrackingAttributes attributes = this.attributes;
+        if( attributes == null )
+        {
+            return this.serializedAttributes;
+        }
+        attributes.dirty = false;
+        return this.manager.serializeAttributes( attributes );
+    }
+
+    private static final class TrackingAttributes extends ConcurrentHashMapEx<String, Object>
+    {
+        private volatile boolean dirty;
+
+        private TrackingAttributes( @Nonnull Map<String, Object> attributes )
+        {
+            super( attributes );
+
+            // the copy constructor may delegate to our (tracking) putAll
+            this.dirty = false;
+        }
+
+        @Override
+        public Object put( String key, Object value )
+        {
+            this.dirty = true;
+            return super.put( key, value );
+        }
+
+        @Override
+        public void putAll( Map<? extends String, ? extends Object> m )
+        {
+            this.dirty = true;
+            super.putAll( m );
+        }
+
+        @Override
+        public Object putIfAbsent( String key, Object value )
+        {
+            this.dirty = true;
+            return super.putIfAbsent( key, value );
+        }
+
+        @Override
+        public Object remove( Object key )
+        {
+            this.dirty = true;
+            return super.remove( key );
+        }
+
+        @Override
+        public boolean remove( Object key, Object value )
+        {
+            this.dirty = true;
+            return super.remove( key, value );
+        }
+
+        @Override
+        public boolean replace( String key, Object oldValue, Object newValue )
+        {
+            this.dirty = true;
+            return super.replace( key, oldValue, newValue );
+        }
+
+        @Override
+        public Object replace( String key, Object value )
+        {
+            this.dirty = true;
+            return super.replace( key, value );
+        }
+
+        @Override
+        public void clear()
+        {
+            this.dirty = true;
+            super.clear();
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package org.mosaic.web.server.impl;
+
+import com.google.common.base.Optional;
+import com.google.common.io.BaseEncoding;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import org.mosaic.config.Configurable;
+import org.mosaic.modules.*;
+import org.mosaic.util.collections.MapEx;
+import org.mosaic.util.version.Version;
+import org.mosaic.web.application.Application;
+import org.mosaic.web.server.CreateWebSessionException;
+import org.mosaic.web.server.WebSessionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages web sessions on top of the configured {@link WebSessionStore}. Sessions are loaded from the store when first
+ * requested during a request, and shared by all requests using them concurrently (so they see each other's changes);
+ * when the last of those requests completes, the session is written back - fully if its attributes changed, or by
+ * merely updating its last access time otherwise. Expired sessions are periodically swept from the store.
+ * <p/>
+ * Session attributes are serialized one by one, along with the name and version of the module providing the value's
+ * class, so they can be deserialized with that module's class loader. Attributes that are not serializable are kept
+ * for the current request only.
+ *
+ * @author arik
+ */
+@Component
+final class WebSessionManager
+{
+    private static final Logger LOG = LoggerFactory.getLogger( WebSessionManager.class );
+
+    static final String SESSION_COOKIE_NAME = "MOSAICSESSIONID";
+
+    private static final byte[] NO_ATTRIBUTES = new byte[ 0 ];
+
+    @Nonnull
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Sessions currently used by in-flight requests, by store key. Also guards {@link WebSessionImpl#references}.
+     */
+    @Nonnull
+    private final Map<String, WebSessionImpl> liveSessions = new HashMap<>();
+
+    @Nonnull
+    @Service
+    private List<ServiceReference<WebSessionStore>> stores;
+
+    @Nonnull
+    @Service
+    private ModuleManager moduleManager;
+
+    @Nonnull
+    private volatile String storeType = "file";
+
+    @Nullable
+    private ScheduledExecutorService sweeper;
+
+    @Configurable("web")
+    synchronized void configure( @Nonnull MapEx<String, String> cfg )
+    {
+        this.storeType = cfg.find( "session.store" ).or( "file" );
+
+        ScheduledExecutorService sweeper = this.sweeper;
+        if( sweeper != null )
+        {
+            sweeper.shutdownNow();
+        }
+
+        long sweepInterval = cfg.find( "session.sweepInterval", Long.class ).or( 60l );
+        sweeper = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( @Nonnull Runnable r )
+            {
+                Thread thread = new Thread( r, "mosaic-web-session-sweeper" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        sweeper.scheduleWithFixedDelay( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                sweep();
+            }
+        }, sweepInterval, sweepInterval, TimeUnit.SECONDS );
+        this.sweeper = sweeper;
+    }
+
+    @PreDestroy
+    synchronized void destroy()
+    {
+        ScheduledExecutorService sweeper = this.sweeper;
+        if( sweeper != null )
+        {
+            sweeper.shutdownNow();
+            this.sweeper = null;
+        }
+    }
+
+    @Nullable
+    WebSessionImpl findSession( @Nonnull Application application, @Nonnull String id )
+    {
+        WebSessionStore store = getStore();
+        if( store == null )
+        {
+            return null;
+        }
+
+        String key = getStoreKey( application, id );
+        synchronized( this.liveSessions )
+        {
+            WebSessionImpl live = this.liveSessions.get( key );
+            if( live != null )
+            {
+                return acquire( live );
+            }
+        }
+
+        try
+        {
+            WebSessionStore.StoredSession storedSession = store.load( key );
+            if( storedSession == null )
+            {
+                return null;
+            }
+            else if( storedSession.isExpired( System.currentTimeMillis() ) )
+            {
+                store.remove( key );
+                return null;
+            }
+
+            synchronized( this.liveSessions )
+            {
+                // another request may have loaded it meanwhile - share its instance
+                WebSessionImpl live = this.liveSessions.get( key );
+                if( live != null )
+                {
+                    return acquire( live );
+                }
+
+                WebSessionImpl session = new WebSessionImpl( this, key, id, storedSession, false );
+                session.references = 1;
+                this.liveSessions.put( key, session );
+                return session;
+            }
+        }
+        catch( IOException e )
+        {
+            LOG.error( "Could not load web session '{}': {}", key, e.getMessage(), e );
+            return null;
+        }
+    }
+
+    @Nonnull
+    WebSessionImpl createSession( @Nonnull Application application )
+    {
+        if( getStore() == null )
+        {
+            throw new CreateWebSessionException( "web session store '" + this.storeType + "' is not available" );
+        }
+
+        byte[] idBytes = new byte[ 16 ];
+        this.random.nextBytes( idBytes );
+        String id = BaseEncoding.base64Url().omitPadding().encode( idBytes );
+
+        long now = System.currentTimeMillis();
+        int maxInactiveInterval = application.getMaxSessionAge().normalizedStandard().toStandardSeconds().getSeconds();
+        WebSessionStore.StoredSession storedSession = new WebSessionStore.StoredSession( getStoreKey( application, id ), now, now, maxInactiveInterval, NO_ATTRIBUTES );
+        WebSessionImpl session = new WebSessionImpl( this, storedSession.getId(), id, storedSession, true );
+        synchronized( this.liveSessions )
+        {
+            session.references = 1;
+            this.liveSessions.put( session.getStoreKey(), session );
+        }
+        return session;
+    }
+
+    /**
+     * Releases the given session at the end of a request that used it; the last request to release a session writes it
+     * back to the store.
+     */
+    void releaseSession( @Nonnull WebSessionImpl session )
+    {
+        synchronized( this.liveSessions )
+        {
+            if( --session.references > 0 )
+            {
+                return;
+            }
+        }
+
+        try
+        {
+            writeBack( session );
+        }
+        finally
+        {
+            // requests which acquired the session while it was written back will write it again when they release it
+            synchronized( this.liveSessions )
+            {
+                if( session.references == 0 )
+                {
+                    this.liveSessions.remove( session.getStoreKey() );
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private WebSessionImpl acquire( @Nonnull WebSessionImpl live )
+    {
+        // an invalidated session is only kept until its requests complete - it is not visible to new requests
+        if( live.isInvalidated() )
+        {
+            return null;
+        }
+        live.references++;
+        return live;
+    }
+
+    private void writeBack( @Nonnull WebSessionImpl session )
+    {
+        WebSessionStore store = getStore();
+        if( store == null )
+        {
+            LOG.warn( "Web session store '{}' is not available - session '{}' will not be saved", this.storeType, session.getId() );
+            return;
+        }
+
+        // serialize write-backs of the same session, so an older snapshot never overwrites a newer one
+        synchronized( session )
+        {
+            long now = System.currentTimeMillis();
+            try
+            {
+                if( session.isInvalidated() )
+                {
+                    store.remove( session.getStoreKey() );
+                }
+                else if( !session.isPersisted() || session.isDirty() )
+                {
+                    byte[] attributes = session.takeSerializedAttributes();
+                    try
+                    {
+                        store.store( new WebSessionStore.StoredSession( session.getStoreKey(),
+                                                                        session.getCreationTime().getMillis(),
+                                                                        now,
+                                                                        session.getMaxInactiveInterval(),
+                                                                        attributes ) );
+                    }
+                    catch( IOException e )
+                    {
+                        session.markDirty();
+                        throw e;
+                    }
+                    session.markPersisted();
+                }
+                else
+                {
+                    store.touch( session.getStoreKey(), now );
+                }
+            }
+            catch( IOException e )
+            {
+                LOG.error( "Could not save web session '{}': {}", session.getId(), e.getMessage(), e );
+            }
+        }
+    }
+
+    @Nonnull
+    byte[] serializeAttributes( @Nonnull Map<String, Object> attributes )
+    {
+        ByteArrayOutputStream entries = new ByteArrayOutputStream( 256 );
+        int count = 0;
+        try( DataOutputStream out = new DataOutputStream( entries ) )
+        {
+            for( Map.Entry<String, Object> entry : attributes.entrySet() )
+            {
+                Object value = entry.getValue();
+                byte[] valueBytes = serializeValue( entry.getKey(), value );
+                if( valueBytes != null )
+                {
+                    Module module = this.moduleManager.getModuleFor( value ).orNull();
+                    out.writeUTF( entry.getKey() );
+                    out.writeUTF( module == null ? "" : module.getName() );
+                    out.writeUTF( module == null ? "" : module.getVersion().toString() );
+                    out.writeInt( valueBytes.length );
+                    out.write( valueBytes );
+                    count++;
+                }
+            }
+        }
+        catch( IOException e )
+        {
+            throw new IllegalStateException( "could not serialize web session attributes: " + e.getMessage(), e );
+        }
+
+        byte[] entriesBytes = entries.toByteArray();
+        return ByteBuffer.allocate( 4 + entriesBytes.length ).putInt( count ).put( entriesBytes ).array();
+    }
+
+    @Nonnull
+    Map<String, Object> deserializeAttributes( @Nonnull String sessionId, @Nonnull byte[] serialized )
+    {
+        Map<String, Object> attributes = new HashMap<>();
+        if( serialized.length == 0 )
+        {
+            return attributes;
+        }
+
+        try( DataInputStream in = new DataInputStream( new ByteArrayInputStream( serialized ) ) )
+        {
+            int count = in.readInt();
+            for( int i = 0; i < count; i++ )
+            {
+                String name = in.readUTF();
+                String moduleName = in.readUTF();
+                String moduleVersion = in.readUTF();
+                byte[] value = new byte[ in.readInt() ];
+                in.readFully( value );
+
+                ClassLoader classLoader = findClassLoader( moduleName, moduleVersion );
+                try( ObjectInputStream valueIn = new ModuleObjectInputStream( new ByteArrayInputStream( value ), classLoader ) )
+                {
+                    attributes.put( name, valueIn.readObject() );
+                }
+                catch( IOException | ClassNotFoundException e )
+                {
+                    // typically happens when the module providing the value's class was removed or changed incompatibly
+                    LOG.warn( "Could not restore attribute '{}' of web session '{}': {}", name, sessionId, e.getMessage() );
+                }
+            }
+        }
+        catch( IOException e )
+        {
+            LOG.warn( "Could not restore attributes of web session '{}': {}", sessionId, e.getMessage(), e );
+        }
+        return attributes;
+    }
+
+    @Nullable
+    private byte[] serializeValue( @Nonnull String name, @Nullable Object value ) throws IOException
+    {
+        if( !( value instanceof Serializable ) )
+        {
+            LOG.debug( "Web session attribute '{}' is not serializable and will not be saved", name );
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 64 );
+        try( ObjectOutputStream out = new ObjectOutputStream( bytes ) )
+        {
+            out.writeObject( value );
+        }
+        catch( NotSerializableException e )
+        {
+            LOG.debug( "Web session attribute '{}' is not serializable and will not be saved: {}", name, e.getMessage() );
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private void sweep()
+    {
+        WebSessionStore store = getStore();
+        if( store != null )
+        {
+            try
+            {
+                Collection<String> expired = store.expire( System.currentTimeMillis() );
+                if( !expired.isEmpty() )
+                {
+                    LOG.debug( "Expired {} web sessions", expired.size() );
+                }
+            }
+            catch( Throwable e )
+            {
+                LOG.error( "Could not expire web sessions: {}", e.getMessage(), e );
+            }
+        }
+    }
+
+    @Nullable
+    private WebSessionStore getStore()
+    {
+        String storeType = this.storeType;
+        for( ServiceReference<WebSessionStore> reference : this.stores )
+        {
+            Optional<String> type = reference.getProperties().find( "type", String.class );
+            if( type.isPresent() && type.get().equalsIgnoreCase( storeType ) )
+            {
+                return reference.service().orNull();
+            }
+        }
+        return null;
+    }
+
+    @Nonnull
+    private String getStoreKey( @Nonnull Application application, @Nonnull String id )
+    {
+        // sessions are scoped to their application
+        return application.getId() + "/" + id;
+    }
+
+    @Nonnull
+    private ClassLoader findClassLoader( @Nonnull String moduleName, @Nonnull String moduleVersion )
+    {
+        if( !moduleName.isEmpty() )
+        {
+            Optional<? extends Module> module = this.moduleManager.getModule( moduleName, new Version( moduleVersion ) );
+            if( module.isPresent() )
+            {
+                return module.get().getClassLoader();
+            }
+
+            // the module might have been upgraded since the session was saved
+            for( Module candidate : this.moduleManager.getModules() )
+            {
+                if( candidate.getName().equals( moduleName ) )
+                {
+                    return candidate.getClassLoader();
+                }
+            }
+        }
+        return getClass().getClassLoader();
+    }
+
+    private static class ModuleObjectInputStream extends ObjectInputStream
+    {
+        @Nonnull
+        private final ClassLoader classLoader;
+
+        private ModuleObjectInputStream( @Nonnull InputStream in, @Nonnull ClassLoader classLoader ) throws IOException
+        {
+            super( in );
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass( ObjectStreamClass desc ) throws IOException, ClassNotFoundException
+        {
+            try
+            {
+                return Class.forName( desc.getName(), false, this.classLoader );
+            }
+            catch( ClassNotFoundException e )
+            {
+                return super.resolveClass( desc );
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.mosaic.web.server.impl.marshall;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.net.MediaType;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nonnull;
+import org.mosaic.web.server.HttpRequestBodyUnmarshaller;
+import org.mosaic.web.server.MalformedRequestBodyException;
+
+/**
+ * Base class for Jackson-based unmarshallers, parsing directly from the request stream. In element mode, a top-level
+ * array is read one item at a time, so only a single element is ever held in memory.
+ *
+ * @author arik
+ */
+abstract class AbstractJacksonRequestBodyUnmarshaller implements HttpRequestBodyUnmarshaller
+{
+    @Nonnull
+    private final ObjectMapper objectMapper;
+
+    protected AbstractJacksonRequestBodyUnmarshaller( @Nonnull ObjectMapper objectMapper )
+    {
+        this.objectMapper = objectMapper;
+    }
+
+    @Nonnull
+    @Override
+    public <T> T unmarshall( @Nonnull InputStream stream, @Nonnull MediaType mediaType, @Nonnull Class<T> type )
+            throws IOException
+    {
+        try( JsonParser parser = createParser( this.objectMapper, stream ) )
+        {
+            T value = this.objectMapper.readValue( parser, type );
+            if( value == null )
+            {
+                throw new MalformedRequestBodyException( "empty " + mediaType + " request body" );
+            }
+            return value;
+        }
+        catch( JsonProcessingException e )
+        {
+            throw new MalformedRequestBodyException( "malformed " + mediaType + " request body: " + e.getMessage(), e );
+        }
+    }
+
+    @Override
+    public <T> void unmarshallElements( @Nonnull InputStream stream,
+                                        @Nonnull MediaType mediaType,
+                                        @Nonnull Class<T> elementType,
+                                        @Nonnull ElementHandler<? super T> handler ) throws IOException
+    {
+        try( JsonParser parser = createParser( this.objectMapper, stream ) )
+        {
+            JsonToken token = parser.nextToken();
+            if( token == null )
+            {
+                // empty body - no elements
+                return;
+            }
+            else if( token != JsonToken.START_ARRAY )
+            {
+                // a single top-level value is treated as a single element
+                handler.handle( this.objectMapper.readValue( parser, elementType ) );
+                return;
+            }
+
+            while( ( token = parser.nextToken() ) != JsonToken.END_ARRAY )
+            {
+                if( token == null )
+                {
+                    throw new MalformedRequestBodyException( "unexpected end of " + mediaType + " request body" );
+                }
+                handler.handle( this.objectMapper.readValue( parser, elementType ) );
+            }
+        }
+        catch( JsonProcessingException e )
+        {
+            throw new MalformedRequestBodyException( "malformed " + mediaType + " request body: " + e.getMessage(), e );
+        }
+    }
+
+    @Nonnull
+    protected JsonParser createParser( @Nonnull ObjectMapper objectMapper, @Nonnull InputStream stream )
+            throws IOException
+    {
+        return objectMapper.getFactory().createParser( stream );
+    }
+}
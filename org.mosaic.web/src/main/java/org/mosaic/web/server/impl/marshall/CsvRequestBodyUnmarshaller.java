@@ -0,0 +1,49 @@
+package org.mosaic.web.server.impl.marshall;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.google.common.net.MediaType;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nonnull;
+import org.mosaic.modules.Ranking;
+import org.mosaic.modules.Service;
+
+/**
+ * Unmarshalls CSV request bodies; the first line must be a header line naming the columns, which are mapped to the
+ * properties of each row's target type.
+ *
+ * @author arik
+ */
+@Service
+@Ranking( -200 )
+final class CsvRequestBodyUnmarshaller extends AbstractJacksonRequestBodyUnmarshaller
+{
+    private static final MediaType APPLICATION_CSV = MediaType.create( "application", "csv" );
+
+    private static final MediaType TEXT_CSV = MediaType.create( "text", "csv" );
+
+    private static final CsvSchema SCHEMA = CsvSchema.emptySchema().withHeader();
+
+    CsvRequestBodyUnmarshaller()
+    {
+        super( JacksonMappers.createCsvMapper() );
+    }
+
+    @Override
+    public boolean canUnmarshall( @Nonnull MediaType mediaType, @Nonnull Class<?> type )
+    {
+        return mediaType.is( APPLICATION_CSV ) || mediaType.is( TEXT_CSV );
+    }
+
+    @Nonnull
+    @Override
+    protected JsonParser createParser( @Nonnull ObjectMapper objectMapper, @Nonnull InputStream stream )
+            throws IOException
+    {
+        JsonParser parser = super.createParser( objectMapper, stream );
+        parser.setSchema( SCHEMA );
+        return parser;
+    }
+}
@@ -1,28 +1,111 @@
 package org.mosaic.web.server.impl.marshall;
 
-import com.google.common.base.Optional;
 import freemarker.cache.TemplateLoader;
 import freemarker.template.*;
-import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
+import java.io.*;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Locale;
-import java.util.Map;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import org.mosaic.modules.Component;
+import org.mosaic.modules.Module;
+import org.mosaic.modules.OnServiceAdded;
+import org.mosaic.modules.OnServiceRemoved;
+import org.mosaic.modules.Property;
+import org.mosaic.modules.ServiceReference;
+import org.mosaic.modules.ServiceRegistration;
+import org.mosaic.util.collections.MapEx;
+import org.mosaic.util.resource.PathWatcher;
 import org.mosaic.web.application.Application;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Locale.ENGLISH;
 
 /**
+ * Renders Freemarker templates of web applications.
+ * <p/>
+ * Each application has its own Freemarker configuration, whose template cache never checks templates for staleness
+ * by itself; instead, a path watcher is registered for each of the application's content roots, and the cache is
+ * cleared when a template that was loaded from it changes. Templates are pre-parsed in the background when the
+ * application is registered, unless the application's {@code templates.warmUp} context parameter is {@code false}.
+ * Since parsed templates are cached per locale, they are pre-parsed for each locale listed in the
+ * {@code templates.warmUpLocales} context parameter (comma-separated language tags, {@code en} by default - the locale
+ * of requests without a content language).
+ * <p/>
+ * Output is written directly to the given writer (usually the response writer), and flushed every
+ * {@code templates.flushInterval} characters (8192 by default, {@code 0} to disable) so that clients start receiving
+ * large pages before rendering completes. Templates may also flush explicitly using Freemarker's {@code <#flush>}
+ * directive.
+ *
  * @author arik
  */
 @Component
 final class FreemarkerRenderer
 {
-    private static final String CFG_KEY = FreemarkerRenderer.class.getName() + "#configuration";
+    private static final Logger LOG = LoggerFactory.getLogger( FreemarkerRenderer.class );
+
+    private static final String TEMPLATES_KEY = FreemarkerRenderer.class.getName() + "#templates";
+
+    private static final int DEFAULT_FLUSH_INTERVAL = 8192;
+
+    @Nonnull
+    @Component
+    private Module module;
+
+    @Nullable
+    private ExecutorService warmUpExecutor;
+
+    @PreDestroy
+    synchronized void destroy()
+    {
+        ExecutorService warmUpExecutor = this.warmUpExecutor;
+        if( warmUpExecutor != null )
+        {
+            warmUpExecutor.shutdownNow();
+            this.warmUpExecutor = null;
+        }
+    }
+
+    @OnServiceAdded
+    void onApplicationAdded( @Nonnull ServiceReference<Application> reference )
+    {
+        Application application = reference.service().get();
+        final ApplicationTemplates templates = getTemplatesForApplication( application );
+        if( application.getContext().find( "templates.warmUp", Boolean.class ).or( true ) )
+        {
+            getWarmUpExecutor().submit( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    templates.warmUp();
+                }
+            } );
+        }
+    }
+
+    @OnServiceRemoved
+    synchronized void onApplicationRemoved( @Nonnull ServiceReference<Application> reference )
+    {
+        // applications are replaced by registering the new instance first, so only discard our templates if they still
+        // belong to the removed instance
+        Application application = reference.service().get();
+        ApplicationTemplates templates = application.getAttributes().find( TEMPLATES_KEY, ApplicationTemplates.class ).orNull();
+        if( templates != null && templates.application == application )
+        {
+            application.getAttributes().remove( TEMPLATES_KEY );
+            templates.close();
+        }
+    }
 
     void render( @Nonnull Application application,
                  @Nonnull Map<String, Object> context,
@@ -30,9 +113,9 @@ final class FreemarkerRenderer
                  @Nonnull Locale locale,
                  @Nonnull Writer writer ) throws IOException, TemplateException
     {
-        Configuration configuration = getConfigurationForApplication( application );
-        Template template = configuration.getTemplate( "app:" + path, locale );
-        template.process( context, writer );
+        ApplicationTemplates templates = getTemplatesForApplication( application );
+        Template template = templates.configuration.getTemplate( "app:" + path, locale );
+        template.process( context, templates.createWriter( writer ) );
     }
 
     void render( @Nonnull Application application,
@@ -41,88 +124,393 @@ final class FreemarkerRenderer
                  @Nonnull Locale locale,
                  @Nonnull Writer writer ) throws IOException, TemplateException
     {
-        Configuration configuration = getConfigurationForApplication( application );
-        Template template = configuration.getTemplate( "path:" + path, locale );
-        template.process( context, writer );
+        ApplicationTemplates templates = getTemplatesForApplication( application );
+        Template template = templates.configuration.getTemplate( getTemplateName( path ), locale );
+        template.process( context, templates.createWriter( writer ) );
+    }
+
+    /**
+     * Returns the template name of the given template file, as used by both rendering and warm-up so that pre-parsed
+     * templates are found in the template cache.
+     */
+    @Nonnull
+    private static String getTemplateName( @Nonnull Path file )
+    {
+        return "path:" + file.toAbsolutePath().normalize();
+    }
+
+    @Nonnull
+    private synchronized ApplicationTemplates getTemplatesForApplication( @Nonnull Application application )
+    {
+        // application attributes survive application updates, so make sure the templates match this instance
+        ApplicationTemplates templates = application.getAttributes().find( TEMPLATES_KEY, ApplicationTemplates.class ).orNull();
+        if( templates == null || templates.application != application )
+        {
+            if( templates != null )
+            {
+                templates.close();
+            }
+            templates = new ApplicationTemplates( application );
+            application.getAttributes().put( TEMPLATES_KEY, templates );
+        }
+        return templates;
     }
 
     @Nonnull
-    private Configuration getConfigurationForApplication( @Nonnull Application application )
+    private synchronized ExecutorService getWarmUpExecutor()
     {
-        Optional<Configuration> cfg = application.getAttributes().find( CFG_KEY, Configuration.class );
-        if( !cfg.isPresent() )
+        ExecutorService warmUpExecutor = this.warmUpExecutor;
+        if( warmUpExecutor == null )
         {
-            //noinspection SynchronizationOnLocalVariableOrMethodParameter
-            synchronized( application )
+            warmUpExecutor = Executors.newSingleThreadExecutor( new ThreadFactory()
             {
-                cfg = application.getAttributes().find( CFG_KEY, Configuration.class );
-                if( !cfg.isPresent() )
+                @Override
+                public Thread newThread( @Nonnull Runnable r )
                 {
-                    cfg = Optional.of( new Configuration() );
-                    cfg.get().setDefaultEncoding( "UTF-8" );
-                    cfg.get().setIncompatibleImprovements( new Version( 2, 3, 20 ) );
-                    cfg.get().setTemplateLoader( new ApplicationTemplateLoader( application ) );
-                    cfg.get().setTemplateExceptionHandler( TemplateExceptionHandler.RETHROW_HANDLER );
+                    Thread thread = new Thread( r, "mosaic-web-template-warmup" );
+                    thread.setDaemon( true );
+                    return thread;
                 }
-            }
+            } );
+            this.warmUpExecutor = warmUpExecutor;
         }
-        return cfg.get();
+        return warmUpExecutor;
     }
 
-    private class ApplicationTemplateLoader implements TemplateLoader
+    private class ApplicationTemplates
     {
         @Nonnull
         private final Application application;
 
-        private ApplicationTemplateLoader( @Nonnull Application application )
+        @Nonnull
+        private final Configuration configuration;
+
+        /**
+         * Modification times of template files loaded into the template cache, as read when they were loaded.
+         */
+        @Nonnull
+        private final ConcurrentMap<Path, Long> loadedFiles = new ConcurrentHashMap<>();
+
+        @Nonnull
+        private final List<ServiceRegistration<PathWatcher>> watcherRegistrations = new LinkedList<>();
+
+        private final int flushInterval;
+
+        private ApplicationTemplates( @Nonnull Application application )
         {
             this.application = application;
+            this.flushInterval = application.getContext().find( "templates.flushInterval", Integer.class ).or( DEFAULT_FLUSH_INTERVAL );
+
+            this.configuration = new Configuration();
+            this.configuration.setDefaultEncoding( "UTF-8" );
+            this.configuration.setIncompatibleImprovements( new Version( 2, 3, 20 ) );
+            this.configuration.setTemplateLoader( new ApplicationTemplateLoader() );
+            this.configuration.setTemplateExceptionHandler( TemplateExceptionHandler.RETHROW_HANDLER );
+
+            // staleness is detected by our path watchers - never let freemarker check template files on its own
+            this.configuration.setTemplateUpdateDelay( Integer.MAX_VALUE );
+
+            for( Path contentRoot : application.getContentRoots() )
+            {
+                // content roots inside module files cannot change without the application being re-created
+                if( contentRoot.getFileSystem() == FileSystems.getDefault() )
+                {
+                    this.watcherRegistrations.add( FreemarkerRenderer.this.module.register(
+                            PathWatcher.class,
+                            new TemplatesWatcher(),
+                            Property.property( "location", contentRoot ),
+                            Property.property( "pattern", contentRoot + "/**/*.ftl" ) ) );
+                }
+            }
         }
 
-        @Override
-        public Object findTemplateSource( String name ) throws IOException
+        @Nonnull
+        private Writer createWriter( @Nonnull Writer writer )
+        {
+            return this.flushInterval > 0 ? new FlushingWriter( writer, this.flushInterval ) : writer;
+        }
+
+        private void warmUp()
         {
-            if( name.startsWith( "app:" ) )
+            final List<Path> files = new LinkedList<>();
+            for( Path contentRoot : this.application.getContentRoots() )
+            {
+                if( Files.isDirectory( contentRoot ) )
+                {
+                    try
+                    {
+                        Files.walkFileTree( contentRoot, new SimpleFileVisitor<Path>()
+                        {
+                            @Override
+                            public FileVisitResult visitFile( Path file, BasicFileAttributes attrs ) throws IOException
+                            {
+                                if( attrs.isRegularFile() && file.getFileName().toString().endsWith( ".ftl" ) )
+                                {
+                                    files.add( file.toAbsolutePath().normalize() );
+                                }
+                                return FileVisitResult.CONTINUE;
+                            }
+                        } );
+                    }
+                    catch( IOException e )
+                    {
+                        LOG.warn( "Could not list templates of application '{}' in '{}': {}",
+                                  this.application.getName(), contentRoot, e.getMessage(), e );
+                    }
+                }
+            }
+
+            List<Locale> locales = new LinkedList<>();
+            for( String languageTag : this.application.getContext().find( "templates.warmUpLocales", String.class ).or( ENGLISH.toLanguageTag() ).split( "," ) )
             {
-                Application.ApplicationResource resource = this.application.getResource( name.substring( "app:".length() ) + ".ftl" );
-                return resource == null ? null : resource.getPath();
+                if( !languageTag.trim().isEmpty() )
+                {
+                    locales.add( Locale.forLanguageTag( languageTag.trim() ) );
+                }
             }
-            else if( name.startsWith( "path:" ) )
+
+            long start = System.currentTimeMillis();
+            int failures = 0;
+            for( Path file : files )
             {
-                Path path = Paths.get( name.substring( "path:".length() ) );
-                return Files.exists( path ) && Files.isRegularFile( path ) ? path : null;
+                if( this.application.getAttributes().get( TEMPLATES_KEY ) != this )
+                {
+                    LOG.debug( "Template warm-up of application '{}' aborted - application has been updated", this.application.getName() );
+                    return;
+                }
+
+                for( Locale locale : locales )
+                {
+                    try
+                    {
+                        this.configuration.getTemplate( getTemplateName( file ), locale );
+                    }
+                    catch( Exception e )
+                    {
+                        failures++;
+                        LOG.warn( "Could not pre-parse template '{}' of application '{}' for locale '{}': {}",
+                                  file, this.application.getName(), locale, e.getMessage() );
+                    }
+                }
             }
-            else
+            LOG.info( "Pre-parsed {} templates of application '{}' for locales {} in {}ms ({} failed)",
+                      files.size() * locales.size() - failures, this.application.getName(), locales, System.currentTimeMillis() - start, failures );
+        }
+
+        private void close()
+        {
+            for( ServiceRegistration<PathWatcher> registration : this.watcherRegistrations )
             {
-                return null;
+                try
+                {
+                    registration.unregister();
+                }
+                catch( Exception e )
+                {
+                    LOG.debug( "Could not unregister templates watcher of application '{}': {}", this.application.getName(), e.getMessage(), e );
+                }
             }
+            this.watcherRegistrations.clear();
+            this.configuration.clearTemplateCache();
         }
 
-        @Override
-        public long getLastModified( Object templateSource )
+        private class TemplatesWatcher implements PathWatcher
         {
-            Path file = ( Path ) templateSource;
-            try
+            private boolean initialScanCompleted;
+
+            private boolean stale;
+
+            @Override
+            public void scanStarted( @Nonnull MapEx<String, Object> context )
             {
-                return Files.getLastModifiedTime( file ).toMillis();
+                this.stale = false;
             }
-            catch( IOException e )
+
+            @Override
+            public void pathCreated( @Nonnull Path path, @Nonnull MapEx<String, Object> context )
             {
-                return -1;
+                // the first scan reports all existing files as created - only those loaded with a different
+                // modification time are stale then; later on, new files may replace previously missing templates
+                pathChanged( path, this.initialScanCompleted );
+            }
+
+            @Override
+            public void pathModified( @Nonnull Path path, @Nonnull MapEx<String, Object> context )
+            {
+                pathChanged( path, true );
+            }
+
+            @Override
+            public void pathUnmodified( @Nonnull Path path, @Nonnull MapEx<String, Object> context )
+            {
+                // no-op
+            }
+
+            @Override
+            public void pathDeleted( @Nonnull Path path, @Nonnull MapEx<String, Object> context )
+            {
+                if( loadedFiles.containsKey( path.toAbsolutePath().normalize() ) )
+                {
+                    this.stale = true;
+                }
+            }
+
+            @Override
+            public void scanError( @Nullable Path path, @Nonnull MapEx<String, Object> context, @Nonnull Throwable throwable )
+            {
+                LOG.warn( "Error while checking templates of application '{}' at '{}': {}",
+                          application.getName(), path, throwable.getMessage(), throwable );
+            }
+
+            @Override
+            public void scanCompleted( @Nonnull MapEx<String, Object> context )
+            {
+                this.initialScanCompleted = true;
+                if( this.stale )
+                {
+                    // clear the whole cache, since templates may include or import each other
+                    LOG.debug( "Templates of application '{}' have changed - clearing template cache", application.getName() );
+                    loadedFiles.clear();
+                    configuration.clearTemplateCache();
+                    this.stale = false;
+                }
+            }
+
+            private void pathChanged( @Nonnull Path path, boolean staleIfNotLoaded )
+            {
+                Long loadedModificationTime = loadedFiles.get( path.toAbsolutePath().normalize() );
+                if( loadedModificationTime == null )
+                {
+                    this.stale |= staleIfNotLoaded;
+                }
+                else if( loadedModificationTime != getModificationTime( path ) )
+                {
+                    this.stale = true;
+                }
             }
         }
 
+        private class ApplicationTemplateLoader implements TemplateLoader
+        {
+            @Override
+            public Object findTemplateSource( String name ) throws IOException
+            {
+                if( name.startsWith( "app:" ) )
+                {
+                    Application.ApplicationResource resource = application.getResource( name.substring( "app:".length() ) + ".ftl" );
+                    return resource == null ? null : resource.getPath();
+                }
+                else if( name.startsWith( "path:" ) )
+                {
+                    Path path = Paths.get( name.substring( "path:".length() ) ).toAbsolutePath().normalize();
+                    return Files.exists( path ) && Files.isRegularFile( path ) ? path : null;
+                }
+                else
+                {
+                    return null;
+                }
+            }
+
+            @Override
+            public long getLastModified( Object templateSource )
+            {
+                // only called when a template is loaded, since the update delay is effectively infinite
+                Path file = ( Path ) templateSource;
+                long modificationTime = getModificationTime( file );
+                loadedFiles.put( file.toAbsolutePath().normalize(), modificationTime );
+                return modificationTime;
+            }
+
+            @Override
+            public Reader getReader( Object templateSource, String encoding ) throws IOException
+            {
+                Path file = ( Path ) templateSource;
+                return Files.newBufferedReader( file, Charset.forName( "UTF-8" ) );
+            }
+
+            @Override
+            public void closeTemplateSource( Object templateSource ) throws IOException
+            {
+                // no-op
+            }
+        }
+    }
+
+    private static long getModificationTime( @Nonnull Path file )
+    {
+        try
+        {
+            return Files.getLastModifiedTime( file ).toMillis();
+        }
+        catch( IOException e )
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Flushes the target writer every few characters, so rendered output is sent while rendering is still in progress.
+     * Since the response writer is a {@link PrintWriter} which swallows I/O errors, this writer also checks it for
+     * errors on every flush, and aborts rendering if the client went away.
+     */
+    private static class FlushingWriter extends FilterWriter
+    {
+        private final int flushInterval;
+
+        private int unflushed;
+
+        private FlushingWriter( @Nonnull Writer out, int flushInterval )
+        {
+            super( out );
+            this.flushInterval = flushInterval;
+        }
+
         @Override
-        public Reader getReader( Object templateSource, String encoding ) throws IOException
+        public void write( int c ) throws IOException
         {
-            Path file = ( Path ) templateSource;
-            return Files.newBufferedReader( file, Charset.forName( "UTF-8" ) );
+            this.out.write( c );
+            written( 1 );
         }
 
         @Override
-        public void closeTemplateSource( Object templateSource ) throws IOException
+        public void write( @Nonnull char[] cbuf, int off, int len ) throws IOException
         {
-            // no-op
+            this.out.write( cbuf, off, len );
+            written( len );
+        }
+
+        @Override
+        public void write( @Nonnull String str, int off, int len ) throws IOException
+        {
+            this.out.write( str, off, len );
+            written( len );
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            this.unflushed = 0;
+            this.out.flush();
+            if( this.out instanceof PrintWriter && ( ( PrintWriter ) this.out ).checkError() )
+            {
+                throw new EOFException( "could not write rendered output (client disconnected?)" );
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            // the target writer is owned by our caller
+            flush();
+        }
+
+        private void written( int count ) throws IOException
+        {
+            this.unflushed += count;
+            if( this.unflushed >= this.flushInterval )
+            {
+                flush();
+            }
         }
     }
 }
@@ -0,0 +1,69 @@
+package org.mosaic.web.server.impl.marshall;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import javax.annotation.Nonnull;
+
+/**
+ * Creates the Jackson object mappers shared by the JSON and CSV marshallers and unmarshallers.
+ *
+ * @author arik
+ */
+final class JacksonMappers
+{
+    @Nonnull
+    static ObjectMapper createJsonMapper()
+    {
+        ObjectMapper objectMapper = configure( new ObjectMapper() );
+        objectMapper.configure( JsonParser.Feature.ALLOW_COMMENTS, true );
+        objectMapper.configure( JsonParser.Feature.ALLOW_NUMERIC_LEADING_ZEROS, true );
+        objectMapper.configure( JsonParser.Feature.ALLOW_SINGLE_QUOTES, true );
+        objectMapper.configure( JsonParser.Feature.ALLOW_UNQUOTED_CONTROL_CHARS, true );
+        objectMapper.configure( JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true );
+        objectMapper.configure( JsonParser.Feature.STRICT_DUPLICATE_DETECTION, true );
+        objectMapper.configure( JsonGenerator.Feature.AUTO_CLOSE_TARGET, false );
+        objectMapper.configure( JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN, true );
+        return objectMapper;
+    }
+
+    @Nonnull
+    static CsvMapper createCsvMapper()
+    {
+        CsvMapper objectMapper = configure( new CsvMapper() );
+        objectMapper.configure( CsvParser.Feature.WRAP_AS_ARRAY, true );
+        return objectMapper;
+    }
+
+    @Nonnull
+    private static <T extends ObjectMapper> T configure( @Nonnull T objectMapper )
+    {
+        objectMapper.configure( MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true );
+        objectMapper.configure( SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true );
+        objectMapper.configure( SerializationFeature.WRITE_BIGDECIMAL_AS_PLAIN, true );
+        objectMapper.configure( SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS, false );
+        objectMapper.configure( DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true );
+        objectMapper.configure( DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, true );
+        objectMapper.configure( DeserializationFeature.FAIL_ON_NUMBERS_FOR_ENUMS, true );
+        objectMapper.configure( DeserializationFeature.FAIL_ON_READING_DUP_TREE_KEY, true );
+        objectMapper.configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true );
+        objectMapper.configure( DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS, false );
+        objectMapper.configure( DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS, true );
+        objectMapper.registerModules(
+                new GuavaModule(),
+                new JodaModule()
+        );
+        return objectMapper;
+    }
+
+    private JacksonMappers()
+    {
+    }
+}
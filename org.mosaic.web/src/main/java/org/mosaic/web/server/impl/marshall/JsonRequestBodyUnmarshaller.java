@@ -0,0 +1,27 @@
+package org.mosaic.web.server.impl.marshall;
+
+import com.google.common.net.MediaType;
+import javax.annotation.Nonnull;
+import org.mosaic.modules.Ranking;
+import org.mosaic.modules.Service;
+
+/**
+ * @author arik
+ */
+@Service
+@Ranking( -200 )
+final class JsonRequestBodyUnmarshaller extends AbstractJacksonRequestBodyUnmarshaller
+{
+    private static final MediaType APPLICATION_JSON = MediaType.create( "application", "json" );
+
+    JsonRequestBodyUnmarshaller()
+    {
+        super( JacksonMappers.createJsonMapper() );
+    }
+
+    @Override
+    public boolean canUnmarshall( @Nonnull MediaType mediaType, @Nonnull Class<?> type )
+    {
+        return mediaType.is( APPLICATION_JSON );
+    }
+}
@@ -0,0 +1,293 @@
+package org.mosaic.web.application.impl;
+
+import java.util.*;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.mosaic.util.expression.Expression;
+import org.mosaic.util.resource.PathMatcher;
+import org.mosaic.web.application.Application;
+import org.springframework.util.AntPathMatcher;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares {@link SecuredPathIndex} against matching every secured path in turn, which is what the index replaced: any
+ * difference is either a different first match, or a miss - and a miss would leave a secured path unprotected.
+ *
+ * @author arik
+ */
+public class SecuredPathIndexTest
+{
+    private static final PathMatcher PATH_MATCHER = new PathMatcher()
+    {
+        private final AntPathMatcher antPathMatcher = new AntPathMatcher();
+
+        @Override
+        public boolean matches( @Nonnull String pattern, @Nonnull String path )
+        {
+            return this.antPathMatcher.match( pattern, path );
+        }
+
+        @Override
+        public boolean matches( @Nonnull String pattern,
+                                @Nonnull String path,
+                                @Nonnull Map<String, String> pathParameters )
+        {
+            if( this.antPathMatcher.match( pattern, path ) )
+            {
+                pathParameters.putAll( this.antPathMatcher.extractUriTemplateVariables( pattern, path ) );
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // overlapping patterns, so that declaration order decides which one applies
+    private static final List<String> PATTERNS = Arrays.asList( "/exact",
+                                                                "/exact/",
+                                                                "/users/{id}/profile",
+                                                                "/users/*/profile",
+                                                                "/users/{id:[0-9]+}",
+                                                                "/users/**",
+                                                                "/**/edit",
+                                                                "/static/**/*.css",
+                                                                "/static/**",
+                                                                "/api/v?/items",
+                                                                "/api/{version:v[0-9]+}/items/{id}",
+                                                                "/api/**/items/**",
+                                                                "/a/**/b/**/c",
+                                                                "/trailing/**/",
+                                                                "/*.html",
+                                                                "/**/*.json",
+                                                                "files/*",
+                                                                "relative/**" );
+
+    private static final List<String> SEGMENTS = Arrays.asList( "exact",
+                                                                "users",
+                                                                "42",
+                                                                "profile",
+                                                                "edit",
+                                                                "static",
+                                                                "x.css",
+                                                                "api",
+                                                                "v1",
+                                                                "v12",
+                                                                "items",
+                                                                "a",
+                                                                "b",
+                                                                "c",
+                                                                "trailing",
+                                                                "f.html",
+                                                                "d.json",
+                                                                "files",
+                                                                "relative" );
+
+    private static final List<String> EDGE_CASES = Arrays.asList( "",
+                                                                  "/",
+                                                                  "//",
+                                                                  "exact",
+                                                                  "/exact",
+                                                                  "/exact/",
+                                                                  "/exact//",
+                                                                  "//exact",
+                                                                  "/ exact ",
+                                                                  "/users",
+                                                                  "/users/",
+                                                                  "/users//42//profile",
+                                                                  "/users/42/profile/",
+                                                                  "/users/abc",
+                                                                  "/static/",
+                                                                  "/static/x.css/",
+                                                                  "/static/a/b/c/x.css",
+                                                                  "/api/v1/items/",
+                                                                  "/api/vx/items/1",
+                                                                  "/api/v1/v2/items/x/y",
+                                                                  "/a/b/c",
+                                                                  "/a/x/b/y/c",
+                                                                  "/a/b/b/c/c",
+                                                                  "/a/b/c/",
+                                                                  "/a/c",
+                                                                  "/trailing",
+                                                                  "/trailing/",
+                                                                  "/trailing/x/",
+                                                                  "/trailing/x",
+                                                                  "/.html",
+                                                                  "/x/y/.json",
+                                                                  "files/x",
+                                                                  "files/x/y",
+                                                                  "/files/x",
+                                                                  "relative",
+                                                                  "relative/",
+                                                                  "relative/x/y" );
+
+    @Test
+    public void testFindMatchesLinearScan()
+    {
+        assertMatchesLinearScan( PATTERNS );
+    }
+
+    @Test
+    public void testFindMatchesLinearScanInReverseOrder()
+    {
+        List<String> patterns = new ArrayList<>( PATTERNS );
+        Collections.reverse( patterns );
+        assertMatchesLinearScan( patterns );
+    }
+
+    @Test
+    public void testFindMatchesLinearScanWithCatchAll()
+    {
+        List<String> patterns = new ArrayList<>( PATTERNS );
+        patterns.add( 5, "/**" );
+        assertMatchesLinearScan( patterns );
+    }
+
+    @Test
+    public void testFirstMatchWins()
+    {
+        List<Application.SecuredPath> securedPaths = securedPaths( PATTERNS );
+        SecuredPathIndex index = new SecuredPathIndex( securedPaths, PATH_MATCHER );
+
+        assertThat( index.find( "/exact" ), sameInstance( securedPaths.get( 0 ) ) );
+        assertThat( index.find( "/exact/" ), sameInstance( securedPaths.get( 1 ) ) );
+        assertThat( index.find( "/users/42/profile" ), sameInstance( securedPaths.get( 2 ) ) );
+        assertThat( index.find( "/users/42" ), sameInstance( securedPaths.get( 4 ) ) );
+        assertThat( index.find( "/users/abc" ), sameInstance( securedPaths.get( 5 ) ) );
+        assertThat( index.find( "/users/42/edit" ), sameInstance( securedPaths.get( 5 ) ) );
+        assertThat( index.find( "/x/y/edit" ), sameInstance( securedPaths.get( 6 ) ) );
+        assertThat( index.find( "/static/a/x.css" ), sameInstance( securedPaths.get( 7 ) ) );
+        assertThat( index.find( "/static/a/x.js" ), sameInstance( securedPaths.get( 8 ) ) );
+        assertThat( index.find( "/api/v1/items" ), sameInstance( securedPaths.get( 9 ) ) );
+        assertThat( index.find( "/api/v12/items" ), sameInstance( securedPaths.get( 11 ) ) );
+        assertThat( index.find( "/api/v12/items/7" ), sameInstance( securedPaths.get( 10 ) ) );
+        assertThat( index.find( "/a/x/b/y/c" ), sameInstance( securedPaths.get( 12 ) ) );
+        assertThat( index.find( "/index.html" ), sameInstance( securedPaths.get( 14 ) ) );
+        assertThat( index.find( "/x/d.json" ), sameInstance( securedPaths.get( 15 ) ) );
+        assertThat( index.find( "files/x" ), sameInstance( securedPaths.get( 16 ) ) );
+        assertThat( index.find( "/other" ), nullValue() );
+        assertThat( index.find( "/files/x" ), nullValue() );
+    }
+
+    @Test
+    public void testNoSecuredPaths()
+    {
+        SecuredPathIndex index = new SecuredPathIndex( Collections.<Application.SecuredPath>emptyList(), PATH_MATCHER );
+        assertThat( index.find( "/" ), nullValue() );
+        assertThat( index.find( "/users/42" ), nullValue() );
+    }
+
+    private static void assertMatchesLinearScan( @Nonnull List<String> patterns )
+    {
+        List<Application.SecuredPath> securedPaths = securedPaths( patterns );
+        SecuredPathIndex index = new SecuredPathIndex( securedPaths, PATH_MATCHER );
+
+        Set<String> paths = new LinkedHashSet<>( EDGE_CASES );
+        for( String path : generatePaths( 3 ) )
+        {
+            paths.add( path );
+            paths.add( "/" + path );
+            paths.add( "/" + path + "/" );
+            paths.add( "//" + path.replace( "/", "//" ) );
+        }
+
+        int matched = 0;
+        for( String path : paths )
+        {
+            Application.SecuredPath expected = findLinear( securedPaths, path );
+            if( expected != null )
+            {
+                matched++;
+            }
+
+            // twice - the second lookup is served from the cache
+            assertThat( "'" + path + "'", index.find( path ), sameInstance( expected ) );
+            assertThat( "'" + path + "' (cached)", index.find( path ), sameInstance( expected ) );
+        }
+
+        // make sure the comparison isn't vacuous
+        assertThat( matched > 1000, is( true ) );
+    }
+
+    @Nullable
+    private static Application.SecuredPath findLinear( @Nonnull List<Application.SecuredPath> securedPaths,
+                                                       @Nonnull String path )
+    {
+        for( Application.SecuredPath securedPath : securedPaths )
+        {
+            if( PATH_MATCHER.matches( securedPath.getPath(), path ) )
+            {
+                return securedPath;
+            }
+        }
+        return null;
+    }
+
+    @Nonnull
+    private static List<String> generatePaths( int maxSegments )
+    {
+        List<String> paths = new ArrayList<>();
+        List<String> previous = Collections.singletonList( "" );
+        for( int length = 1; length <= maxSegments; length++ )
+        {
+            List<String> current = new ArrayList<>( previous.size() * SEGMENTS.size() );
+            for( String prefix : previous )
+            {
+                for( String segment : SEGMENTS )
+                {
+                    current.add( prefix.isEmpty() ? segment : prefix + "/" + segment );
+                }
+            }
+            paths.addAll( current );
+            previous = current;
+        }
+        return paths;
+    }
+
+    @Nonnull
+    private static List<Application.SecuredPath> securedPaths( @Nonnull List<String> patterns )
+    {
+        List<Application.SecuredPath> securedPaths = new ArrayList<>( patterns.size() );
+        for( final String pattern : patterns )
+        {
+            securedPaths.add( new Application.SecuredPath()
+            {
+                @Nonnull
+                @Override
+                public String getPath()
+                {
+                    return pattern;
+                }
+
+                @Nullable
+                @Override
+                public Collection<String> getAuthenticationMethods()
+                {
+                    return null;
+                }
+
+                @Nullable
+                @Override
+                public Expression<Boolean> getExpression()
+                {
+                    return null;
+                }
+
+                @Nullable
+                @Override
+                public String getChallangeMethod()
+                {
+                    return null;
+                }
+
+                @Override
+                public String toString()
+                {
+                    return pattern;
+                }
+            } );
+        }
+        return securedPaths;
+    }
+}
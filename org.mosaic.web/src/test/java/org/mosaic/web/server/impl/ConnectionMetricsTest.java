@@ -0,0 +1,227 @@
+package org.mosaic.web.server.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.net.ssl.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.*;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.After;
+import org.junit.Test;
+import org.mosaic.metrics.Counter;
+import org.mosaic.metrics.Gauge;
+import org.mosaic.metrics.Histogram;
+import org.mosaic.metrics.Metrics;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Runs {@link ConnectionMetrics} on an embedded TLS connector set up like the ones {@link JettyManager} creates.
+ *
+ * @author arik
+ */
+public class ConnectionMetricsTest
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final String KEYSTORE_PASSWORD = "changeit";
+
+    // metrics are registered statically, so each test uses its own connector name
+    private final String connectorName = "test" + System.nanoTime();
+
+    private final String prefix = "web.connector." + this.connectorName + ".";
+
+    private final Server server = new Server();
+
+    @After
+    public void stop() throws Exception
+    {
+        this.server.stop();
+    }
+
+    @Test
+    public void testTlsConnectionMetrics() throws Exception
+    {
+        int port = start();
+        SSLSocketFactory socketFactory = createClientContext().getSocketFactory();
+
+        // a full handshake, and two requests on the same connection
+        byte[] sessionId;
+        try( SSLSocket socket = ( SSLSocket ) socketFactory.createSocket( "localhost", port ) )
+        {
+            assertThat( request( socket, false ), equalTo( "ok" ) );
+            assertThat( request( socket, false ), equalTo( "ok" ) );
+            sessionId = socket.getSession().getId();
+        }
+
+        // the client caches the TLS session, so the second connection resumes it
+        try( SSLSocket socket = ( SSLSocket ) socketFactory.createSocket( "localhost", port ) )
+        {
+            assertThat( request( socket, true ), equalTo( "ok" ) );
+            assertThat( Arrays.equals( socket.getSession().getId(), sessionId ), is( true ) );
+        }
+
+        awaitClosedConnections( 2 );
+        assertThat( counter( "connections" ).getCount(), equalTo( 2l ) );
+        assertThat( counter( "tls.handshakes" ).getCount(), equalTo( 1l ) );
+        assertThat( counter( "tls.resumptions" ).getCount(), equalTo( 1l ) );
+        assertThat( ( ( Gauge ) Metrics.getMetrics().get( this.prefix + "connections.open" ) ).getValue(), equalTo( 0l ) );
+
+        Histogram.Snapshot requestsPerConnection = Metrics.histogram( this.prefix + "requestsPerConnection" ).getSnapshot();
+        assertThat( requestsPerConnection.getCount(), equalTo( 2l ) );
+        assertThat( requestsPerConnection.getMin(), equalTo( 1l ) );
+        assertThat( requestsPerConnection.getMax(), equalTo( 2l ) );
+    }
+
+    private int start() throws Exception
+    {
+        SslContextFactory sslContextFactory = new SslContextFactory();
+        sslContextFactory.setKeyStorePath( getClass().getResource( "/test-keystore.jks" ).toExternalForm() );
+        sslContextFactory.setKeyStorePassword( KEYSTORE_PASSWORD );
+        sslContextFactory.setKeyManagerPassword( KEYSTORE_PASSWORD );
+        sslContextFactory.setSessionCachingEnabled( true );
+        // TLS 1.3 resumes sessions with pre-shared keys rather than session IDs
+        sslContextFactory.setIncludeProtocols( "TLSv1.2" );
+
+        HttpConfiguration httpCfg = new HttpConfiguration();
+        httpCfg.addCustomizer( new SecureRequestCustomizer() );
+
+        DrainableServerConnector connector = new DrainableServerConnector( this.server,
+                                                                           1,
+                                                                           1,
+                                                                           new SslConnectionFactory( sslContextFactory, "http/1.1" ),
+                                                                           new HttpConnectionFactory( httpCfg ) );
+        connector.setName( this.connectorName );
+        connector.setHost( "localhost" );
+        connector.setPort( 0 );
+        connector.addBean( new ConnectionMetrics( this.connectorName ) );
+        this.server.addConnector( connector );
+
+        this.server.setHandler( new AbstractHandler()
+        {
+            @Override
+            public void handle( String target,
+                                Request baseRequest,
+                                HttpServletRequest request,
+                                HttpServletResponse response ) throws IOException
+            {
+                byte[] body = "ok".getBytes( UTF_8 );
+                response.setContentLength( body.length );
+                response.getOutputStream().write( body );
+                baseRequest.setHandled( true );
+            }
+        } );
+        this.server.start();
+        return connector.getLocalPort();
+    }
+
+    private void awaitClosedConnections( long count ) throws InterruptedException
+    {
+        // the server notices the closed connections asynchronously
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 10 );
+        Histogram requestsPerConnection = Metrics.histogram( this.prefix + "requestsPerConnection" );
+        while( requestsPerConnection.getSnapshot().getCount() < count || counter( "tls.handshakes" ).getCount() + counter( "tls.resumptions" ).getCount() < count )
+        {
+            if( System.nanoTime() > deadline )
+            {
+                throw new AssertionError( "connections were not closed on time" );
+            }
+            Thread.sleep( 50 );
+        }
+    }
+
+    @Nonnull
+    private Counter counter( @Nonnull String name )
+    {
+        return Metrics.counter( this.prefix + name );
+    }
+
+    @Nonnull
+    private static SSLContext createClientContext() throws Exception
+    {
+        TrustManager trustAll = new X509TrustManager()
+        {
+            @Override
+            public void checkClientTrusted( X509Certificate[] chain, String authType )
+            {
+            }
+
+            @Override
+            public void checkServerTrusted( X509Certificate[] chain, String authType )
+            {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers()
+            {
+                return new X509Certificate[ 0 ];
+            }
+        };
+
+        SSLContext sslContext = SSLContext.getInstance( "TLSv1.2" );
+        sslContext.init( null, new TrustManager[] { trustAll }, null );
+        return sslContext;
+    }
+
+    @Nonnull
+    private static String request( @Nonnull SSLSocket socket, boolean close ) throws IOException
+    {
+        OutputStream out = socket.getOutputStream();
+        out.write( ( "GET / HTTP/1.1\r\nHost: localhost\r\n" + ( close ? "Connection: close\r\n" : "" ) + "\r\n" ).getBytes( UTF_8 ) );
+        out.flush();
+
+        InputStream in = socket.getInputStream();
+        int contentLength = -1;
+        String line = readLine( in );
+        assertThat( line, line.startsWith( "HTTP/1.1 200" ), is( true ) );
+        while( !( line = readLine( in ) ).isEmpty() )
+        {
+            if( line.toLowerCase().startsWith( "content-length:" ) )
+            {
+                contentLength = Integer.parseInt( line.substring( "content-length:".length() ).trim() );
+            }
+        }
+
+        byte[] body = new byte[ contentLength ];
+        for( int read = 0; read < body.length; )
+        {
+            int count = in.read( body, read, body.length - read );
+            if( count < 0 )
+            {
+                throw new IOException( "unexpected end of response" );
+            }
+            read += count;
+        }
+        return new String( body, UTF_8 );
+    }
+
+    @Nonnull
+    private static String readLine( @Nonnull InputStream in ) throws IOException
+    {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while( ( b = in.read() ) != '\n' )
+        {
+            if( b < 0 )
+            {
+                throw new IOException( "unexpected end of response" );
+            }
+            if( b != '\r' )
+            {
+                line.write( b );
+            }
+        }
+        return new String( line.toByteArray(), UTF_8 );
+    }
+}
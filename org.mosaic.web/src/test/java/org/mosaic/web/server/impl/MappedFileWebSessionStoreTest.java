@@ -0,0 +1,238 @@
+package org.mosaic.web.server.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import org.junit.After;
+import org.junit.Test;
+import org.mosaic.web.server.WebSessionStore;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author arik
+ */
+public class MappedFileWebSessionStoreTest
+{
+    private static final long INITIAL_SIZE = 16 * 1024 * 1024;
+
+    // file header is 8 bytes, and a record's status byte follows its 4-byte length
+    private static final long FIRST_RECORD_STATUS_POSITION = 8 + 4;
+
+    private static final int LARGE_ATTRIBUTES_SIZE = 64 * 1024;
+
+    private final Path directory;
+
+    private final Path file;
+
+    private MappedFileWebSessionStore store;
+
+    public MappedFileWebSessionStoreTest() throws IOException
+    {
+        this.directory = Files.createTempDirectory( "web-sessions-test" );
+        this.file = this.directory.resolve( "sessions.dat" );
+        this.store = new MappedFileWebSessionStore( this.file );
+    }
+
+    @After
+    public void cleanup() throws IOException
+    {
+        this.store.close();
+        try( DirectoryStream<Path> files = Files.newDirectoryStream( this.directory ) )
+        {
+            for( Path file : files )
+            {
+                Files.delete( file );
+            }
+        }
+        Files.delete( this.directory );
+    }
+
+    @Test
+    public void testStoreAndLoad() throws IOException
+    {
+        assertThat( this.store.load( "a" ), nullValue() );
+
+        this.store.store( new WebSessionStore.StoredSession( "a", 100, 200, 30, new byte[] { 1, 2, 3 } ) );
+        assertSession( this.store.load( "a" ), 100, 200, 30, new byte[] { 1, 2, 3 } );
+
+        this.store.touch( "a", 300 );
+        assertSession( this.store.load( "a" ), 100, 300, 30, new byte[] { 1, 2, 3 } );
+
+        this.store.store( new WebSessionStore.StoredSession( "a", 100, 400, 60, new byte[] { 4 } ) );
+        assertSession( this.store.load( "a" ), 100, 400, 60, new byte[] { 4 } );
+
+        this.store.remove( "a" );
+        assertThat( this.store.load( "a" ), nullValue() );
+
+        // touching a missing session does nothing
+        this.store.touch( "a", 500 );
+        assertThat( this.store.load( "a" ), nullValue() );
+    }
+
+    @Test
+    public void testRestartRescansFile() throws IOException
+    {
+        this.store.store( new WebSessionStore.StoredSession( "a", 100, 200, 30, new byte[] { 1 } ) );
+        this.store.store( new WebSessionStore.StoredSession( "b", 100, 200, 30, new byte[] { 2 } ) );
+        this.store.store( new WebSessionStore.StoredSession( "c", 100, 200, 30, new byte[] { 3 } ) );
+        this.store.store( new WebSessionStore.StoredSession( "a", 100, 300, 30, new byte[] { 4 } ) );
+        this.store.touch( "c", 500 );
+        this.store.remove( "b" );
+
+        restart();
+        assertSession( this.store.load( "a" ), 100, 300, 30, new byte[] { 4 } );
+        assertThat( this.store.load( "b" ), nullValue() );
+        assertSession( this.store.load( "c" ), 100, 500, 30, new byte[] { 3 } );
+    }
+
+    @Test
+    public void testLaterDuplicateLiveRecordWins() throws IOException
+    {
+        this.store.store( new WebSessionStore.StoredSession( "a", 100, 200, 30, new byte[] { 1 } ) );
+        this.store.store( new WebSessionStore.StoredSession( "a", 100, 300, 30, new byte[] { 2 } ) );
+        this.store.close();
+
+        // simulate a crash between appending the second record and killing the first
+        setFirstRecordStatus( ( byte ) 1 );
+
+        this.store = new MappedFileWebSessionStore( this.file );
+        assertSession( this.store.load( "a" ), 100, 300, 30, new byte[] { 2 } );
+
+        // the rescan kills the earlier record, so removing the session doesn't resurrect it
+        this.store.remove( "a" );
+        restart();
+        assertThat( this.store.load( "a" ), nullValue() );
+        this.store.close();
+        assertThat( getFirstRecordStatus(), equalTo( ( byte ) 0 ) );
+    }
+
+    @Test
+    public void testCompactsMostlyDeadFile() throws IOException
+    {
+        this.store.store( new WebSessionStore.StoredSession( "other", 100, 200, 0, new byte[] { 1 } ) );
+
+        // replacing the same session over and over writes more than the initial size, almost all of it dead
+        int versions = ( int ) ( 2 * INITIAL_SIZE / LARGE_ATTRIBUTES_SIZE );
+        for( int i = 0; i < versions; i++ )
+        {
+            this.store.store( new WebSessionStore.StoredSession( "a", 100, i, 0, largeAttributes( i ) ) );
+        }
+        assertSession( this.store.load( "a" ), 100, versions - 1, 0, largeAttributes( versions - 1 ) );
+        assertSession( this.store.load( "other" ), 100, 200, 0, new byte[] { 1 } );
+        assertThat( Files.size( this.file ), equalTo( INITIAL_SIZE ) );
+        assertThat( Files.exists( this.file.resolveSibling( "sessions.dat.tmp" ) ), is( false ) );
+
+        restart();
+        assertSession( this.store.load( "a" ), 100, versions - 1, 0, largeAttributes( versions - 1 ) );
+        assertSession( this.store.load( "other" ), 100, 200, 0, new byte[] { 1 } );
+    }
+
+    @Test
+    public void testGrowsPastInitialSize() throws IOException
+    {
+        int count = ( int ) ( INITIAL_SIZE / LARGE_ATTRIBUTES_SIZE ) + 10;
+        for( int i = 0; i < count; i++ )
+        {
+            this.store.store( new WebSessionStore.StoredSession( "s" + i, 100, i, 0, largeAttributes( i ) ) );
+        }
+        assertThat( Files.size( this.file ), equalTo( 2 * INITIAL_SIZE ) );
+
+        restart();
+        for( int i = 0; i < count; i++ )
+        {
+            assertSession( this.store.load( "s" + i ), 100, i, 0, largeAttributes( i ) );
+        }
+    }
+
+    @Test
+    public void testExpire() throws IOException
+    {
+        // more sessions than a single expiry chunk
+        Set<String> expected = new HashSet<>();
+        for( int i = 0; i < 1000; i++ )
+        {
+            boolean expires = i % 2 == 0;
+            this.store.store( new WebSessionStore.StoredSession( "s" + i, 0, expires ? 1000 : 9000, 5, new byte[ 0 ] ) );
+            if( expires )
+            {
+                expected.add( "s" + i );
+            }
+        }
+        this.store.store( new WebSessionStore.StoredSession( "eternal", 0, 0, 0, new byte[ 0 ] ) );
+        this.store.touch( "s0", 9000 );
+        expected.remove( "s0" );
+
+        Collection<String> expired = this.store.expire( 10000 );
+        assertThat( new HashSet<>( expired ), equalTo( expected ) );
+        assertThat( expired.size(), equalTo( expected.size() ) );
+        for( String id : expected )
+        {
+            assertThat( id, this.store.load( id ), nullValue() );
+        }
+        assertThat( this.store.load( "s0" ), notNullValue() );
+        assertThat( this.store.load( "s1" ), notNullValue() );
+        assertThat( this.store.load( "eternal" ), notNullValue() );
+
+        assertThat( this.store.expire( 10000 ).isEmpty(), is( true ) );
+        restart();
+        assertThat( this.store.load( "s2" ), nullValue() );
+        assertThat( this.store.load( "s1" ), notNullValue() );
+    }
+
+    private void restart()
+    {
+        this.store.close();
+        this.store = new MappedFileWebSessionStore( this.file );
+    }
+
+    private byte getFirstRecordStatus() throws IOException
+    {
+        try( FileChannel channel = FileChannel.open( this.file, READ ) )
+        {
+            ByteBuffer status = ByteBuffer.allocate( 1 );
+            channel.read( status, FIRST_RECORD_STATUS_POSITION );
+            return status.get( 0 );
+        }
+    }
+
+    private void setFirstRecordStatus( byte value ) throws IOException
+    {
+        try( FileChannel channel = FileChannel.open( this.file, WRITE ) )
+        {
+            channel.write( ByteBuffer.wrap( new byte[] { value } ), FIRST_RECORD_STATUS_POSITION );
+        }
+    }
+
+    @Nonnull
+    private static byte[] largeAttributes( int version )
+    {
+        byte[] attributes = new byte[ LARGE_ATTRIBUTES_SIZE ];
+        Arrays.fill( attributes, ( byte ) version );
+        return attributes;
+    }
+
+    private static void assertSession( WebSessionStore.StoredSession session,
+                                       long creationTime,
+                                       long lastAccessTime,
+                                       int maxInactiveInterval,
+                                       byte[] attributes )
+    {
+        assertThat( session, notNullValue() );
+        assertThat( session.getCreationTime(), equalTo( creationTime ) );
+        assertThat( session.getLastAccessTime(), equalTo( lastAccessTime ) );
+        assertThat( session.getMaxInactiveInterval(), equalTo( maxInactiveInterval ) );
+        assertThat( Arrays.equals( session.getAttributes(), attributes ), is( true ) );
+    }
+}